@@ -0,0 +1,93 @@
+package de.terrestris.shoguncore.bulk;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.databind.JsonNode;
+import de.terrestris.shoguncore.model.PersistentObject;
+
+/**
+ * The result of a single item of a bulk request (see {@link BulkResult}).
+ * The status is the HTTP status code the item would have got as single
+ * request, e.g. <code>201</code> for a created entity or <code>403</code>
+ * for a denied one.
+ * <p>
+ * The entity is kept in its serialized form, which is created while the
+ * session is still open: The bulk methods clear the session after each chunk,
+ * so lazy associations of the entity could not be initialized anymore when
+ * the result is serialized.
+ *
+ * @author terrestris GmbH & Co. KG
+ */
+@JsonInclude(Include.NON_NULL)
+public class BulkItemResult<E extends PersistentObject> {
+
+    private final int index;
+
+    private final Integer id;
+
+    private final int status;
+
+    private final JsonNode entity;
+
+    private final String error;
+
+    /**
+     * Constructor
+     *
+     * @param index  The index of the item in the request
+     * @param id     The ID of the entity (if known)
+     * @param status The HTTP status code of the item
+     * @param entity The serialized created/updated entity (if any)
+     * @param error  The error message (if the item failed)
+     */
+    public BulkItemResult(int index, Integer id, int status, JsonNode entity, String error) {
+        this.index = index;
+        this.id = id;
+        this.status = status;
+        this.entity = entity;
+        this.error = error;
+    }
+
+    /**
+     * @return Whether the item succeeded (i.e. has a 2xx status).
+     */
+    public boolean isSuccess() {
+        return status >= 200 && status < 300;
+    }
+
+    /**
+     * @return the index
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the id
+     */
+    public Integer getId() {
+        return id;
+    }
+
+    /**
+     * @return the status
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the serialized entity
+     */
+    public JsonNode getEntity() {
+        return entity;
+    }
+
+    /**
+     * @return the error
+     */
+    public String getError() {
+        return error;
+    }
+
+}
@@ -0,0 +1,63 @@
+package de.terrestris.shoguncore.bulk;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import de.terrestris.shoguncore.model.PersistentObject;
+
+/**
+ * The result of a bulk request, i.e. the results of all items (ordered by
+ * their index in the request) and the number of succeeded and failed items.
+ *
+ * @author terrestris GmbH & Co. KG
+ */
+public class BulkResult<E extends PersistentObject> {
+
+    private final List<BulkItemResult<E>> items = new ArrayList<>();
+
+    private int succeeded;
+
+    private int failed;
+
+    /**
+     * @param item The result of an item to add
+     */
+    public void add(BulkItemResult<E> item) {
+        items.add(item);
+        if (item.isSuccess()) {
+            succeeded++;
+        } else {
+            failed++;
+        }
+    }
+
+    /**
+     * Orders the items by their index in the request.
+     */
+    public void sort() {
+        items.sort(Comparator.comparingInt(BulkItemResult::getIndex));
+    }
+
+    /**
+     * @return the items
+     */
+    public List<BulkItemResult<E>> getItems() {
+        return items;
+    }
+
+    /**
+     * @return the number of succeeded items
+     */
+    public int getSucceeded() {
+        return succeeded;
+    }
+
+    /**
+     * @return the number of failed items
+     */
+    public int getFailed() {
+        return failed;
+    }
+
+}
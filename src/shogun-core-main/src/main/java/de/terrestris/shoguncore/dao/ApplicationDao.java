@@ -1,5 +1,10 @@
 package de.terrestris.shoguncore.dao;
 
+import java.util.Collections;
+import java.util.List;
+
+import org.hibernate.HibernateException;
+import org.hibernate.criterion.Criterion;
 import org.springframework.stereotype.Repository;
 
 import de.terrestris.shoguncore.model.Application;
@@ -25,4 +30,36 @@ public class ApplicationDao<E extends Application> extends
         super(clazz);
     }
 
+    /**
+     * Returns the application with the given ID with its complete graph
+     * (viewport, (sub)modules, layers, ...) initialized, i.e. ready for the
+     * serialization (see {@link #initializeGraph(java.util.Collection)}).
+     *
+     * @param id
+     * @return The application or null, if it does not exist
+     */
+    public E findByIdWithGraph(Integer id) {
+        final E application = findById(id);
+        if (application != null) {
+            initializeGraph(Collections.singletonList(application));
+        }
+        return application;
+    }
+
+    /**
+     * Returns the applications matching the given criterions with their
+     * complete graphs initialized (see {@link #findByIdWithGraph(Integer)}).
+     * The graphs of all applications are loaded together, i.e. the number of
+     * queries doesn't grow with the number of applications.
+     *
+     * @param criterion
+     * @return
+     * @throws HibernateException
+     */
+    public List<E> findAllWithGraph(Criterion... criterion) throws HibernateException {
+        final List<E> applications = findByCriteria(criterion);
+        initializeGraph(applications);
+        return applications;
+    }
+
 }
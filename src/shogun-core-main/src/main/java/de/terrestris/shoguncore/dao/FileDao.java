@@ -28,4 +28,38 @@ public class FileDao<E extends File>
     protected FileDao(Class<E> clazz) {
         super(clazz);
     }
+
+    /**
+     * Checks whether the blob with the given key is referenced by any file
+     * (or thumbnail of an image file).
+     *
+     * @param blobKey
+     * @return
+     */
+    public boolean isBlobReferenced(String blobKey) {
+        Long fileCount = getSession()
+            .createQuery("select count(f) from File f where f.blobKey = :blobKey", Long.class)
+            .setParameter("blobKey", blobKey)
+            .uniqueResult();
+
+        if (fileCount > 0) {
+            return true;
+        }
+
+        Long thumbnailCount = getSession()
+            .createQuery("select count(i) from ImageFile i where i.thumbnailBlobKey = :blobKey", Long.class)
+            .setParameter("blobKey", blobKey)
+            .uniqueResult();
+
+        if (thumbnailCount > 0) {
+            return true;
+        }
+
+        Long sizedThumbnailCount = getSession()
+            .createQuery("select count(i) from ImageFile i join i.thumbnailBlobKeys k where k = :blobKey", Long.class)
+            .setParameter("blobKey", blobKey)
+            .uniqueResult();
+
+        return sizedThumbnailCount > 0;
+    }
 }
@@ -1,26 +1,53 @@
 package de.terrestris.shoguncore.dao;
 
+import com.fasterxml.jackson.annotation.JsonIdentityReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import de.terrestris.shoguncore.helper.IdHelper;
 import de.terrestris.shoguncore.model.PersistentObject;
 import de.terrestris.shoguncore.model.User;
 import de.terrestris.shoguncore.model.UserGroup;
+import de.terrestris.shoguncore.model.security.Permission;
 import de.terrestris.shoguncore.model.security.PermissionCollection;
+import de.terrestris.shoguncore.paging.PagingRequest;
 import de.terrestris.shoguncore.paging.PagingResult;
 import de.terrestris.shoguncore.util.entity.EntityUtil;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.reflect.FieldUtils;
 import org.apache.logging.log4j.Logger;
 import org.hibernate.*;
+import org.hibernate.collection.spi.PersistentCollection;
 import org.hibernate.criterion.*;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+import org.hibernate.persister.collection.AbstractCollectionPersister;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
 import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.query.Query;
 import org.hibernate.transform.DistinctRootEntityResultTransformer;
 import org.hibernate.transform.Transformers;
+import org.hibernate.type.CollectionType;
+import org.hibernate.type.StandardBasicTypes;
+import org.hibernate.type.Type;
 import org.joda.time.DateTime;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
 import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
 
 import static org.apache.logging.log4j.LogManager.getLogger;
 
@@ -43,6 +70,11 @@ public class GenericHibernateDao<E extends PersistentObject, ID extends Serializ
      */
     private final Class<E> entityClass;
 
+    /**
+     * The max number of IDs per <code>in</code> restriction.
+     */
+    private static final int MAX_IN_LIST_SIZE = 1000;
+
     @Value("${hibernate.cache.use_query_cache}")
     private Boolean useQueryCache;
 
@@ -74,7 +106,7 @@ public class GenericHibernateDao<E extends PersistentObject, ID extends Serializ
      *
      * @return
      */
-    private Session getSession() {
+    protected Session getSession() {
         return sessionFactory.getCurrentSession();
     }
 
@@ -251,6 +283,83 @@ public class GenericHibernateDao<E extends PersistentObject, ID extends Serializ
         getSession().evict(e);
     }
 
+    /**
+     * Detaches the passed entity from the hibernate session, so it can be
+     * saved as a new entity (i.e. as a copy of the original one) afterwards:
+     * The ID will be reset and all collections will be replaced by plain
+     * copies, so they are not shared with the original entity. Inverse
+     * collections (e.g. the children of a parent/child relation) will be
+     * replaced by empty ones, as they are defined by the owning side.
+     *
+     * @param entity A persistent entity (no proxy)
+     * @throws HibernateException
+     */
+    public void evictAsCopy(PersistentObject entity) throws HibernateException {
+        final MetamodelImplementor metamodel = getMetamodel();
+        final EntityPersister persister = metamodel.entityPersister(entity.getClass());
+        final Object[] values = persister.getPropertyValues(entity);
+        final boolean[] inverse = new boolean[values.length];
+
+        // the collections can't be initialized after the entity has been evicted
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] instanceof PersistentCollection) {
+                final PersistentCollection collection = (PersistentCollection) values[i];
+                inverse[i] = metamodel.collectionPersister(collection.getRole()).isInverse();
+                if (!inverse[i]) {
+                    Hibernate.initialize(collection);
+                }
+            }
+        }
+
+        // the collections have to be evicted (i.e. not be replaced) with the
+        // entity, as they would be removed on flush otherwise
+        getSession().evict(entity);
+
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] instanceof PersistentCollection) {
+                persister.setPropertyValue(entity, i, copyCollection(values[i], inverse[i]));
+            }
+        }
+
+        try {
+            IdHelper.setIdOnPersistentObject(entity, null);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            throw new HibernateException("Could not reset the ID of " + entity, e);
+        }
+    }
+
+    /**
+     * @param collection
+     * @param empty      Whether an empty collection should be returned
+     * @return A plain copy of the passed (initialized) collection
+     */
+    private static Object copyCollection(Object collection, boolean empty) {
+        if (collection instanceof Map) {
+            return empty ? new HashMap<>() : new HashMap<>((Map<?, ?>) collection);
+        }
+        if (collection instanceof Set) {
+            return empty ? new HashSet<>() : new HashSet<>((Set<?>) collection);
+        }
+        return empty ? new ArrayList<>() : new ArrayList<>((Collection<?>) collection);
+    }
+
+    /**
+     * Flushes the pending changes of the hibernate session (as JDBC batches,
+     * if <code>hibernate.jdbc.batch_size</code> is configured) and clears the
+     * session afterwards, so the memory usage of bulk operations doesn't grow
+     * with the number of entities.
+     * <p>
+     * ATTENTION: All entities loaded before (in the same session) will be
+     * detached.
+     *
+     * @throws HibernateException
+     */
+    public void flushAndClear() throws HibernateException {
+        LOG.trace("Flushing and clearing the hibernate session");
+        getSession().flush();
+        getSession().clear();
+    }
+
     /**
      * Gets the results, that match a variable number of passed criterions. Call
      * this method without arguments to find all entities.
@@ -344,27 +453,300 @@ public class GenericHibernateDao<E extends PersistentObject, ID extends Serializ
             + " based on " + criterion.length + " criteria"
             + " with " + nrOfSorters + " sorters");
 
-        Criteria criteria = createDistinctRootEntityCriteria(criterion);
+        List<Order> orders = sorters != null ? sorters : Collections.emptyList();
+
+        return new PagingResult<E>(findEntityPage(firstResult, maxResults, orders, criterion),
+            getTotalCount(criterion));
+    }
+
+    /**
+     * Gets the page of results described by the given paging request, that
+     * match a variable number of passed criterions. As in
+     * {@link #findByCriteriaRestricted(List, Criterion...)}, only the fields
+     * in <code>restrictFieldNames</code> will be set if given.
+     * <p>
+     * The total count (of all pages) will only be determined if requested by
+     * the paging request, otherwise it will be <code>null</code>.
+     *
+     * @param pagingRequest      The paging and sort info
+     * @param restrictFieldNames The (nullable) fields to restrict the results to
+     * @param criterion          A variable number of hibernate criterions
+     * @return
+     * @throws HibernateException
+     */
+    @SuppressWarnings("unchecked")
+    public PagingResult<E> findPage(PagingRequest pagingRequest, List<String> restrictFieldNames,
+                                    Criterion... criterion) throws HibernateException {
+
+        LOG.trace("Finding a page of instances of " + entityClass.getSimpleName()
+            + " based on " + criterion.length + " criteria");
+
+        Criterion[] pageCriterion = criterion;
+        if (pagingRequest.getAfterId() != null) {
+            pageCriterion = ArrayUtils.add(criterion, Restrictions.gt("id", pagingRequest.getAfterId()));
+        }
+
+        List<E> resultList;
 
-        // add paging info
+        if (restrictFieldNames != null) {
+            // projections don't fetch any associations, so the page can be
+            // limited directly
+            Criteria criteria = getSession().createCriteria(entityClass);
+            addCriterionsToCriteria(criteria, pageCriterion);
+            criteria.setCacheable(this.useQueryCache);
+            addPaging(criteria, pagingRequest.getStart(), pagingRequest.getLimit(), pagingRequest.getSorters());
+
+            ProjectionList projectionList = Projections.projectionList();
+            for (String restrictFieldName : restrictFieldNames) {
+                projectionList.add(Projections.property(restrictFieldName), restrictFieldName);
+            }
+            criteria.setProjection(projectionList);
+            criteria.setResultTransformer(Transformers.aliasToBean(entityClass));
+
+            resultList = criteria.list();
+        } else {
+            resultList = findEntityPage(pagingRequest.getStart(), pagingRequest.getLimit(),
+                pagingRequest.getSorters(), pageCriterion);
+        }
+
+        Number totalCount = pagingRequest.isCountTotal() ? getTotalCount(criterion) : null;
+
+        return new PagingResult<E>(resultList, totalCount);
+    }
+
+    /**
+     * Returns the (sorted) page of entities matching the given criterions.
+     * <p>
+     * The page is determined on the IDs of the entities first and the
+     * entities of the page are loaded afterwards: fetched collections (e.g.
+     * the permissions, which are joined) would multiply the rows of an
+     * entity, so that offset and limit wouldn't count entities otherwise.
+     *
+     * @param firstResult The (nullable) offset
+     * @param maxResults  The (nullable) limit
+     * @param sorters     The sort info
+     * @param criterion   A variable number of hibernate criterions
+     * @return The entities of the page.
+     * @throws HibernateException
+     */
+    @SuppressWarnings("unchecked")
+    protected List<E> findEntityPage(Integer firstResult, Integer maxResults, List<Order> sorters,
+                                     Criterion... criterion) throws HibernateException {
+
+        if (firstResult == null && maxResults == null) {
+            Criteria criteria = createDistinctRootEntityCriteria(criterion);
+            for (Order sorter : sorters) {
+                criteria.addOrder(sorter);
+            }
+            return criteria.list();
+        }
+
+        Criteria idCriteria = getSession().createCriteria(entityClass);
+        addCriterionsToCriteria(idCriteria, criterion);
+        idCriteria.setProjection(Projections.id());
+        idCriteria.setCacheable(this.useQueryCache);
+        addPaging(idCriteria, firstResult, maxResults, sorters);
+
+        List<Integer> ids = idCriteria.list();
+
+        List<E> entities = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i += MAX_IN_LIST_SIZE) {
+            List<Integer> chunk = ids.subList(i, Math.min(i + MAX_IN_LIST_SIZE, ids.size()));
+            entities.addAll(createDistinctRootEntityCriteria(Restrictions.in("id", chunk)).list());
+        }
+
+        // restore the order of the page
+        Map<Integer, Integer> positions = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            positions.put(ids.get(i), i);
+        }
+        entities.sort((a, b) -> Integer.compare(positions.get(a.getId()), positions.get(b.getId())));
+
+        return entities;
+    }
+
+    /**
+     * Helper method: Adds the paging and sort info to the given criteria.
+     *
+     * @param criteria
+     * @param firstResult The (nullable) offset
+     * @param maxResults  The (nullable) limit
+     * @param sorters     The sort info
+     */
+    private void addPaging(Criteria criteria, Integer firstResult, Integer maxResults,
+                           List<Order> sorters) {
+        if (firstResult != null) {
+            LOG.trace("Setting the first result to be retrieved to " + firstResult);
+            criteria.setFirstResult(firstResult);
+        }
         if (maxResults != null) {
             LOG.trace("Limiting result set size to " + maxResults);
             criteria.setMaxResults(maxResults);
         }
-        if (firstResult != null) {
-            LOG.trace("Setting the first result to be retrieved to "
-                + firstResult);
-            criteria.setFirstResult(firstResult);
+        for (Order sorter : sorters) {
+            criteria.addOrder(sorter);
+        }
+    }
+
+    /**
+     * Passes all entities that match a variable number of passed criterions
+     * (ordered by ID) to the given consumer, one at a time. The entities are
+     * read via forward only {@link ScrollableResults} and the session will be
+     * cleared every <code>clearInterval</code> entities, so the memory usage
+     * doesn't grow with the number of entities.
+     * <p>
+     * ATTENTION: As the session will be cleared, entities loaded before
+     * (in the same session) will be detached.
+     *
+     * @param clearInterval The number of entities after which the session
+     *                      will be cleared (also used as JDBC fetch size)
+     * @param consumer      The consumer of the entities
+     * @param criterion     A variable number of hibernate criterions
+     * @return The number of entities read
+     * @throws HibernateException
+     */
+    @SuppressWarnings("unchecked")
+    public long scroll(int clearInterval, Consumer<E> consumer, Criterion... criterion) throws HibernateException {
+        LOG.trace("Scrolling instances of " + entityClass.getSimpleName()
+            + " based on " + criterion.length + " criteria");
+
+        final int interval = Math.max(clearInterval, 1);
+
+        Criteria criteria = getSession().createCriteria(entityClass);
+        addCriterionsToCriteria(criteria, criterion);
+        criteria.addOrder(Order.asc("id"));
+        criteria.setFetchSize(interval);
+        criteria.setReadOnly(true);
+        criteria.setCacheMode(CacheMode.IGNORE);
+
+        long count = 0;
+        Integer previousId = null;
+
+        try (ScrollableResults results = criteria.scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                E entity = (E) results.get(0);
+
+                // (joined) collection fetches may return the root entity
+                // multiple times, but always consecutively as ordered by ID
+                if (entity.getId() != null && entity.getId().equals(previousId)) {
+                    continue;
+                }
+                previousId = entity.getId();
+
+                consumer.accept(entity);
+
+                if (++count % interval == 0) {
+                    getSession().clear();
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Initializes all associations of the given entities recursively, which
+     * will be serialized (i.e. which are not annotated with
+     * {@link JsonIgnore}), so the entities can be serialized without any
+     * further queries (e.g. after the session has been closed). Associations
+     * which are serialized as IDs only (see {@link JsonIdentityReference})
+     * will be initialized, but not traversed.
+     * <p>
+     * The graph is traversed level by level, i.e. all associations of the
+     * same level are initialized before the next level is traversed. As the
+     * associations of the model are batch fetched (see
+     * {@link org.hibernate.annotations.BatchSize}), each level will be loaded
+     * with a few queries per association, independent of the number of
+     * entities, instead of a query per entity or huge joins.
+     *
+     * @param entities The (root) entities of the graph
+     * @return The (initialized) entities of the graph
+     * @throws HibernateException
+     */
+    public Set<PersistentObject> initializeGraph(Collection<? extends PersistentObject> entities)
+        throws HibernateException {
+        final MetamodelImplementor metamodel = getMetamodel();
+        final Set<PersistentObject> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        List<PersistentObject> level = new ArrayList<>();
+        for (PersistentObject entity : entities) {
+            final PersistentObject implementation = (PersistentObject) Hibernate.unproxy(entity);
+            if (implementation != null && visited.add(implementation)) {
+                level.add(implementation);
+            }
         }
 
-        // add sort info
-        if (sorters != null) {
-            for (Order sortInfo : sorters) {
-                criteria.addOrder(sortInfo);
+        int depth = 0;
+
+        while (!level.isEmpty()) {
+            final List<PersistentObject> nextLevel = new ArrayList<>();
+
+            for (PersistentObject entity : level) {
+                final EntityPersister persister = metamodel.entityPersister(entity.getClass());
+                final String[] propertyNames = persister.getPropertyNames();
+                final Type[] propertyTypes = persister.getPropertyTypes();
+
+                for (int i = 0; i < propertyNames.length; i++) {
+                    if (!propertyTypes[i].isAssociationType()) {
+                        continue;
+                    }
+
+                    final Field field = FieldUtils.getField(entity.getClass(), propertyNames[i], true);
+                    final JsonIgnore jsonIgnore = field != null ? field.getAnnotation(JsonIgnore.class) : null;
+                    if (jsonIgnore != null && jsonIgnore.value()) {
+                        continue;
+                    }
+
+                    final JsonIdentityReference identityReference = field != null ?
+                        field.getAnnotation(JsonIdentityReference.class) : null;
+                    final boolean traverse = identityReference == null || !identityReference.alwaysAsId();
+
+                    for (Object associated : initializeAssociation(persister.getPropertyValue(entity, i))) {
+                        if (traverse && associated instanceof PersistentObject
+                            && visited.add((PersistentObject) associated)) {
+                            nextLevel.add((PersistentObject) associated);
+                        }
+                    }
+                }
             }
+
+            level = nextLevel;
+            depth++;
         }
 
-        return new PagingResult<E>(criteria.list(), getTotalCount(criterion));
+        LOG.trace("Initialized a graph of " + visited.size() + " entities with a depth of " + depth);
+
+        return visited;
+    }
+
+    /**
+     * @param value The value of an association (entity, proxy, collection or
+     *              map)
+     * @return The (initialized) associated objects.
+     */
+    private static Collection<Object> initializeAssociation(Object value) {
+        if (value == null) {
+            return Collections.emptyList();
+        }
+
+        Hibernate.initialize(value);
+
+        final Collection<Object> associated = new ArrayList<>();
+
+        if (value instanceof Collection) {
+            for (Object element : (Collection<?>) value) {
+                associated.add(Hibernate.unproxy(element));
+            }
+        } else if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                associated.add(Hibernate.unproxy(entry.getKey()));
+                associated.add(Hibernate.unproxy(entry.getValue()));
+            }
+        } else {
+            associated.add(Hibernate.unproxy(value));
+        }
+
+        return associated;
     }
 
     /**
@@ -377,36 +759,23 @@ public class GenericHibernateDao<E extends PersistentObject, ID extends Serializ
      * @param user
      * @return
      */
-    @SuppressWarnings({"unchecked"})
     public Map<PersistentObject, PermissionCollection> findAllUserPermissionsOfUser(User user) {
+        return findAllUserPermissionsOfUser(user, 0, -1);
+    }
 
-        Criteria criteria = getSession().createCriteria(PersistentObject.class);
-
-        // by only setting the alias, we will only get those entities where
-        // there is at least one permission set...
-        // it is hard (or even impossible in this scenario) to create a
-        // restriction that filters for permissions of the given user only.
-        // using HQL here is no option as the PersistentObject is
-        // a MappedSuperclass (without table).
-        // another efficient way would be a SQL query, but then the SQL
-        // would be written in an explicit SQL dialect...
-        criteria.createAlias("userPermissions", "up");
-        criteria.setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
-
-        List<PersistentObject> entitiesWithPermissions = criteria.list();
-
-        Map<PersistentObject, PermissionCollection> userPermissions = new HashMap<PersistentObject, PermissionCollection>();
-
-        // TODO find a better way than iterating over all entities of the system
-        // that have at least one permission (for any user) (see comment above)
-        for (PersistentObject entity : entitiesWithPermissions) {
-            Map<User, PermissionCollection> entityUserPermissions = entity.getUserPermissions();
-            if (entityUserPermissions.containsKey(user)) {
-                userPermissions.put(entity, entityUserPermissions.get(user));
-            }
-        }
-
-        return userPermissions;
+    /**
+     * Paged version of {@link #findAllUserPermissionsOfUser(User)}. The
+     * entities are ordered by their type and ID.
+     *
+     * @param user
+     * @param firstResult The index of the first entity to return
+     * @param maxResults  The maximum number of entities to return (a negative
+     *                    value for no limit)
+     * @return
+     */
+    public Map<PersistentObject, PermissionCollection> findAllUserPermissionsOfUser(User user,
+                                                                                    int firstResult, int maxResults) {
+        return findAllPermissionsOf("userPermissions", user, firstResult, maxResults);
     }
 
     /**
@@ -419,36 +788,217 @@ public class GenericHibernateDao<E extends PersistentObject, ID extends Serializ
      * @param userGroup
      * @return
      */
-    @SuppressWarnings({"unchecked"})
     public Map<PersistentObject, PermissionCollection> findAllUserGroupPermissionsOfUserGroup(UserGroup userGroup) {
+        return findAllUserGroupPermissionsOfUserGroup(userGroup, 0, -1);
+    }
 
-        Criteria criteria = getSession().createCriteria(PersistentObject.class);
-
-        // by only setting the alias, we will only get those entities where
-        // there is at least one permission set...
-        // it is hard (or even impossible in this scenario) to create a
-        // restriction that filters for permissions of the given user group only.
-        // using HQL here is no option as the PersistentObject is
-        // a MappedSuperclass (without table).
-        // another efficient way would be a SQL query, but then the SQL
-        // would be written in an explicit SQL dialect...
-        criteria.createAlias("groupPermissions", "gp");
-        criteria.setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
+    /**
+     * Paged version of {@link #findAllUserGroupPermissionsOfUserGroup(UserGroup)}.
+     * The entities are ordered by their type and ID.
+     *
+     * @param userGroup
+     * @param firstResult The index of the first entity to return
+     * @param maxResults  The maximum number of entities to return (a negative
+     *                    value for no limit)
+     * @return
+     */
+    public Map<PersistentObject, PermissionCollection> findAllUserGroupPermissionsOfUserGroup(UserGroup userGroup,
+                                                                                              int firstResult,
+                                                                                              int maxResults) {
+        return findAllPermissionsOf("groupPermissions", userGroup, firstResult, maxResults);
+    }
 
-        List<PersistentObject> entitiesWithPermissions = criteria.list();
+    /**
+     * Queries the permissions of the given owner (a user or a user group),
+     * i.e. the entries of the given permission map (userPermissions or
+     * groupPermissions) with the owner as key.
+     * <p>
+     * As the {@link PersistentObject} is a MappedSuperclass, one query per
+     * mapped entity hierarchy is executed, each of them restricting the
+     * permission join table by the key (owner) column, so only the entries
+     * of the owner have to be loaded. If paging is requested, the entries of
+     * each hierarchy are counted first to skip the hierarchies before the
+     * requested page.
+     *
+     * @param permissionsProperty
+     * @param owner
+     * @param firstResult
+     * @param maxResults
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private Map<PersistentObject, PermissionCollection> findAllPermissionsOf(String permissionsProperty,
+                                                                            PersistentObject owner,
+                                                                            int firstResult, int maxResults) {
+
+        final Map<PersistentObject, PermissionCollection> permissions = new LinkedHashMap<>();
+
+        if (owner == null || owner.getId() == null) {
+            return permissions;
+        }
+
+        int offset = Math.max(firstResult, 0);
+
+        for (String entityName : getPersistentObjectRootEntityNames()) {
+
+            if (maxResults >= 0 && permissions.size() >= maxResults) {
+                break;
+            }
+
+            final String from = " from " + entityName + " e join e." + permissionsProperty + " pc"
+                + " where key(pc) = :owner";
+
+            if (offset > 0) {
+                final Long count = (Long) getSession().createQuery("select count(e)" + from)
+                    .setParameter("owner", owner)
+                    .uniqueResult();
+
+                if (count != null && offset >= count) {
+                    offset -= count.intValue();
+                    continue;
+                }
+            }
 
-        Map<PersistentObject, PermissionCollection> userGroupPermissions = new HashMap<PersistentObject, PermissionCollection>();
+            final Query<Object[]> query = getSession().createQuery("select e, pc" + from + " order by e.id");
+            query.setParameter("owner", owner);
+            query.setFirstResult(offset);
+            if (maxResults >= 0) {
+                query.setMaxResults(maxResults - permissions.size());
+            }
+            offset = 0;
 
-        // TODO find a better way than iterating over all entities of the system
-        // that have at least one permission (for any user) (see comment above)
-        for (PersistentObject entity : entitiesWithPermissions) {
-            Map<UserGroup, PermissionCollection> entityUserGroupPermissions = entity.getGroupPermissions();
-            if (entityUserGroupPermissions.containsKey(userGroup)) {
-                userGroupPermissions.put(entity, entityUserGroupPermissions.get(userGroup));
+            for (Object[] row : query.list()) {
+                permissions.put((PersistentObject) row[0], (PermissionCollection) row[1]);
             }
         }
 
-        return userGroupPermissions;
+        return permissions;
+    }
+
+    /**
+     * @return The (sorted) names of the root entities of all mapped
+     * {@link PersistentObject} hierarchies.
+     */
+    private Set<String> getPersistentObjectRootEntityNames() {
+        final Set<String> entityNames = new TreeSet<>();
+
+        for (EntityPersister persister : getMetamodel().entityPersisters().values()) {
+            if (PersistentObject.class.isAssignableFrom(persister.getMappedClass()) &&
+                !persister.getEntityMetamodel().isInherited()) {
+                entityNames.add(persister.getEntityName());
+            }
+        }
+
+        return entityNames;
+    }
+
+    /**
+     * Creates a criterion that restricts queries on the {@link #entityClass}
+     * of this dao to those entities on which the given user has the given
+     * permission (or the ADMIN permission), either by its user permissions or
+     * by the group permissions of the user groups the user is a member of.
+     * <p>
+     * This is the database side equivalent of the default permission
+     * evaluation: the user permissions, group permissions and group
+     * memberships are queried in subselects (the table and column names are
+     * taken from the hibernate metamodel), so only the permitted entities
+     * have to be loaded.
+     *
+     * @param userId     The ID of the user (null for anonymous users)
+     * @param permission
+     * @return
+     */
+    public Criterion createPermissionCriterion(Integer userId, Permission permission) {
+
+        if (userId == null) {
+            // anonymous users do not have any (explicit) permissions
+            return Restrictions.sqlRestriction("1=0");
+        }
+
+        final MetamodelImplementor metamodel = getMetamodel();
+
+        final AbstractEntityPersister entityPersister =
+            (AbstractEntityPersister) metamodel.entityPersister(entityClass);
+
+        final AbstractCollectionPersister userPermissions =
+            getCollectionPersister(metamodel, entityPersister, "userPermissions");
+        final AbstractCollectionPersister groupPermissions =
+            getCollectionPersister(metamodel, entityPersister, "groupPermissions");
+        final AbstractCollectionPersister permissions = getCollectionPersister(metamodel,
+            (AbstractEntityPersister) metamodel.entityPersister(PermissionCollection.class), "permissions");
+        final AbstractCollectionPersister members = getCollectionPersister(metamodel,
+            (AbstractEntityPersister) metamodel.entityPersister(UserGroup.class), "members");
+
+        final String idColumn = "{alias}." + entityPersister.getIdentifierColumnNames()[0];
+
+        final String permissionCondition = "pc_." + permissions.getKeyColumnNames()[0]
+            + " = %s and pc_." + permissions.getElementColumnNames()[0] + " in (?, ?)";
+
+        final String userPermissionsSql = idColumn + " in (select up_." + userPermissions.getKeyColumnNames()[0]
+            + " from " + userPermissions.getTableName() + " up_, " + permissions.getTableName() + " pc_"
+            + " where up_." + userPermissions.getIndexColumnNames()[0] + " = ?"
+            + " and " + String.format(permissionCondition, "up_." + userPermissions.getElementColumnNames()[0])
+            + ")";
+
+        final String groupPermissionsSql = idColumn + " in (select gp_." + groupPermissions.getKeyColumnNames()[0]
+            + " from " + groupPermissions.getTableName() + " gp_, " + members.getTableName() + " m_, "
+            + permissions.getTableName() + " pc_"
+            + " where m_." + members.getKeyColumnNames()[0] + " = gp_." + groupPermissions.getIndexColumnNames()[0]
+            + " and m_." + members.getElementColumnNames()[0] + " = ?"
+            + " and " + String.format(permissionCondition, "gp_." + groupPermissions.getElementColumnNames()[0])
+            + ")";
+
+        final Object[] values = new Object[]{
+            userId, permission.name(), Permission.ADMIN.name(),
+            userId, permission.name(), Permission.ADMIN.name()
+        };
+        final Type[] types = new Type[]{
+            StandardBasicTypes.INTEGER, StandardBasicTypes.STRING, StandardBasicTypes.STRING,
+            StandardBasicTypes.INTEGER, StandardBasicTypes.STRING, StandardBasicTypes.STRING
+        };
+
+        return Restrictions.sqlRestriction("(" + userPermissionsSql + " or " + groupPermissionsSql + ")",
+            values, types);
+    }
+
+    /**
+     * Returns the {@link #entityClass} of this dao and all of its mapped
+     * subclasses, i.e. the classes of all entities that may be returned by
+     * the queries of this dao.
+     *
+     * @return
+     * @throws HibernateException If the {@link #entityClass} is not mapped.
+     */
+    public Set<Class<?>> getMappedEntityClasses() throws HibernateException {
+        final MetamodelImplementor metamodel = getMetamodel();
+
+        Set<Class<?>> mappedEntityClasses = new HashSet<>();
+
+        for (Object entityName : metamodel.entityPersister(entityClass).getEntityMetamodel().getSubclassEntityNames()) {
+            mappedEntityClasses.add(metamodel.entityPersister((String) entityName).getMappedClass());
+        }
+
+        return mappedEntityClasses;
+    }
+
+    /**
+     * @return
+     */
+    private MetamodelImplementor getMetamodel() {
+        return sessionFactory.unwrap(SessionFactoryImplementor.class).getMetamodel();
+    }
+
+    /**
+     * @param metamodel
+     * @param entityPersister
+     * @param propertyName
+     * @return The persister of the given collection property.
+     */
+    private static AbstractCollectionPersister getCollectionPersister(MetamodelImplementor metamodel,
+                                                                      AbstractEntityPersister entityPersister,
+                                                                      String propertyName) {
+        final CollectionType collectionType = (CollectionType) entityPersister.getPropertyType(propertyName);
+        return (AbstractCollectionPersister) metamodel.collectionPersister(collectionType.getRole());
     }
 
     /**
@@ -6,7 +6,7 @@ import de.terrestris.shoguncore.model.tree.TreeFolder;
 
 @Repository("treeFolderDao")
 public class TreeFolderDao<E extends TreeFolder> extends
-    GenericHibernateDao<E, Integer> {
+    TreeNodeDao<E> {
 
     /**
      * Public default constructor for this DAO.
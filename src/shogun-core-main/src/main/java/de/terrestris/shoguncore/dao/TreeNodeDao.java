@@ -1,9 +1,38 @@
 package de.terrestris.shoguncore.dao;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.Criteria;
+import org.hibernate.Hibernate;
+import org.hibernate.HibernateException;
+import org.hibernate.criterion.MatchMode;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.transform.DistinctRootEntityResultTransformer;
+import org.joda.time.DateTime;
 import org.springframework.stereotype.Repository;
 
+import de.terrestris.shoguncore.model.tree.TreeFolder;
 import de.terrestris.shoguncore.model.tree.TreeNode;
 
+/**
+ * DAO for {@link TreeNode}s, which maintains the materialized paths of the
+ * nodes (see {@link TreeNode#getPath()}), i.e. complete subtrees can be
+ * loaded and cloned with a single query. As long as there are nodes without
+ * a path (e.g. nodes created before the paths were introduced, see
+ * {@link #rebuildPaths()}), subtrees are loaded by walking the children.
+ */
 @Repository("treeNodeDao")
 public class TreeNodeDao<E extends TreeNode> extends
     GenericHibernateDao<E, Integer> {
@@ -25,4 +54,312 @@ public class TreeNodeDao<E extends TreeNode> extends
         super(clazz);
     }
 
+    /**
+     * Saves or updates the passed node and updates its path. If an existing
+     * folder has been moved, the paths of all its descendants will be updated
+     * as well.
+     *
+     * @param node
+     */
+    @Override
+    public void saveOrUpdate(E node) {
+        final String oldChildPath = node.getId() != null && node.getPath() != null ?
+            node.getChildPath() : null;
+
+        node.setPath(getPathOfChildren(node.getParentFolder()));
+
+        if (oldChildPath != null && node.getPath().startsWith(oldChildPath)) {
+            throw new HibernateException("The folder " + node.getId() + " can't be moved into its own subtree");
+        }
+
+        super.saveOrUpdate(node);
+
+        if (node instanceof TreeFolder && oldChildPath != null && !oldChildPath.equals(node.getChildPath())) {
+            movePaths(oldChildPath, node.getChildPath());
+        }
+    }
+
+    /**
+     * Returns all descendants of the passed node (parents before their
+     * children) with a single query. If there are nodes without a path, the
+     * descendants are collected by walking the children instead.
+     *
+     * @param node A persisted node (no proxy)
+     * @return The descendants (an empty list for leafs)
+     * @throws HibernateException
+     */
+    @SuppressWarnings("unchecked")
+    public List<TreeNode> findDescendants(TreeNode node) throws HibernateException {
+        if (!(node instanceof TreeFolder)) {
+            return new ArrayList<>();
+        }
+
+        if (node.getPath() == null || hasNodesWithoutPath()) {
+            LOG.warn("There are tree nodes without a path, walking the children of node " + node.getId()
+                + " instead (see rebuildPaths)");
+            return walkDescendants((TreeFolder) node);
+        }
+
+        final String childPath = node.getChildPath();
+
+        LOG.trace("Finding the descendants of node " + node.getId() + " (" + childPath + ")");
+
+        Criteria criteria = getSession().createCriteria(TreeNode.class);
+        criteria.add(Restrictions.like("path", childPath, MatchMode.START));
+        criteria.setResultTransformer(DistinctRootEntityResultTransformer.INSTANCE);
+
+        final List<TreeNode> descendants = criteria.list();
+        descendants.sort(Comparator.comparingInt(TreeNodeDao::getDepth));
+
+        return descendants;
+    }
+
+    /**
+     * @return Whether there is any node without a path.
+     * @throws HibernateException
+     */
+    public boolean hasNodesWithoutPath() throws HibernateException {
+        Criteria criteria = getSession().createCriteria(TreeNode.class);
+        criteria.add(Restrictions.isNull("path"));
+        criteria.setProjection(Projections.id());
+        criteria.setMaxResults(1);
+
+        return criteria.uniqueResult() != null;
+    }
+
+    /**
+     * Clones the passed node (and all its descendants, if it is a folder).
+     * The subtree is loaded with a single query and the clones are saved
+     * parents first, so they can be inserted in (JDBC) batches.
+     *
+     * @param node
+     * @return The clone of the node (with the cloned children).
+     * @throws HibernateException
+     */
+    @SuppressWarnings("unchecked")
+    public E cloneSubtree(E node) throws HibernateException {
+        final E root = unproxy(node);
+
+        final List<TreeNode> nodes = new ArrayList<>();
+        nodes.add(root);
+
+        for (TreeNode descendant : findDescendants(root)) {
+            nodes.add((TreeNode) Hibernate.unproxy(descendant));
+        }
+
+        final Map<TreeNode, Integer> parentIds = new IdentityHashMap<>();
+        final Map<Integer, TreeFolder> clonedFolders = new HashMap<>();
+
+        for (TreeNode original : nodes) {
+            final Integer originalId = original.getId();
+            if (original.getParentFolder() != null) {
+                parentIds.put(original, original.getParentFolder().getId());
+            }
+            if (original instanceof TreeFolder) {
+                clonedFolders.put(originalId, (TreeFolder) original);
+            }
+        }
+
+        // all nodes have to be detached before any clone will be saved, as
+        // the originals would reference the clones otherwise
+        for (TreeNode original : nodes) {
+            evictAsCopy(original);
+        }
+
+        for (TreeNode clone : nodes) {
+            if (clone != root) {
+                final TreeFolder parent = clonedFolders.get(parentIds.get(clone));
+                clone.setParentFolder(parent);
+                parent.getChildren().add(clone);
+            }
+
+            clone.setPath(getPathOfChildren(clone.getParentFolder()));
+            clone.setModified(DateTime.now());
+            getSession().save(clone);
+        }
+
+        for (TreeFolder folder : clonedFolders.values()) {
+            folder.getChildren().sort(Comparator.comparingInt(TreeNode::getIndex));
+        }
+
+        LOG.trace("Cloned a subtree of " + nodes.size() + " nodes");
+
+        return root;
+    }
+
+    /**
+     * (Re-)Calculates the paths of all nodes, e.g. after nodes have been
+     * created without this DAO.
+     *
+     * @return The number of updated nodes
+     * @throws HibernateException
+     */
+    @SuppressWarnings("unchecked")
+    public int rebuildPaths() throws HibernateException {
+        Criteria criteria = getSession().createCriteria(TreeNode.class);
+        criteria.setResultTransformer(DistinctRootEntityResultTransformer.INSTANCE);
+        final List<TreeNode> nodes = criteria.list();
+
+        final Map<Integer, TreeNode> nodesById = new HashMap<>();
+        for (TreeNode node : nodes) {
+            nodesById.put(node.getId(), node);
+        }
+
+        final Map<Integer, String> paths = new HashMap<>();
+        int updated = 0;
+
+        for (TreeNode node : nodes) {
+            final String path = calculatePath(node, nodesById::get, paths, false);
+            if (!path.equals(node.getPath())) {
+                node.setPath(path);
+                updated++;
+            }
+        }
+
+        LOG.info("Updated the paths of " + updated + " of " + nodes.size() + " tree nodes");
+
+        return updated;
+    }
+
+    /**
+     * Calculates the path of the passed node by walking up its ancestors.
+     *
+     * @param node
+     * @param nodeById        Returns the node with the passed ID (or null)
+     * @param paths           The already calculated paths by node ID
+     * @param useStoredPaths  Whether the walk may stop at an ancestor that
+     *                        already has a path
+     * @return The path of the passed node
+     * @throws HibernateException If a parent folder does not exist or the
+     *                            parent folders form a cycle
+     */
+    private static String calculatePath(TreeNode node, Function<Integer, TreeNode> nodeById,
+                                        Map<Integer, String> paths, boolean useStoredPaths) {
+        // the node and its ancestors without known path (the topmost first)
+        final Deque<TreeNode> ancestors = new ArrayDeque<>();
+        final Set<Integer> visited = new HashSet<>();
+
+        TreeNode parent = null;
+        String path = null;
+        TreeNode current = node;
+
+        while (true) {
+            String known = paths.get(current.getId());
+            if (known == null && useStoredPaths) {
+                known = current.getPath();
+            }
+            if (known != null) {
+                parent = current;
+                path = known;
+                break;
+            }
+
+            if (!visited.add(current.getId())) {
+                throw new HibernateException("The tree node " + current.getId()
+                    + " is its own ancestor, the parent folders form a cycle");
+            }
+            ancestors.push(current);
+
+            final TreeFolder parentFolder = current.getParentFolder();
+            if (parentFolder == null) {
+                break;
+            }
+
+            final TreeNode next = nodeById.apply(parentFolder.getId());
+            if (next == null) {
+                throw new HibernateException("The parent folder " + parentFolder.getId()
+                    + " of the tree node " + current.getId() + " does not exist");
+            }
+            current = next;
+        }
+
+        for (TreeNode ancestor : ancestors) {
+            path = parent == null ? "/" : path + parent.getId() + "/";
+            paths.put(ancestor.getId(), path);
+            parent = ancestor;
+        }
+
+        return path;
+    }
+
+    /**
+     * Collects the descendants of the passed folder (parents before their
+     * children) by walking the children, which does not rely on the paths.
+     *
+     * @param folder
+     * @return The descendants
+     */
+    private static List<TreeNode> walkDescendants(TreeFolder folder) {
+        final List<TreeNode> descendants = new ArrayList<>();
+        final Set<Integer> visited = new HashSet<>();
+        visited.add(folder.getId());
+
+        final Deque<TreeFolder> folders = new ArrayDeque<>();
+        folders.add(folder);
+
+        while (!folders.isEmpty()) {
+            for (TreeNode child : folders.poll().getChildren()) {
+                final TreeNode descendant = (TreeNode) Hibernate.unproxy(child);
+                if (!visited.add(descendant.getId())) {
+                    throw new HibernateException("The tree node " + descendant.getId()
+                        + " is its own ancestor, the parent folders form a cycle");
+                }
+                descendants.add(descendant);
+                if (descendant instanceof TreeFolder) {
+                    folders.add((TreeFolder) descendant);
+                }
+            }
+        }
+
+        return descendants;
+    }
+
+    /**
+     * Sets the passed new path prefix on all nodes having the old one.
+     *
+     * @param oldPrefix
+     * @param newPrefix
+     */
+    @SuppressWarnings("unchecked")
+    private void movePaths(String oldPrefix, String newPrefix) {
+        Criteria criteria = getSession().createCriteria(TreeNode.class);
+        criteria.add(Restrictions.like("path", oldPrefix, MatchMode.START));
+        criteria.setResultTransformer(DistinctRootEntityResultTransformer.INSTANCE);
+        final List<TreeNode> descendants = criteria.list();
+
+        for (TreeNode descendant : descendants) {
+            descendant.setPath(newPrefix + descendant.getPath().substring(oldPrefix.length()));
+        }
+
+        LOG.trace("Moved the paths of " + descendants.size() + " nodes from " + oldPrefix + " to " + newPrefix);
+    }
+
+    /**
+     * @param parentFolder
+     * @return The path of the children of the passed folder. If the folder
+     * has no path yet, it will be calculated from its ancestors.
+     */
+    private String getPathOfChildren(TreeFolder parentFolder) {
+        if (parentFolder == null) {
+            return "/";
+        }
+        if (parentFolder.getId() == null) {
+            throw new HibernateException("The parent folder has to be saved before its children");
+        }
+        if (parentFolder.getPath() == null) {
+            final String path = calculatePath(parentFolder,
+                id -> (TreeNode) Hibernate.unproxy(getSession().get(TreeNode.class, id)), new HashMap<>(), true);
+            return path + parentFolder.getId() + "/";
+        }
+        return parentFolder.getChildPath();
+    }
+
+    /**
+     * @param node
+     * @return The depth of the node (0 for root nodes)
+     */
+    private static int getDepth(TreeNode node) {
+        return StringUtils.countMatches(node.getPath(), '/') - 1;
+    }
+
 }
@@ -0,0 +1,205 @@
+package de.terrestris.shoguncore.hibernate;
+
+import de.terrestris.shoguncore.model.PersistentObject;
+import de.terrestris.shoguncore.util.application.ApplicationSnapshotCache;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * Invalidates the snapshots of the {@link ApplicationSnapshotCache} whenever
+ * an entity they depend on is inserted, updated or deleted or one of its
+ * collections (including its permissions) changes. Changes of references to
+ * an entity (e.g. a new node referencing its parent folder) are treated as
+ * change of the referenced entity.
+ * <p>
+ * The snapshots are invalidated as soon as the change is flushed and (again)
+ * after the transaction has completed, as snapshots serialized in between
+ * may still contain the committed state. Bulk (HQL/SQL) updates are not
+ * noticed, {@link ApplicationSnapshotCache#invalidateAll()} has to be called
+ * after such updates.
+ *
+ * @author terrestris GmbH & Co. KG
+ */
+@Component("applicationSnapshotInvalidator")
+public class ApplicationSnapshotInvalidator implements PostInsertEventListener, PostUpdateEventListener,
+    PostDeleteEventListener, PostCollectionRecreateEventListener, PostCollectionUpdateEventListener,
+    PostCollectionRemoveEventListener {
+
+    /**
+     *
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The LOGGER instance
+     */
+    private static final Logger LOG = getLogger(ApplicationSnapshotInvalidator.class);
+
+    @Autowired(required = false)
+    private transient SessionFactory sessionFactory;
+
+    @Autowired(required = false)
+    private transient ApplicationSnapshotCache applicationSnapshotCache;
+
+    /**
+     * Registers this listener in the session factory.
+     */
+    @PostConstruct
+    public void register() {
+        if (sessionFactory == null || applicationSnapshotCache == null) {
+            return;
+        }
+
+        final EventListenerRegistry registry = sessionFactory.unwrap(SessionFactoryImplementor.class)
+            .getServiceRegistry().getService(EventListenerRegistry.class);
+
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_RECREATE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_UPDATE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_REMOVE, this);
+
+        LOG.debug("Registered the application snapshot invalidator");
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        invalidate(event.getId(), event.getState(), null);
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        invalidate(event.getId(), event.getState(), event.getOldState());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        invalidate(event.getId(), event.getDeletedState(), null);
+    }
+
+    @Override
+    public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+        invalidateOwner(event);
+    }
+
+    @Override
+    public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+        invalidateOwner(event);
+    }
+
+    @Override
+    public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+        invalidateOwner(event);
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    /**
+     * @param event
+     */
+    private void invalidateOwner(AbstractCollectionEvent event) {
+        invalidate(event.getAffectedOwnerIdOrNull(), null, null);
+    }
+
+    /**
+     * Invalidates the snapshots depending on the given entity or any entity
+     * referenced in the given states.
+     *
+     * @param id
+     * @param state
+     * @param oldState
+     */
+    private void invalidate(Serializable id, Object[] state, Object[] oldState) {
+        final Set<Integer> entityIds = new HashSet<>();
+
+        if (id instanceof Integer) {
+            entityIds.add((Integer) id);
+        }
+        addReferencedIds(state, entityIds);
+        addReferencedIds(oldState, entityIds);
+
+        if (entityIds.isEmpty()) {
+            return;
+        }
+
+        applicationSnapshotCache.invalidate(entityIds);
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+
+        // collect the IDs of all changes of the transaction, so only one
+        // synchronization will be registered per transaction
+        @SuppressWarnings("unchecked")
+        Set<Integer> changedIds = (Set<Integer>) TransactionSynchronizationManager.getResource(this);
+
+        if (changedIds == null) {
+            final Set<Integer> transactionIds = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(this, transactionIds);
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        TransactionSynchronizationManager.unbindResourceIfPossible(
+                            ApplicationSnapshotInvalidator.this);
+                        applicationSnapshotCache.invalidate(transactionIds);
+                    }
+                });
+            changedIds = transactionIds;
+        }
+
+        changedIds.addAll(entityIds);
+    }
+
+    /**
+     * @param state
+     * @param entityIds
+     */
+    private static void addReferencedIds(Object[] state, Set<Integer> entityIds) {
+        if (state == null) {
+            return;
+        }
+        for (Object value : state) {
+            if (value instanceof PersistentObject) {
+                // doesn't initialize proxies
+                final Integer referencedId = ((PersistentObject) value).getId();
+                if (referencedId != null) {
+                    entityIds.add(referencedId);
+                }
+            }
+        }
+    }
+
+}
@@ -1,6 +1,9 @@
 package de.terrestris.shoguncore.hibernate;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import de.terrestris.shoguncore.util.json.ShogunCoreJsonObjectMapper;
 import org.hibernate.HibernateException;
 import org.hibernate.engine.spi.SharedSessionContractImplementor;
@@ -8,18 +11,94 @@ import org.hibernate.usertype.UserType;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 
 /**
  * Generic jsonb user type. Annotate your entities with Map&lt;String, Object&gt; as the type.
+ * <p>
+ * Hibernate copies the values of this type on every load, flush and dirty
+ * check, so values consisting of maps, lists and JSON scalars are copied
+ * structurally (and compared by {@link Map#equals(Object)}) instead of being
+ * serialized to JSON and parsed again. The (thread-safe) reader and writer
+ * are shared by all instances.
  */
 public class JsonbUserType implements UserType {
 
+    /**
+     *
+     */
+    static final ObjectMapper MAPPER = new ShogunCoreJsonObjectMapper();
+
+    /**
+     *
+     */
+    static final ObjectReader READER = MAPPER.readerFor(HashMap.class);
+
+    /**
+     *
+     */
+    static final ObjectWriter WRITER = MAPPER.writer();
+
+    /**
+     * @param value
+     * @return A copy of the given map, list or (immutable) JSON scalar. Any
+     * other value is converted to its JSON representation (maps, lists and
+     * scalars).
+     */
+    private static Object copyNode(Object value) {
+        if (value == null || value instanceof String || value instanceof Boolean
+            || value instanceof Integer || value instanceof Long || value instanceof Double
+            || value instanceof BigInteger || value instanceof BigDecimal) {
+            return value;
+        }
+        if (value instanceof Map) {
+            return copyMap((Map<?, ?>) value);
+        }
+        if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            List<Object> copy = new ArrayList<>(collection.size());
+            for (Object element : collection) {
+                copy.add(copyNode(element));
+            }
+            return copy;
+        }
+        if (value.getClass().isArray() && !(value instanceof byte[])) {
+            int length = Array.getLength(value);
+            List<Object> copy = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                copy.add(copyNode(Array.get(value, i)));
+            }
+            return copy;
+        }
+        return MAPPER.convertValue(value, Object.class);
+    }
+
+    /**
+     * @param map
+     * @return
+     */
+    private static HashMap<String, Object> copyMap(Map<?, ?> map) {
+        HashMap<String, Object> copy = new HashMap<>((int) (map.size() / 0.75f) + 1);
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            Object key = entry.getKey();
+            copy.put(key instanceof String ? (String) key : String.valueOf(key), copyNode(entry.getValue()));
+        }
+        return copy;
+    }
+
     @Override
     public Object assemble(Serializable cached, Object owner) throws HibernateException {
         return deepCopy(cached);
@@ -30,17 +109,15 @@ public class JsonbUserType implements UserType {
         if (value == null) {
             return null;
         }
-        ShogunCoreJsonObjectMapper mapper = new ShogunCoreJsonObjectMapper();
-        if (value instanceof String) {
-            try {
-                return mapper.readValue(value.toString(), HashMap.class);
-            } catch (IOException e) {
-                throw new HibernateException(e);
-            }
-        }
         try {
-            return mapper.readValue(mapper.writeValueAsString(value), HashMap.class);
-        } catch (IOException e) {
+            if (value instanceof String) {
+                return READER.readValue(value.toString());
+            }
+            if (value instanceof Map) {
+                return copyMap((Map<?, ?>) value);
+            }
+            return MAPPER.convertValue(value, HashMap.class);
+        } catch (IOException | IllegalArgumentException e) {
             throw new HibernateException(e);
         }
     }
@@ -67,10 +144,7 @@ public class JsonbUserType implements UserType {
 
     @Override
     public boolean equals(Object x, Object y) throws HibernateException {
-        if (x != null && y != null) {
-            return x.equals(y);
-        }
-        return false;
+        return Objects.equals(x, y);
     }
 
     @Override
@@ -83,20 +157,15 @@ public class JsonbUserType implements UserType {
 
     @Override
     public Object nullSafeGet(ResultSet rs, String[] names, SharedSessionContractImplementor session, Object owner) throws HibernateException, SQLException {
-        if (!rs.wasNull()) {
-            ShogunCoreJsonObjectMapper mapper = new ShogunCoreJsonObjectMapper();
-            try {
-                String string = rs.getString(names[0]);
-                if (string == null) {
-                    return null;
-                }
-                HashMap map = mapper.readValue(string, HashMap.class);
-                return map;
-            } catch (IOException e) {
-                throw new HibernateException(e);
-            }
+        String string = rs.getString(names[0]);
+        if (string == null) {
+            return null;
+        }
+        try {
+            return READER.readValue(string);
+        } catch (IOException e) {
+            throw new HibernateException(e);
         }
-        return null;
     }
 
     @Override
@@ -104,9 +173,8 @@ public class JsonbUserType implements UserType {
         if (value == null) {
             st.setNull(index, Types.OTHER);
         } else {
-            ShogunCoreJsonObjectMapper mapper = new ShogunCoreJsonObjectMapper();
             try {
-                String string = mapper.writeValueAsString(value);
+                String string = WRITER.writeValueAsString(value);
                 st.setObject(index, string, Types.OTHER);
             } catch (JsonProcessingException e) {
                 throw new HibernateException(e);
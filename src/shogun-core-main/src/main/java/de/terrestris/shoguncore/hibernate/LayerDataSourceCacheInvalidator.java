@@ -0,0 +1,300 @@
+package de.terrestris.shoguncore.hibernate;
+
+import de.terrestris.shoguncore.model.layer.source.ImageWmsLayerDataSource;
+import de.terrestris.shoguncore.model.layer.source.WmtsLayerDataSource;
+import de.terrestris.shoguncore.util.interceptor.CapabilitiesCache;
+import de.terrestris.shoguncore.util.interceptor.EndpointLayerCache;
+import de.terrestris.shoguncore.util.interceptor.WmtsTileCache;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * Invalidates the caches depending on the layer data sources whenever a data
+ * source is inserted, updated or deleted:
+ * <ul>
+ * <li>the cached tiles and URL of a WMTS data source (see
+ * {@link WmtsTileCache})</li>
+ * <li>the cached capabilities and layer names of the endpoint of an image
+ * WMS data source (see {@link CapabilitiesCache} and
+ * {@link EndpointLayerCache})</li>
+ * </ul>
+ * As an entity listener, this also covers data sources which are saved via
+ * cascades (e.g. by saving a layer) instead of the data source service.
+ * <p>
+ * The caches are invalidated as soon as the change is flushed and (again)
+ * after the transaction has completed, as entries loaded in between may still
+ * contain the committed state. Bulk (HQL/SQL) updates are not noticed, the
+ * caches have to be invalidated completely after such updates.
+ *
+ * @author terrestris GmbH & Co. KG
+ */
+@Component("layerDataSourceCacheInvalidator")
+public class LayerDataSourceCacheInvalidator implements PostInsertEventListener, PostUpdateEventListener,
+    PostDeleteEventListener, PostCollectionRecreateEventListener, PostCollectionUpdateEventListener,
+    PostCollectionRemoveEventListener {
+
+    /**
+     *
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The LOGGER instance
+     */
+    private static final Logger LOG = getLogger(LayerDataSourceCacheInvalidator.class);
+
+    /**
+     * The property holding the endpoint of an image WMS data source.
+     */
+    private static final String ENDPOINT_PROPERTY = "customRequestPath";
+
+    @Autowired(required = false)
+    private transient SessionFactory sessionFactory;
+
+    @Autowired(required = false)
+    private transient WmtsTileCache wmtsTileCache;
+
+    @Autowired(required = false)
+    private transient CapabilitiesCache capabilitiesCache;
+
+    @Autowired(required = false)
+    private transient EndpointLayerCache endpointLayerCache;
+
+    /**
+     * Registers this listener in the session factory.
+     */
+    @PostConstruct
+    public void register() {
+        if (sessionFactory == null ||
+            (wmtsTileCache == null && capabilitiesCache == null && endpointLayerCache == null)) {
+            return;
+        }
+
+        final EventListenerRegistry registry = sessionFactory.unwrap(SessionFactoryImplementor.class)
+            .getServiceRegistry().getService(EventListenerRegistry.class);
+
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_RECREATE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_UPDATE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_REMOVE, this);
+
+        LOG.debug("Registered the layer data source cache invalidator");
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        final Invalidation invalidation = new Invalidation();
+        // a new data source doesn't have any cached tiles yet
+        addEndpoint(event.getEntity(), invalidation);
+        invalidate(invalidation);
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        final Invalidation invalidation = new Invalidation();
+        addWmtsDataSource(event.getEntity(), event.getId(), invalidation);
+
+        if (event.getEntity() instanceof ImageWmsLayerDataSource) {
+            addEndpoint(event.getEntity(), invalidation);
+
+            // the endpoint may have been changed
+            if (event.getOldState() != null) {
+                final int index = event.getPersister().getEntityMetamodel().getPropertyIndex(ENDPOINT_PROPERTY);
+                invalidation.addEndpoint((String) event.getOldState()[index]);
+            } else {
+                invalidation.all = true;
+            }
+        }
+
+        invalidate(invalidation);
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        final Invalidation invalidation = new Invalidation();
+        addWmtsDataSource(event.getEntity(), event.getId(), invalidation);
+        addEndpoint(event.getEntity(), invalidation);
+        invalidate(invalidation);
+    }
+
+    @Override
+    public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+        invalidateOwner(event);
+    }
+
+    @Override
+    public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+        invalidateOwner(event);
+    }
+
+    @Override
+    public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+        invalidateOwner(event);
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    /**
+     * @param event
+     */
+    private void invalidateOwner(AbstractCollectionEvent event) {
+        final Invalidation invalidation = new Invalidation();
+        addWmtsDataSource(event.getAffectedOwnerOrNull(), event.getAffectedOwnerIdOrNull(), invalidation);
+        addEndpoint(event.getAffectedOwnerOrNull(), invalidation);
+        invalidate(invalidation);
+    }
+
+    /**
+     * @param entity
+     * @param id
+     * @param invalidation
+     */
+    private static void addWmtsDataSource(Object entity, Serializable id, Invalidation invalidation) {
+        if (entity instanceof WmtsLayerDataSource && id instanceof Integer) {
+            invalidation.wmtsDataSourceIds.add((Integer) id);
+        }
+    }
+
+    /**
+     * @param entity
+     * @param invalidation
+     */
+    private static void addEndpoint(Object entity, Invalidation invalidation) {
+        if (entity instanceof ImageWmsLayerDataSource) {
+            invalidation.addEndpoint(((ImageWmsLayerDataSource) entity).getCustomRequestPath());
+        }
+    }
+
+    /**
+     * Invalidates the given cache entries now and after the transaction has
+     * completed.
+     *
+     * @param invalidation
+     */
+    private void invalidate(Invalidation invalidation) {
+        if (invalidation.isEmpty()) {
+            return;
+        }
+
+        invalidation.run();
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+
+        // collect the invalidations of the transaction, so only one
+        // synchronization will be registered per transaction
+        Invalidation changes = (Invalidation) TransactionSynchronizationManager.getResource(this);
+
+        if (changes == null) {
+            final Invalidation transactionChanges = new Invalidation();
+            TransactionSynchronizationManager.bindResource(this, transactionChanges);
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        TransactionSynchronizationManager.unbindResourceIfPossible(
+                            LayerDataSourceCacheInvalidator.this);
+                        transactionChanges.run();
+                    }
+                });
+            changes = transactionChanges;
+        }
+
+        changes.add(invalidation);
+    }
+
+    /**
+     * The cache entries to invalidate.
+     */
+    private class Invalidation {
+
+        private final Set<Integer> wmtsDataSourceIds = new HashSet<>();
+
+        private final Set<String> endpoints = new HashSet<>();
+
+        private boolean all = false;
+
+        /**
+         * @param endpoint
+         */
+        void addEndpoint(String endpoint) {
+            if (endpoint != null) {
+                endpoints.add(endpoint);
+            }
+        }
+
+        /**
+         * @param other
+         */
+        void add(Invalidation other) {
+            wmtsDataSourceIds.addAll(other.wmtsDataSourceIds);
+            endpoints.addAll(other.endpoints);
+            all |= other.all;
+        }
+
+        /**
+         * @return
+         */
+        boolean isEmpty() {
+            return wmtsDataSourceIds.isEmpty() && endpoints.isEmpty() && !all;
+        }
+
+        /**
+         * Invalidates the entries in all caches.
+         */
+        void run() {
+            if (wmtsTileCache != null) {
+                wmtsDataSourceIds.forEach(wmtsTileCache::purge);
+            }
+            if (capabilitiesCache != null) {
+                if (all) {
+                    capabilitiesCache.invalidateAll();
+                } else {
+                    endpoints.forEach(capabilitiesCache::invalidate);
+                }
+            }
+            if (endpointLayerCache != null) {
+                if (all) {
+                    endpointLayerCache.invalidateAll();
+                } else {
+                    endpoints.forEach(endpointLayerCache::invalidate);
+                }
+            }
+        }
+    }
+
+}
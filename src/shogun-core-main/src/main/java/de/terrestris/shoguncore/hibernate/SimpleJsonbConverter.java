@@ -1,6 +1,7 @@
 package de.terrestris.shoguncore.hibernate;
 
-import de.terrestris.shoguncore.util.json.ShogunCoreJsonObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.apache.logging.log4j.Logger;
 
 import javax.persistence.AttributeConverter;
@@ -26,11 +27,17 @@ public class SimpleJsonbConverter implements AttributeConverter<Map<String, Stri
 
     private static final Logger LOG = getLogger(SimpleJsonbConverter.class);
 
+    /**
+     * The (thread-safe) reader and writer shared with the {@link JsonbUserType}.
+     */
+    private static final ObjectReader READER = JsonbUserType.READER;
+
+    private static final ObjectWriter WRITER = JsonbUserType.WRITER;
+
     @Override
     public String convertToDatabaseColumn(Map<String, String> attribute) {
-        ShogunCoreJsonObjectMapper mapper = new ShogunCoreJsonObjectMapper();
         try {
-            return (mapper.writeValueAsString(attribute));
+            return WRITER.writeValueAsString(attribute);
         } catch (Exception e) {
             LOG.warn("Could not convert JSON value to PostgreSQL format: " + e.getMessage());
             LOG.debug("Stack trace: " + e.toString());
@@ -40,9 +47,8 @@ public class SimpleJsonbConverter implements AttributeConverter<Map<String, Stri
 
     @Override
     public Map<String, String> convertToEntityAttribute(String dbData) {
-        ShogunCoreJsonObjectMapper parser = new ShogunCoreJsonObjectMapper();
         try {
-            return parser.readValue(dbData, HashMap.class);
+            return READER.readValue(dbData);
         } catch (IOException e) {
             LOG.warn("Could not convert JSON value from PostgreSQL format: " + e.getMessage());
             LOG.debug("Stack trace: " + e.toString());
@@ -18,7 +18,10 @@ import org.hibernate.annotations.CacheConcurrencyStrategy;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 /**
- * This class represents a file which is stored as a bytearray in the database
+ * This class represents a file. The content of the file is either stored in
+ * a {@link de.terrestris.shoguncore.util.blob.BlobStore} (referenced by the
+ * blob key) or as a bytearray in the database (if no blob store is configured
+ * or the file has not been migrated to the blob store yet).
  *
  * @author Johannes Weskamm
  * @author Daniel Koch
@@ -57,6 +60,13 @@ public class File extends PersistentObject {
     @Column(length = Integer.MAX_VALUE)
     private byte[] file;
 
+    /**
+     * The key of the content in the blob store.
+     */
+    @JsonIgnore
+    @Column(length = 64)
+    private String blobKey;
+
     /**
      * @return the active
      */
@@ -113,6 +123,20 @@ public class File extends PersistentObject {
         this.file = file;
     }
 
+    /**
+     * @return the blobKey
+     */
+    public String getBlobKey() {
+        return blobKey;
+    }
+
+    /**
+     * @param blobKey the blobKey to set
+     */
+    public void setBlobKey(String blobKey) {
+        this.blobKey = blobKey;
+    }
+
     /**
      * @see java.lang.Object#hashCode()
      * <p>
@@ -3,18 +3,34 @@
  */
 package de.terrestris.shoguncore.model;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import javax.persistence.Cacheable;
+import javax.persistence.CollectionTable;
 import javax.persistence.Column;
+import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.JoinColumn;
+import javax.persistence.MapKeyColumn;
 import javax.persistence.Table;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
+import de.terrestris.shoguncore.util.enumeration.ImageFileEnum;
+
 /**
- * This class represents an Image which is stored as a bytearray in the database
+ * This class represents an Image. The image and its thumbnail are stored
+ * like the content of a {@link File}.
  *
  * @author Johannes Weskamm
  * @author Daniel Koch
@@ -36,6 +52,34 @@ public class ImageFile extends File {
     @Column(length = Integer.MAX_VALUE)
     private byte[] thumbnail;
 
+    /**
+     * The key of the thumbnail in the blob store.
+     */
+    @JsonIgnore
+    @Column(length = 64)
+    private String thumbnailBlobKey;
+
+    /**
+     * The keys of the thumbnails in further sizes (in px) in the blob store.
+     */
+    @JsonIgnore
+    @ElementCollection
+    @MapKeyColumn(name = "THUMBNAIL_SIZE")
+    @Column(name = "BLOB_KEY", length = 64)
+    @CollectionTable(
+        name = "IMAGEFILES_THUMBNAILBLOBKEYS",
+        joinColumns = @JoinColumn(name = "IMAGEFILE_ID")
+    )
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @Fetch(FetchMode.JOIN)
+    private Map<Integer, String> thumbnailBlobKeys = new HashMap<>();
+
+    /**
+     * The state of the (asynchronous) creation of the thumbnails.
+     */
+    @Enumerated(EnumType.STRING)
+    private ImageFileEnum.ThumbnailStatus thumbnailStatus;
+
     /**
      *
      */
@@ -60,6 +104,48 @@ public class ImageFile extends File {
         this.thumbnail = thumbnail;
     }
 
+    /**
+     * @return the thumbnailBlobKey
+     */
+    public String getThumbnailBlobKey() {
+        return thumbnailBlobKey;
+    }
+
+    /**
+     * @param thumbnailBlobKey the thumbnailBlobKey to set
+     */
+    public void setThumbnailBlobKey(String thumbnailBlobKey) {
+        this.thumbnailBlobKey = thumbnailBlobKey;
+    }
+
+    /**
+     * @return the thumbnailBlobKeys
+     */
+    public Map<Integer, String> getThumbnailBlobKeys() {
+        return thumbnailBlobKeys;
+    }
+
+    /**
+     * @param thumbnailBlobKeys the thumbnailBlobKeys to set
+     */
+    public void setThumbnailBlobKeys(Map<Integer, String> thumbnailBlobKeys) {
+        this.thumbnailBlobKeys = thumbnailBlobKeys;
+    }
+
+    /**
+     * @return the thumbnailStatus
+     */
+    public ImageFileEnum.ThumbnailStatus getThumbnailStatus() {
+        return thumbnailStatus;
+    }
+
+    /**
+     * @param thumbnailStatus the thumbnailStatus to set
+     */
+    public void setThumbnailStatus(ImageFileEnum.ThumbnailStatus thumbnailStatus) {
+        this.thumbnailStatus = thumbnailStatus;
+    }
+
     /**
      * @return the width
      */
@@ -38,6 +38,16 @@ public abstract class PersistentObject implements Serializable {
      */
     private static final long serialVersionUID = 1L;
 
+    /**
+     * The cache region of the user permissions of all entities.
+     */
+    public static final String USER_PERMISSIONS_REGION = "de.terrestris.shoguncore.model.PersistentObject.userPermissions";
+
+    /**
+     * The cache region of the group permissions of all entities.
+     */
+    public static final String GROUP_PERMISSIONS_REGION = "de.terrestris.shoguncore.model.PersistentObject.groupPermissions";
+
     /**
      *
      */
@@ -74,7 +84,7 @@ public abstract class PersistentObject implements Serializable {
         name = "USERPERMISSIONS",
         joinColumns = @JoinColumn(name = "ENTITY_ID"))
     @JsonIgnore
-    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = USER_PERMISSIONS_REGION)
     @Fetch(FetchMode.JOIN)
     private Map<User, PermissionCollection> userPermissions = new HashMap<User, PermissionCollection>();
 
@@ -86,7 +96,7 @@ public abstract class PersistentObject implements Serializable {
         name = "GROUPPERMISSIONS",
         joinColumns = @JoinColumn(name = "ENTITY_ID"))
     @JsonIgnore
-    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = GROUP_PERMISSIONS_REGION)
     @Fetch(FetchMode.JOIN)
     private Map<UserGroup, PermissionCollection> groupPermissions = new HashMap<UserGroup, PermissionCollection>();
 
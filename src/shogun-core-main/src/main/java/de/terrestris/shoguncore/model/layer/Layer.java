@@ -9,6 +9,7 @@ import javax.persistence.Table;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.Cascade;
@@ -33,6 +34,7 @@ import de.terrestris.shoguncore.model.layer.source.LayerDataSource;
 @Inheritance(strategy = InheritanceType.JOINED)
 @Cacheable
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@BatchSize(size = 100)
 public class Layer extends PersistentObject {
 
     /**
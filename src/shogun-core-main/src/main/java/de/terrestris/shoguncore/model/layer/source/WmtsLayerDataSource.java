@@ -3,6 +3,7 @@ package de.terrestris.shoguncore.model.layer.source;
 import de.terrestris.shoguncore.model.layer.util.WmtsTileGrid;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 
@@ -32,6 +33,7 @@ public class WmtsLayerDataSource extends LayerDataSource {
 
     @ElementCollection(targetClass = String.class)
     @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @BatchSize(size = 100)
     private List<String> urls;
 
     private String wmtsLayer;
@@ -13,6 +13,7 @@ import javax.persistence.Column;
 import javax.persistence.ElementCollection;
 import javax.persistence.Embedded;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.JoinColumn;
 import javax.persistence.OneToOne;
 import javax.persistence.OrderColumn;
@@ -20,6 +21,7 @@ import javax.persistence.Table;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.Fetch;
@@ -54,14 +56,15 @@ public class XyzLayerDataSource extends LayerDataSource {
     @OneToOne
     private Extent extent;
 
-    @ElementCollection
+    @ElementCollection(fetch = FetchType.EAGER)
     @CollectionTable(
         name = "XYZLAYERDATASRC_RESOLUTION",
         joinColumns = @JoinColumn(name = "XYZLAYERDATASRC_ID"))
     @Column(name = "RESOLUTION")
     @OrderColumn(name = "IDX")
     @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
-    @Fetch(FetchMode.JOIN)
+    @Fetch(FetchMode.SELECT)
+    @BatchSize(size = 100)
     private List<Double> resolutions = new ArrayList<Double>();
 
     private Integer tileSize;
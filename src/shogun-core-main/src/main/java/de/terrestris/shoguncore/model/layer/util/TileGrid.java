@@ -10,6 +10,7 @@ import javax.persistence.*;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.Cascade;
@@ -30,6 +31,7 @@ import de.terrestris.shoguncore.model.PersistentObject;
 @Cacheable
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Inheritance(strategy = InheritanceType.JOINED)
+@BatchSize(size = 100)
 public class TileGrid extends PersistentObject {
 
     /**
@@ -73,14 +75,15 @@ public class TileGrid extends PersistentObject {
     /**
      * The tileGrid resolutions.
      */
-    @ElementCollection
+    @ElementCollection(fetch = FetchType.EAGER)
     @CollectionTable(
         name = "TILEGRID_RESOLUTION",
         joinColumns = @JoinColumn(name = "TILEGRID_ID"))
     @Column(name = "RESOLUTION")
     @OrderColumn(name = "IDX")
     @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
-    @Fetch(FetchMode.JOIN)
+    @Fetch(FetchMode.SELECT)
+    @BatchSize(size = 100)
     private List<Double> tileGridResolutions;
 
     /**
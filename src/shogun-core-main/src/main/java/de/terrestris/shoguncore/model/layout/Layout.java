@@ -11,6 +11,7 @@ import javax.persistence.CollectionTable;
 import javax.persistence.Column;
 import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.Inheritance;
 import javax.persistence.InheritanceType;
 import javax.persistence.JoinColumn;
@@ -18,6 +19,7 @@ import javax.persistence.Table;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.Fetch;
@@ -43,6 +45,7 @@ import de.terrestris.shoguncore.model.module.Module;
 @Inheritance(strategy = InheritanceType.JOINED)
 @Cacheable
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@BatchSize(size = 100)
 public class Layout extends PersistentObject {
 
     /**
@@ -59,22 +62,24 @@ public class Layout extends PersistentObject {
      * A set of property names that are <b>recommended</b> for the use in the
      * related child modules. {@link CompositeModule#getSubModules()}.
      */
-    @ElementCollection
+    @ElementCollection(fetch = FetchType.EAGER)
     @CollectionTable(joinColumns = @JoinColumn(name = "LAYOUT_ID"))
     @Column(name = "PROPERTYNAME")
     @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
-    @Fetch(FetchMode.JOIN)
+    @Fetch(FetchMode.SELECT)
+    @BatchSize(size = 100)
     private Set<String> propertyHints = new HashSet<String>();
 
     /**
      * A set of property names that are <b>required</b> for the use in the
      * related child modules. {@link CompositeModule#getSubModules()}.
      */
-    @ElementCollection
+    @ElementCollection(fetch = FetchType.EAGER)
     @CollectionTable(joinColumns = @JoinColumn(name = "LAYOUT_ID"))
     @Column(name = "PROPERTYNAME")
     @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
-    @Fetch(FetchMode.JOIN)
+    @Fetch(FetchMode.SELECT)
+    @BatchSize(size = 100)
     private Set<String> propertyMusts = new HashSet<String>();
 
     /**
@@ -9,12 +9,14 @@ import javax.persistence.Column;
 import javax.persistence.Convert;
 import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.JoinColumn;
 import javax.persistence.MapKeyColumn;
 import javax.persistence.Table;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.Fetch;
@@ -35,6 +37,7 @@ import de.terrestris.shoguncore.model.PersistentObject;
 @Table
 @Cacheable
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@BatchSize(size = 100)
 public class MapControl extends PersistentObject {
 
     /**
@@ -56,7 +59,7 @@ public class MapControl extends PersistentObject {
     /**
      *
      */
-    @ElementCollection
+    @ElementCollection(fetch = FetchType.EAGER)
     @MapKeyColumn(name = "PROPERTY")
     @Column(name = "VALUE")
     @CollectionTable(
@@ -68,7 +71,8 @@ public class MapControl extends PersistentObject {
         attributeName = "value"
     )
     @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
-    @Fetch(FetchMode.JOIN)
+    @Fetch(FetchMode.SELECT)
+    @BatchSize(size = 100)
     private Map<String, Object> mapControlProperties = new HashMap<String, Object>();
 
     /**
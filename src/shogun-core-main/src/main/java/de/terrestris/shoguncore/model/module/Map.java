@@ -8,6 +8,7 @@ import de.terrestris.shoguncore.model.map.MapConfig;
 import de.terrestris.shoguncore.model.map.MapControl;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.Fetch;
@@ -55,6 +56,7 @@ public class Map extends Module {
         inverseJoinColumns = {@JoinColumn(name = "CONTROL_ID")}
     )
     @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @BatchSize(size = 100)
     private Set<MapControl> mapControls = new HashSet<MapControl>();
 
     /**
@@ -67,6 +69,7 @@ public class Map extends Module {
     )
     @OrderColumn(name = "IDX")
     @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @BatchSize(size = 100)
     private List<Layer> mapLayers = new ArrayList<Layer>();
 
     /**
@@ -11,6 +11,7 @@ import javax.persistence.CollectionTable;
 import javax.persistence.Column;
 import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
@@ -19,6 +20,7 @@ import javax.persistence.Table;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.Fetch;
@@ -70,7 +72,7 @@ public class WfsSearch extends Module {
     /**
      * The layers to search in.
      */
-    @ManyToMany
+    @ManyToMany(fetch = FetchType.EAGER)
     @JoinTable(
         joinColumns = {@JoinColumn(name = "WFSSEARCH_ID")},
         inverseJoinColumns = {@JoinColumn(name = "LAYER_ID")}
@@ -84,21 +86,23 @@ public class WfsSearch extends Module {
     )
     @JsonIdentityReference(alwaysAsId = true)
     @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
-    @Fetch(FetchMode.JOIN)
+    @Fetch(FetchMode.SELECT)
+    @BatchSize(size = 100)
     private List<Layer> layers = new ArrayList<Layer>();
 
     /**
      * The allowed data-types to match against in the describefeaturetype
      * response
      */
-    @ElementCollection
+    @ElementCollection(fetch = FetchType.EAGER)
     @CollectionTable(
         name = "WFSSEARCHES_FEATUREDATATYPES",
         joinColumns = @JoinColumn(name = "WFSSEARCH_ID"))
     @Column(name = "FEATUREDATATYPE")
     @OrderColumn(name = "IDX")
     @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
-    @Fetch(FetchMode.JOIN)
+    @Fetch(FetchMode.SELECT)
+    @BatchSize(size = 100)
     private List<String> allowedFeatureTypeDataTypes = new ArrayList<String>();
 
     /**
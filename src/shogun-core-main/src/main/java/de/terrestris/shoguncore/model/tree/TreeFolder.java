@@ -14,6 +14,7 @@ import javax.persistence.Table;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 
@@ -46,6 +47,7 @@ public class TreeFolder extends TreeNode {
     @OneToMany(mappedBy = "parentFolder")
     @OrderBy("index")
     @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @BatchSize(size = 100)
     private List<TreeNode> children = new ArrayList<TreeNode>();
 
     /**
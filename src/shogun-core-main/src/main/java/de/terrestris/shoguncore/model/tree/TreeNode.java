@@ -9,6 +9,7 @@ import de.terrestris.shoguncore.converter.TreeFolderIdResolver;
 import de.terrestris.shoguncore.model.PersistentObject;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.Fetch;
@@ -26,12 +27,13 @@ import javax.persistence.*;
  * @author terrestris GmbH & Co. KG
  */
 @Entity
-@Table
+@Table(indexes = @Index(columnList = "path"))
 @Inheritance(strategy = InheritanceType.JOINED)
 @JsonInclude(Include.NON_NULL)
 @JsonTypeInfo(use = JsonTypeInfo.Id.CLASS, include = JsonTypeInfo.As.PROPERTY, property = "@class")
 @Cacheable
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@BatchSize(size = 100)
 public class TreeNode extends PersistentObject {
 
     /**
@@ -60,6 +62,18 @@ public class TreeNode extends PersistentObject {
     @Fetch(FetchMode.JOIN)
     private TreeFolder parentFolder;
 
+    /**
+     * The materialized path of this node, i.e. the IDs of all its ancestors
+     * from the root to the parent folder (e.g. <code>/1/5/</code> for a node
+     * in folder 5 of the root folder 1 or <code>/</code> for a root node).
+     * This allows to load a complete subtree with a single query. The path is
+     * maintained by the {@link de.terrestris.shoguncore.dao.TreeNodeDao}
+     * whenever a node is saved.
+     */
+    @Column(length = 2048)
+    @JsonIgnore
+    private String path;
+
     /**
      * The position of the node inside its parent. When parent has 4 children
      * and the node is third amongst them, index will be 2 -&gt; starting with
@@ -167,6 +181,29 @@ public class TreeNode extends PersistentObject {
         this.parentFolder = parentFolder;
     }
 
+    /**
+     * @return the path
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @param path the path to set
+     */
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    /**
+     * @return The materialized path of the children of this node (only
+     * applicable to persisted nodes).
+     */
+    @JsonIgnore
+    public String getChildPath() {
+        return (path != null ? path : "/") + getId() + "/";
+    }
+
     /**
      * @return the index
      */
@@ -0,0 +1,267 @@
+package de.terrestris.shoguncore.paging;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.terrestris.shoguncore.util.entity.EntityUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.criterion.Order;
+import org.springframework.util.MultiValueMap;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The paging and sort info of a request for a collection of entities.
+ * <p>
+ * The info is read from the following (optional) request parameters:
+ * <p>
+ * <ul>
+ * <li><code>start</code>: The index of the first result (offset pagination)</li>
+ * <li><code>limit</code>: The max number of results</li>
+ * <li><code>afterId</code>: Only results with an ID greater than the given one
+ * will be returned (keyset pagination, requires sorting by ID)</li>
+ * <li><code>sort</code>: Either an ExtJS sorter array (e.g.
+ * <code>[{"property":"name","direction":"DESC"}]</code>) or a comma separated
+ * list of field names, each optionally prefixed with <code>-</code> for a
+ * descending order (e.g. <code>name,-id</code>)</li>
+ * <li><code>count</code>: Whether the total count should be determined
+ * (defaults to <code>true</code>)</li>
+ * </ul>
+ * <p>
+ * Results are always ordered by ID (ascending) at last, so pages are stable.
+ *
+ * @author terrestris GmbH & Co. KG
+ */
+public class PagingRequest {
+
+    public static final String START_PARAM = "start";
+
+    public static final String LIMIT_PARAM = "limit";
+
+    public static final String AFTER_ID_PARAM = "afterId";
+
+    public static final String SORT_PARAM = "sort";
+
+    public static final String COUNT_PARAM = "count";
+
+    /**
+     * The page number sent by ExtJS stores, which is redundant to start and
+     * limit and will be ignored.
+     */
+    public static final String PAGE_PARAM = "page";
+
+    /**
+     *
+     */
+    private static final String ID_PROPERTY = "id";
+
+    /**
+     *
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final Integer start;
+
+    private final Integer limit;
+
+    private final Integer afterId;
+
+    private final List<Order> sorters;
+
+    private final boolean countTotal;
+
+    /**
+     * Constructor
+     *
+     * @param start
+     * @param limit
+     * @param afterId
+     * @param sorters
+     * @param countTotal
+     */
+    public PagingRequest(Integer start, Integer limit, Integer afterId, List<Order> sorters, boolean countTotal) {
+        if ((start != null && start < 0) || (limit != null && limit < 0)) {
+            throw new IllegalArgumentException("The start and limit values must not be negative.");
+        }
+
+        List<Order> allSorters = new ArrayList<>();
+        if (sorters != null) {
+            allSorters.addAll(sorters);
+        }
+
+        boolean sortedById = false;
+        for (Order sorter : allSorters) {
+            sortedById |= ID_PROPERTY.equals(sorter.getPropertyName());
+        }
+
+        if (afterId != null && (allSorters.size() > 1 || (!allSorters.isEmpty()
+            && (!sortedById || !allSorters.get(0).isAscending())))) {
+            throw new IllegalArgumentException("Keyset pagination (afterId) requires sorting by id (ascending).");
+        }
+
+        if (!sortedById) {
+            allSorters.add(Order.asc(ID_PROPERTY));
+        }
+
+        this.start = start;
+        this.limit = limit;
+        this.afterId = afterId;
+        this.sorters = Collections.unmodifiableList(allSorters);
+        this.countTotal = countTotal;
+    }
+
+    /**
+     * Reads the paging and sort info from the given request parameters and
+     * removes the paging parameters from the map.
+     *
+     * @param requestParams
+     * @param entityClass   The class of the requested entities, the sorters
+     *                      are validated against
+     * @return The paging request or null, if the parameters don't contain any
+     * paging or sort info.
+     * @throws IllegalArgumentException If the paging or sort info is invalid
+     */
+    public static PagingRequest fromRequestParams(MultiValueMap<String, String> requestParams, Class<?> entityClass) {
+        if (requestParams == null) {
+            return null;
+        }
+
+        final String start = requestParams.getFirst(START_PARAM);
+        final String limit = requestParams.getFirst(LIMIT_PARAM);
+        final String afterId = requestParams.getFirst(AFTER_ID_PARAM);
+        final String sort = requestParams.getFirst(SORT_PARAM);
+        final String count = requestParams.getFirst(COUNT_PARAM);
+
+        requestParams.remove(START_PARAM);
+        requestParams.remove(LIMIT_PARAM);
+        requestParams.remove(AFTER_ID_PARAM);
+        requestParams.remove(SORT_PARAM);
+        requestParams.remove(COUNT_PARAM);
+        requestParams.remove(PAGE_PARAM);
+
+        if (start == null && limit == null && afterId == null && sort == null) {
+            return null;
+        }
+
+        return new PagingRequest(
+            parseInteger(START_PARAM, start),
+            parseInteger(LIMIT_PARAM, limit),
+            parseInteger(AFTER_ID_PARAM, afterId),
+            parseSorters(sort, entityClass),
+            !"false".equalsIgnoreCase(count)
+        );
+    }
+
+    /**
+     * @param name
+     * @param value
+     * @return
+     */
+    private static Integer parseInteger(String name, String value) {
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for parameter " + name + ": " + value);
+        }
+    }
+
+    /**
+     * @param sort
+     * @param entityClass
+     * @return
+     */
+    private static List<Order> parseSorters(String sort, Class<?> entityClass) {
+        List<Order> sorters = new ArrayList<>();
+
+        if (StringUtils.isBlank(sort)) {
+            return sorters;
+        }
+
+        final List<String> sortableFieldNames = EntityUtil.getFilterableOrRestrictableFieldNames(entityClass);
+
+        if (sort.trim().startsWith("[")) {
+            JsonNode sortNodes;
+            try {
+                sortNodes = OBJECT_MAPPER.readTree(sort);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Invalid sort parameter: " + sort);
+            }
+            for (JsonNode sortNode : sortNodes) {
+                String property = sortNode.path("property").asText(null);
+                String direction = sortNode.path("direction").asText("ASC");
+                sorters.add(createOrder(property, !"DESC".equalsIgnoreCase(direction), sortableFieldNames));
+            }
+        } else {
+            for (String property : EntityUtil.listFromCommaSeparatedStringList(Collections.singletonList(sort))) {
+                boolean descending = property.startsWith("-");
+                sorters.add(createOrder(StringUtils.removeStart(property, "-"), !descending, sortableFieldNames));
+            }
+        }
+
+        return sorters;
+    }
+
+    /**
+     * @param property
+     * @param ascending
+     * @param sortableFieldNames
+     * @return
+     */
+    private static Order createOrder(String property, boolean ascending, List<String> sortableFieldNames) {
+        for (String fieldName : sortableFieldNames) {
+            if (fieldName.equalsIgnoreCase(StringUtils.trim(property))) {
+                return ascending ? Order.asc(fieldName) : Order.desc(fieldName);
+            }
+        }
+        throw new IllegalArgumentException("Can not sort by property " + property);
+    }
+
+    /**
+     * @return A copy of this request without offset, limit and total count
+     * (i.e. for all pages).
+     */
+    public PagingRequest withoutLimits() {
+        return new PagingRequest(null, null, afterId, sorters, false);
+    }
+
+    /**
+     * @return the start
+     */
+    public Integer getStart() {
+        return start;
+    }
+
+    /**
+     * @return the limit
+     */
+    public Integer getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return the afterId
+     */
+    public Integer getAfterId() {
+        return afterId;
+    }
+
+    /**
+     * @return the (immutable) sorters
+     */
+    public List<Order> getSorters() {
+        return sorters;
+    }
+
+    /**
+     * @return Whether the total count should be determined
+     */
+    public boolean isCountTotal() {
+        return countTotal;
+    }
+
+}
@@ -1,15 +1,20 @@
 package de.terrestris.shoguncore.rest;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.function.Function;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -17,11 +22,18 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
+import de.terrestris.shoguncore.bulk.BulkResult;
 import de.terrestris.shoguncore.dao.GenericHibernateDao;
 import de.terrestris.shoguncore.model.PersistentObject;
+import de.terrestris.shoguncore.paging.PagingRequest;
+import de.terrestris.shoguncore.paging.PagingResult;
 import de.terrestris.shoguncore.service.AbstractCrudService;
 import de.terrestris.shoguncore.web.AbstractWebController;
 
@@ -42,6 +54,17 @@ public abstract class AbstractRestController<E extends PersistentObject, D exten
         super(entityClass);
     }
 
+    /**
+     * The request parameter to request the streaming of all entities (see
+     * {@link #streamAll(HttpServletResponse)}).
+     */
+    public static final String STREAM_PARAM = "stream";
+
+    /**
+     * The path of the bulk endpoints (see {@link #bulkCreate(HttpServletRequest)}).
+     */
+    public static final String BULK_PATH = "/bulk";
+
     /**
      *
      */
@@ -50,9 +73,26 @@ public abstract class AbstractRestController<E extends PersistentObject, D exten
 
     /**
      * Find all entities.
+     * <p>
+     * If the request contains paging or sort parameters (see
+     * {@link PagingRequest}), the requested page will be returned as
+     * {@link PagingResult}.
      */
     @RequestMapping(method = RequestMethod.GET)
-    public ResponseEntity<List<E>> findAll(@RequestParam MultiValueMap<String, String> requestParams) {
+    public ResponseEntity<?> findAll(@RequestParam MultiValueMap<String, String> requestParams) {
+        final PagingRequest pagingRequest;
+        try {
+            pagingRequest = PagingRequest.fromRequestParams(requestParams, getEntityClass());
+        } catch (IllegalArgumentException e) {
+            LOG.error("Invalid paging request: " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        if (pagingRequest != null) {
+            final PagingResult<E> pagingResult = this.service.findAllRestricted(requestParams, pagingRequest);
+            return new ResponseEntity<PagingResult<E>>(pagingResult, HttpStatus.OK);
+        }
+
         final List<E> resultList = this.service.findAllRestricted(requestParams);
 
         if (resultList != null && !resultList.isEmpty()) {
@@ -64,13 +104,71 @@ public abstract class AbstractRestController<E extends PersistentObject, D exten
         return new ResponseEntity<List<E>>(resultList, HttpStatus.OK);
     }
 
+    /**
+     * Streams all entities (the current user may READ) as JSON array directly
+     * to the response, without holding all entities in memory (see
+     * {@link AbstractCrudService#streamAll(java.util.function.Consumer)}).
+     * This is intended for exports of large collections, e.g.
+     * <code>GET /rest/users?stream=true</code>.
+     *
+     * @param response
+     * @throws IOException
+     */
+    @RequestMapping(method = RequestMethod.GET, params = STREAM_PARAM + "=true")
+    public void streamAll(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+
+        final ObjectWriter writer = objectMapper.writer()
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        try (JsonGenerator generator = objectMapper.getFactory()
+            .createGenerator(response.getOutputStream(), JsonEncoding.UTF8)) {
+
+            generator.writeStartArray();
+
+            final long count = this.service.streamAll(entity -> {
+                try {
+                    writer.writeValue(generator, entity);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            generator.writeEndArray();
+
+            LOG.trace("Streamed a total of " + count + " entities of type "
+                + getEntityClass().getSimpleName());
+        } catch (UncheckedIOException e) {
+            LOG.error("Error streaming entities of type "
+                + getEntityClass().getSimpleName() + ": " + e.getMessage());
+            throw e.getCause();
+        }
+    }
+
     /**
      * Find all entities that match the conditions from the query string.
      * <p>
      * The requestParams MultiValueMap contains all information from the query String @see {@link RequestParam}
+     * <p>
+     * If the request contains paging or sort parameters (see
+     * {@link PagingRequest}), the requested page will be returned as
+     * {@link PagingResult}.
      */
     @RequestMapping(value = "/filter", method = RequestMethod.GET)
-    public ResponseEntity<List<E>> findBySimpleFilter(@RequestParam MultiValueMap<String, String> requestParams) {
+    public ResponseEntity<?> findBySimpleFilter(@RequestParam MultiValueMap<String, String> requestParams) {
+
+        final PagingRequest pagingRequest;
+        try {
+            pagingRequest = PagingRequest.fromRequestParams(requestParams, getEntityClass());
+        } catch (IllegalArgumentException e) {
+            LOG.error("Invalid paging request: " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        if (pagingRequest != null) {
+            final PagingResult<E> pagingResult = this.service.findBySimpleFilter(requestParams, pagingRequest);
+            return new ResponseEntity<PagingResult<E>>(pagingResult, HttpStatus.OK);
+        }
 
         final List<E> resultList = this.service.findBySimpleFilter(requestParams);
 
@@ -199,6 +297,91 @@ public abstract class AbstractRestController<E extends PersistentObject, D exten
         }
     }
 
+    /**
+     * Creates all entities of the JSON array in the request body in one
+     * transaction (see {@link AbstractCrudService#bulkCreate(JsonNode, ObjectMapper)}).
+     * <p>
+     * Returns the {@link BulkResult} with status 201, if all entities have
+     * been created, or with status 207, if some items failed.
+     */
+    @RequestMapping(value = BULK_PATH, method = RequestMethod.POST)
+    public ResponseEntity<BulkResult<E>> bulkCreate(HttpServletRequest request) {
+        return handleBulkRequest(request, HttpStatus.CREATED, "creating",
+            items -> this.service.bulkCreate(items, objectMapper));
+    }
+
+    /**
+     * Updates all entities of the JSON array in the request body (each with
+     * its <code>id</code>) in one transaction (see
+     * {@link AbstractCrudService#bulkUpdate(JsonNode, ObjectMapper)}).
+     * <p>
+     * Returns the {@link BulkResult} with status 200, if all entities have
+     * been updated, or with status 207, if some items failed.
+     */
+    @RequestMapping(value = BULK_PATH, method = RequestMethod.PUT)
+    public ResponseEntity<BulkResult<E>> bulkUpdate(HttpServletRequest request) {
+        return handleBulkRequest(request, HttpStatus.OK, "updating",
+            items -> this.service.bulkUpdate(items, objectMapper));
+    }
+
+    /**
+     * Deletes all entities with the IDs of the JSON array in the request body
+     * in one transaction (see {@link AbstractCrudService#bulkDelete(JsonNode)}).
+     * <p>
+     * Returns the {@link BulkResult} with status 200, if all entities have
+     * been deleted, or with status 207, if some items failed.
+     */
+    @RequestMapping(value = BULK_PATH, method = RequestMethod.DELETE)
+    public ResponseEntity<BulkResult<E>> bulkDelete(HttpServletRequest request) {
+        return handleBulkRequest(request, HttpStatus.OK, "deleting",
+            items -> this.service.bulkDelete(items));
+    }
+
+    /**
+     * Reads the JSON array of the given bulk request and passes it to the
+     * given operation.
+     *
+     * @param request
+     * @param successStatus The status, if all items succeeded
+     * @param action        The name of the operation (for logging)
+     * @param operation
+     * @return
+     */
+    private ResponseEntity<BulkResult<E>> handleBulkRequest(HttpServletRequest request, HttpStatus successStatus,
+                                                            String action,
+                                                            Function<JsonNode, BulkResult<E>> operation) {
+
+        final String errorMessagePrefix = "Error when bulk " + action + " entities of type "
+            + getEntityClass().getSimpleName() + ": ";
+
+        final JsonNode items;
+        try (Reader reader = request.getReader()) {
+            items = objectMapper.readTree(reader);
+        } catch (Exception e) {
+            LOG.error(errorMessagePrefix + e.getMessage());
+            return new ResponseEntity<BulkResult<E>>(HttpStatus.BAD_REQUEST);
+        }
+
+        if (items == null || !items.isArray()) {
+            LOG.error(errorMessagePrefix + "The JSON body is not an array");
+            return new ResponseEntity<BulkResult<E>>(HttpStatus.BAD_REQUEST);
+        }
+
+        try {
+            final BulkResult<E> result = operation.apply(items);
+
+            LOG.trace("Finished bulk " + action + " " + items.size() + " entities of type "
+                + getEntityClass().getSimpleName() + ", " + result.getFailed() + " failed");
+
+            return new ResponseEntity<BulkResult<E>>(result,
+                result.getFailed() == 0 ? successStatus : HttpStatus.MULTI_STATUS);
+        } catch (Exception e) {
+            // the whole transaction has been rolled back
+            LOG.error(errorMessagePrefix + e.getMessage());
+            return new ResponseEntity<BulkResult<E>>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
     /**
      * Deletes an entity by id.
      *
@@ -1,13 +1,25 @@
 package de.terrestris.shoguncore.rest;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import de.terrestris.shoguncore.dao.ApplicationDao;
 import de.terrestris.shoguncore.model.Application;
 import de.terrestris.shoguncore.service.ApplicationService;
+import de.terrestris.shoguncore.util.application.ApplicationSnapshotCache.Snapshot;
 
 /**
  * @author Kai Volland
@@ -46,4 +58,68 @@ public class ApplicationRestController<E extends Application, D extends Applicat
         this.service = service;
     }
 
+    /**
+     * Get an application by id. The complete graph of the application is
+     * loaded in a bounded number of queries before it will be serialized (see
+     * {@link ApplicationService#findByIdWithGraph(Integer)}).
+     *
+     * @param id
+     */
+    @Override
+    @RequestMapping(value = "/{id}", method = RequestMethod.GET)
+    public ResponseEntity<E> findById(@PathVariable Integer id) {
+
+        try {
+            E entity = this.service.findByIdWithGraph(id);
+            LOG.trace("Found " + entity.getClass().getSimpleName()
+                + " with ID " + entity.getId());
+            return new ResponseEntity<E>(entity, HttpStatus.OK);
+        } catch (Exception e) {
+            LOG.error("Error finding entity with id " + id + ": "
+                + e.getMessage());
+            return new ResponseEntity<E>(HttpStatus.NOT_FOUND);
+        }
+    }
+
+    /**
+     * Get the (cached) serialized configuration of an application by id (see
+     * {@link ApplicationService#getSnapshot(Integer, com.fasterxml.jackson.databind.ObjectMapper)}).
+     * The content is equal to the one of {@link #findById(Integer)}, but
+     * conditional requests (<code>If-None-Match</code>,
+     * <code>If-Modified-Since</code>) are answered with 304 as long as the
+     * application has not been changed.
+     *
+     * @param id
+     */
+    @RequestMapping(value = "/{id}/snapshot", method = RequestMethod.GET)
+    public ResponseEntity<byte[]> findSnapshotById(@PathVariable Integer id, HttpServletRequest request,
+                                                   HttpServletResponse response) {
+
+        try {
+            final Snapshot snapshot = this.service.getSnapshot(id, objectMapper);
+
+            if (snapshot == null) {
+                throw new Exception("Could not find the application with id " + id);
+            }
+
+            // clients have to revalidate their copy on every start
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().getHeaderValue());
+
+            if (new ServletWebRequest(request, response).checkNotModified(snapshot.getETag(),
+                snapshot.getLastModified())) {
+                LOG.trace("The snapshot of application " + id + " has not been modified");
+                return null;
+            }
+
+            final HttpHeaders responseHeaders = new HttpHeaders();
+            responseHeaders.setContentType(MediaType.APPLICATION_JSON_UTF8);
+
+            return new ResponseEntity<byte[]>(snapshot.getJson(), responseHeaders, HttpStatus.OK);
+        } catch (Exception e) {
+            LOG.error("Error finding the snapshot of application with id " + id + ": "
+                + e.getMessage());
+            return new ResponseEntity<byte[]>(HttpStatus.NOT_FOUND);
+        }
+    }
+
 }
@@ -2,9 +2,15 @@ package de.terrestris.shoguncore.rest;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
 import de.terrestris.shoguncore.dao.TreeNodeDao;
 import de.terrestris.shoguncore.model.tree.TreeNode;
 import de.terrestris.shoguncore.service.TreeNodeService;
@@ -45,4 +51,30 @@ public class TreeNodeRestController<E extends TreeNode, D extends TreeNodeDao<E>
     public void setService(S service) {
         this.service = service;
     }
+
+    /**
+     * Get a node including all its descendants by id. The complete subtree
+     * is loaded with a single query (see
+     * {@link TreeNodeService#findSubtree(Integer, com.fasterxml.jackson.databind.ObjectMapper)}).
+     *
+     * @param id
+     */
+    @RequestMapping(value = "/{id}/subtree", method = RequestMethod.GET)
+    public ResponseEntity<JsonNode> findSubtreeById(@PathVariable Integer id) {
+
+        try {
+            final JsonNode subtree = this.service.findSubtree(id, objectMapper);
+
+            if (subtree == null) {
+                throw new Exception("Could not find the node with id " + id);
+            }
+
+            return new ResponseEntity<JsonNode>(subtree, HttpStatus.OK);
+        } catch (Exception e) {
+            LOG.error("Error finding the subtree of node with id " + id + ": "
+                + e.getMessage());
+            return new ResponseEntity<JsonNode>(HttpStatus.NOT_FOUND);
+        }
+    }
+
 }
@@ -0,0 +1,354 @@
+package de.terrestris.shoguncore.security;
+
+import de.terrestris.shoguncore.model.User;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * A cache for successful authentications, e.g. of clients using HTTP Basic
+ * authentication on every (tile) request. Cached authentications skip the
+ * lookup of the user, the (expensive) password check and the aggregation of
+ * the roles in {@link ShogunCoreAuthenticationProvider}.
+ * <p>
+ * The entries are keyed by the account name and hold a salted SHA-256 digest
+ * of the presented credentials only (the salt is generated randomly on
+ * startup). They expire after a configurable time to live and are evicted in
+ * least recently used order as soon as the configured number of entries is
+ * exceeded. The entries have to be invalidated (see
+ * {@link #invalidateUser(Integer)} and {@link #invalidateAll()}) whenever the
+ * password, the state, the roles or the groups of users change.
+ *
+ * @author terrestris GmbH & Co. KG
+ */
+@Component("authenticationCache")
+public class AuthenticationCache {
+
+    /**
+     * The LOGGER instance
+     */
+    private static final Logger LOG = getLogger(AuthenticationCache.class);
+
+    /**
+     * The cached authentications by account name in access order.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Incremented on every invalidation, so authentications loaded
+     * concurrently to an invalidation won't be cached.
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     *
+     */
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     *
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * The random salt of the credential digests.
+     */
+    private final byte[] salt = new byte[16];
+
+    /**
+     *
+     */
+    private boolean enabled = true;
+
+    /**
+     * The time to live of an entry (in ms).
+     */
+    private long timeToLive = 300000;
+
+    /**
+     * The maximum number of cached authentications.
+     */
+    private int maxEntries = 1000;
+
+    /**
+     *
+     */
+    public AuthenticationCache() {
+        new SecureRandom().nextBytes(salt);
+    }
+
+    /**
+     * @return Whether the cache is enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return The current version of the cache, has to be passed to
+     * {@link #put(String, String, Authentication, long)}.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * @param accountName
+     * @param rawPassword
+     * @return A (new) authentication token equal to the cached one, if the
+     * given credentials match the cached ones, null otherwise.
+     */
+    public Authentication get(String accountName, String rawPassword) {
+        if (!enabled || accountName == null || rawPassword == null) {
+            return null;
+        }
+
+        final byte[] digest = digest(accountName, rawPassword);
+
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(accountName);
+
+            if (entry != null && entry.isExpired(timeToLive)) {
+                entries.remove(accountName);
+                entry = null;
+            }
+        }
+
+        if (entry == null || !MessageDigest.isEqual(entry.getDigest(), digest)) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+
+        // the credentials of the returned token may be erased by the
+        // authentication manager, so never hand out the cached instance
+        return new UsernamePasswordAuthenticationToken(entry.getPrincipal(),
+            entry.getCredentials(), entry.getAuthorities());
+    }
+
+    /**
+     * Caches the given (successful) authentication, if the cache has not been
+     * invalidated since the given version.
+     *
+     * @param accountName
+     * @param rawPassword    The presented credentials
+     * @param authentication
+     * @param loadedVersion  The version of the cache before authenticating
+     *                       (see {@link #getVersion()})
+     */
+    public void put(String accountName, String rawPassword, Authentication authentication, long loadedVersion) {
+        if (!enabled || accountName == null || rawPassword == null
+            || authentication == null || !authentication.isAuthenticated()) {
+            return;
+        }
+
+        Entry entry = new Entry(digest(accountName, rawPassword), authentication);
+
+        synchronized (this) {
+            if (loadedVersion != version.get()) {
+                return;
+            }
+
+            entries.put(accountName, entry);
+
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (entries.size() > maxEntries && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes the cached authentication of the given user. If called inside
+     * a transaction, the entry will be removed (again) after the transaction
+     * has completed.
+     *
+     * @param userId
+     */
+    public void invalidateUser(Integer userId) {
+        if (userId == null) {
+            return;
+        }
+
+        runNowAndAfterCompletion(() -> {
+            version.incrementAndGet();
+
+            synchronized (this) {
+                entries.values().removeIf(entry -> entry.getPrincipal() instanceof User
+                    && userId.equals(((User) entry.getPrincipal()).getId()));
+            }
+
+            LOG.debug("Invalidated the cached authentication of user " + userId);
+        });
+    }
+
+    /**
+     * Removes all cached authentications. If called inside a transaction, the
+     * entries will be removed (again) after the transaction has completed.
+     */
+    public void invalidateAll() {
+        runNowAndAfterCompletion(() -> {
+            version.incrementAndGet();
+
+            synchronized (this) {
+                entries.clear();
+            }
+
+            LOG.debug("Invalidated all cached authentications");
+        });
+    }
+
+    /**
+     * @param invalidation
+     */
+    private static void runNowAndAfterCompletion(Runnable invalidation) {
+        invalidation.run();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        invalidation.run();
+                    }
+                });
+        }
+    }
+
+    /**
+     * @param accountName
+     * @param rawPassword
+     * @return The salted digest of the given credentials.
+     */
+    private byte[] digest(String accountName, String rawPassword) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            messageDigest.update(salt);
+            messageDigest.update(accountName.getBytes(StandardCharsets.UTF_8));
+            messageDigest.update((byte) 0);
+            messageDigest.update(rawPassword.getBytes(StandardCharsets.UTF_8));
+            return messageDigest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * @return The number of cached authentications.
+     */
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * @return the hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return The ratio of hits to all lookups (0 if there were no lookups).
+     */
+    public double getHitRate() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * @param enabled the enabled to set
+     */
+    @Value("${authenticationCache.enabled:true}")
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param timeToLive the timeToLive (in ms) to set
+     */
+    @Value("${authenticationCache.timeToLive:300000}")
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * @param maxEntries the maxEntries to set
+     */
+    @Value("${authenticationCache.maxEntries:1000}")
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * A cached authentication and the digest of its credentials.
+     */
+    private static class Entry {
+
+        private final byte[] digest;
+
+        private final Object principal;
+
+        private final Object credentials;
+
+        private final Collection<GrantedAuthority> authorities;
+
+        private final long created = System.currentTimeMillis();
+
+        Entry(byte[] digest, Authentication authentication) {
+            this.digest = digest;
+            this.principal = authentication.getPrincipal();
+            this.credentials = authentication.getCredentials();
+            this.authorities = Collections.unmodifiableList(new ArrayList<>(authentication.getAuthorities()));
+        }
+
+        byte[] getDigest() {
+            return digest;
+        }
+
+        Object getPrincipal() {
+            return principal;
+        }
+
+        Object getCredentials() {
+            return credentials;
+        }
+
+        Collection<GrantedAuthority> getAuthorities() {
+            return authorities;
+        }
+
+        boolean isExpired(long timeToLive) {
+            return System.currentTimeMillis() - created > timeToLive;
+        }
+    }
+
+}
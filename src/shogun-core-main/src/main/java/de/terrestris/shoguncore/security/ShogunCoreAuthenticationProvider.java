@@ -7,6 +7,7 @@ import de.terrestris.shoguncore.model.UserGroup;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.DisabledException;
@@ -17,7 +18,8 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -41,23 +43,74 @@ public class ShogunCoreAuthenticationProvider implements AuthenticationProvider
     private PasswordEncoder passwordEncoder;
 
     /**
-     * This method has to be {@link Transactional} to allow that associated entities
-     * can be fetched lazily.
+     * The (optional) cache for successful authentications.
+     */
+    @Autowired(required = false)
+    private AuthenticationCache authenticationCache;
+
+    /**
+     * The template for the (read only) transaction the user will be loaded in.
+     */
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Returns a cached authentication if available. Otherwise the user will be
+     * authenticated inside a read only transaction to allow that associated
+     * entities can be fetched lazily.
      *
      * @see org.springframework.security.authentication.AuthenticationProvider#authenticate(org.springframework.security.core.Authentication)
      */
     @Override
-    @Transactional(value = "transactionManager", readOnly = true)
     public Authentication authenticate(Authentication authentication)
         throws AuthenticationException {
 
+        final String accountName = authentication.getName();
+        final String rawPassword = (String) authentication.getCredentials();
+
+        if (authenticationCache == null || !authenticationCache.isEnabled()) {
+            return authenticateInTransaction(accountName, rawPassword);
+        }
+
+        Authentication cachedAuthentication = authenticationCache.get(accountName, rawPassword);
+
+        if (cachedAuthentication != null) {
+            LOG.debug("The user '" + accountName + "' has been authenticated by a cached authentication.");
+            return cachedAuthentication;
+        }
+
+        final long cacheVersion = authenticationCache.getVersion();
+
+        Authentication authResult = authenticateInTransaction(accountName, rawPassword);
+
+        authenticationCache.put(accountName, rawPassword, authResult, cacheVersion);
+
+        return authResult;
+    }
+
+    /**
+     * @param accountName
+     * @param rawPassword
+     * @return
+     */
+    private Authentication authenticateInTransaction(String accountName, String rawPassword) {
+        if (transactionTemplate == null) {
+            return authenticateUser(accountName, rawPassword);
+        }
+        return transactionTemplate.execute(status -> authenticateUser(accountName, rawPassword));
+    }
+
+    /**
+     * @param accountName
+     * @param rawPassword
+     * @return
+     * @throws AuthenticationException
+     */
+    private Authentication authenticateUser(String accountName, String rawPassword)
+        throws AuthenticationException {
+
         // prepare an exception
         final String exceptionMessage = "User and password do not match.";
 
-        // get username/password
-        String accountName = authentication.getName();
-        String rawPassword = (String) authentication.getCredentials();
-
         LOG.debug("Trying to authenticate User '" + accountName + "'");
 
         User user = userDao.findByAccountName(accountName);
@@ -178,4 +231,22 @@ public class ShogunCoreAuthenticationProvider implements AuthenticationProvider
     public void setPasswordEncoder(PasswordEncoder passwordEncoder) {
         this.passwordEncoder = passwordEncoder;
     }
+
+    /**
+     * @param authenticationCache the authenticationCache to set
+     */
+    public void setAuthenticationCache(AuthenticationCache authenticationCache) {
+        this.authenticationCache = authenticationCache;
+    }
+
+    /**
+     * @param transactionManager the transactionManager to use for loading
+     */
+    @Autowired(required = false)
+    @Qualifier("transactionManager")
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        this.transactionTemplate = template;
+    }
 }
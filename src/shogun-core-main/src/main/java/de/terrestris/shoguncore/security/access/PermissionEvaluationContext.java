@@ -0,0 +1,183 @@
+package de.terrestris.shoguncore.security.access;
+
+import de.terrestris.shoguncore.model.User;
+import de.terrestris.shoguncore.model.UserGroup;
+import org.apache.logging.log4j.Logger;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * Request scoped state of the permission evaluation: holds the "full" user
+ * (as loaded from the database) and the IDs of the user groups the user is a
+ * member of, so they have to be loaded only once per request, no matter how
+ * many entities are evaluated (e.g. by a filter over a list of entities).
+ * <p>
+ * Additionally, the evaluations of the request are counted and logged (on
+ * level DEBUG) when the request has been completed.
+ *
+ * @author terrestris GmbH & Co. KG
+ */
+public class PermissionEvaluationContext {
+
+    /**
+     * The LOGGER instance
+     */
+    private static final Logger LOG = getLogger(PermissionEvaluationContext.class);
+
+    /**
+     * The name of the request attribute holding the context.
+     */
+    private static final String ATTRIBUTE_NAME = PermissionEvaluationContext.class.getName();
+
+    /**
+     * The ID of the principal the user has been loaded for.
+     */
+    private Integer principalId;
+
+    /**
+     * The "full" user.
+     */
+    private User user;
+
+    /**
+     * The IDs of the user groups the user is a member of.
+     */
+    private Set<Integer> userGroupIds;
+
+    /**
+     * The number of permission evaluations.
+     */
+    private int evaluations = 0;
+
+    /**
+     * The number of permission evaluations granting access.
+     */
+    private int grantedEvaluations = 0;
+
+    /**
+     * The number of times the user has been loaded.
+     */
+    private int userLoads = 0;
+
+    /**
+     * @return The context of the current request or null if there is no
+     * current request (e.g. in asynchronous tasks).
+     */
+    public static PermissionEvaluationContext getCurrent() {
+        final RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+
+        if (requestAttributes == null) {
+            return null;
+        }
+
+        PermissionEvaluationContext context = (PermissionEvaluationContext) requestAttributes
+            .getAttribute(ATTRIBUTE_NAME, RequestAttributes.SCOPE_REQUEST);
+
+        if (context == null) {
+            final PermissionEvaluationContext newContext = new PermissionEvaluationContext();
+            requestAttributes.setAttribute(ATTRIBUTE_NAME, newContext, RequestAttributes.SCOPE_REQUEST);
+            requestAttributes.registerDestructionCallback(ATTRIBUTE_NAME, newContext::logStatistics,
+                RequestAttributes.SCOPE_REQUEST);
+            context = newContext;
+        }
+
+        return context;
+    }
+
+    /**
+     * @param principalId
+     * @return The cached user for the given principal or null if it has not
+     * been cached (yet).
+     */
+    public User getUser(Integer principalId) {
+        if (user != null && principalId != null && principalId.equals(this.principalId)) {
+            return user;
+        }
+        return null;
+    }
+
+    /**
+     * Caches the given (full) user and the IDs of its user groups.
+     *
+     * @param principalId
+     * @param user
+     */
+    public void setUser(Integer principalId, User user) {
+        this.principalId = principalId;
+        this.user = user;
+        this.userLoads++;
+
+        if (user == null) {
+            this.userGroupIds = Collections.emptySet();
+            return;
+        }
+
+        Set<Integer> groupIds = new HashSet<>();
+        for (UserGroup userGroup : user.getUserGroups()) {
+            groupIds.add(userGroup.getId());
+        }
+        this.userGroupIds = Collections.unmodifiableSet(groupIds);
+    }
+
+    /**
+     * @param user
+     * @return The IDs of the user groups of the given user or null if the
+     * given user is not the cached one.
+     */
+    public Set<Integer> getUserGroupIds(User user) {
+        if (user != null && user == this.user) {
+            return userGroupIds;
+        }
+        return null;
+    }
+
+    /**
+     * Counts a permission evaluation.
+     *
+     * @param granted
+     */
+    public void countEvaluation(boolean granted) {
+        evaluations++;
+        if (granted) {
+            grantedEvaluations++;
+        }
+    }
+
+    /**
+     * Logs the counters of the request.
+     */
+    private void logStatistics() {
+        if (evaluations > 0) {
+            LOG.debug("Evaluated " + evaluations + " permissions (" + grantedEvaluations
+                + " granted) with " + userLoads + " user load(s) in this request");
+        }
+    }
+
+    /**
+     * @return the evaluations
+     */
+    public int getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * @return the grantedEvaluations
+     */
+    public int getGrantedEvaluations() {
+        return grantedEvaluations;
+    }
+
+    /**
+     * @return the userLoads
+     */
+    public int getUserLoads() {
+        return userLoads;
+    }
+
+}
@@ -7,15 +7,23 @@ import de.terrestris.shoguncore.model.User;
 import de.terrestris.shoguncore.model.security.Permission;
 import de.terrestris.shoguncore.security.access.entity.PersistentObjectPermissionEvaluator;
 import de.terrestris.shoguncore.security.access.factory.EntityPermissionEvaluatorFactory;
+import de.terrestris.shoguncore.util.config.ConfigHolder;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.Logger;
+import org.hibernate.HibernateException;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Restrictions;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.ApplicationContext;
 import org.springframework.security.access.PermissionEvaluator;
+import org.springframework.security.access.hierarchicalroles.RoleHierarchy;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.Set;
 
 import static org.apache.logging.log4j.LogManager.getLogger;
 
@@ -41,6 +49,19 @@ public class ShogunCorePermissionEvaluator implements PermissionEvaluator {
     @Qualifier("userDao")
     private UserDao<User> userDao;
 
+    /**
+     * Provides the name of the super admin role.
+     */
+    @Autowired(required = false)
+    @Qualifier("configHolder")
+    private ConfigHolder configHolder;
+
+    /**
+     * The (optional) role hierarchy.
+     */
+    @Autowired(required = false)
+    private RoleHierarchy roleHierarchy;
+
     /**
      * If set to true, the plain principal object from the spring security
      * context will be used as "user". Otherwise the "full" user object will be
@@ -79,14 +100,16 @@ public class ShogunCorePermissionEvaluator implements PermissionEvaluator {
 
             final Object principalObject = authentication.getPrincipal();
 
+            // the (request scoped) context of the evaluation, may be null
+            final PermissionEvaluationContext context = PermissionEvaluationContext.getCurrent();
+
             if (principalObject instanceof User) {
                 final User principal = (User) principalObject;
 
                 if (usePlainPrincipal == true) {
                     user = principal;
                 } else {
-                    // get the "full" user from the database
-                    user = userDao.findById(principal.getId());
+                    user = getFullUser(principal.getId(), context);
                 }
             }
 
@@ -106,6 +129,10 @@ public class ShogunCorePermissionEvaluator implements PermissionEvaluator {
 
             hasPermission = entityPermissionEvaluator.hasPermission(user, persistentObject, permission);
 
+            if (context != null) {
+                context.countEvaluation(hasPermission);
+            }
+
         } else {
             LOG.error("Permission evaluation has been aborted.");
         }
@@ -113,6 +140,30 @@ public class ShogunCorePermissionEvaluator implements PermissionEvaluator {
         return hasPermission;
     }
 
+    /**
+     * Gets the "full" user from the database. The user is loaded only once
+     * per request, if called in the scope of a request.
+     *
+     * @param principalId
+     * @param context     The context of the current request (may be null).
+     * @return
+     */
+    private User getFullUser(Integer principalId, PermissionEvaluationContext context) {
+
+        if (context == null) {
+            return userDao.findById(principalId);
+        }
+
+        User user = context.getUser(principalId);
+
+        if (user == null) {
+            user = userDao.findById(principalId);
+            context.setUser(principalId, user);
+        }
+
+        return user;
+    }
+
     /**
      *
      */
@@ -172,6 +223,126 @@ public class ShogunCorePermissionEvaluator implements PermissionEvaluator {
         return this.hasPermission(authentication, entity, permission);
     }
 
+    /**
+     * Returns a criterion that restricts queries of the given dao to those
+     * entities on which the authenticated user has the given permission, i.e.
+     * the database side equivalent of
+     * {@link #hasPermission(Authentication, Object, Object)}.
+     * <p>
+     * Returns null if the permission can not be evaluated on the database side,
+     * e.g. if the (project specific) entity permission evaluator does not
+     * support it or if different evaluators are responsible for the mapped
+     * subclasses of the entity class. In this case
+     * {@link #hasPermission(Authentication, Object, Object)} has to be called
+     * for every entity.
+     *
+     * @param authentication
+     * @param dao
+     * @param permissionObject
+     * @return The criterion or null.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public Criterion getPermissionCriterion(Authentication authentication,
+                                            GenericHibernateDao<?, ?> dao, Object permissionObject) {
+
+        if (!(permissionObject instanceof String) || permissionEvaluatorFactory == null) {
+            return null;
+        }
+
+        final Permission permission = Permission.fromString((String) permissionObject);
+
+        if (permission == null) {
+            return null;
+        }
+
+        if (authentication == null) {
+            // permission evaluation would be aborted for every entity
+            return Restrictions.sqlRestriction("1=0");
+        }
+
+        Set<Class<?>> entityClasses;
+
+        try {
+            entityClasses = dao.getMappedEntityClasses();
+        } catch (HibernateException e) {
+            LOG.debug("Could not determine the mapped entity classes of type "
+                + dao.getEntityClass() + ": " + e.getMessage());
+            return null;
+        }
+
+        PersistentObjectPermissionEvaluator entityPermissionEvaluator = null;
+
+        for (Class<?> entityClass : entityClasses) {
+            PersistentObjectPermissionEvaluator candidate = permissionEvaluatorFactory
+                .getEntityPermissionEvaluator(entityClass);
+
+            if (candidate == null || !candidate.isPermissionCriterionSupported() ||
+                (entityPermissionEvaluator != null &&
+                    !entityPermissionEvaluator.getClass().equals(candidate.getClass()))) {
+                LOG.trace("Permissions on type " + dao.getEntityClass().getSimpleName()
+                    + " can not be evaluated on the database side");
+                return null;
+            }
+
+            entityPermissionEvaluator = candidate;
+        }
+
+        if (entityPermissionEvaluator == null) {
+            return null;
+        }
+
+        // the ID of the principal is sufficient, there is no need to load the
+        // "full" user from the database
+        final Object principalObject = authentication.getPrincipal();
+        final User user = principalObject instanceof User ? (User) principalObject : null;
+        final Integer userId = user == null ? null : user.getId();
+
+        return entityPermissionEvaluator.getPermissionCriterion(user, permission,
+            dao.createPermissionCriterion(userId, permission));
+    }
+
+    /**
+     * @param authentication
+     * @return Whether the authenticated user has the (super) admin role
+     * (considering the role hierarchy, if any).
+     */
+    public boolean isSuperAdmin(Authentication authentication) {
+        return isSuperAdmin(authentication, configHolder, roleHierarchy);
+    }
+
+    /**
+     * @param authentication
+     * @param configHolder   Provides the name of the super admin role (may be null)
+     * @param roleHierarchy  The (optional) role hierarchy
+     * @return Whether the authenticated user has the (super) admin role
+     * (considering the role hierarchy, if any).
+     */
+    public static boolean isSuperAdmin(Authentication authentication, ConfigHolder configHolder,
+                                       RoleHierarchy roleHierarchy) {
+
+        if (authentication == null || configHolder == null ||
+            StringUtils.isEmpty(configHolder.getSuperAdminRoleName())) {
+            return false;
+        }
+
+        final String superAdminRole = StringUtils.prependIfMissing(
+            configHolder.getSuperAdminRoleName(), "ROLE_");
+
+        Collection<? extends GrantedAuthority> authorities = authentication.getAuthorities();
+
+        if (roleHierarchy != null) {
+            authorities = roleHierarchy.getReachableGrantedAuthorities(authorities);
+        }
+
+        for (GrantedAuthority authority : authorities) {
+            if (superAdminRole.equals(authority.getAuthority())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     /**
      * @return the appContext
      */
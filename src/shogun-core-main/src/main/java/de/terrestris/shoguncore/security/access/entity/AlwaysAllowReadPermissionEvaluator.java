@@ -3,6 +3,8 @@ package de.terrestris.shoguncore.security.access.entity;
 import de.terrestris.shoguncore.model.PersistentObject;
 import de.terrestris.shoguncore.model.User;
 import de.terrestris.shoguncore.model.security.Permission;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Restrictions;
 
 /**
  * @author Nils Bühner
@@ -44,4 +46,18 @@ public class AlwaysAllowReadPermissionEvaluator<E extends PersistentObject> exte
         return super.hasPermission(user, entity, permission);
     }
 
+    /**
+     * Does not restrict READ access. Uses default implementation otherwise.
+     */
+    @Override
+    public Criterion getPermissionCriterion(User user, Permission permission,
+                                            Criterion explicitPermissionCriterion) {
+
+        if (permission.equals(Permission.READ)) {
+            return Restrictions.conjunction();
+        }
+
+        return super.getPermissionCriterion(user, permission, explicitPermissionCriterion);
+    }
+
 }
@@ -3,6 +3,8 @@ package de.terrestris.shoguncore.security.access.entity;
 import de.terrestris.shoguncore.model.User;
 import de.terrestris.shoguncore.model.security.Permission;
 import de.terrestris.shoguncore.model.security.PermissionCollection;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Restrictions;
 
 /**
  * @author Nils Bühner
@@ -38,4 +40,12 @@ public class PermissionCollectionPermissionEvaluator<E extends PermissionCollect
         return true;
     }
 
+    /**
+     * Does not restrict any access on permission collections.
+     */
+    @Override
+    public Criterion getPermissionCriterion(User user, Permission permission,
+                                            Criterion explicitPermissionCriterion) {
+        return Restrictions.conjunction();
+    }
 }
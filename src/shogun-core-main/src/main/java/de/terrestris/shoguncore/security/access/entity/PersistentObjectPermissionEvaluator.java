@@ -5,7 +5,9 @@ import de.terrestris.shoguncore.model.User;
 import de.terrestris.shoguncore.model.UserGroup;
 import de.terrestris.shoguncore.model.security.Permission;
 import de.terrestris.shoguncore.model.security.PermissionCollection;
+import de.terrestris.shoguncore.security.access.PermissionEvaluationContext;
 import org.apache.logging.log4j.Logger;
+import org.hibernate.criterion.Criterion;
 
 import java.util.HashSet;
 import java.util.Map;
@@ -79,6 +81,76 @@ public class PersistentObjectPermissionEvaluator<E extends PersistentObject> {
         return false;
     }
 
+    /**
+     * Returns the database side equivalent of {@link #hasPermission}, i.e. a
+     * criterion that restricts a query on the entity class to those entities
+     * on which the given user has the given permission.
+     * <p>
+     * Subclasses overriding {@link #hasPermission} (or one of the protected
+     * methods it uses) have to override this method accordingly, otherwise
+     * the permissions will be evaluated in memory (see
+     * {@link #isPermissionCriterionSupported()}).
+     *
+     * @param user
+     * @param permission
+     * @param explicitPermissionCriterion The criterion that restricts to the
+     *                                    entities with explicit user or group
+     *                                    permissions.
+     * @return
+     */
+    public Criterion getPermissionCriterion(User user, Permission permission,
+                                            Criterion explicitPermissionCriterion) {
+        return explicitPermissionCriterion;
+    }
+
+    /**
+     * @return Whether {@link #getPermissionCriterion} is consistent with
+     * {@link #hasPermission}, i.e. whether it is declared in the same class as
+     * {@link #hasPermission}, {@link #extractUserPermissions},
+     * {@link #extractGroupPermissions} and {@link #isMember} (or in a
+     * subclass of them).
+     */
+    public final boolean isPermissionCriterionSupported() {
+        final Class<?> permissionCriterionClass = getDeclaringClass("getPermissionCriterion",
+            User.class, Permission.class, Criterion.class);
+
+        if (permissionCriterionClass == null) {
+            return false;
+        }
+
+        final Class<?>[] evaluationClasses = {
+            getDeclaringClass("hasPermission", User.class, PersistentObject.class, Permission.class),
+            getDeclaringClass("extractUserPermissions", User.class, Map.class),
+            getDeclaringClass("extractGroupPermissions", User.class, Map.class),
+            getDeclaringClass("isMember", User.class, UserGroup.class)
+        };
+
+        for (Class<?> evaluationClass : evaluationClasses) {
+            if (evaluationClass == null || !evaluationClass.isAssignableFrom(permissionCriterionClass)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @param name
+     * @param parameterTypes
+     * @return The most specific class of this evaluator declaring the given
+     * (public or protected) method or null, if the method does not exist.
+     */
+    private Class<?> getDeclaringClass(String name, Class<?>... parameterTypes) {
+        for (Class<?> clazz = getClass(); clazz != null; clazz = clazz.getSuperclass()) {
+            try {
+                return clazz.getDeclaredMethod(name, parameterTypes).getDeclaringClass();
+            } catch (NoSuchMethodException e) {
+                // check the superclass
+            }
+        }
+        return null;
+    }
+
     /**
      * @param userPermissionsMap
      */
@@ -107,7 +179,7 @@ public class PersistentObjectPermissionEvaluator<E extends PersistentObject> {
 
         for (UserGroup userGroup : userGroupsWithPermissions) {
 
-            if (userGroup.getMembers().contains(user)) {
+            if (isMember(user, userGroup)) {
                 Set<Permission> groupPermissions = groupPermissionsMap.get(userGroup).getPermissions();
                 aggregatedGroupPermissions.addAll(groupPermissions);
             }
@@ -117,6 +189,32 @@ public class PersistentObjectPermissionEvaluator<E extends PersistentObject> {
         return new PermissionCollection(aggregatedGroupPermissions);
     }
 
+    /**
+     * Checks whether the given user is a member of the given group. Uses the
+     * (already loaded) group IDs of the user if the user has been loaded in
+     * the {@link PermissionEvaluationContext} of the current request, so the
+     * members of the group don't have to be initialized.
+     *
+     * @param user
+     * @param userGroup
+     * @return
+     */
+    protected boolean isMember(User user, UserGroup userGroup) {
+
+        if (user == null || userGroup == null) {
+            return false;
+        }
+
+        final PermissionEvaluationContext context = PermissionEvaluationContext.getCurrent();
+        final Set<Integer> userGroupIds = context == null ? null : context.getUserGroupIds(user);
+
+        if (userGroupIds != null && userGroup.getId() != null) {
+            return userGroupIds.contains(userGroup.getId());
+        }
+
+        return userGroup.getMembers().contains(user);
+    }
+
     /**
      * @return the entityClass
      */
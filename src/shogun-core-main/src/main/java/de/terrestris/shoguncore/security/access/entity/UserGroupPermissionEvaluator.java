@@ -3,6 +3,11 @@ package de.terrestris.shoguncore.security.access.entity;
 import de.terrestris.shoguncore.model.User;
 import de.terrestris.shoguncore.model.UserGroup;
 import de.terrestris.shoguncore.model.security.Permission;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.criterion.Subqueries;
 
 /**
  * @author Nils Bühner
@@ -36,7 +41,7 @@ public class UserGroupPermissionEvaluator<E extends UserGroup> extends
 
         // always grant READ access to groups in which the user itself is a member
         if (user != null && permission.equals(Permission.READ)
-            && userGroup.getMembers().contains(user)) {
+            && isMember(user, userGroup)) {
             LOG.trace("Granting READ access on group where the user is member.");
             return true;
         }
@@ -45,4 +50,26 @@ public class UserGroupPermissionEvaluator<E extends UserGroup> extends
         return super.hasPermission(user, userGroup, permission);
     }
 
+    /**
+     * Grants READ permission on groups where the user is a member.
+     * Uses default implementation otherwise.
+     */
+    @Override
+    public Criterion getPermissionCriterion(User user, Permission permission,
+                                            Criterion explicitPermissionCriterion) {
+
+        final Criterion permissionCriterion = super.getPermissionCriterion(user, permission,
+            explicitPermissionCriterion);
+
+        if (user != null && user.getId() != null && permission.equals(Permission.READ)) {
+            final DetachedCriteria groupsOfUser = DetachedCriteria.forClass(UserGroup.class, "memberGroup")
+                .createAlias("memberGroup.members", "member")
+                .add(Restrictions.eq("member.id", user.getId()))
+                .setProjection(Projections.id());
+
+            return Restrictions.or(Subqueries.propertyIn("id", groupsOfUser), permissionCriterion);
+        }
+
+        return permissionCriterion;
+    }
 }
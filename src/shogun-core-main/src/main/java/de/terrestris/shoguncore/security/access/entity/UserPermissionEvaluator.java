@@ -2,6 +2,8 @@ package de.terrestris.shoguncore.security.access.entity;
 
 import de.terrestris.shoguncore.model.User;
 import de.terrestris.shoguncore.model.security.Permission;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Restrictions;
 
 /**
  * @author Nils Bühner
@@ -44,4 +46,21 @@ public class UserPermissionEvaluator<E extends User> extends
         return super.hasPermission(user, entity, permission);
     }
 
+    /**
+     * Grants READ permission on the user object of the currently logged in
+     * user. Uses default implementation otherwise.
+     */
+    @Override
+    public Criterion getPermissionCriterion(User user, Permission permission,
+                                            Criterion explicitPermissionCriterion) {
+
+        final Criterion permissionCriterion = super.getPermissionCriterion(user, permission,
+            explicitPermissionCriterion);
+
+        if (user != null && user.getId() != null && permission.equals(Permission.READ)) {
+            return Restrictions.or(Restrictions.idEq(user.getId()), permissionCriterion);
+        }
+
+        return permissionCriterion;
+    }
 }
@@ -3,19 +3,43 @@ package de.terrestris.shoguncore.service;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import de.terrestris.shoguncore.bulk.BulkItemResult;
+import de.terrestris.shoguncore.bulk.BulkResult;
 import de.terrestris.shoguncore.dao.GenericHibernateDao;
 import de.terrestris.shoguncore.model.PersistentObject;
+import de.terrestris.shoguncore.model.security.Permission;
+import de.terrestris.shoguncore.paging.PagingRequest;
+import de.terrestris.shoguncore.paging.PagingResult;
+import de.terrestris.shoguncore.security.access.ShogunCorePermissionEvaluator;
+import de.terrestris.shoguncore.util.config.ConfigHolder;
 import de.terrestris.shoguncore.util.entity.EntityUtil;
 import org.hibernate.criterion.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.PermissionEvaluator;
+import org.springframework.security.access.expression.DenyAllPermissionEvaluator;
+import org.springframework.security.access.hierarchicalroles.RoleHierarchy;
 import org.springframework.security.access.prepost.PostAuthorize;
-import org.springframework.security.access.prepost.PostFilter;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.MultiValueMap;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * This abstract service class provides basic CRUD functionality.
@@ -26,6 +50,41 @@ import java.util.List;
 public abstract class AbstractCrudService<E extends PersistentObject, D extends GenericHibernateDao<E, Integer>>
     extends AbstractDaoService<E, D> {
 
+    /**
+     * The permission evaluator that is used to restrict the results of the
+     * find methods to the entities the current user may READ, i.e. the
+     * evaluator that is also used by the method security expressions. If no
+     * evaluator is configured, all permissions are denied (like by the
+     * default evaluator of the method security).
+     */
+    @Autowired(required = false)
+    private PermissionEvaluator permissionEvaluator = new DenyAllPermissionEvaluator();
+
+    /**
+     * Provides the name of the super admin role.
+     */
+    @Autowired(required = false)
+    @Qualifier("configHolder")
+    private ConfigHolder configHolder;
+
+    /**
+     * The (optional) role hierarchy.
+     */
+    @Autowired(required = false)
+    private RoleHierarchy roleHierarchy;
+
+    /**
+     * The number of entities after which the session will be cleared when
+     * streaming entities (see {@link #streamAll(Consumer)}).
+     */
+    private int streamClearInterval = 100;
+
+    /**
+     * The number of items of a bulk request after which the session will be
+     * flushed (as JDBC batch) and cleared (see {@link #bulkCreate(JsonNode, ObjectMapper)}).
+     */
+    private int bulkBatchSize = 50;
+
     /**
      * Constructor that sets the concrete entity class for the service.
      * Subclasses MUST call this constructor.
@@ -85,23 +144,60 @@ public abstract class AbstractCrudService<E extends PersistentObject, D extends
     }
 
     /**
-     *
+     * Returns all entities the current user may READ.
      */
-    @PostFilter("hasRole(@configHolder.getSuperAdminRoleName()) or hasPermission(filterObject, 'READ')")
     @Transactional(readOnly = true)
     public List<E> findAll() {
-        return dao.findAll();
+        return findReadable(permissionCriterion -> permissionCriterion == null ?
+            dao.findAll() : dao.findByCriteria(permissionCriterion));
     }
 
     /**
-     * Returns all entities, but possibly with only the passed fields set with actual values.
+     * Returns all entities (the current user may READ), but possibly with only the passed fields set with actual values.
      *
      *
      */
-    @PostFilter("hasRole(@configHolder.getSuperAdminRoleName()) or hasPermission(filterObject, 'READ')")
     public List<E> findAllRestricted(MultiValueMap<String, String> restrictToRequest) {
         List<String> restrictFields = EntityUtil.determineRestrictFields(restrictToRequest, getEntityClass());
-        return dao.findByCriteriaRestricted(restrictFields);
+        return findReadable(permissionCriterion ->
+            dao.findByCriteriaRestricted(restrictFields, permissionCriterion));
+    }
+
+    /**
+     * Passes all entities the current user may READ (ordered by ID) to the
+     * given consumer, one at a time, without holding all of them in memory
+     * (see {@link GenericHibernateDao#scroll(int, Consumer, Criterion...)}).
+     * If the READ permission can not be evaluated on the database side, it
+     * will be evaluated for each entity.
+     *
+     * @param consumer
+     * @return The number of entities passed to the consumer
+     */
+    @Transactional(readOnly = true)
+    public long streamAll(Consumer<E> consumer) {
+
+        final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        final String permission = Permission.READ.toString();
+
+        if (isSuperAdmin(authentication)) {
+            return dao.scroll(streamClearInterval, consumer);
+        }
+
+        final Criterion permissionCriterion = getPermissionCriterion(authentication, permission);
+
+        if (permissionCriterion != null) {
+            return dao.scroll(streamClearInterval, consumer, permissionCriterion);
+        }
+
+        final long[] count = {0};
+        dao.scroll(streamClearInterval, entity -> {
+            if (permissionEvaluator.hasPermission(authentication, entity, permission)) {
+                count[0]++;
+                consumer.accept(entity);
+            }
+        });
+
+        return count[0];
     }
 
     /**
@@ -128,7 +224,7 @@ public abstract class AbstractCrudService<E extends PersistentObject, D extends
      * (int == 1 || int == 2) &amp;&amp; (string == 'foo') &amp;&amp; (bool1 == false) &amp;&amp; (bool2 == true)
      * </pre>
      * <p>
-     * and return all entities that match this condition.
+     * and return all entities (the current user may READ) that match this condition.
      * <p>
      * This will only work on simple properties of an entity.
      * <p>
@@ -141,19 +237,78 @@ public abstract class AbstractCrudService<E extends PersistentObject, D extends
      * @param requestedFilter
      * @return
      */
-    @PostFilter("hasRole(@configHolder.getSuperAdminRoleName()) or hasPermission(filterObject, 'READ')")
     @Transactional(readOnly = true)
     public List<E> findBySimpleFilter(MultiValueMap<String, String> requestedFilter) {
 
         List<String> restrictFields = EntityUtil.determineRestrictFields(requestedFilter, getEntityClass());
         requestedFilter.remove(EntityUtil.RESTRICT_FIELDS_PARAM);
 
-        MultiValueMap<String, Object> origFieldNamesToCastedValues = EntityUtil
-            .validFieldNamesWithCastedValues(requestedFilter, getEntityClass());
+        final Criterion filter = createSimpleFilterCriterion(requestedFilter);
 
         // start with an empty list
         List<E> results = new ArrayList<>();
 
+        if (filter != null) {
+            results = findReadable(permissionCriterion ->
+                dao.findByCriteriaRestricted(restrictFields, filter, permissionCriterion));
+        }
+
+        return results;
+    }
+
+    /**
+     * Returns the requested page of all entities (the current user may READ),
+     * possibly with only the passed fields set with actual values (see
+     * {@link #findAllRestricted(MultiValueMap)}).
+     *
+     * @param restrictToRequest
+     * @param pagingRequest
+     * @return
+     */
+    @Transactional(readOnly = true)
+    public PagingResult<E> findAllRestricted(MultiValueMap<String, String> restrictToRequest,
+                                             PagingRequest pagingRequest) {
+        List<String> restrictFields = EntityUtil.determineRestrictFields(restrictToRequest, getEntityClass());
+        return findReadablePage(pagingRequest, restrictFields);
+    }
+
+    /**
+     * Returns the requested page of all entities (the current user may READ)
+     * that match the given filter (see {@link #findBySimpleFilter(MultiValueMap)}).
+     *
+     * @param requestedFilter
+     * @param pagingRequest
+     * @return
+     */
+    @Transactional(readOnly = true)
+    public PagingResult<E> findBySimpleFilter(MultiValueMap<String, String> requestedFilter,
+                                              PagingRequest pagingRequest) {
+
+        List<String> restrictFields = EntityUtil.determineRestrictFields(requestedFilter, getEntityClass());
+        requestedFilter.remove(EntityUtil.RESTRICT_FIELDS_PARAM);
+
+        final Criterion filter = createSimpleFilterCriterion(requestedFilter);
+
+        if (filter == null) {
+            return new PagingResult<E>(new ArrayList<>(), pagingRequest.isCountTotal() ? 0 : null);
+        }
+
+        return findReadablePage(pagingRequest, restrictFields, filter);
+    }
+
+    /**
+     * Translates the given filter (multi value map) into a criterion as
+     * described in {@link #findBySimpleFilter(MultiValueMap)}.
+     *
+     * @param requestedFilter
+     * @return The criterion or null, if the filter doesn't contain any valid
+     * field.
+     */
+    private Criterion createSimpleFilterCriterion(MultiValueMap<String, String> requestedFilter) {
+
+        MultiValueMap<String, Object> origFieldNamesToCastedValues = EntityUtil
+            .validFieldNamesWithCastedValues(requestedFilter, getEntityClass());
+
         List<Criterion> orPredicates = new ArrayList<>();
 
         if (origFieldNamesToCastedValues != null && !origFieldNamesToCastedValues.isEmpty()) {
@@ -176,15 +331,14 @@ public abstract class AbstractCrudService<E extends PersistentObject, D extends
                     orPredicates.add(or);
                 }
             }
+        }
 
-            if (!orPredicates.isEmpty()) {
-                final Criterion[] orArray = orPredicates.toArray(new Criterion[0]);
-                final Conjunction and = Restrictions.and(orArray);
-                results = dao.findByCriteriaRestricted(restrictFields, and);
-            }
+        if (orPredicates.isEmpty()) {
+            return null;
         }
 
-        return results;
+        final Criterion[] orArray = orPredicates.toArray(new Criterion[0]);
+        return Restrictions.and(orArray);
     }
 
     /**
@@ -194,12 +348,12 @@ public abstract class AbstractCrudService<E extends PersistentObject, D extends
      *
      * @param fieldName  The name of the field
      * @param fieldValue The element that should be set as value
-     * @return The list of objects
+     * @return The list of objects (the current user may READ)
      */
-    @PostFilter("hasRole(@configHolder.getSuperAdminRoleName()) or hasPermission(filterObject, 'READ')")
     @Transactional(readOnly = true)
     public List<E> findAllWhereFieldEquals(String fieldName, Object fieldValue) {
-        return dao.findAllWhereFieldEquals(fieldName, fieldValue);
+        return findReadable(permissionCriterion ->
+            dao.findAllWhereFieldEquals(fieldName, fieldValue, permissionCriterion));
     }
 
     /**
@@ -211,12 +365,395 @@ public abstract class AbstractCrudService<E extends PersistentObject, D extends
      *
      * @param fieldName  The name of the collection field
      * @param subElement The element that should be contained in the collection
-     * @return The list of objects
+     * @return The list of objects (the current user may READ)
      */
-    @PostFilter("hasRole(@configHolder.getSuperAdminRoleName()) or hasPermission(filterObject, 'READ')")
     @Transactional(readOnly = true)
     public List<E> findAllWithCollectionContaining(String fieldName, PersistentObject subElement) {
-        return dao.findAllWithCollectionContaining(fieldName, subElement);
+        return findReadable(permissionCriterion ->
+            dao.findAllWithCollectionContaining(fieldName, subElement, permissionCriterion));
+    }
+
+    /**
+     * Executes the given query and returns the entities the current user may
+     * READ (all entities for super admins).
+     * <p>
+     * If possible, the READ permission will be evaluated on the database side,
+     * i.e. the query will be called with a criterion restricting the results
+     * to the permitted entities (see {@link #getPermissionCriterion(Authentication, String)}).
+     * Otherwise (e.g. for project specific permission evaluators) the query
+     * will be called with <code>null</code> and the permission will be
+     * evaluated for each entity.
+     *
+     * @param query A query accepting an additional (nullable) criterion
+     * @return
+     */
+    protected List<E> findReadable(Function<Criterion, List<E>> query) {
+
+        final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        final String permission = Permission.READ.toString();
+
+        if (isSuperAdmin(authentication)) {
+            return query.apply(null);
+        }
+
+        final Criterion permissionCriterion = getPermissionCriterion(authentication, permission);
+
+        if (permissionCriterion != null) {
+            return query.apply(permissionCriterion);
+        }
+
+        List<E> entities = query.apply(null);
+        entities.removeIf(entity -> !permissionEvaluator.hasPermission(authentication, entity, permission));
+
+        return entities;
+    }
+
+    /**
+     * Returns the requested page of the entities (the current user may READ)
+     * matching the given criterions. The paging happens after the permission
+     * filtering, i.e. all pages (except the last) are complete.
+     * <p>
+     * If the READ permission can not be evaluated on the database side (see
+     * {@link #findReadable(Function)}), all matching entities will be
+     * loaded and filtered, before the requested page is cut out.
+     *
+     * @param pagingRequest
+     * @param restrictFields The (nullable) fields to restrict the results to
+     * @param criterion
+     * @return
+     */
+    protected PagingResult<E> findReadablePage(PagingRequest pagingRequest, List<String> restrictFields,
+                                               Criterion... criterion) {
+
+        final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        final String permission = Permission.READ.toString();
+
+        if (isSuperAdmin(authentication)) {
+            return dao.findPage(pagingRequest, restrictFields, criterion);
+        }
+
+        final Criterion permissionCriterion = getPermissionCriterion(authentication, permission);
+
+        if (permissionCriterion != null) {
+            Criterion[] criteria = new Criterion[criterion.length + 1];
+            System.arraycopy(criterion, 0, criteria, 0, criterion.length);
+            criteria[criterion.length] = permissionCriterion;
+
+            return dao.findPage(pagingRequest, restrictFields, criteria);
+        }
+
+        List<E> entities = dao.findPage(pagingRequest.withoutLimits(), restrictFields, criterion).getResultList();
+        entities.removeIf(entity -> !permissionEvaluator.hasPermission(authentication, entity, permission));
+
+        final int total = entities.size();
+        final int fromIndex = Math.min(pagingRequest.getStart() != null ? pagingRequest.getStart() : 0, total);
+        final int toIndex = pagingRequest.getLimit() != null ?
+            (int) Math.min((long) fromIndex + pagingRequest.getLimit(), total) : total;
+
+        List<E> page = fromIndex == 0 && toIndex == total ?
+            entities : new ArrayList<>(entities.subList(fromIndex, toIndex));
+
+        return new PagingResult<E>(page, pagingRequest.isCountTotal() ? total : null);
+    }
+
+    /**
+     * @param authentication
+     * @return Whether the authenticated user has the (super) admin role, i.e.
+     * whether all permissions are granted without being evaluated.
+     */
+    private boolean isSuperAdmin(Authentication authentication) {
+        return ShogunCorePermissionEvaluator.isSuperAdmin(authentication, configHolder, roleHierarchy);
+    }
+
+    /**
+     * Returns the criterion that restricts the queries of the DAO to the
+     * entities on which the authenticated user has the given permission
+     * (see {@link ShogunCorePermissionEvaluator#getPermissionCriterion(Authentication, GenericHibernateDao, Object)}).
+     * If no permission evaluator is configured, the criterion will match no
+     * entity at all.
+     *
+     * @param authentication
+     * @param permission
+     * @return The criterion or null, if the permission has to be evaluated for
+     * each entity.
+     */
+    private Criterion getPermissionCriterion(Authentication authentication, String permission) {
+        if (permissionEvaluator instanceof ShogunCorePermissionEvaluator) {
+            return ((ShogunCorePermissionEvaluator) permissionEvaluator)
+                .getPermissionCriterion(authentication, dao, permission);
+        }
+        if (permissionEvaluator instanceof DenyAllPermissionEvaluator) {
+            return Restrictions.sqlRestriction("1=0");
+        }
+        return null;
+    }
+
+    /**
+     * Creates the entities of the given JSON array in one transaction. Each
+     * item is checked on its own, i.e. items which can not be deserialized,
+     * have an ID or may not be created by the current user are reported as
+     * failed, while all other items are created.
+     * <p>
+     * The items are processed in chunks of <code>bulkBatchSize</code>: all
+     * items of a chunk are checked before any of them is saved, then the
+     * session is flushed (as JDBC batch) and cleared. The created entities are
+     * serialized into the results before the session is cleared. Persistence
+     * errors roll back the whole request.
+     *
+     * @param items        The JSON array of the entities to create
+     * @param objectMapper
+     * @return The results of all items
+     */
+    public BulkResult<E> bulkCreate(JsonNode items, ObjectMapper objectMapper) {
+        final BulkResult<E> result = new BulkResult<>();
+        final Predicate<E> mayCreate = createPermissionCheck(Permission.CREATE);
+
+        for (int chunkStart = 0; chunkStart < items.size(); chunkStart += bulkBatchSize) {
+            final int chunkEnd = Math.min(chunkStart + bulkBatchSize, items.size());
+            final Map<Integer, E> permitted = new LinkedHashMap<>();
+
+            for (int index = chunkStart; index < chunkEnd; index++) {
+                final E entity;
+                try {
+                    entity = objectMapper.treeToValue(items.get(index), getEntityClass());
+                } catch (JsonProcessingException e) {
+                    result.add(failure(index, null, HttpStatus.BAD_REQUEST, "Invalid entity: " + e.getOriginalMessage()));
+                    continue;
+                }
+
+                if (entity == null) {
+                    result.add(failure(index, null, HttpStatus.BAD_REQUEST, "The item is empty"));
+                } else if (entity.getId() != null) {
+                    // ID value MUST be null to assure that saveOrUpdate will
+                    // save and not update
+                    result.add(failure(index, entity.getId(), HttpStatus.BAD_REQUEST, "The ID MUST be null"));
+                } else if (!mayCreate.test(entity)) {
+                    result.add(failure(index, null, HttpStatus.FORBIDDEN, "Access is denied"));
+                } else {
+                    permitted.put(index, entity);
+                }
+            }
+
+            for (Map.Entry<Integer, E> item : permitted.entrySet()) {
+                final E entity = item.getValue();
+                this.saveOrUpdate(entity);
+                // serialize while the lazy associations can still be initialized
+                result.add(new BulkItemResult<>(item.getKey(), entity.getId(), HttpStatus.CREATED.value(),
+                    objectMapper.valueToTree(entity), null));
+            }
+
+            dao.flushAndClear();
+        }
+
+        result.sort();
+
+        LOG.debug("Bulk created " + result.getSucceeded() + " entities of type "
+            + getEntityClass().getSimpleName() + " (" + result.getFailed() + " failed)");
+
+        return result;
+    }
+
+    /**
+     * Updates the entities of the given JSON array (partially, like
+     * {@link #updatePartialWithJsonNode(PersistentObject, JsonNode, ObjectMapper)})
+     * in one transaction. Each item must contain the <code>id</code> of the
+     * entity to update. Items of unknown entities, entities the current user
+     * may not update or items which can not be applied are reported as failed,
+     * while all other entities are updated.
+     * <p>
+     * The entities of a chunk (see {@link #bulkCreate(JsonNode, ObjectMapper)})
+     * are loaded with one query and the permissions are checked before any of
+     * them is modified.
+     *
+     * @param items        The JSON array of the (partial) entities to update
+     * @param objectMapper
+     * @return The results of all items
+     */
+    public BulkResult<E> bulkUpdate(JsonNode items, ObjectMapper objectMapper) {
+        final BulkResult<E> result = new BulkResult<>();
+        final Predicate<E> mayUpdate = createPermissionCheck(Permission.UPDATE);
+        final Set<Integer> requestedIds = new HashSet<>();
+
+        for (int chunkStart = 0; chunkStart < items.size(); chunkStart += bulkBatchSize) {
+            final int chunkEnd = Math.min(chunkStart + bulkBatchSize, items.size());
+            final Map<Integer, Integer> chunkIds = getItemIds(items, chunkStart, chunkEnd, true, requestedIds, result);
+            final Map<Integer, E> entities = findAllById(chunkIds.values());
+            final Map<Integer, E> permitted = new LinkedHashMap<>();
+
+            for (Map.Entry<Integer, Integer> item : chunkIds.entrySet()) {
+                final E entity = entities.get(item.getValue());
+                if (entity == null) {
+                    result.add(failure(item.getKey(), item.getValue(), HttpStatus.NOT_FOUND, "Not found"));
+                } else if (!mayUpdate.test(entity)) {
+                    result.add(failure(item.getKey(), item.getValue(), HttpStatus.FORBIDDEN, "Access is denied"));
+                } else {
+                    permitted.put(item.getKey(), entity);
+                }
+            }
+
+            for (Map.Entry<Integer, E> item : permitted.entrySet()) {
+                final int index = item.getKey();
+                final Integer id = item.getValue().getId();
+
+                E entity;
+                try {
+                    entity = objectMapper.readerForUpdating(item.getValue()).readValue(items.get(index));
+                } catch (IOException e) {
+                    // don't persist the partially applied changes
+                    dao.evict(item.getValue());
+                    result.add(failure(index, id, HttpStatus.BAD_REQUEST, "Invalid entity: " + e.getMessage()));
+                    continue;
+                }
+
+                this.saveOrUpdate(entity);
+                result.add(new BulkItemResult<>(index, id, HttpStatus.OK.value(), objectMapper.valueToTree(entity), null));
+            }
+
+            dao.flushAndClear();
+        }
+
+        result.sort();
+
+        LOG.debug("Bulk updated " + result.getSucceeded() + " entities of type "
+            + getEntityClass().getSimpleName() + " (" + result.getFailed() + " failed)");
+
+        return result;
+    }
+
+    /**
+     * Deletes the entities with the IDs of the given JSON array (either plain
+     * IDs or objects with an <code>id</code>) in one transaction. IDs of
+     * unknown entities or entities the current user may not delete are
+     * reported as failed, while all other entities are deleted.
+     * <p>
+     * The entities of a chunk (see {@link #bulkCreate(JsonNode, ObjectMapper)})
+     * are loaded with one query.
+     *
+     * @param items The JSON array of the IDs of the entities to delete
+     * @return The results of all items
+     */
+    public BulkResult<E> bulkDelete(JsonNode items) {
+        final BulkResult<E> result = new BulkResult<>();
+        final Predicate<E> mayDelete = createPermissionCheck(Permission.DELETE);
+        final Set<Integer> requestedIds = new HashSet<>();
+
+        for (int chunkStart = 0; chunkStart < items.size(); chunkStart += bulkBatchSize) {
+            final int chunkEnd = Math.min(chunkStart + bulkBatchSize, items.size());
+            final Map<Integer, Integer> chunkIds = getItemIds(items, chunkStart, chunkEnd, false, requestedIds, result);
+            final Map<Integer, E> entities = findAllById(chunkIds.values());
+            final Map<Integer, E> permitted = new LinkedHashMap<>();
+
+            for (Map.Entry<Integer, Integer> item : chunkIds.entrySet()) {
+                final E entity = entities.get(item.getValue());
+                if (entity == null) {
+                    result.add(failure(item.getKey(), item.getValue(), HttpStatus.NOT_FOUND, "Not found"));
+                } else if (!mayDelete.test(entity)) {
+                    result.add(failure(item.getKey(), item.getValue(), HttpStatus.FORBIDDEN, "Access is denied"));
+                } else {
+                    permitted.put(item.getKey(), entity);
+                }
+            }
+
+            for (Map.Entry<Integer, E> item : permitted.entrySet()) {
+                final Integer id = item.getValue().getId();
+                this.delete(item.getValue());
+                result.add(new BulkItemResult<>(item.getKey(), id, HttpStatus.NO_CONTENT.value(), null, null));
+            }
+
+            dao.flushAndClear();
+        }
+
+        result.sort();
+
+        LOG.debug("Bulk deleted " + result.getSucceeded() + " entities of type "
+            + getEntityClass().getSimpleName() + " (" + result.getFailed() + " failed)");
+
+        return result;
+    }
+
+    /**
+     * Reads the IDs of the items in the given range of a bulk request. Items
+     * without a valid (or with an already requested) ID are added to the
+     * result as failed.
+     *
+     * @param items         The JSON array of the bulk request
+     * @param fromIndex     The index of the first item (inclusive)
+     * @param toIndex       The index of the last item (exclusive)
+     * @param objectsOnly   Whether the items must be objects (or may be plain IDs)
+     * @param requestedIds  The IDs of all items read so far
+     * @param result        The result to add failed items to
+     * @return The IDs of the valid items by their index
+     */
+    private Map<Integer, Integer> getItemIds(JsonNode items, int fromIndex, int toIndex, boolean objectsOnly,
+                                             Set<Integer> requestedIds, BulkResult<E> result) {
+        final Map<Integer, Integer> ids = new LinkedHashMap<>();
+
+        for (int index = fromIndex; index < toIndex; index++) {
+            final JsonNode item = items.get(index);
+            final JsonNode idNode = item.isObject() ? item.get("id") : (objectsOnly ? null : item);
+
+            if (idNode == null || !idNode.isIntegralNumber() || !idNode.canConvertToInt()) {
+                result.add(failure(index, null, HttpStatus.BAD_REQUEST, "The item has no valid 'id'"));
+            } else if (!requestedIds.add(idNode.intValue())) {
+                result.add(failure(index, idNode.intValue(), HttpStatus.BAD_REQUEST, "Duplicate ID"));
+            } else {
+                ids.put(index, idNode.intValue());
+            }
+        }
+
+        return ids;
+    }
+
+    /**
+     * @param ids
+     * @return The entities with the given IDs (loaded with one query) by ID.
+     */
+    private Map<Integer, E> findAllById(Collection<Integer> ids) {
+        final Map<Integer, E> entities = new HashMap<>();
+        if (!ids.isEmpty()) {
+            for (E entity : dao.findByCriteria(Restrictions.in("id", ids))) {
+                entities.put(entity.getId(), entity);
+            }
+        }
+        return entities;
+    }
+
+    /**
+     * Creates the permission check of the items of a bulk request. As the
+     * bulk methods call {@link #saveOrUpdate(PersistentObject)} and
+     * {@link #delete(PersistentObject)} directly (i.e. not via the proxy of
+     * the method security), this is the only check of the items. It uses the
+     * same permission evaluator as the method security expressions and
+     * denies everything if no evaluator is configured.
+     *
+     * @param permission
+     * @return A check whether the current user has the given permission on
+     * an entity (always true for super admins).
+     */
+    private Predicate<E> createPermissionCheck(Permission permission) {
+        final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+        if (isSuperAdmin(authentication)) {
+            return entity -> true;
+        }
+
+        if (permissionEvaluator instanceof DenyAllPermissionEvaluator) {
+            return entity -> false;
+        }
+
+        final String permissionName = permission.toString();
+        return entity -> permissionEvaluator.hasPermission(authentication, entity, permissionName);
+    }
+
+    /**
+     * @param index
+     * @param id
+     * @param status
+     * @param error
+     * @return The result of a failed item of a bulk request.
+     */
+    private BulkItemResult<E> failure(int index, Integer id, HttpStatus status, String error) {
+        return new BulkItemResult<>(index, id, status.value(), null, error);
     }
 
     /**
@@ -227,4 +764,20 @@ public abstract class AbstractCrudService<E extends PersistentObject, D extends
         dao.delete(e);
     }
 
+    /**
+     * @param streamClearInterval the streamClearInterval to set
+     */
+    @Value("${rest.stream.clearInterval:100}")
+    public void setStreamClearInterval(int streamClearInterval) {
+        this.streamClearInterval = streamClearInterval;
+    }
+
+    /**
+     * @param bulkBatchSize the bulkBatchSize to set
+     */
+    @Value("${rest.bulk.batchSize:50}")
+    public void setBulkBatchSize(int bulkBatchSize) {
+        this.bulkBatchSize = Math.max(bulkBatchSize, 1);
+    }
+
 }
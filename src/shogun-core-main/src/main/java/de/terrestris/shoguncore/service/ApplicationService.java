@@ -1,11 +1,26 @@
 package de.terrestris.shoguncore.service;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.security.access.prepost.PostAuthorize;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import de.terrestris.shoguncore.dao.ApplicationDao;
 import de.terrestris.shoguncore.model.Application;
+import de.terrestris.shoguncore.model.PersistentObject;
+import de.terrestris.shoguncore.util.application.ApplicationSnapshotCache;
+import de.terrestris.shoguncore.util.application.ApplicationSnapshotCache.Snapshot;
 
 /**
  * Service class for the {@link Application} model.
@@ -17,6 +32,12 @@ import de.terrestris.shoguncore.model.Application;
 public class ApplicationService<E extends Application, D extends ApplicationDao<E>>
     extends PermissionAwareCrudService<E, D> {
 
+    /**
+     * The cache for the serialized applications.
+     */
+    @Autowired(required = false)
+    private ApplicationSnapshotCache applicationSnapshotCache;
+
     /**
      * Default constructor, which calls the type-constructor
      */
@@ -44,4 +65,74 @@ public class ApplicationService<E extends Application, D extends ApplicationDao<
     public void setDao(D dao) {
         this.dao = dao;
     }
+
+    /**
+     * Returns the application with the given ID with its complete graph
+     * initialized (see {@link ApplicationDao#findByIdWithGraph(Integer)}).
+     *
+     * @param id
+     * @return The application or null, if it does not exist
+     */
+    @PostAuthorize("hasRole(@configHolder.getSuperAdminRoleName()) or hasPermission(returnObject, 'READ')")
+    @Transactional(readOnly = true)
+    public E findByIdWithGraph(Integer id) {
+        return dao.findByIdWithGraph(id);
+    }
+
+    /**
+     * Returns all applications the current user may READ with their complete
+     * graphs initialized (see {@link ApplicationDao#findAllWithGraph(org.hibernate.criterion.Criterion...)}).
+     */
+    @Transactional(readOnly = true)
+    public List<E> findAllWithGraph() {
+        final List<E> applications = findAll();
+        dao.initializeGraph(applications);
+        return applications;
+    }
+
+    /**
+     * Returns the serialized (JSON) configuration of the application with the
+     * given ID. The snapshot will be taken from the cache if the application
+     * (or any entity of its graph) has not been changed since it has been
+     * serialized the last time.
+     *
+     * @param id
+     * @param objectMapper The mapper to serialize the application with
+     * @return The snapshot or null, if the application does not exist
+     * @throws JsonProcessingException
+     */
+    @PreAuthorize("hasRole(@configHolder.getSuperAdminRoleName())"
+        + " or hasPermission(#id, 'de.terrestris.shoguncore.model.Application', 'READ')")
+    @Transactional(readOnly = true)
+    public Snapshot getSnapshot(Integer id, ObjectMapper objectMapper) throws JsonProcessingException {
+        if (applicationSnapshotCache != null) {
+            final Snapshot snapshot = applicationSnapshotCache.get(id);
+            if (snapshot != null) {
+                return snapshot;
+            }
+        }
+
+        // has to be read before the application will be loaded
+        final long version = applicationSnapshotCache != null ? applicationSnapshotCache.getVersion() : 0;
+
+        final E application = dao.findById(id);
+
+        if (application == null) {
+            return null;
+        }
+
+        final Set<Integer> dependencies = dao.initializeGraph(Collections.singletonList(application)).stream()
+            .map(PersistentObject::getId)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toSet());
+
+        final byte[] json = objectMapper.writeValueAsBytes(application);
+
+        if (applicationSnapshotCache == null) {
+            return new Snapshot(id, json, dependencies);
+        }
+
+        return applicationSnapshotCache.put(id, json, dependencies, version);
+    }
+
 }
@@ -1,19 +1,34 @@
 package de.terrestris.shoguncore.service;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.io.IOUtils;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Restrictions;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import de.terrestris.shoguncore.dao.FileDao;
 import de.terrestris.shoguncore.model.File;
+import de.terrestris.shoguncore.paging.PagingRequest;
+import de.terrestris.shoguncore.util.blob.BlobStore;
 
 /**
  * Service class for the {@link File} model.
+ * <p>
+ * If a {@link BlobStore} is configured, the content of uploaded files will
+ * be stored there and the entities only hold the key of the content.
+ * Otherwise the content is stored as a bytearray in the database.
  *
  * @author Daniel Koch
  * @author Johannes Weskamm
@@ -22,6 +37,11 @@ import de.terrestris.shoguncore.model.File;
 public class FileService<E extends File, D extends FileDao<E>>
     extends PermissionAwareCrudService<E, D> {
 
+    /**
+     * The (optional) store for the content of the files.
+     */
+    protected BlobStore blobStore;
+
     /**
      * Default constructor, which calls the type-constructor
      */
@@ -51,7 +71,8 @@ public class FileService<E extends File, D extends FileDao<E>>
     }
 
     /**
-     * Method persists a given MultipartFile as a bytearray in the database
+     * Method persists a given MultipartFile in the blob store (if configured)
+     * or as a bytearray in the database
      *
      * @param file
      * @throws Exception
@@ -70,19 +91,21 @@ public class FileService<E extends File, D extends FileDao<E>>
         }
 
         InputStream is = null;
-        byte[] fileByteArray = null;
         E fileToPersist = getEntityClass().newInstance();
 
         try {
             is = file.getInputStream();
-            fileByteArray = IOUtils.toByteArray(is);
+            if (isBlobStoreEnabled()) {
+                fileToPersist.setBlobKey(blobStore.put(is));
+            } else {
+                fileToPersist.setFile(IOUtils.toByteArray(is));
+            }
         } catch (Exception e) {
-            throw new Exception("Could not create the bytearray: " + e.getMessage());
+            throw new Exception("Could not store the file: " + e.getMessage());
         } finally {
             IOUtils.closeQuietly(is);
         }
 
-        fileToPersist.setFile(fileByteArray);
         fileToPersist.setFileType(file.getContentType());
         fileToPersist.setFileName(file.getOriginalFilename());
 
@@ -91,4 +114,158 @@ public class FileService<E extends File, D extends FileDao<E>>
         return fileToPersist;
     }
 
+    /**
+     * Opens the content of the given file, if it is stored in the blob store.
+     * The returned channel must be closed by the caller.
+     *
+     * @param file
+     * @return The open channel of the content or null, if the content is
+     * stored in the database.
+     * @throws IOException
+     */
+    public FileChannel openFile(E file) throws IOException {
+        return openBlob(file.getBlobKey());
+    }
+
+    /**
+     * @param blobKey
+     * @return The open channel of the blob or null, if the key is null.
+     * @throws IOException
+     */
+    protected FileChannel openBlob(String blobKey) throws IOException {
+        if (blobKey == null) {
+            return null;
+        }
+        if (blobStore == null) {
+            throw new IOException("The content " + blobKey + " is stored in a blob store, which is not available");
+        }
+        return blobStore.open(blobKey);
+    }
+
+    /**
+     * Deletes the file and (after the transaction has been committed) its
+     * content in the blob store, if it is not referenced by other files.
+     *
+     * @param file
+     */
+    @Override
+    @PreAuthorize("hasRole(@configHolder.getSuperAdminRoleName()) or hasPermission(#file, 'DELETE')")
+    public void delete(E file) {
+        Set<String> blobKeys = getBlobKeys(file);
+
+        dao.delete(file);
+
+        if (blobStore == null || blobKeys.isEmpty()) {
+            return;
+        }
+
+        final long checkTime = System.currentTimeMillis();
+
+        for (String blobKey : blobKeys) {
+            if (dao.isBlobReferenced(blobKey)) {
+                continue;
+            }
+
+            Runnable deletion = () -> {
+                try {
+                    blobStore.delete(blobKey, checkTime);
+                } catch (IOException e) {
+                    LOG.warn("Could not delete the blob " + blobKey + ": " + e.getMessage());
+                }
+            };
+
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronizationAdapter() {
+                        @Override
+                        public void afterCommit() {
+                            deletion.run();
+                        }
+                    });
+            } else {
+                deletion.run();
+            }
+        }
+    }
+
+    /**
+     * Moves the content of (at most) the given number of files, which are
+     * stored in the database, to the blob store. Has to be called repeatedly
+     * until it returns 0 to migrate all files.
+     *
+     * @param batchSize
+     * @return The number of migrated files.
+     * @throws IOException
+     */
+    @PreAuthorize("hasRole(@configHolder.getSuperAdminRoleName())")
+    public int migrateToBlobStore(int batchSize) throws IOException {
+        if (!isBlobStoreEnabled()) {
+            throw new IllegalStateException("The blob store is not enabled");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be positive");
+        }
+
+        List<E> files = dao.findPage(new PagingRequest(null, batchSize, null, null, false), null,
+            createNotMigratedCriterion()).getResultList();
+
+        for (E file : files) {
+            migrateToBlobStore(file);
+            dao.saveOrUpdate(file);
+        }
+
+        LOG.info("Migrated " + files.size() + " files of type " + getEntityClass().getSimpleName()
+            + " to the blob store");
+
+        return files.size();
+    }
+
+    /**
+     * @return The criterion matching all files whose content is (still)
+     * stored in the database.
+     */
+    protected Criterion createNotMigratedCriterion() {
+        return Restrictions.and(Restrictions.isNull("blobKey"), Restrictions.isNotNull("file"));
+    }
+
+    /**
+     * Moves the content of the given file to the blob store.
+     *
+     * @param file
+     * @throws IOException
+     */
+    protected void migrateToBlobStore(E file) throws IOException {
+        if (file.getBlobKey() == null && file.getFile() != null) {
+            file.setBlobKey(blobStore.put(file.getFile()));
+            file.setFile(null);
+        }
+    }
+
+    /**
+     * @param file
+     * @return The keys of all blobs referenced by the given file.
+     */
+    protected Set<String> getBlobKeys(E file) {
+        Set<String> blobKeys = new HashSet<>();
+        if (file != null && file.getBlobKey() != null) {
+            blobKeys.add(file.getBlobKey());
+        }
+        return blobKeys;
+    }
+
+    /**
+     * @return Whether new content will be stored in the blob store.
+     */
+    protected boolean isBlobStoreEnabled() {
+        return blobStore != null && blobStore.isEnabled();
+    }
+
+    /**
+     * @param blobStore the blobStore to set
+     */
+    @Autowired(required = false)
+    public void setBlobStore(BlobStore blobStore) {
+        this.blobStore = blobStore;
+    }
+
 }
@@ -9,7 +9,11 @@ import de.terrestris.shoguncore.util.enumeration.OgcEnum.OperationType;
 import de.terrestris.shoguncore.util.enumeration.OgcEnum.ServiceType;
 import de.terrestris.shoguncore.util.http.HttpUtil;
 import de.terrestris.shoguncore.util.interceptor.*;
+import de.terrestris.shoguncore.util.interceptor.InterceptorMetrics.Phase;
+import de.terrestris.shoguncore.util.interceptor.InterceptorMetrics.Timer;
 import de.terrestris.shoguncore.util.model.Response;
+import de.terrestris.shoguncore.util.model.StreamingResponse;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.Header;
 import org.apache.http.HttpException;
@@ -22,17 +26,19 @@ import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.servlet.http.HttpServletRequest;
-import javax.transaction.Transactional;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
 import java.util.Map.Entry;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -85,34 +91,119 @@ public class GeoServerInterceptorService {
 
     private static final Pattern WMTS_PATTERN = Pattern.compile("/[^/]+/wmts.action/\\d+/(.*)");
 
+    /**
+     * The service name of the WMTS requests in the metrics.
+     */
+    private static final String WMTS_SERVICE = "WMTS";
+
     /**
      *
      */
     @Autowired
     OgcMessageDistributor ogcMessageDistributor;
 
+    /**
+     * The cache for the capabilities of the endpoint scoped WMS.
+     */
+    @Autowired(required = false)
+    CapabilitiesCache capabilitiesCache;
+
     /**
      *
      */
     @Autowired
     InterceptorRuleService<InterceptorRule, ?> interceptorRuleService;
 
-    @Transactional
+    /**
+     * The (disk backed) cache for the tiles requested via the WMTS interceptor.
+     */
+    @Autowired(required = false)
+    WmtsTileCache wmtsTileCache;
+
+    /**
+     * The latencies of the phases of all intercepted requests.
+     */
+    @Autowired(required = false)
+    InterceptorMetrics interceptorMetrics;
+
+    /**
+     * Used to load the WMTS data sources if the tile cache is not available.
+     */
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Forwards the given (RESTful) WMTS request to the URL of the WMTS data
+     * source with the given id. If the tile cache is available, cached tiles
+     * will be served without contacting the WMTS (or the database).
+     *
+     * @param request
+     * @param serviceId The id of the WMTS data source
+     * @return The tile, a {@link de.terrestris.shoguncore.util.model.FileResponse}
+     * if served from the cache.
+     * @throws UnsupportedEncodingException
+     * @throws InterceptorException
+     * @throws HttpException
+     * @throws URISyntaxException
+     */
     public Response interceptWmtsRequest(HttpServletRequest request, String serviceId) throws UnsupportedEncodingException, InterceptorException, HttpException, URISyntaxException {
-        Matcher matcher = WMTS_PATTERN.matcher(request.getRequestURI());
-        int id = Integer.parseInt(serviceId);
-        if (!matcher.matches()) {
-            throw new InterceptorException("No WMTS request path found!");
-        }
-        String path = matcher.group(1);
-        WmtsLayerDataSource dataSource = wmtsLayerDataSourceDao.findById(id);
-        String baseUrl = dataSource.getUrl();
-        Response response = HttpUtil.get(baseUrl + "/" + path);
+        final Timer timer = startTimer();
+        boolean failed = true;
 
-        HttpHeaders forwardingHeaders = getResponseHeadersToForward(response.getHeaders());
-        response.setHeaders(forwardingHeaders);
+        try {
+            Matcher matcher = WMTS_PATTERN.matcher(request.getRequestURI());
+            int id = Integer.parseInt(serviceId);
+            if (!matcher.matches()) {
+                throw new InterceptorException("No WMTS request path found!");
+            }
+            String path = matcher.group(1);
+            timer.lap(Phase.PARSE);
+
+            long cacheVersion = 0;
+            String baseUrl;
 
-        return response;
+            if (wmtsTileCache != null) {
+                cacheVersion = wmtsTileCache.getVersion();
+
+                Response cachedTile = wmtsTileCache.get(id, path);
+                timer.lap(Phase.CACHE);
+                if (cachedTile != null) {
+                    failed = false;
+                    return cachedTile;
+                }
+
+                baseUrl = wmtsTileCache.getUrl(id);
+            } else {
+                // the request may be handled by an async worker thread
+                // without (transactional) session
+                baseUrl = transactionTemplate.execute(status -> {
+                    WmtsLayerDataSource dataSource = wmtsLayerDataSourceDao.findById(id);
+                    return dataSource != null ? dataSource.getUrl() : null;
+                });
+            }
+            timer.lap(Phase.DATA_SOURCE_LOOKUP);
+
+            if (baseUrl == null) {
+                throw new InterceptorException("No WMTS data source with id " + id + " found!");
+            }
+
+            Response response = HttpUtil.get(baseUrl + "/" + path);
+            timer.lap(Phase.UPSTREAM);
+
+            HttpHeaders forwardingHeaders = getResponseHeadersToForward(response.getHeaders());
+            response.setHeaders(forwardingHeaders);
+            timer.lap(Phase.HEADER_FILTER);
+
+            if (wmtsTileCache != null) {
+                wmtsTileCache.put(id, path, response, cacheVersion);
+                timer.lap(Phase.CACHE);
+            }
+
+            failed = false;
+            return response;
+        } finally {
+            recordMetrics(timer, WMTS_SERVICE, OperationType.GET_TILE.toString(),
+                serviceId, request, failed);
+        }
     }
 
     /**
@@ -142,46 +233,221 @@ public class GeoServerInterceptorService {
         throws InterceptorException, URISyntaxException,
         HttpException, IOException {
 
-        // wrap the request, we want to manipulate it
-        MutableHttpServletRequest mutableRequest =
-            new MutableHttpServletRequest(request);
-        if (endpoint.isPresent()) {
-            mutableRequest.addParameter("CUSTOM_ENDPOINT", endpoint.get());
-            mutableRequest.addParameter("CONTEXT_PATH", request.getContextPath());
+        final Timer timer = startTimer();
+        OgcMessage message = null;
+        boolean failed = true;
+
+        try {
+            // wrap the request, we want to manipulate it
+            MutableHttpServletRequest mutableRequest =
+                new MutableHttpServletRequest(request);
+            if (endpoint.isPresent()) {
+                mutableRequest.addParameter("CUSTOM_ENDPOINT", endpoint.get());
+                mutableRequest.addParameter("CONTEXT_PATH", request.getContextPath());
+            }
+
+            // get the OGC message information (service, request, endPoint)
+            message = getOgcMessage(mutableRequest, timer);
+
+            // check whether WMS reflector endpoint should be called
+            final boolean useWmsReflector = shouldReflectEndpointBeCalled(mutableRequest, message);
+
+            // get the GeoServer base URI by the provided request
+            URI geoServerBaseUri = getGeoServerBaseURI(message, useWmsReflector);
+
+            // set the GeoServer base URI to the (wrapped) request
+            mutableRequest.setRequestURI(geoServerBaseUri);
+            timer.lap(Phase.PARSE);
+
+            // intercept the request (if needed)
+            mutableRequest = ogcMessageDistributor
+                .distributeToRequestInterceptor(mutableRequest, message);
+            timer.lap(Phase.REQUEST_INTERCEPTOR);
+
+            if (capabilitiesCache != null &&
+                capabilitiesCache.isCacheable(message, endpoint.orElse(null))) {
+                Response cachedResponse = interceptCapabilitiesRequest(mutableRequest,
+                    message, endpoint.get(), timer);
+                failed = false;
+                return cachedResponse;
+            }
+
+            if (ogcMessageDistributor.isResponsePassThrough(message)) {
+                // the response won't be intercepted at all, so there is no need
+                // to read it into memory: pass it through as stream
+                StreamingResponse streamingResponse = sendStreamingRequest(mutableRequest);
+
+                try {
+                    timer.lap(Phase.UPSTREAM);
+
+                    streamingResponse.setHeaders(getResponseHeadersToForward(
+                        streamingResponse.getHeaders()
+                    ));
+                    timer.lap(Phase.HEADER_FILTER);
+
+                    failed = false;
+                } finally {
+                    if (failed) {
+                        // the stream won't be consumed, release the (pooled)
+                        // upstream connection
+                        IOUtils.closeQuietly(streamingResponse);
+                    }
+                }
+
+                return streamingResponse;
+            }
+
+            // send the request
+            // TODO: Move to global proxy class
+            Response response = sendRequest(mutableRequest);
+            timer.lap(Phase.UPSTREAM);
+
+            // intercept the response (if needed)
+            Response interceptedResponse = ogcMessageDistributor
+                .distributeToResponseInterceptor(mutableRequest, response, message);
+            timer.lap(Phase.RESPONSE_INTERCEPTOR);
+
+            // finally filter the white-listed response headers
+            // TODO: Move to global proxy class
+            HttpHeaders forwardingHeaders = getResponseHeadersToForward(
+                interceptedResponse.getHeaders()
+            );
+            interceptedResponse.setHeaders(forwardingHeaders);
+            timer.lap(Phase.HEADER_FILTER);
+
+            failed = false;
+            return interceptedResponse;
+        } finally {
+            recordMetrics(timer,
+                message != null && message.getService() != null ? message.getService().toString() : null,
+                message != null && message.getOperation() != null ? message.getOperation().toString() : null,
+                message != null ? message.getEndPoint() : null,
+                request, failed);
+        }
+    }
+
+    /**
+     * Returns the latencies (histograms by service, operation, endpoint and
+     * phase) of all intercepted requests and the phase breakdown of the last
+     * slow requests. Only allowed for the SUPERADMIN.
+     *
+     * @return The metrics or an empty map, if the metrics are not available
+     */
+    @PreAuthorize("hasRole(@configHolder.getSuperAdminRoleName())")
+    public Map<String, Object> getInterceptorMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+
+        if (interceptorMetrics == null) {
+            return metrics;
+        }
+
+        metrics.put("enabled", interceptorMetrics.isEnabled());
+        metrics.put("histograms", interceptorMetrics.getHistograms());
+        metrics.put("slowRequestThreshold", interceptorMetrics.getSlowRequestThreshold());
+        metrics.put("slowRequestCount", interceptorMetrics.getSlowRequestCount());
+        metrics.put("slowRequests", interceptorMetrics.getSlowRequests());
+
+        return metrics;
+    }
+
+    /**
+     * @return A started timer for the phases of a request.
+     */
+    private Timer startTimer() {
+        return interceptorMetrics != null ? interceptorMetrics.start() : Timer.DISABLED;
+    }
+
+    /**
+     * Records the phases measured by the given timer (if the metrics are
+     * available).
+     *
+     * @param timer
+     * @param service
+     * @param operation
+     * @param endpoint
+     * @param request
+     * @param failed
+     */
+    private void recordMetrics(Timer timer, String service, String operation, String endpoint,
+                               HttpServletRequest request, boolean failed) {
+        if (interceptorMetrics == null || !timer.isEnabled()) {
+            return;
         }
 
-        // get the OGC message information (service, request, endPoint)
-        OgcMessage message = getOgcMessage(mutableRequest);
+        try {
+            interceptorMetrics.record(timer, service, operation, endpoint,
+                request.getRequestURI(), failed);
+        } catch (Exception e) {
+            LOG.warn("Could not record the interceptor metrics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the capabilities of the given endpoint based on the cached
+     * (not intercepted) document, if possible. The response interceptors are
+     * applied on every request, as their result may depend on the request
+     * (e.g. on the current user). If the response won't be intercepted, the
+     * cached document is returned as is. Either way, the response carries a
+     * strong ETag (of the returned content) and conditional requests of
+     * clients having the current document already are answered with 304
+     * (Not Modified).
+     *
+     * @param mutableRequest
+     * @param message
+     * @param endpoint
+     * @return
+     * @throws InterceptorException
+     * @throws URISyntaxException
+     * @throws HttpException
+     * @throws IOException
+     */
+    private Response interceptCapabilitiesRequest(MutableHttpServletRequest mutableRequest,
+                                                  OgcMessage message, String endpoint, Timer timer)
+        throws InterceptorException, URISyntaxException, HttpException, IOException {
+
+        String cacheKey = CapabilitiesCache.createKey(endpoint, mutableRequest);
+
+        CapabilitiesCache.Entry entry = capabilitiesCache.get(cacheKey);
+        timer.lap(Phase.CACHE);
 
-        // check whether WMS reflector endpoint should be called
-        final boolean useWmsReflector = shouldReflectEndpointBeCalled(mutableRequest, message);
+        Response response = null;
 
-        // get the GeoServer base URI by the provided request
-        URI geoServerBaseUri = getGeoServerBaseURI(message, useWmsReflector);
+        if (entry == null) {
+            response = sendRequest(mutableRequest);
+            timer.lap(Phase.UPSTREAM);
 
-        // set the GeoServer base URI to the (wrapped) request
-        mutableRequest.setRequestURI(geoServerBaseUri);
+            response.setHeaders(getResponseHeadersToForward(response.getHeaders()));
+            timer.lap(Phase.HEADER_FILTER);
+
+            if (capabilitiesCache.isCacheable(response)) {
+                entry = capabilitiesCache.put(cacheKey, endpoint, response);
+            }
+        } else {
+            LOG.trace("Found the capabilities of endpoint " + endpoint + " in the cache.");
+        }
 
-        // intercept the request (if needed)
-        mutableRequest = ogcMessageDistributor
-            .distributeToRequestInterceptor(mutableRequest, message);
+        if (ogcMessageDistributor.isResponsePassThrough(message)) {
+            return entry != null ? entry.toResponse(mutableRequest) : response;
+        }
 
-        // send the request
-        // TODO: Move to global proxy class
-        Response response = sendRequest(mutableRequest);
+        if (entry != null) {
+            // the interceptors may modify the body of the response
+            HttpHeaders headers = new HttpHeaders();
+            headers.putAll(entry.getHeaders());
+            response = new Response(HttpStatus.OK, headers, entry.getBody().clone());
+        }
 
-        // intercept the response (if needed)
         Response interceptedResponse = ogcMessageDistributor
             .distributeToResponseInterceptor(mutableRequest, response, message);
+        timer.lap(Phase.RESPONSE_INTERCEPTOR);
 
-        // finally filter the white-listed response headers
-        // TODO: Move to global proxy class
         HttpHeaders forwardingHeaders = getResponseHeadersToForward(
             interceptedResponse.getHeaders()
         );
         interceptedResponse.setHeaders(forwardingHeaders);
+        timer.lap(Phase.HEADER_FILTER);
 
-        return interceptedResponse;
+        return CapabilitiesCache.toConditionalResponse(mutableRequest, interceptedResponse);
     }
 
     /**
@@ -211,11 +477,12 @@ public class GeoServerInterceptorService {
 
     /**
      * @param mutableRequest
+     * @param timer          The timer measuring the parsing and the rule lookup
      * @return
      * @throws InterceptorException
      * @throws IOException
      */
-    private OgcMessage getOgcMessage(MutableHttpServletRequest mutableRequest)
+    private OgcMessage getOgcMessage(MutableHttpServletRequest mutableRequest, Timer timer)
         throws InterceptorException, IOException {
 
         LOG.trace("Building the OGC message from the given request.");
@@ -269,10 +536,20 @@ public class GeoServerInterceptorService {
             LOG.debug("No endPoint found.");
         }
 
+        String requestVersion = MutableHttpServletRequest.getRequestParameterValue(
+            mutableRequest, MutableHttpServletRequest.VERSION_PARAMETER);
+
+        if (StringUtils.isNotEmpty(requestVersion)) {
+            ogcMessage.setVersion(requestVersion);
+            LOG.trace("Successfully set the version: " + requestVersion);
+        }
+        timer.lap(Phase.PARSE);
+
         InterceptorRule mostSpecificRequestRule = getMostSpecificRule(requestService,
             requestOperation, requestEndPoint, HttpEnum.EventType.REQUEST.toString());
         InterceptorRule mostSpecificResponseRule = getMostSpecificRule(requestService,
             requestOperation, requestEndPoint, HttpEnum.EventType.RESPONSE.toString());
+        timer.lap(Phase.RULE_LOOKUP);
 
         if (mostSpecificRequestRule != null) {
             ogcMessage.setRequestRule(mostSpecificRequestRule.getRule());
@@ -320,75 +597,31 @@ public class GeoServerInterceptorService {
             "  * EndPoint: " + endPoint
         );
 
-        // get all persisted rules for the given service and event
-        List<InterceptorRule> interceptorRules = this.interceptorRuleService
-            .findAllRulesForServiceAndEvent(requestService, ruleEvent);
+        final HttpEnum.EventType event = HttpEnum.EventType.fromString(ruleEvent);
 
-        LOG.trace("Got " + interceptorRules.size() + " rule(s) from database.");
+        // the compiled index of all persisted rules, the most specific rule
+        // will be resolved by a fixed number of lookups (in descending
+        // specific order: endPoint and operation, endPoint, operation and
+        // the service only).
+        InterceptorRuleIndex ruleIndex = this.interceptorRuleService.getRuleIndex();
 
-        if (LOG.isTraceEnabled()) {
-            for (InterceptorRule interceptorRule : interceptorRules) {
-                LOG.trace("Returned rule is: " + interceptorRule);
-            }
-        }
-
-        LOG.trace("Evaluating the given rules for the most specific one:");
-
-        // create the predicate for finding the most specific rule out of
-        // the given rules (conditions in descending specific order).
-        // note: we don't need to check for request event (request/response)
-        // and the service type at all as the rule candidates are filtered by
-        // the DAO method already. the last check for service specificity found
-        // here is a fallback only.
-        HashMap<InterceptorRule, Integer> ruleMap = new HashMap<>();
-        interceptorRules.stream().forEach((rule) -> {
-            int score = 0;
-            if (!Objects.equals(rule.getEndPoint(), null) && !Objects.equals(rule.getEndPoint(), endPoint) &&
-                endPoint != null) {
-                return;
-            }
-            if (!Objects.equals(rule.getService(), null) && !Objects.equals(rule.getService(), service) &&
-                service != null) {
-                return;
-            }
-            if (!Objects.equals(rule.getOperation(), null) && !Objects.equals(rule.getOperation(), operation) &&
-                operation != null) {
-                return;
-            }
-            if (endPoint != null && Objects.equals(rule.getEndPoint(), endPoint)) {
-                ++score;
-            }
-            if (operation != null && Objects.equals(rule.getOperation(), operation)) {
-                ++score;
-            }
-            if (service != null && Objects.equals(rule.getService(), service)) {
-                ++score;
-            }
-            ruleMap.put(rule, score);
-        });
-
-        AtomicReference<Integer> biggestScore = new AtomicReference<>(0);
-        AtomicReference<InterceptorRule> mostSpecific = new AtomicReference<>();
-
-        ruleMap.entrySet().stream().forEach((entry) -> {
-            if (entry.getValue() > biggestScore.get()) {
-                mostSpecific.set(entry.getKey());
-                biggestScore.set(entry.getValue());
-            }
-        });
-
-        if (interceptorRules.size() == 0) {
+        if (ruleIndex == null || !ruleIndex.hasRules(event, service)) {
             LOG.error("Got no interceptor rules for this request/response. " +
                 "Usually this should not happen as one has to define at " +
                 "least the basic sets of rules (e.g. ALLOW all WMS " +
                 "requests) when using the interceptor.");
             throw new InterceptorException("No interceptor rule found.");
-        } else if (LOG.isTraceEnabled()) {
+        }
+
+        InterceptorRule mostSpecific = ruleIndex.findMostSpecificRule(event,
+            service, operation, endPoint);
+
+        if (LOG.isTraceEnabled()) {
             LOG.trace("Identified the following rule as most the specific " +
-                "one: " + mostSpecific.get());
+                "one: " + mostSpecific);
         }
 
-        return mostSpecific.get();
+        return mostSpecific;
     }
 
     /**
@@ -514,8 +747,33 @@ public class GeoServerInterceptorService {
      */
     public static Response sendRequest(MutableHttpServletRequest request)
         throws InterceptorException, HttpException {
+        return sendRequest(request, false);
+    }
 
-        Response httpResponse = new Response();
+    /**
+     * Sends the given request, but doesn't read the body of the response
+     * into memory. The returned {@link StreamingResponse} has to be closed by
+     * the caller.
+     *
+     * @param request
+     * @throws InterceptorException
+     * @throws HttpException
+     */
+    public static StreamingResponse sendStreamingRequest(MutableHttpServletRequest request)
+        throws InterceptorException, HttpException {
+        return (StreamingResponse) sendRequest(request, true);
+    }
+
+    /**
+     * @param request
+     * @param streaming Whether to return a {@link StreamingResponse}
+     * @throws InterceptorException
+     * @throws HttpException
+     */
+    private static Response sendRequest(MutableHttpServletRequest request, boolean streaming)
+        throws InterceptorException, HttpException {
+
+        Response httpResponse = streaming ? null : new Response();
 
         String requestMethod = request.getMethod();
         boolean getRequest = "GET".equalsIgnoreCase(requestMethod);
@@ -539,7 +797,9 @@ public class GeoServerInterceptorService {
                 // if we're called via GET method
 
                 // perform the request with the given parameters
-                httpResponse = HttpUtil.get(fullRequestUri, requestHeaders);
+                httpResponse = streaming ?
+                    HttpUtil.getAsStream(fullRequestUri, requestHeaders) :
+                    HttpUtil.get(fullRequestUri, requestHeaders);
 
             } else if (postRequest) {
                 // if we're called via POST method
@@ -566,11 +826,15 @@ public class GeoServerInterceptorService {
                     }
 
                     // perform the POST request to the URI with queryString and with the given body
-                    httpResponse = HttpUtil.post(requestUri, body, contentType, requestHeaders);
+                    httpResponse = streaming ?
+                        HttpUtil.postAsStream(requestUri, body, contentType, requestHeaders) :
+                        HttpUtil.post(requestUri, body, contentType, requestHeaders);
                 } else {
 
                     // perform the POST request with the given name value pairs,
-                    httpResponse = HttpUtil.post(requestUri, allQueryParams, requestHeaders);
+                    httpResponse = streaming ?
+                        HttpUtil.postAsStream(requestUri, allQueryParams, requestHeaders) :
+                        HttpUtil.post(requestUri, allQueryParams, requestHeaders);
                 }
 
             } else {
@@ -580,6 +844,15 @@ public class GeoServerInterceptorService {
 
         } catch (URISyntaxException | UnsupportedEncodingException e) {
             LOG.error("Error while sending request: " + e.getMessage());
+
+            if (streaming) {
+                // an empty stream would be written as an empty 200 response
+                throw new InterceptorException("Error while sending request: " + e.getMessage(), e);
+            }
+        }
+
+        if (streaming && httpResponse == null) {
+            throw new InterceptorException("Could not get a response for the request");
         }
 
         return httpResponse;
@@ -720,4 +993,15 @@ public class GeoServerInterceptorService {
         this.geoServerNameSpaces = geoServerNameSpaces;
     }
 
+    /**
+     * @param transactionManager the transactionManager to use for loading
+     */
+    @Autowired
+    @Qualifier("transactionManager")
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        this.transactionTemplate = template;
+    }
+
 }
@@ -1,26 +1,67 @@
 package de.terrestris.shoguncore.service;
 
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.annotation.PreDestroy;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Restrictions;
 import org.imgscalr.Scalr;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import de.terrestris.shoguncore.dao.ImageFileDao;
 import de.terrestris.shoguncore.model.ImageFile;
+import de.terrestris.shoguncore.util.entity.EntityUtil;
+import de.terrestris.shoguncore.util.enumeration.ImageFileEnum.ThumbnailStatus;
 
 /**
  * Service class for the {@link ImageFile} model.
+ * <p>
+ * The dimensions of uploaded images are read from the image headers, i.e.
+ * the images are not decoded during the upload. The thumbnails (in the
+ * configured sizes) are created after the upload has been committed by a
+ * bounded pool of background threads, which decode each image once with
+ * subsampling. Until then, the state of the image is
+ * {@link ThumbnailStatus#PENDING} and requested thumbnails are created on
+ * the fly (see {@link #createThumbnail(ImageFile, int)}).
  *
  * @author Daniel Koch
  * @author Johannes Weskamm
@@ -29,6 +70,41 @@ import de.terrestris.shoguncore.model.ImageFile;
 public class ImageFileService<E extends ImageFile, D extends ImageFileDao<E>>
     extends FileService<E, D> {
 
+    /**
+     * The sizes (in px) of the thumbnails to create. The first one is the
+     * default size, which is stored in {@link ImageFile#getThumbnail()} (or
+     * {@link ImageFile#getThumbnailBlobKey()}), further sizes will be stored
+     * in {@link ImageFile#getThumbnailBlobKeys()} (if the blob store is
+     * enabled).
+     */
+    private List<Integer> thumbnailSizes = Collections.singletonList(100);
+
+    /**
+     * The max number of threads creating thumbnails.
+     */
+    private int thumbnailThreads = 2;
+
+    /**
+     * The max number of images waiting for the creation of their thumbnails.
+     */
+    private int thumbnailQueueSize = 100;
+
+    /**
+     * The IDs of the images whose thumbnails are queued or being created.
+     */
+    private final Set<Integer> scheduledImageIds = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Used to load and update the images in the background threads. If not
+     * set, the thumbnails are created synchronously.
+     */
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * The executor, created on first use.
+     */
+    private volatile ThreadPoolExecutor thumbnailExecutor;
+
     /**
      * Default constructor, which calls the type-constructor
      */
@@ -57,11 +133,6 @@ public class ImageFileService<E extends ImageFile, D extends ImageFileDao<E>>
         this.dao = dao;
     }
 
-    /**
-     * The default value used for the creation of thumbnails in pixels
-     */
-    private final Integer DEFAULT_THUMBNAIL_SIZE = 100;
-
     /**
      * @param file
      * @throws Exception
@@ -81,18 +152,20 @@ public class ImageFileService<E extends ImageFile, D extends ImageFileDao<E>>
         }
 
         // persist the image file
-        E image = this.saveImage(file, true, DEFAULT_THUMBNAIL_SIZE);
+        E image = this.saveImage(file, true, getDefaultThumbnailSize());
         LOG.info("Successfully uploaded image " + image.getFileName());
 
         return image;
     }
 
     /**
-     * Method persists a given Image as a bytearray in the database
+     * Method persists a given Image in the blob store (if configured) or as a
+     * bytearray in the database. The thumbnails will be created after the
+     * image has been committed.
      *
      * @param file
      * @param createThumbnail
-     * @param thumbnailTargetSize
+     * @param thumbnailTargetSize The size of the default thumbnail
      * @throws Exception
      */
     @PreAuthorize("isAuthenticated()")
@@ -100,53 +173,330 @@ public class ImageFileService<E extends ImageFile, D extends ImageFileDao<E>>
         throws Exception {
 
         InputStream is = null;
-        ByteArrayInputStream bais = null;
         E imageToPersist = null;
 
         try {
             is = file.getInputStream();
-            byte[] imageByteArray = IOUtils.toByteArray(is);
 
             // create a new instance (generic)
             imageToPersist = getEntityClass().newInstance();
 
-            // create a thumbnail if requested
-            if (createThumbnail) {
-                byte[] thumbnail = scaleImage(
-                    imageByteArray,
-                    FilenameUtils.getExtension(file.getOriginalFilename()),
-                    thumbnailTargetSize);
-                imageToPersist.setThumbnail(thumbnail);
+            if (isBlobStoreEnabled()) {
+                imageToPersist.setBlobKey(blobStore.put(is));
+            } else {
+                // set binary image data
+                imageToPersist.setFile(IOUtils.toByteArray(is));
             }
 
-            // set binary image data
-            imageToPersist.setFile(imageByteArray);
-
-            // detect dimensions
-            bais = new ByteArrayInputStream(imageByteArray);
-
-            BufferedImage bimg = ImageIO.read(bais);
+            // detect dimensions (from the image header)
+            Dimension dimension;
+            try (ImageInputStream iis = openImage(imageToPersist)) {
+                dimension = readDimension(iis);
+            }
 
             // set basic image properties
-            imageToPersist.setWidth(bimg.getWidth());
-            imageToPersist.setHeight(bimg.getHeight());
+            imageToPersist.setWidth(dimension.width);
+            imageToPersist.setHeight(dimension.height);
             imageToPersist.setFileType(file.getContentType());
             imageToPersist.setFileName(file.getOriginalFilename());
+            imageToPersist.setThumbnailStatus(createThumbnail ? ThumbnailStatus.PENDING : null);
 
             // persist the image
             dao.saveOrUpdate(imageToPersist);
 
+            if (createThumbnail) {
+                scheduleThumbnails(imageToPersist, thumbnailTargetSize);
+            }
+
         } catch (Exception e) {
             throw new Exception("Could not create the Image in DB: "
                 + e.getMessage());
         } finally {
             IOUtils.closeQuietly(is);
-            IOUtils.closeQuietly(bais);
         }
 
         return imageToPersist;
     }
 
+    /**
+     * Opens the thumbnail of the given image, if it is stored in the blob
+     * store. The returned channel must be closed by the caller.
+     *
+     * @param image
+     * @return The open channel of the thumbnail or null, if the thumbnail is
+     * stored in the database.
+     * @throws IOException
+     */
+    public FileChannel openThumbnail(E image) throws IOException {
+        return openBlob(image.getThumbnailBlobKey());
+    }
+
+    /**
+     * Opens the thumbnail of the given image in the given size, if it is
+     * stored in the blob store. The returned channel must be closed by the
+     * caller.
+     *
+     * @param image
+     * @param size
+     * @return The open channel of the thumbnail or null, if no thumbnail of
+     * the given size is stored.
+     * @throws IOException
+     */
+    public FileChannel openThumbnail(E image, int size) throws IOException {
+        return openBlob(image.getThumbnailBlobKeys().get(size));
+    }
+
+    /**
+     * Creates a thumbnail of the given image on the fly, e.g. if the
+     * thumbnails of the image have not been created yet. The creation of
+     * the thumbnails will be scheduled (again), if they are still pending.
+     *
+     * @param image
+     * @param size  The size of the thumbnail (one of the configured sizes)
+     * @return The thumbnail.
+     * @throws IOException
+     */
+    public byte[] createThumbnail(E image, int size) throws IOException {
+        if (!thumbnailSizes.contains(size)) {
+            throw new IllegalArgumentException("Unsupported thumbnail size: " + size);
+        }
+
+        if (image.getThumbnailStatus() == ThumbnailStatus.PENDING && transactionTemplate != null) {
+            submitThumbnailTask(image.getId(), getDefaultThumbnailSize());
+        }
+
+        BufferedImage decoded = null;
+        try (ImageInputStream iis = openImage(image)) {
+            decoded = readSubsampled(iis, size);
+            return scaleImage(decoded, getThumbnailFormat(image), size);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Could not create the thumbnail: " + e.getMessage(), e);
+        } finally {
+            if (decoded != null) {
+                decoded.flush();
+            }
+        }
+    }
+
+    /**
+     * Schedules the creation of the thumbnails of the given (new) image after
+     * the current transaction has been committed. If no transaction manager
+     * is available, the thumbnails are created immediately.
+     *
+     * @param image
+     * @param defaultSize
+     */
+    protected void scheduleThumbnails(E image, int defaultSize) {
+        if (transactionTemplate == null) {
+            createThumbnails(image, defaultSize);
+            return;
+        }
+
+        final Integer imageId = image.getId();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCommit() {
+                        submitThumbnailTask(imageId, defaultSize);
+                    }
+                });
+        } else {
+            submitThumbnailTask(imageId, defaultSize);
+        }
+    }
+
+    /**
+     * Submits the creation of the thumbnails of the image with the given ID
+     * to the background threads, if it is not scheduled already. Images
+     * rejected as the queue is full stay pending.
+     *
+     * @param imageId
+     * @param defaultSize
+     */
+    private void submitThumbnailTask(Integer imageId, int defaultSize) {
+        if (imageId == null || !scheduledImageIds.add(imageId)) {
+            return;
+        }
+
+        try {
+            getThumbnailExecutor().execute(() -> {
+                try {
+                    transactionTemplate.execute(status -> {
+                        E image = dao.findById(imageId);
+                        if (image != null) {
+                            createThumbnails(image, defaultSize);
+                            dao.saveOrUpdate(image);
+                        }
+                        return null;
+                    });
+                } catch (Exception e) {
+                    LOG.error("Could not store the thumbnails of image " + imageId + ": " + e.getMessage());
+                } finally {
+                    scheduledImageIds.remove(imageId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            scheduledImageIds.remove(imageId);
+            LOG.warn("Could not schedule the thumbnails of image " + imageId + " as " + thumbnailQueueSize
+                + " images are queued already, the thumbnails will be created on request.");
+        }
+    }
+
+    /**
+     * Creates the thumbnails of the given image in the given default size
+     * and all further configured sizes. The image is decoded once (with
+     * subsampling for the largest size). Sets the state of the image to
+     * {@link ThumbnailStatus#READY} or {@link ThumbnailStatus#FAILED}.
+     *
+     * @param image
+     * @param defaultSize
+     */
+    protected void createThumbnails(E image, int defaultSize) {
+        List<Integer> sizes = new ArrayList<>();
+        sizes.add(defaultSize);
+        if (isBlobStoreEnabled()) {
+            for (Integer size : thumbnailSizes) {
+                if (!sizes.contains(size)) {
+                    sizes.add(size);
+                }
+            }
+        }
+
+        BufferedImage decoded = null;
+
+        try (ImageInputStream iis = openImage(image)) {
+            decoded = readSubsampled(iis, Collections.max(sizes));
+
+            final String format = getThumbnailFormat(image);
+
+            for (Integer size : sizes) {
+                byte[] thumbnail = scaleImage(decoded, format, size);
+
+                if (size == defaultSize) {
+                    if (isBlobStoreEnabled()) {
+                        image.setThumbnailBlobKey(blobStore.put(thumbnail));
+                    } else {
+                        image.setThumbnail(thumbnail);
+                    }
+                } else {
+                    image.getThumbnailBlobKeys().put(size, blobStore.put(thumbnail));
+                }
+            }
+
+            image.setThumbnailStatus(ThumbnailStatus.READY);
+
+            LOG.debug("Created the thumbnails " + sizes + " of image " + image.getFileName());
+        } catch (Exception e) {
+            image.setThumbnailStatus(ThumbnailStatus.FAILED);
+
+            LOG.error("Could not create the thumbnails of image " + image.getFileName() + ": " + e.getMessage());
+        } finally {
+            if (decoded != null) {
+                decoded.flush();
+            }
+        }
+    }
+
+    /**
+     * @param image
+     * @return A (memory cached) image input stream of the content of the
+     * given image. Closing it also closes the underlying stream.
+     * @throws IOException
+     */
+    protected ImageInputStream openImage(E image) throws IOException {
+        FileChannel channel = openFile(image);
+
+        final InputStream in = channel != null ? Channels.newInputStream(channel)
+            : new ByteArrayInputStream(image.getFile() != null ? image.getFile() : new byte[0]);
+
+        return new MemoryCacheImageInputStream(in) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    in.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * @param image
+     * @return The name of the format of the thumbnails of the given image,
+     * i.e. the format of its content type (or file extension).
+     */
+    private static String getThumbnailFormat(ImageFile image) {
+        if (image.getFileType() != null) {
+            Iterator<ImageWriter> writers = ImageIO.getImageWritersByMIMEType(image.getFileType());
+            if (writers.hasNext()) {
+                return writers.next().getOriginatingProvider().getFormatNames()[0];
+            }
+        }
+        return FilenameUtils.getExtension(image.getFileName());
+    }
+
+    /**
+     * @param iis
+     * @return A reader for the image of the given stream.
+     * @throws IOException If the image format is not supported
+     */
+    private static ImageReader getImageReader(ImageInputStream iis) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+        if (!readers.hasNext()) {
+            throw new IOException("Unsupported image format");
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(iis, true, true);
+        return reader;
+    }
+
+    /**
+     * Reads the dimensions of an image from its header (without decoding
+     * the image).
+     *
+     * @param iis
+     * @return
+     * @throws IOException
+     */
+    public static Dimension readDimension(ImageInputStream iis) throws IOException {
+        ImageReader reader = getImageReader(iis);
+        try {
+            return new Dimension(reader.getWidth(0), reader.getHeight(0));
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Decodes an image with the largest subsampling that keeps (at least)
+     * twice the given target size, so large images are never decoded in
+     * full resolution for thumbnails.
+     *
+     * @param iis
+     * @param targetSize width/height in px
+     * @return
+     * @throws IOException
+     */
+    public static BufferedImage readSubsampled(ImageInputStream iis, int targetSize) throws IOException {
+        ImageReader reader = getImageReader(iis);
+        try {
+            int longestSide = Math.max(reader.getWidth(0), reader.getHeight(0));
+            int subsampling = Math.max(1, longestSide / (2 * Math.max(targetSize, 1)));
+
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+
+            return reader.read(0, param);
+        } finally {
+            reader.dispose();
+        }
+    }
+
     /**
      * Scales an image by the given dimensions
      *
@@ -158,25 +508,49 @@ public class ImageFileService<E extends ImageFile, D extends ImageFileDao<E>>
                                     Integer targetSize) throws Exception {
 
         InputStream is = null;
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        byte[] imageInBytes = null;
         BufferedImage image = null;
-        BufferedImage resizedImage = null;
 
         try {
             is = new ByteArrayInputStream(imageBytes);
             image = ImageIO.read(is);
-            resizedImage = Scalr.resize(image, targetSize);
-            ImageIO.write(resizedImage, outputFormat, baos);
-            imageInBytes = baos.toByteArray();
         } catch (Exception e) {
             throw new Exception("Error on resizing an image: " + e.getMessage());
         } finally {
             IOUtils.closeQuietly(is);
-            IOUtils.closeQuietly(baos);
+        }
+
+        try {
+            return scaleImage(image, outputFormat, targetSize);
+        } finally {
             if (image != null) {
                 image.flush();
             }
+        }
+    }
+
+    /**
+     * Scales an (already decoded) image by the given dimensions
+     *
+     * @param image
+     * @param outputFormat
+     * @param targetSize   width/height in px (square)
+     * @throws Exception
+     */
+    public static byte[] scaleImage(BufferedImage image, String outputFormat,
+                                    Integer targetSize) throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] imageInBytes = null;
+        BufferedImage resizedImage = null;
+
+        try {
+            resizedImage = Scalr.resize(image, targetSize);
+            ImageIO.write(resizedImage, outputFormat, baos);
+            imageInBytes = baos.toByteArray();
+        } catch (Exception e) {
+            throw new Exception("Error on resizing an image: " + e.getMessage());
+        } finally {
+            IOUtils.closeQuietly(baos);
             if (resizedImage != null) {
                 resizedImage.flush();
             }
@@ -184,4 +558,148 @@ public class ImageFileService<E extends ImageFile, D extends ImageFileDao<E>>
         return imageInBytes;
     }
 
+    /**
+     * @return The criterion matching all images whose content or thumbnail
+     * is (still) stored in the database.
+     */
+    @Override
+    protected Criterion createNotMigratedCriterion() {
+        return Restrictions.or(
+            super.createNotMigratedCriterion(),
+            Restrictions.and(Restrictions.isNull("thumbnailBlobKey"), Restrictions.isNotNull("thumbnail"))
+        );
+    }
+
+    /**
+     * Moves the content and the thumbnail of the given image to the blob
+     * store.
+     *
+     * @param image
+     * @throws IOException
+     */
+    @Override
+    protected void migrateToBlobStore(E image) throws IOException {
+        super.migrateToBlobStore(image);
+
+        if (image.getThumbnailBlobKey() == null && image.getThumbnail() != null) {
+            image.setThumbnailBlobKey(blobStore.put(image.getThumbnail()));
+            image.setThumbnail(null);
+        }
+    }
+
+    /**
+     * @param image
+     * @return The keys of the blobs of the content and the thumbnails.
+     */
+    @Override
+    protected Set<String> getBlobKeys(E image) {
+        Set<String> blobKeys = super.getBlobKeys(image);
+        if (image != null && image.getThumbnailBlobKey() != null) {
+            blobKeys.add(image.getThumbnailBlobKey());
+        }
+        if (image != null && image.getThumbnailBlobKeys() != null) {
+            blobKeys.addAll(image.getThumbnailBlobKeys().values());
+        }
+        return blobKeys;
+    }
+
+    /**
+     * @return
+     */
+    private ThreadPoolExecutor getThumbnailExecutor() {
+        if (thumbnailExecutor == null) {
+            synchronized (this) {
+                if (thumbnailExecutor == null) {
+                    final AtomicInteger threadNumber = new AtomicInteger();
+                    final ThreadFactory threadFactory = runnable -> {
+                        Thread thread = new Thread(runnable, "thumbnails-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        thread.setPriority(Thread.MIN_PRIORITY);
+                        return thread;
+                    };
+
+                    ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(thumbnailThreads,
+                        thumbnailThreads, 60, TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<>(Math.max(thumbnailQueueSize, 1)), threadFactory);
+                    threadPoolExecutor.allowCoreThreadTimeOut(true);
+
+                    thumbnailExecutor = threadPoolExecutor;
+                }
+            }
+        }
+        return thumbnailExecutor;
+    }
+
+    /**
+     * Shuts the executor down.
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (thumbnailExecutor != null) {
+            thumbnailExecutor.shutdownNow();
+            thumbnailExecutor = null;
+        }
+    }
+
+    /**
+     * @return The default size (in px) of the thumbnails.
+     */
+    public int getDefaultThumbnailSize() {
+        return thumbnailSizes.get(0);
+    }
+
+    /**
+     * @return the thumbnailSizes
+     */
+    public List<Integer> getThumbnailSizes() {
+        return thumbnailSizes;
+    }
+
+    /**
+     * @param thumbnailSizes the (comma separated) thumbnailSizes to set, the
+     *                       first one is the default size
+     */
+    @Value("${imageFile.thumbnailSizes:100}")
+    public void setThumbnailSizes(String thumbnailSizes) {
+        List<Integer> sizes = new ArrayList<>();
+        for (String size : EntityUtil.listFromCommaSeparatedStringList(Collections.singletonList(thumbnailSizes))) {
+            int value = Integer.parseInt(size.trim());
+            if (value < 1) {
+                throw new IllegalArgumentException("Invalid thumbnail size: " + value);
+            }
+            if (!sizes.contains(value)) {
+                sizes.add(value);
+            }
+        }
+        if (sizes.isEmpty()) {
+            throw new IllegalArgumentException("At least one thumbnail size is required");
+        }
+        this.thumbnailSizes = Collections.unmodifiableList(sizes);
+    }
+
+    /**
+     * @param thumbnailThreads the thumbnailThreads to set
+     */
+    @Value("${imageFile.thumbnailThreads:2}")
+    public void setThumbnailThreads(int thumbnailThreads) {
+        this.thumbnailThreads = thumbnailThreads;
+    }
+
+    /**
+     * @param thumbnailQueueSize the thumbnailQueueSize to set
+     */
+    @Value("${imageFile.thumbnailQueueSize:100}")
+    public void setThumbnailQueueSize(int thumbnailQueueSize) {
+        this.thumbnailQueueSize = thumbnailQueueSize;
+    }
+
+    /**
+     * @param transactionManager
+     */
+    @Autowired(required = false)
+    @Qualifier("transactionManager")
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = transactionManager != null ? new TransactionTemplate(transactionManager) : null;
+    }
+
 }
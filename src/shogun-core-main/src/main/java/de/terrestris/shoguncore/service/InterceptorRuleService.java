@@ -1,14 +1,23 @@
 package de.terrestris.shoguncore.service;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import de.terrestris.shoguncore.dao.InterceptorRuleDao;
 import de.terrestris.shoguncore.model.interceptor.InterceptorRule;
+import de.terrestris.shoguncore.util.interceptor.CapabilitiesCache;
+import de.terrestris.shoguncore.util.interceptor.InterceptorRuleIndex;
 
 /**
  * @param <E>
@@ -21,6 +30,30 @@ import de.terrestris.shoguncore.model.interceptor.InterceptorRule;
 public class InterceptorRuleService<E extends InterceptorRule, D extends InterceptorRuleDao<E>>
     extends PermissionAwareCrudService<E, D> {
 
+    /**
+     * The compiled index of all rules, will be (re-)built lazily on the first
+     * access after an invalidation.
+     */
+    private final AtomicReference<InterceptorRuleIndex> ruleIndex = new AtomicReference<>();
+
+    /**
+     * Will be incremented on every invalidation, so that an index that has
+     * been built concurrently from outdated rules won't be published.
+     */
+    private final AtomicLong ruleIndexVersion = new AtomicLong();
+
+    /**
+     * The cache for the capabilities of the endpoint scoped WMS, which are
+     * requested according to the rules.
+     */
+    @Autowired(required = false)
+    private CapabilitiesCache capabilitiesCache;
+
+    /**
+     * Used to build the rule index.
+     */
+    private TransactionTemplate transactionTemplate;
+
     /**
      * Default constructor, which calls the type-constructor
      */
@@ -47,6 +80,118 @@ public class InterceptorRuleService<E extends InterceptorRule, D extends Interce
         return this.dao.findAllRulesForServiceAndEvent(service, event);
     }
 
+    /**
+     * Returns the compiled index of all persisted rules. This is not
+     * transactional, as the index is only (re-)built on the first access
+     * after an invalidation (in its own read only transaction).
+     *
+     * @return
+     */
+    public InterceptorRuleIndex getRuleIndex() {
+        InterceptorRuleIndex index = ruleIndex.get();
+
+        if (index == null) {
+            final long version = ruleIndexVersion.get();
+
+            index = transactionTemplate.execute(status -> new InterceptorRuleIndex(this.dao.findAll()));
+
+            if (ruleIndexVersion.get() == version) {
+                ruleIndex.compareAndSet(null, index);
+            }
+
+            LOG.debug("Compiled the interceptor rule index with " + index.size()
+                + " rule(s).");
+        }
+
+        return index;
+    }
+
+    /**
+     * Invalidates the compiled rule index. If called inside a transaction, the
+     * index will be invalidated (again) after the transaction has completed,
+     * so that it won't be rebuilt with uncommitted rules.
+     */
+    public void invalidateRuleIndex() {
+        ruleIndexVersion.incrementAndGet();
+        ruleIndex.set(null);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        ruleIndexVersion.incrementAndGet();
+                        ruleIndex.set(null);
+                    }
+                });
+        }
+    }
+
+    /**
+     * Invalidates all cached capabilities. If called inside a transaction,
+     * the cache will be invalidated (again) after the transaction has
+     * completed.
+     */
+    private void invalidateCapabilitiesCache() {
+        if (capabilitiesCache == null) {
+            return;
+        }
+
+        capabilitiesCache.invalidateAll();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        capabilitiesCache.invalidateAll();
+                    }
+                });
+        }
+    }
+
+    /**
+     * Saves the rule and invalidates the compiled rule index and the cached
+     * capabilities.
+     *
+     * @param interceptorRule
+     */
+    @Override
+    @PreAuthorize("hasRole(@configHolder.getSuperAdminRoleName())"
+        + " or (#interceptorRule.id == null and hasPermission(#interceptorRule, 'CREATE'))"
+        + " or (#interceptorRule.id != null and hasPermission(#interceptorRule, 'UPDATE'))")
+    public void saveOrUpdate(E interceptorRule) {
+        super.saveOrUpdate(interceptorRule);
+        invalidateRuleIndex();
+        invalidateCapabilitiesCache();
+    }
+
+    /**
+     * Deletes the rule and invalidates the compiled rule index and the cached
+     * capabilities.
+     *
+     * @param interceptorRule
+     */
+    @Override
+    @PreAuthorize("hasRole(@configHolder.getSuperAdminRoleName()) or hasPermission(#interceptorRule, 'DELETE')")
+    public void delete(E interceptorRule) {
+        super.delete(interceptorRule);
+        invalidateRuleIndex();
+        invalidateCapabilitiesCache();
+    }
+
+    /**
+     * @param transactionManager the transactionManager to build the rule
+     *                           index with
+     */
+    @Autowired
+    @Qualifier("transactionManager")
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        this.transactionTemplate = template;
+    }
+
     /**
      * We have to use {@link Qualifier} to define the correct dao here.
      * Otherwise, spring can not decide which dao has to be autowired here
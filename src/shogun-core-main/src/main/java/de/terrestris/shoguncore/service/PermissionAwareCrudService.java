@@ -348,6 +348,21 @@ public class PermissionAwareCrudService<E extends PersistentObject, D extends Ge
         return dao.findAllUserPermissionsOfUser(user);
     }
 
+    /**
+     * Paged version of {@link #findAllUserPermissionsOfUser(User)}.
+     *
+     * @param user
+     * @param firstResult
+     * @param maxResults
+     * @return
+     */
+    @PreAuthorize("hasRole(@configHolder.getSuperAdminRoleName()) or hasPermission(#user, 'READ')")
+    @Transactional(readOnly = true)
+    public Map<PersistentObject, PermissionCollection> findAllUserPermissionsOfUser(User user,
+                                                                                    int firstResult, int maxResults) {
+        return dao.findAllUserPermissionsOfUser(user, firstResult, maxResults);
+    }
+
     /**
      * This method returns a {@link Map} that maps {@link PersistentObject}s
      * to PermissionCollections for the passed {@link UserGroup}. I.e. the keySet
@@ -364,6 +379,22 @@ public class PermissionAwareCrudService<E extends PersistentObject, D extends Ge
         return dao.findAllUserGroupPermissionsOfUserGroup(userGroup);
     }
 
+    /**
+     * Paged version of {@link #findAllUserGroupPermissionsOfUserGroup(UserGroup)}.
+     *
+     * @param userGroup
+     * @param firstResult
+     * @param maxResults
+     * @return
+     */
+    @PreAuthorize("hasRole(@configHolder.getSuperAdminRoleName()) or hasPermission(#userGroup, 'READ')")
+    @Transactional(readOnly = true)
+    public Map<PersistentObject, PermissionCollection> findAllUserGroupPermissionsOfUserGroup(UserGroup userGroup,
+                                                                                              int firstResult,
+                                                                                              int maxResults) {
+        return dao.findAllUserGroupPermissionsOfUserGroup(userGroup, firstResult, maxResults);
+    }
+
     /**
      * @return the permissionCollectionService
      */
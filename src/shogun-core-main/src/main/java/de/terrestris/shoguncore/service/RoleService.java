@@ -4,11 +4,13 @@ import org.hibernate.criterion.Restrictions;
 import org.hibernate.criterion.SimpleExpression;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import de.terrestris.shoguncore.dao.RoleDao;
 import de.terrestris.shoguncore.model.Role;
+import de.terrestris.shoguncore.security.AuthenticationCache;
 
 /**
  * Service class for the {@link Role} model.
@@ -19,6 +21,12 @@ import de.terrestris.shoguncore.model.Role;
 public class RoleService<E extends Role, D extends RoleDao<E>> extends
     PermissionAwareCrudService<E, D> {
 
+    /**
+     * The cache for successful authentications.
+     */
+    @Autowired(required = false)
+    private AuthenticationCache authenticationCache;
+
     /**
      * Default constructor, which calls the type-constructor
      */
@@ -65,4 +73,36 @@ public class RoleService<E extends Role, D extends RoleDao<E>> extends
         this.dao = dao;
     }
 
+    /**
+     * Saves the role and invalidates all cached authentications, if an
+     * existing role has been changed.
+     *
+     * @param role
+     */
+    @Override
+    @PreAuthorize("hasRole(@configHolder.getSuperAdminRoleName())"
+        + " or (#role.id == null and hasPermission(#role, 'CREATE'))"
+        + " or (#role.id != null and hasPermission(#role, 'UPDATE'))")
+    public void saveOrUpdate(E role) {
+        final boolean existing = role.getId() != null;
+        super.saveOrUpdate(role);
+        if (existing && authenticationCache != null) {
+            authenticationCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Deletes the role and invalidates all cached authentications.
+     *
+     * @param role
+     */
+    @Override
+    @PreAuthorize("hasRole(@configHolder.getSuperAdminRoleName()) or hasPermission(#role, 'DELETE')")
+    public void delete(E role) {
+        super.delete(role);
+        if (authenticationCache != null) {
+            authenticationCache.invalidateAll();
+        }
+    }
+
 }
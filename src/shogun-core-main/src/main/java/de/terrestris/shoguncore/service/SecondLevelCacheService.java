@@ -0,0 +1,393 @@
+package de.terrestris.shoguncore.service;
+
+import de.terrestris.shoguncore.model.Role;
+import de.terrestris.shoguncore.model.interceptor.InterceptorRule;
+import org.apache.logging.log4j.Logger;
+import org.ehcache.config.CacheRuntimeConfiguration;
+import org.ehcache.config.ResourceType;
+import org.ehcache.config.SizedResourcePool;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * Service class for the second level cache of hibernate. The regions of the
+ * cache (one per entity hierarchy and cached collection role, see the
+ * <code>ehcache.xml</code> of the webapp) are configured by the JCache
+ * provider.
+ * <p>
+ * After the application context has been started, all entities of the
+ * (small and frequently read) types configured in
+ * <code>secondLevelCache.warmUpClasses</code> are loaded into the cache.
+ *
+ * @author terrestris GmbH & Co. KG
+ */
+@Service("secondLevelCacheService")
+public class SecondLevelCacheService {
+
+    /**
+     * The LOGGER instance
+     */
+    private static final Logger LOG = getLogger(SecondLevelCacheService.class);
+
+    /**
+     * The value of statistics which are not supported by the cache provider.
+     */
+    private static final long NOT_SUPPORTED = -1;
+
+    /**
+     * The name pattern of the (JSR-107) statistics MBeans of the caches.
+     */
+    private static final String CACHE_STATISTICS_MBEANS = "javax.cache:type=CacheStatistics,*";
+
+    private final AtomicBoolean warmedUp = new AtomicBoolean();
+
+    @Autowired(required = false)
+    private SessionFactory sessionFactory;
+
+    private TransactionTemplate transactionTemplate;
+
+    private List<Class<?>> warmUpClasses = Arrays.asList(InterceptorRule.class, Role.class);
+
+    /**
+     * Warms up the cache once the application context has been started.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void onContextRefreshed() {
+        // the event will be published for each (child) context
+        if (!warmedUp.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            warmUp();
+        } catch (Exception e) {
+            LOG.error("Could not warm up the second level cache: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads all entities of the configured types into the cache and enables
+     * the statistics of all regions.
+     *
+     * @return The number of loaded entities
+     */
+    public int warmUp() {
+        if (!isCacheEnabled()) {
+            return 0;
+        }
+
+        final CacheManager cacheManager = getCacheManager();
+        if (cacheManager != null) {
+            for (String regionName : sessionFactory.getStatistics().getSecondLevelCacheRegionNames()) {
+                final String cacheName = getCacheName(regionName);
+                if (cacheManager.getCache(cacheName) != null) {
+                    cacheManager.enableStatistics(cacheName, true);
+                }
+            }
+        }
+
+        int loaded = 0;
+
+        for (Class<?> warmUpClass : warmUpClasses) {
+            final EntityPersister persister = sessionFactory.unwrap(SessionFactoryImplementor.class)
+                .getMetamodel().entityPersister(warmUpClass);
+
+            if (!persister.canWriteToCache()) {
+                LOG.warn("Can't warm up the cache with " + warmUpClass.getSimpleName()
+                    + " entities, the entity is not cacheable");
+                continue;
+            }
+
+            final Integer count = transactionTemplate.execute(status -> {
+                final Session session = sessionFactory.getCurrentSession();
+                final CacheMode cacheMode = session.getCacheMode();
+
+                // put the entities even if they are cached already
+                session.setCacheMode(CacheMode.REFRESH);
+                try {
+                    return session.createCriteria(warmUpClass).list().size();
+                } finally {
+                    session.setCacheMode(cacheMode);
+                }
+            });
+
+            LOG.debug("Loaded " + count + " " + warmUpClass.getSimpleName() + " entities into the cache");
+            loaded += count;
+        }
+
+        LOG.info("Warmed up the second level cache with " + loaded + " entities");
+
+        return loaded;
+    }
+
+    /**
+     * Returns the statistics (hits, misses, evictions, ...) of all regions.
+     * The hits, misses and puts are only counted if the hibernate statistics
+     * are enabled (<code>hibernate.generate_statistics</code>).
+     *
+     * @return The statistics of all regions
+     */
+    @PreAuthorize("hasRole(@configHolder.getSuperAdminRoleName())")
+    public List<RegionStatistics> getRegionStatistics() {
+        final List<RegionStatistics> regionStatistics = new ArrayList<>();
+
+        if (!isCacheEnabled()) {
+            return regionStatistics;
+        }
+
+        final Statistics statistics = sessionFactory.getStatistics();
+        final CacheManager cacheManager = getCacheManager();
+        final Map<String, Long> evictions = getEvictionCounts();
+
+        final String[] regionNames = statistics.getSecondLevelCacheRegionNames();
+        Arrays.sort(regionNames);
+
+        for (String regionName : regionNames) {
+            final CacheRegionStatistics cacheRegionStatistics = statistics.getCacheRegionStatistics(regionName);
+            if (cacheRegionStatistics == null) {
+                continue;
+            }
+
+            final String cacheName = getCacheName(regionName);
+            final Cache<Object, Object> cache = cacheManager != null ? cacheManager.getCache(cacheName) : null;
+
+            final RegionStatistics stats = new RegionStatistics(regionName);
+            stats.hitCount = cacheRegionStatistics.getHitCount();
+            stats.missCount = cacheRegionStatistics.getMissCount();
+            stats.putCount = cacheRegionStatistics.getPutCount();
+            stats.elementCountInMemory = cacheRegionStatistics.getElementCountInMemory();
+            stats.sizeInMemory = cacheRegionStatistics.getSizeInMemory();
+            stats.evictionCount = evictions.getOrDefault(cacheName, NOT_SUPPORTED);
+            stats.heapLimit = getHeapLimit(cache);
+
+            regionStatistics.add(stats);
+        }
+
+        return regionStatistics;
+    }
+
+    /**
+     * @return Whether the second level cache is enabled.
+     */
+    private boolean isCacheEnabled() {
+        return sessionFactory != null
+            && sessionFactory.getSessionFactoryOptions().isSecondLevelCacheEnabled();
+    }
+
+    /**
+     * @return The cache manager of the JCache provider or null, if hibernate
+     * doesn't use JCache.
+     */
+    private CacheManager getCacheManager() {
+        final RegionFactory regionFactory = sessionFactory.unwrap(SessionFactoryImplementor.class)
+            .getCache().getRegionFactory();
+
+        if (regionFactory instanceof JCacheRegionFactory) {
+            return ((JCacheRegionFactory) regionFactory).getCacheManager();
+        }
+        return null;
+    }
+
+    /**
+     * @param regionName
+     * @return The name of the cache of the given region (including the
+     * configured prefix).
+     */
+    private String getCacheName(String regionName) {
+        final String prefix = sessionFactory.getSessionFactoryOptions().getCacheRegionPrefix();
+        return prefix != null ? prefix + "." + regionName : regionName;
+    }
+
+    /**
+     * @return The number of evictions by cache name as reported by the
+     * (JSR-107) statistics MBeans of the caches.
+     */
+    private static Map<String, Long> getEvictionCounts() {
+        final Map<String, Long> evictions = new HashMap<>();
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+
+        try {
+            for (ObjectName name : mBeanServer.queryNames(new ObjectName(CACHE_STATISTICS_MBEANS), null)) {
+                final Object count = mBeanServer.getAttribute(name, "CacheEvictions");
+                if (count instanceof Number) {
+                    evictions.put(name.getKeyProperty("Cache"), ((Number) count).longValue());
+                }
+            }
+        } catch (Exception e) {
+            LOG.warn("Could not read the cache statistics MBeans: " + e.getMessage());
+        }
+
+        return evictions;
+    }
+
+    /**
+     * @param cache
+     * @return The configured size of the heap tier of the given cache (e.g.
+     * <code>16 MB</code>) or null, if unknown.
+     */
+    @SuppressWarnings("rawtypes")
+    private static String getHeapLimit(Cache<Object, Object> cache) {
+        if (cache == null) {
+            return null;
+        }
+
+        try {
+            final CacheRuntimeConfiguration configuration = ((Eh107Configuration) cache.getConfiguration(
+                Eh107Configuration.class)).unwrap(CacheRuntimeConfiguration.class);
+            final SizedResourcePool heap = configuration.getResourcePools()
+                .getPoolForResource(ResourceType.Core.HEAP);
+
+            return heap != null ? heap.getSize() + " " + heap.getUnit() : null;
+        } catch (IllegalArgumentException e) {
+            // not an ehcache
+            return null;
+        }
+    }
+
+    /**
+     * @param transactionManager the transactionManager to use for loading
+     */
+    @Autowired
+    @Qualifier("transactionManager")
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        this.transactionTemplate = template;
+    }
+
+    /**
+     * @param warmUpClasses the (entity) classes to load into the cache on
+     *                      startup
+     */
+    @Value("${secondLevelCache.warmUpClasses:de.terrestris.shoguncore.model.interceptor.InterceptorRule,"
+        + "de.terrestris.shoguncore.model.Role}")
+    public void setWarmUpClasses(Class<?>[] warmUpClasses) {
+        this.warmUpClasses = Arrays.asList(warmUpClasses);
+    }
+
+    /**
+     * The statistics of a cache region.
+     */
+    public static class RegionStatistics {
+
+        private final String regionName;
+
+        private long hitCount;
+
+        private long missCount;
+
+        private long putCount;
+
+        /**
+         * -1 if not supported by the cache provider.
+         */
+        private long evictionCount;
+
+        /**
+         * -1 if not supported by the cache provider.
+         */
+        private long elementCountInMemory;
+
+        /**
+         * The size (in bytes), -1 if not supported by the cache provider.
+         */
+        private long sizeInMemory;
+
+        private String heapLimit;
+
+        /**
+         * @param regionName
+         */
+        public RegionStatistics(String regionName) {
+            this.regionName = regionName;
+        }
+
+        /**
+         * @return the regionName
+         */
+        public String getRegionName() {
+            return regionName;
+        }
+
+        /**
+         * @return the hitCount
+         */
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        /**
+         * @return the missCount
+         */
+        public long getMissCount() {
+            return missCount;
+        }
+
+        /**
+         * @return the putCount
+         */
+        public long getPutCount() {
+            return putCount;
+        }
+
+        /**
+         * @return the evictionCount
+         */
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        /**
+         * @return the elementCountInMemory
+         */
+        public long getElementCountInMemory() {
+            return elementCountInMemory;
+        }
+
+        /**
+         * @return the sizeInMemory
+         */
+        public long getSizeInMemory() {
+            return sizeInMemory;
+        }
+
+        /**
+         * @return the configured size of the heap tier
+         */
+        public String getHeapLimit() {
+            return heapLimit;
+        }
+    }
+
+}
@@ -1,14 +1,32 @@
 package de.terrestris.shoguncore.service;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import de.terrestris.shoguncore.dao.TreeNodeDao;
-import de.terrestris.shoguncore.helper.IdHelper;
 import de.terrestris.shoguncore.model.tree.TreeFolder;
 import de.terrestris.shoguncore.model.tree.TreeNode;
 
@@ -39,46 +57,142 @@ public class TreeNodeService<E extends TreeNode, D extends TreeNodeDao<E>> exten
     }
 
     /**
-     * This unproxies and eagerly fetches the whole node/tree and detaches it
-     * from the hibernate session before persisting a new "clone" instance in the database.
-     * In case of a TreeFolder, each child node will also be re-persisted (as a new database entry).
+     * Object mappers which don't serialize the children of folders, by the
+     * mapper they have been derived from.
+     */
+    private final Map<ObjectMapper, ObjectMapper> nodeMappers = new WeakHashMap<>();
+
+    /**
+     * Whether the missing paths have been checked on startup.
+     */
+    private final AtomicBoolean pathsChecked = new AtomicBoolean();
+
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Calculates the missing paths of nodes (e.g. of nodes that have been
+     * created before the paths were introduced) once the application context
+     * has been started, as the subtrees of such nodes can only be loaded by
+     * walking the children.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void onContextRefreshed() {
+        // the event will be published for each (child) context
+        if (transactionTemplate == null || !pathsChecked.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            final Integer updated = transactionTemplate.execute(status ->
+                dao.hasNodesWithoutPath() ? dao.rebuildPaths() : 0);
+            if (updated > 0) {
+                LOG.info("Calculated the missing paths of " + updated + " tree nodes");
+            }
+        } catch (Exception e) {
+            LOG.error("Could not calculate the missing paths of the tree nodes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Persists a "clone" of the given node as a new instance in the database.
+     * In case of a TreeFolder, each descendant node will also be re-persisted
+     * (as a new database entry). The descendants are loaded with a single
+     * query (see {@link TreeNodeDao#cloneSubtree(TreeNode)}).
      *
      * @param node
-     * @return
-     * @throws IllegalAccessException
-     * @throws NoSuchFieldException
+     * @return The clone of the node
+     * @throws Exception
      */
-    @SuppressWarnings("unchecked")
     public E cloneAndPersistTreeNode(E node) throws Exception {
 
         if (node == null) {
             throw new Exception("Node to clone must not be null.");
         }
 
-        // unproxy the node to be sure that everything (on top level) is loaded eagerly
-        // before we continue to care about possible child notes and persistance
-        node = dao.unproxy(node);
+        return dao.cloneSubtree(node);
+    }
 
-        if (node instanceof TreeFolder) {
-            List<E> children = (List<E>) ((TreeFolder) node).getChildren();
-            List<E> clonedChildren = new ArrayList<>();
-            for (E childNode : children) {
-                // recursive call for all children
-                clonedChildren.add(cloneAndPersistTreeNode(childNode));
-            }
-            ((TreeFolder) node).setChildren((List<TreeNode>) children);
+    /**
+     * Returns the node with the given ID including all its descendants as
+     * JSON tree. The descendants are loaded with a single query and are
+     * assembled to the tree in memory (instead of initializing the children
+     * of each folder separately).
+     *
+     * @param id
+     * @param objectMapper The mapper to serialize the nodes with
+     * @return The JSON tree or null, if the node does not exist
+     */
+    @PreAuthorize("hasRole(@configHolder.getSuperAdminRoleName())"
+        + " or hasPermission(#id, 'de.terrestris.shoguncore.model.tree.TreeNode', 'READ')")
+    @Transactional(readOnly = true)
+    public JsonNode findSubtree(Integer id, ObjectMapper objectMapper) {
+        final E node = dao.findById(id);
+
+        if (node == null) {
+            return null;
         }
 
-        // detach the clone from the hibernate session to persist it as a new instance in the next step
-        dao.evict(node);
+        final TreeNode root = (TreeNode) Hibernate.unproxy(node);
 
-        // set id to null to persist a new instance afterwards
-        IdHelper.setIdOnPersistentObject(node, null);
+        final Map<Integer, List<TreeNode>> childrenByParentId = new HashMap<>();
+        for (TreeNode descendant : dao.findDescendants(root)) {
+            childrenByParentId.computeIfAbsent(descendant.getParentFolder().getId(), parentId -> new ArrayList<>())
+                .add((TreeNode) Hibernate.unproxy(descendant));
+        }
 
-        // persist the same object as a new entry in database
-        dao.saveOrUpdate(node);
+        final Comparator<TreeNode> order = Comparator.comparingInt(TreeNode::getIndex)
+            .thenComparing(TreeNode::getId);
+        for (List<TreeNode> children : childrenByParentId.values()) {
+            children.sort(order);
+        }
+
+        LOG.trace("Loaded the subtree of node " + id + " with " + childrenByParentId.size() + " folders");
 
-        return node;
+        return toJson(root, childrenByParentId, getNodeMapper(objectMapper));
+    }
+
+    /**
+     * (Re-)Calculates the paths of all nodes, which is needed for nodes
+     * that have been created before the paths were introduced.
+     *
+     * @return The number of updated nodes
+     */
+    @PreAuthorize("hasRole(@configHolder.getSuperAdminRoleName())")
+    @Transactional
+    public int rebuildPaths() {
+        return dao.rebuildPaths();
+    }
+
+    /**
+     * @param node
+     * @param childrenByParentId
+     * @param nodeMapper
+     * @return The JSON representation of the node and its descendants
+     */
+    private JsonNode toJson(TreeNode node, Map<Integer, List<TreeNode>> childrenByParentId,
+                            ObjectMapper nodeMapper) {
+        final ObjectNode json = nodeMapper.valueToTree(node);
+
+        if (node instanceof TreeFolder) {
+            final ArrayNode children = json.putArray("children");
+            for (TreeNode child : childrenByParentId.getOrDefault(node.getId(), Collections.emptyList())) {
+                children.add(toJson(child, childrenByParentId, nodeMapper));
+            }
+        }
+
+        return json;
+    }
+
+    /**
+     * @param objectMapper
+     * @return A copy of the given mapper, which does not serialize the
+     * (lazily loaded) children of folders.
+     */
+    private ObjectMapper getNodeMapper(ObjectMapper objectMapper) {
+        synchronized (nodeMappers) {
+            return nodeMappers.computeIfAbsent(objectMapper,
+                mapper -> mapper.copy().addMixIn(TreeNode.class, ChildrenIgnoringMixIn.class));
+        }
     }
 
     /**
@@ -92,4 +206,22 @@ public class TreeNodeService<E extends TreeNode, D extends TreeNodeDao<E>> exten
     public void setDao(D dao) {
         this.dao = dao;
     }
+
+    /**
+     * @param transactionManager the transactionManager to calculate the
+     *                           missing paths on startup with
+     */
+    @Autowired(required = false)
+    @Qualifier("transactionManager")
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Mix-in to serialize the nodes without their children.
+     */
+    @JsonIgnoreProperties("children")
+    private abstract static class ChildrenIgnoringMixIn {
+    }
+
 }
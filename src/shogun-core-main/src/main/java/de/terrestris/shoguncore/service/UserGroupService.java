@@ -6,12 +6,14 @@ import java.util.Set;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.security.access.prepost.PostFilter;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import de.terrestris.shoguncore.dao.UserGroupDao;
 import de.terrestris.shoguncore.model.User;
 import de.terrestris.shoguncore.model.UserGroup;
+import de.terrestris.shoguncore.security.AuthenticationCache;
 
 /**
  * Service class for the {@link UserGroup} model.
@@ -24,6 +26,12 @@ import de.terrestris.shoguncore.model.UserGroup;
 public class UserGroupService<E extends UserGroup, D extends UserGroupDao<E>>
     extends PermissionAwareCrudService<E, D> {
 
+    /**
+     * The cache for successful authentications.
+     */
+    @Autowired(required = false)
+    private AuthenticationCache authenticationCache;
+
     /**
      * Default constructor, which calls the type-constructor
      */
@@ -52,6 +60,33 @@ public class UserGroupService<E extends UserGroup, D extends UserGroupDao<E>>
         this.dao = dao;
     }
 
+    /**
+     * Saves the group and invalidates all cached authentications (as the
+     * members or roles of the group may have changed).
+     *
+     * @param userGroup
+     */
+    @Override
+    @PreAuthorize("hasRole(@configHolder.getSuperAdminRoleName())"
+        + " or (#userGroup.id == null and hasPermission(#userGroup, 'CREATE'))"
+        + " or (#userGroup.id != null and hasPermission(#userGroup, 'UPDATE'))")
+    public void saveOrUpdate(E userGroup) {
+        super.saveOrUpdate(userGroup);
+        invalidateCachedAuthentications();
+    }
+
+    /**
+     * Deletes the group and invalidates all cached authentications.
+     *
+     * @param userGroup
+     */
+    @Override
+    @PreAuthorize("hasRole(@configHolder.getSuperAdminRoleName()) or hasPermission(#userGroup, 'DELETE')")
+    public void delete(E userGroup) {
+        super.delete(userGroup);
+        invalidateCachedAuthentications();
+    }
+
     /**
      * @param groupId
      * @return
@@ -73,4 +108,13 @@ public class UserGroupService<E extends UserGroup, D extends UserGroupDao<E>>
         return groupUsersSet;
     }
 
+    /**
+     *
+     */
+    private void invalidateCachedAuthentications() {
+        if (authenticationCache != null) {
+            authenticationCache.invalidateAll();
+        }
+    }
+
 }
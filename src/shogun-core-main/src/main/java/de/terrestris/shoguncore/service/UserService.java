@@ -7,10 +7,12 @@ import de.terrestris.shoguncore.model.Role;
 import de.terrestris.shoguncore.model.User;
 import de.terrestris.shoguncore.model.UserGroup;
 import de.terrestris.shoguncore.model.token.RegistrationToken;
+import de.terrestris.shoguncore.security.AuthenticationCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.security.access.prepost.PostAuthorize;
 import org.springframework.security.access.prepost.PostFilter;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -76,6 +78,12 @@ public class UserService<E extends User, D extends UserDao<E>> extends
     @Qualifier("userRole")
     private Role defaultUserRole;
 
+    /**
+     * The cache for successful authentications.
+     */
+    @Autowired(required = false)
+    private AuthenticationCache authenticationCache;
+
     /**
      * We have to use {@link Qualifier} to define the correct dao here.
      * Otherwise, spring can not decide which dao has to be autowired here
@@ -88,6 +96,34 @@ public class UserService<E extends User, D extends UserDao<E>> extends
         super.setDao(dao);
     }
 
+    /**
+     * Saves the user and invalidates its cached authentication (e.g. as the
+     * user may have been deactivated or its roles or groups may have changed).
+     *
+     * @param user
+     */
+    @Override
+    @PreAuthorize("hasRole(@configHolder.getSuperAdminRoleName())"
+        + " or (#user.id == null and hasPermission(#user, 'CREATE'))"
+        + " or (#user.id != null and hasPermission(#user, 'UPDATE'))")
+    public void saveOrUpdate(E user) {
+        super.saveOrUpdate(user);
+        invalidateCachedAuthentication(user.getId());
+    }
+
+    /**
+     * Deletes the user and invalidates its cached authentication.
+     *
+     * @param user
+     */
+    @Override
+    @PreAuthorize("hasRole(@configHolder.getSuperAdminRoleName()) or hasPermission(#user, 'DELETE')")
+    public void delete(E user) {
+        final Integer id = user.getId();
+        super.delete(user);
+        invalidateCachedAuthentication(id);
+    }
+
     /**
      * Returns the user for the given (unique) account name.
      * If no user was found, null will be returned.
@@ -216,6 +252,8 @@ public class UserService<E extends User, D extends UserDao<E>> extends
 
         user.setPassword(passwordEncoder.encode(rawPassword));
         dao.saveOrUpdate(user);
+
+        invalidateCachedAuthentication(user.getId());
     }
 
     /**
@@ -262,6 +300,15 @@ public class UserService<E extends User, D extends UserDao<E>> extends
         return userGroupsSet;
     }
 
+    /**
+     * @param userId
+     */
+    private void invalidateCachedAuthentication(Integer userId) {
+        if (authenticationCache != null) {
+            authenticationCache.invalidateUser(userId);
+        }
+    }
+
     /**
      * @return the passwordEncoder
      */
@@ -0,0 +1,358 @@
+package de.terrestris.shoguncore.util.application;
+
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * A cache for the serialized (JSON) configurations of applications, i.e. the
+ * complete graph of an application (viewport, modules, layers, ...).
+ * <p>
+ * Every snapshot knows the IDs of all entities it has been serialized from.
+ * The snapshots have to be invalidated (see {@link #invalidate(Collection)})
+ * whenever one of these entities changes (see
+ * {@link de.terrestris.shoguncore.hibernate.ApplicationSnapshotInvalidator}).
+ * As the IDs of all entities are drawn from the same generator, the ID is
+ * sufficient to identify an entity. The snapshots are evicted in least
+ * recently used order as soon as the total size of all snapshots exceeds the
+ * configured maximum.
+ * <p>
+ * The snapshots don't contain any user specific content, so the permission
+ * to read the application has to be checked on every request nevertheless.
+ *
+ * @author terrestris GmbH & Co. KG
+ */
+@Component("applicationSnapshotCache")
+public class ApplicationSnapshotCache {
+
+    /**
+     * The LOGGER instance
+     */
+    private static final Logger LOG = getLogger(ApplicationSnapshotCache.class);
+
+    /**
+     * The snapshots by application ID in access order.
+     */
+    private final LinkedHashMap<Integer, Snapshot> snapshots = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The IDs of the applications by the IDs of the entities their snapshots
+     * depend on.
+     */
+    private final Map<Integer, Set<Integer>> dependentApplications = new HashMap<>();
+
+    /**
+     * Incremented on every invalidation, so snapshots serialized concurrently
+     * to an invalidation won't be cached.
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     *
+     */
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     *
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * The total size (in bytes) of all snapshots.
+     */
+    private long totalBytes = 0;
+
+    /**
+     *
+     */
+    private boolean enabled = true;
+
+    /**
+     * The maximum total size (in bytes) of all snapshots.
+     */
+    private long maxBytes = 32 * 1024 * 1024;
+
+    /**
+     * @return Whether the cache is enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return The current version of the cache, has to be passed to
+     * {@link #put(Integer, byte[], Collection, long)}.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * @param applicationId
+     * @return The snapshot of the given application or null.
+     */
+    public Snapshot get(Integer applicationId) {
+        Snapshot snapshot = null;
+
+        if (enabled && applicationId != null) {
+            synchronized (this) {
+                snapshot = snapshots.get(applicationId);
+            }
+        }
+
+        if (snapshot == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Creates the snapshot of the given application and caches it, if the
+     * cache has not been invalidated since the given version.
+     *
+     * @param applicationId
+     * @param json          The serialized application
+     * @param dependencies  The IDs of all entities the snapshot has been
+     *                      serialized from
+     * @param loadedVersion The version of the cache before loading the
+     *                      application (see {@link #getVersion()})
+     * @return The snapshot (even if it has not been cached).
+     */
+    public Snapshot put(Integer applicationId, byte[] json, Collection<Integer> dependencies, long loadedVersion) {
+        final Snapshot snapshot = new Snapshot(applicationId, json, dependencies);
+
+        if (!enabled || json.length > maxBytes) {
+            return snapshot;
+        }
+
+        synchronized (this) {
+            if (loadedVersion != version.get()) {
+                return snapshot;
+            }
+
+            remove(applicationId);
+            snapshots.put(applicationId, snapshot);
+            totalBytes += json.length;
+
+            for (Integer dependency : snapshot.getDependencies()) {
+                dependentApplications.computeIfAbsent(dependency, id -> new HashSet<>()).add(applicationId);
+            }
+
+            // evict the least recently used snapshots
+            Iterator<Snapshot> it = snapshots.values().iterator();
+            while (totalBytes > maxBytes && it.hasNext()) {
+                Snapshot eldest = it.next();
+                if (eldest != snapshot) {
+                    it.remove();
+                    removeDependencies(eldest);
+                }
+            }
+        }
+
+        LOG.debug("Cached the snapshot of application " + applicationId + " (" +
+            snapshot.getDependencies().size() + " entities, " + json.length + " bytes)");
+
+        return snapshot;
+    }
+
+    /**
+     * Removes the snapshots depending on any of the given entities.
+     *
+     * @param entityIds
+     */
+    public void invalidate(Collection<Integer> entityIds) {
+        version.incrementAndGet();
+
+        final Set<Integer> applicationIds = new HashSet<>();
+
+        synchronized (this) {
+            if (snapshots.isEmpty()) {
+                return;
+            }
+
+            for (Integer entityId : entityIds) {
+                final Set<Integer> dependent = dependentApplications.get(entityId);
+                if (dependent != null) {
+                    applicationIds.addAll(dependent);
+                }
+            }
+
+            for (Integer applicationId : applicationIds) {
+                remove(applicationId);
+            }
+        }
+
+        if (!applicationIds.isEmpty()) {
+            LOG.debug("Invalidated the snapshots of the applications " + applicationIds);
+        }
+    }
+
+    /**
+     * Removes all snapshots.
+     */
+    public void invalidateAll() {
+        version.incrementAndGet();
+
+        synchronized (this) {
+            snapshots.clear();
+            dependentApplications.clear();
+            totalBytes = 0;
+        }
+
+        LOG.debug("Invalidated all application snapshots");
+    }
+
+    /**
+     * @param applicationId
+     */
+    private void remove(Integer applicationId) {
+        final Snapshot removed = snapshots.remove(applicationId);
+        if (removed != null) {
+            removeDependencies(removed);
+        }
+    }
+
+    /**
+     * @param snapshot
+     */
+    private void removeDependencies(Snapshot snapshot) {
+        totalBytes -= snapshot.getJson().length;
+
+        for (Integer dependency : snapshot.getDependencies()) {
+            final Set<Integer> dependent = dependentApplications.get(dependency);
+            if (dependent != null) {
+                dependent.remove(snapshot.getApplicationId());
+                if (dependent.isEmpty()) {
+                    dependentApplications.remove(dependency);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of cached snapshots.
+     */
+    public synchronized int getSize() {
+        return snapshots.size();
+    }
+
+    /**
+     * @return The total size (in bytes) of all snapshots.
+     */
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * @return the hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @param enabled the enabled to set
+     */
+    @Value("${applicationSnapshotCache.enabled:true}")
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param maxBytes the maxBytes to set
+     */
+    @Value("${applicationSnapshotCache.maxBytes:33554432}")
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * The serialized configuration of an application.
+     */
+    public static class Snapshot {
+
+        private final Integer applicationId;
+
+        private final byte[] json;
+
+        private final Set<Integer> dependencies;
+
+        private final String eTag;
+
+        /**
+         * The Last-Modified date (in ms, truncated to seconds).
+         */
+        private final long lastModified;
+
+        /**
+         * @param applicationId
+         * @param json
+         * @param dependencies
+         */
+        public Snapshot(Integer applicationId, byte[] json, Collection<Integer> dependencies) {
+            this.applicationId = applicationId;
+            this.json = json;
+            this.dependencies = new HashSet<>(dependencies);
+            this.eTag = "\"" + DigestUtils.md5DigestAsHex(json) + "\"";
+            this.lastModified = System.currentTimeMillis() / 1000 * 1000;
+        }
+
+        /**
+         * @return the applicationId
+         */
+        public Integer getApplicationId() {
+            return applicationId;
+        }
+
+        /**
+         * @return the json
+         */
+        public byte[] getJson() {
+            return json;
+        }
+
+        /**
+         * @return the IDs of the entities the snapshot depends on
+         */
+        public Set<Integer> getDependencies() {
+            return dependencies;
+        }
+
+        /**
+         * @return the eTag
+         */
+        public String getETag() {
+            return eTag;
+        }
+
+        /**
+         * @return the lastModified
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+
+}
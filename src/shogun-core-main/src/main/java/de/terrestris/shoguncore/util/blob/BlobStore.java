@@ -0,0 +1,73 @@
+package de.terrestris.shoguncore.util.blob;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+
+/**
+ * A store for binary content (e.g. uploaded files), which is referenced by
+ * the entities via the key returned when storing the content.
+ * <p>
+ * Implementations are content addressed, i.e. equal contents are stored
+ * once and share the same key.
+ *
+ * @author terrestris GmbH & Co. KG
+ */
+public interface BlobStore {
+
+    /**
+     * @return Whether the store is configured and can be used.
+     */
+    boolean isEnabled();
+
+    /**
+     * Stores the content of the given stream (which will not be closed).
+     *
+     * @param inputStream
+     * @return The key of the stored content.
+     * @throws IOException
+     */
+    String put(InputStream inputStream) throws IOException;
+
+    /**
+     * Stores the given content.
+     *
+     * @param content
+     * @return The key of the stored content.
+     * @throws IOException
+     */
+    default String put(byte[] content) throws IOException {
+        return put(new ByteArrayInputStream(content));
+    }
+
+    /**
+     * Opens the content with the given key for reading. The returned channel
+     * must be closed by the caller.
+     *
+     * @param key
+     * @return The open channel of the content.
+     * @throws IOException If there is no content with the given key
+     */
+    FileChannel open(String key) throws IOException;
+
+    /**
+     * @param key
+     * @return Whether there is content with the given key.
+     */
+    boolean exists(String key);
+
+    /**
+     * Deletes the content with the given key, unless it has been stored
+     * (again) since the given time. This prevents the deletion of content,
+     * which has been uploaded again after the last reference to it has been
+     * removed.
+     *
+     * @param key
+     * @param notModifiedSince The time (in ms since the epoch)
+     * @return Whether the content has been deleted.
+     * @throws IOException
+     */
+    boolean delete(String key, long notModifiedSince) throws IOException;
+
+}
@@ -0,0 +1,244 @@
+package de.terrestris.shoguncore.util.blob;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * A {@link BlobStore} in a directory of the local file system.
+ * <p>
+ * The content is streamed into a temporary file while its SHA-256 digest is
+ * computed and then moved to
+ * <code>{directory}/{hash[0:2]}/{hash[2:4]}/{hash}</code>, where the hash is
+ * the key of the content. Content which is stored already will not be
+ * written again.
+ * <p>
+ * The store is disabled unless a directory has been configured.
+ *
+ * @author terrestris GmbH & Co. KG
+ */
+@Component("blobStore")
+public class LocalBlobStore implements BlobStore {
+
+    /**
+     * The LOGGER instance
+     */
+    private static final Logger LOG = getLogger(LocalBlobStore.class);
+
+    /**
+     *
+     */
+    private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    /**
+     *
+     */
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    /**
+     * The tolerance (in ms) for the resolution of the modification times of
+     * the file system.
+     */
+    private static final long MODIFICATION_TIME_TOLERANCE = 1000;
+
+    /**
+     * The base directory of the store or null, if the store is disabled.
+     */
+    private Path directory;
+
+    /**
+     * Creates the directory and deletes the temporary files of interrupted
+     * uploads.
+     */
+    @PostConstruct
+    public void init() {
+        if (directory == null) {
+            LOG.info("No blob store directory has been configured, files will be stored in the database.");
+            return;
+        }
+
+        try {
+            Files.createDirectories(directory);
+
+            try (Stream<Path> stream = Files.list(directory)) {
+                stream.filter(file -> file.getFileName().toString().endsWith(TEMP_FILE_SUFFIX))
+                    .forEach(LocalBlobStore::deleteQuietly);
+            }
+
+            LOG.info("Initialized the blob store in " + directory);
+        } catch (IOException e) {
+            LOG.error("Could not initialize the blob store in " + directory
+                + ", files will be stored in the database: " + e.getMessage());
+            directory = null;
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    @Override
+    public String put(InputStream inputStream) throws IOException {
+        assertEnabled();
+
+        final MessageDigest messageDigest = createDigest();
+        final Path tempFile = Files.createTempFile(directory, "blob-", TEMP_FILE_SUFFIX);
+
+        try {
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    messageDigest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            }
+
+            final String key = toHex(messageDigest.digest());
+            final Path file = getPath(key);
+
+            if (Files.exists(file)) {
+                // mark the existing content as stored again (see delete)
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+                LOG.debug("The blob " + key + " is stored already");
+            } else {
+                Files.createDirectories(file.getParent());
+                try {
+                    Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException e) {
+                    // stored concurrently
+                    LOG.debug("The blob " + key + " has been stored concurrently");
+                }
+            }
+
+            return key;
+        } finally {
+            deleteQuietly(tempFile);
+        }
+    }
+
+    @Override
+    public FileChannel open(String key) throws IOException {
+        assertEnabled();
+        return FileChannel.open(getPath(key), StandardOpenOption.READ);
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return isEnabled() && KEY_PATTERN.matcher(String.valueOf(key)).matches()
+            && Files.isRegularFile(getPath(key));
+    }
+
+    @Override
+    public boolean delete(String key, long notModifiedSince) throws IOException {
+        assertEnabled();
+
+        final Path file = getPath(key);
+
+        try {
+            long lastModified = Files.getLastModifiedTime(file).toMillis();
+            if (lastModified + MODIFICATION_TIME_TOLERANCE >= notModifiedSince) {
+                LOG.debug("The blob " + key + " has been stored again and will not be deleted");
+                return false;
+            }
+            return Files.deleteIfExists(file);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param key
+     * @return The path of the content with the given key.
+     * @throws IllegalArgumentException If the key is invalid
+     */
+    private Path getPath(String key) {
+        if (key == null || !KEY_PATTERN.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid blob key: " + key);
+        }
+        return directory.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    /**
+     *
+     */
+    private void assertEnabled() {
+        if (directory == null) {
+            throw new IllegalStateException("The blob store is not enabled");
+        }
+    }
+
+    /**
+     * @return
+     */
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * @param bytes
+     * @return
+     */
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * @param file
+     */
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.warn("Could not delete " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the directory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @param directory the directory to set (the store will be disabled if
+     *                  empty)
+     */
+    @Value("${blobStore.directory:}")
+    public void setDirectory(String directory) {
+        this.directory = StringUtils.isBlank(directory) ? null : Paths.get(directory);
+    }
+
+}
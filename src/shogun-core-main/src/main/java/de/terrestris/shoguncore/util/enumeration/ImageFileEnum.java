@@ -0,0 +1,64 @@
+package de.terrestris.shoguncore.util.enumeration;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * @author terrestris GmbH & Co. KG
+ */
+public class ImageFileEnum {
+
+    /**
+     * A enum type for the state of the thumbnails of an image.
+     */
+    public static enum ThumbnailStatus {
+        PENDING("PENDING"),
+        READY("READY"),
+        FAILED("FAILED");
+
+        private final String value;
+
+        /**
+         * Enum constructor
+         *
+         * @param value
+         */
+        private ThumbnailStatus(String value) {
+            this.value = value;
+        }
+
+        /**
+         * Static method to get an enum based on a string value.
+         * This method is annotated with {@link JsonCreator},
+         * which allows the client to send case insensitive string
+         * values (like "rEaDy"), which will be converted to the
+         * correct enum value.
+         *
+         * @param inputValue
+         * @return
+         */
+        @JsonCreator
+        public static ThumbnailStatus fromString(String inputValue) {
+            if (inputValue != null) {
+                for (ThumbnailStatus type : ThumbnailStatus.values()) {
+                    if (inputValue.equalsIgnoreCase(type.value)) {
+                        return type;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * This method is annotated with {@link JsonValue},
+         * so that jackson will serialize the enum value to
+         * the (lowercase) {@link #value}.
+         */
+        @Override
+        @JsonValue
+        public String toString() {
+            return value;
+        }
+    }
+
+}
@@ -0,0 +1,496 @@
+package de.terrestris.shoguncore.util.http;
+
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * Executes (proxied) requests to upstream servers (e.g. the GeoServer)
+ * asynchronously, so the container threads will not be blocked for the
+ * whole round trip to the upstream server. The result will be delivered
+ * via a {@link DeferredResult} (Servlet 3 async processing).
+ * <p>
+ * The tasks are executed by a bounded pool of threads with a bounded queue,
+ * i.e. the number of requests in flight is limited: requests exceeding the
+ * limit will be rejected immediately. Requests that didn't receive the
+ * headers of the upstream response within the configured timeout will be
+ * cancelled (including the upstream request) and answered with the timeout
+ * result. The transfer of the body afterwards is not limited.
+ * <p>
+ * The response belongs to the worker as soon as it has been claimed (see
+ * {@link Task#claimResponse()}): the worker must not write to it unless it
+ * claimed it successfully and must stop writing as soon as the request has
+ * been completed by the container (see {@link Task#guard(OutputStream)}).
+ * <p>
+ * The asynchronous execution is disabled by default and requires a container
+ * (and filter chain) supporting async requests (see
+ * {@link #isEnabled(HttpServletRequest)}).
+ *
+ * @author terrestris GmbH & Co. KG
+ */
+@Component("asyncRequestExecutor")
+public class AsyncRequestExecutor {
+
+    /**
+     * The Logger.
+     */
+    private static final Logger LOG = getLogger(AsyncRequestExecutor.class);
+
+    /**
+     *
+     */
+    private boolean enabled = false;
+
+    /**
+     * The max number of threads executing upstream requests.
+     */
+    private int maxThreads = 50;
+
+    /**
+     * The max number of requests waiting for a free thread.
+     */
+    private int maxQueued = 100;
+
+    /**
+     * The time (in ms) after which a request that didn't receive the headers
+     * of the upstream response will be answered with the timeout result.
+     */
+    private long timeout = 60000;
+
+    /**
+     * The async timeout of the container (none), the timeout of the upstream
+     * request is applied by the executor.
+     */
+    private static final long NO_CONTAINER_TIMEOUT = -1;
+
+    /**
+     * The number of requests in flight (executing or queued).
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * The number of rejected requests.
+     */
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * The number of timed out requests.
+     */
+    private final AtomicLong timedOut = new AtomicLong();
+
+    /**
+     * The executor, created on first use.
+     */
+    private volatile ThreadPoolExecutor executor;
+
+    /**
+     * The scheduler of the timeouts, created with the executor.
+     */
+    private volatile ScheduledExecutorService timeoutScheduler;
+
+    /**
+     * @param request
+     * @return Whether the given request should be executed asynchronously.
+     */
+    public boolean isEnabled(HttpServletRequest request) {
+        return enabled && request != null && request.isAsyncSupported();
+    }
+
+    /**
+     * Submits the given task. The security context of the current thread
+     * and the given request (as request attributes) are available to the
+     * task, the {@link Task} of the execution is available via
+     * {@link Task#current()}.
+     *
+     * @param request        The current request
+     * @param response       The current response
+     * @param task           The task to execute
+     * @param timeoutResult  Provides the result if the task times out
+     * @param rejectedResult Provides the result if the task is rejected as
+     *                       too many requests are in flight already
+     * @param <T>
+     * @return The deferred result of the task.
+     */
+    public <T> DeferredResult<T> submit(HttpServletRequest request, HttpServletResponse response,
+                                        Callable<T> task, Supplier<T> timeoutResult,
+                                        Supplier<T> rejectedResult) {
+
+        final DeferredResult<T> deferredResult = new DeferredResult<>(NO_CONTAINER_TIMEOUT);
+        final Task execution = new Task();
+
+        final SecurityContext securityContext = SecurityContextHolder.createEmptyContext();
+        securityContext.setAuthentication(SecurityContextHolder.getContext().getAuthentication());
+
+        // the container completed the request (or the client went away), the
+        // worker must not write to the response anymore
+        deferredResult.onCompletion(execution::complete);
+        deferredResult.onError(error -> execution.cancel());
+        deferredResult.onTimeout(() -> {
+            execution.cancel();
+            deferredResult.setResult(timeoutResult.get());
+        });
+
+        final FutureTask<Void> futureTask = new FutureTask<Void>(() -> {
+            final ServletRequestAttributes requestAttributes = new ServletRequestAttributes(request, response);
+
+            SecurityContextHolder.setContext(securityContext);
+            RequestContextHolder.setRequestAttributes(requestAttributes);
+            Task.CURRENT.set(execution);
+
+            try {
+                final T result = task.call();
+                if (execution.claimResponse()) {
+                    deferredResult.setResult(result);
+                }
+            } catch (Exception e) {
+                if (execution.claimResponse()) {
+                    deferredResult.setErrorResult(e);
+                }
+            } finally {
+                Task.CURRENT.remove();
+                requestAttributes.requestCompleted();
+                RequestContextHolder.resetRequestAttributes();
+                SecurityContextHolder.clearContext();
+            }
+        }, null) {
+            @Override
+            protected void done() {
+                // executed, failed or cancelled (even while queued)
+                inFlight.decrementAndGet();
+            }
+        };
+        execution.future = futureTask;
+
+        try {
+            inFlight.incrementAndGet();
+
+            getExecutor().execute(futureTask);
+        } catch (RejectedExecutionException e) {
+            inFlight.decrementAndGet();
+            rejected.incrementAndGet();
+
+            LOG.warn("Rejected an upstream request as " + maxThreads + " requests are executed and "
+                + maxQueued + " requests are queued already.");
+
+            deferredResult.setResult(rejectedResult.get());
+            return deferredResult;
+        }
+
+        execution.timeoutFuture = timeoutScheduler.schedule(() -> {
+            // tasks which received the upstream response already won't time out
+            if (execution.timeOut()) {
+                timedOut.incrementAndGet();
+
+                LOG.warn("An upstream request timed out after " + timeout + " ms.");
+
+                deferredResult.setResult(timeoutResult.get());
+            }
+        }, timeout, TimeUnit.MILLISECONDS);
+
+        return deferredResult;
+    }
+
+    /**
+     * @return
+     */
+    private ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            synchronized (this) {
+                if (executor == null) {
+                    final AtomicInteger threadNumber = new AtomicInteger();
+                    final ThreadFactory threadFactory = runnable -> {
+                        Thread thread = new Thread(runnable, "async-request-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    };
+
+                    ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(maxThreads, maxThreads,
+                        60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(Math.max(maxQueued, 1)), threadFactory);
+                    threadPoolExecutor.allowCoreThreadTimeOut(true);
+
+                    ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+                        Thread thread = new Thread(runnable, "async-request-timeout");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    scheduler.setRemoveOnCancelPolicy(true);
+
+                    timeoutScheduler = scheduler;
+                    executor = threadPoolExecutor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Shuts the executor down.
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            timeoutScheduler.shutdownNow();
+            executor = null;
+            timeoutScheduler = null;
+        }
+    }
+
+    /**
+     * @return The number of requests in flight (executing or queued).
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return The number of rejected requests.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return The number of timed out requests.
+     */
+    public long getTimedOut() {
+        return timedOut.get();
+    }
+
+    /**
+     * @param enabled the enabled to set
+     */
+    @Value("${http.async.enabled:false}")
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param maxThreads the maxThreads to set
+     */
+    @Value("${http.async.maxThreads:50}")
+    public void setMaxThreads(int maxThreads) {
+        this.maxThreads = maxThreads;
+    }
+
+    /**
+     * @param maxQueued the maxQueued to set
+     */
+    @Value("${http.async.maxQueued:100}")
+    public void setMaxQueued(int maxQueued) {
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * @param timeout the timeout (in ms) to set
+     */
+    @Value("${http.async.timeout:60000}")
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * The execution of a submitted task. The response of the request belongs
+     * to the worker as soon as it has been claimed, the timeout only applies
+     * until then.
+     */
+    public static class Task {
+
+        /**
+         * The task executed by the current thread.
+         */
+        private static final ThreadLocal<Task> CURRENT = new ThreadLocal<>();
+
+        /**
+         * Queued or executing, neither the worker nor the timeout owns the
+         * response.
+         */
+        private static final int PENDING = 0;
+
+        /**
+         * The worker owns the response.
+         */
+        private static final int CLAIMED = 1;
+
+        /**
+         * Timed out, cancelled or completed by the container.
+         */
+        private static final int COMPLETED = 2;
+
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        private volatile HttpRequestBase upstreamRequest;
+
+        private volatile Future<?> future;
+
+        private volatile ScheduledFuture<?> timeoutFuture;
+
+        /**
+         * @return The task executed by the current thread or null, if the
+         * current thread is not a worker of the executor.
+         */
+        public static Task current() {
+            return CURRENT.get();
+        }
+
+        /**
+         * Registers the request to the upstream server, it will be aborted if
+         * the task times out or is cancelled.
+         *
+         * @param upstreamRequest
+         */
+        public void setUpstreamRequest(HttpRequestBase upstreamRequest) {
+            this.upstreamRequest = upstreamRequest;
+            if (state.get() == COMPLETED) {
+                upstreamRequest.abort();
+            }
+        }
+
+        /**
+         * Claims the response for the worker (e.g. as soon as the headers of
+         * the upstream response have been received). The timeout doesn't
+         * apply anymore afterwards.
+         *
+         * @return Whether the worker owns the response, false if the task
+         * timed out or has been completed already.
+         */
+        public boolean claimResponse() {
+            if (state.compareAndSet(PENDING, CLAIMED)) {
+                final ScheduledFuture<?> scheduledTimeout = timeoutFuture;
+                if (scheduledTimeout != null) {
+                    scheduledTimeout.cancel(false);
+                }
+                return true;
+            }
+            return state.get() == CLAIMED;
+        }
+
+        /**
+         * @return Whether the request has not been completed yet.
+         */
+        public boolean isActive() {
+            return state.get() != COMPLETED;
+        }
+
+        /**
+         * @param outputStream The output stream of the response
+         * @return A stream writing to the given stream as long as the request
+         * is active, failing with an {@link IOException} afterwards.
+         */
+        public OutputStream guard(OutputStream outputStream) {
+            return new FilterOutputStream(outputStream) {
+                @Override
+                public void write(int b) throws IOException {
+                    synchronized (Task.this) {
+                        ensureActive();
+                        out.write(b);
+                    }
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    synchronized (Task.this) {
+                        ensureActive();
+                        out.write(b, off, len);
+                    }
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    synchronized (Task.this) {
+                        ensureActive();
+                        out.flush();
+                    }
+                }
+
+                @Override
+                public void close() {
+                    // the container closes the stream of the response
+                }
+            };
+        }
+
+        /**
+         * @throws IOException If the request has been completed already.
+         */
+        private void ensureActive() throws IOException {
+            if (!isActive()) {
+                throw new IOException("The request has been completed already.");
+            }
+        }
+
+        /**
+         * @return Whether the task timed out, i.e. the response hasn't been
+         * claimed. The task will be cancelled in this case.
+         */
+        boolean timeOut() {
+            if (state.compareAndSet(PENDING, COMPLETED)) {
+                abort();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Marks the request as completed by the container, waits for a write
+         * in progress.
+         */
+        synchronized void complete() {
+            state.set(COMPLETED);
+        }
+
+        /**
+         * Completes the request and cancels the task and the upstream
+         * request.
+         */
+        void cancel() {
+            complete();
+            abort();
+        }
+
+        /**
+         *
+         */
+        private void abort() {
+            final Future<?> task = future;
+            if (task != null) {
+                task.cancel(true);
+            }
+
+            final HttpRequestBase request = upstreamRequest;
+            if (request != null) {
+                request.abort();
+            }
+        }
+    }
+
+}
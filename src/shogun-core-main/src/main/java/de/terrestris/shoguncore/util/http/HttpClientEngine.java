@@ -0,0 +1,435 @@
+package de.terrestris.shoguncore.util.http;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpHost;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.Credentials;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.AuthCache;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.auth.BasicScheme;
+import org.apache.http.impl.client.BasicAuthCache;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * A shared, pooled HTTP client engine that is used for all outgoing HTTP
+ * connections (e.g. by the {@link HttpUtil}, the HttpProxyService or the
+ * GeoServerInterceptorService).
+ * <p>
+ * Instead of creating (and closing) a new client for every single request,
+ * connections will be kept alive and reused per route. Stale and idle
+ * connections will be evicted by a background thread of the underlying
+ * client. Credentials and system proxies are resolved per request (and host)
+ * and are passed via the execution context, so a single client can be shared
+ * between all requests.
+ *
+ * @author terrestris GmbH & Co. KG
+ */
+@Component("httpClientEngine")
+public class HttpClientEngine {
+
+    /**
+     * The Logger.
+     */
+    private static final Logger LOG = getLogger(HttpClientEngine.class);
+
+    /**
+     * The max number of connections (over all routes) in the pool.
+     */
+    private int maxTotal = 200;
+
+    /**
+     * The max number of connections per route (i.e. per target host).
+     */
+    private int maxPerRoute = 50;
+
+    /**
+     * The time (in ms) after which an idle connection will be evicted from
+     * the pool.
+     */
+    private long idleTimeout = 30000;
+
+    /**
+     * The default time (in ms) a connection will be kept alive if the
+     * upstream server does not send a Keep-Alive header.
+     */
+    private long keepAlive = 30000;
+
+    /**
+     * The period of inactivity (in ms) after which persistent connections
+     * will be re-validated prior to being leased.
+     */
+    private int validateAfterInactivity = 2000;
+
+    /**
+     * The connection manager holding the pool.
+     */
+    private volatile PoolingHttpClientConnectionManager connectionManager;
+
+    /**
+     * The shared client.
+     */
+    private volatile CloseableHttpClient httpClient;
+
+    /**
+     * Executes the given request with the shared client. The caller is
+     * responsible to consume the entity and to close the response in any
+     * case, otherwise the leased connection will not be released to the pool.
+     *
+     * @param httpRequest The request to execute.
+     * @param credentials The (optional) credentials to use for the target host.
+     * @param timeout     The connect/socket/connection request timeout in ms.
+     * @return The response.
+     * @throws IOException
+     */
+    public CloseableHttpResponse execute(HttpRequestBase httpRequest,
+                                         Credentials credentials, int timeout) throws IOException {
+
+        URI uri = httpRequest.getURI();
+        HttpClientContext httpContext = HttpClientContext.create();
+
+        HttpHost systemProxy = null;
+        AuthScope proxyAuthScope = null;
+        UsernamePasswordCredentials proxyCredentials = null;
+
+        try {
+            String uriScheme = uri.getScheme();
+
+            String httpsProxyUser = System.getProperty("https.proxyUser");
+            String httpsProxyPassword = System.getProperty("https.proxyPassword");
+
+            String httpProxyUser = System.getProperty("http.proxyUser");
+            String httpProxyPassword = System.getProperty("http.proxyPassword");
+
+            systemProxy = getSystemProxy(uri);
+
+            if (systemProxy != null) {
+                String proxyHostName = systemProxy.getHostName();
+                int proxyPort = systemProxy.getPort();
+                LOG.debug("Using proxy hostname from system proxy: " + proxyHostName);
+                LOG.debug("Using proxy port from system proxy: " + proxyPort);
+
+                proxyAuthScope = new AuthScope(systemProxy.getHostName(), systemProxy.getPort());
+
+                if (StringUtils.equalsIgnoreCase(uriScheme, "http")) {
+                    LOG.debug("Using http proxy");
+
+                    if (!StringUtils.isEmpty(httpProxyUser) && !StringUtils.isEmpty(httpProxyPassword)) {
+                        LOG.debug("Using proxy user and password for the http proxy " + proxyHostName);
+                        proxyCredentials = new UsernamePasswordCredentials(httpProxyUser, httpProxyPassword);
+                    }
+
+                } else if (StringUtils.equalsIgnoreCase(uriScheme, "https")) {
+                    LOG.debug("Using https proxy");
+
+                    if (!StringUtils.isEmpty(httpsProxyUser) && !StringUtils.isEmpty(httpsProxyPassword)) {
+                        LOG.debug("Using proxy user and password for the https proxy " + proxyHostName);
+                        proxyCredentials = new UsernamePasswordCredentials(httpsProxyUser, httpsProxyPassword);
+                    }
+                }
+            }
+        } catch (UnknownHostException e) {
+            LOG.error("Error while detecting system wide proxy: " + e.getMessage());
+        }
+
+        // set the request configuration that will passed to the httpRequest
+        RequestConfig requestConfig = RequestConfig.custom()
+            .setConnectionRequestTimeout(timeout)
+            .setConnectTimeout(timeout)
+            .setSocketTimeout(timeout)
+            .setProxy(systemProxy)
+            .build();
+
+        httpRequest.setConfig(requestConfig);
+
+        // set (preemptive) authentication if credentials are given. the
+        // credentials are bound to the context of this request only as the
+        // client itself is shared between all requests (and hosts)
+        if (credentials != null || (proxyAuthScope != null && proxyCredentials != null)) {
+
+            CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+
+            if (proxyAuthScope != null && proxyCredentials != null) {
+                credentialsProvider.setCredentials(
+                    proxyAuthScope,
+                    proxyCredentials
+                );
+            }
+
+            if (credentials != null) {
+                credentialsProvider.setCredentials(
+                    new AuthScope(uri.getHost(), uri.getPort()),
+                    credentials
+                );
+
+                HttpHost targetHost = new HttpHost(uri.getHost(), uri.getPort(),
+                    uri.getScheme());
+
+                AuthCache authCache = new BasicAuthCache();
+                authCache.put(targetHost, new BasicScheme());
+
+                httpContext.setAuthCache(authCache);
+            }
+
+            httpContext.setCredentialsProvider(credentialsProvider);
+        }
+
+        return getHttpClient().execute(httpRequest, httpContext);
+    }
+
+    /**
+     * Returns the shared client and creates it lazily if it has not been
+     * created yet.
+     *
+     * @return The shared client.
+     */
+    public CloseableHttpClient getHttpClient() {
+        CloseableHttpClient client = this.httpClient;
+        if (client == null) {
+            synchronized (this) {
+                client = this.httpClient;
+                if (client == null) {
+                    client = createHttpClient();
+                    this.httpClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Creates the pooled client based on the current configuration.
+     *
+     * @return The pooled client.
+     */
+    private CloseableHttpClient createHttpClient() {
+        LOG.info("Creating the pooled HTTP client engine (maxTotal: " + maxTotal
+            + ", maxPerRoute: " + maxPerRoute + ", idleTimeout: " + idleTimeout
+            + "ms, keepAlive: " + keepAlive + "ms)");
+
+        PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager();
+        manager.setMaxTotal(maxTotal);
+        manager.setDefaultMaxPerRoute(maxPerRoute);
+        manager.setValidateAfterInactivity(validateAfterInactivity);
+
+        this.connectionManager = manager;
+
+        final long defaultKeepAlive = keepAlive;
+        ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+            long duration = DefaultConnectionKeepAliveStrategy.INSTANCE
+                .getKeepAliveDuration(response, context);
+            return duration > 0 ? duration : defaultKeepAlive;
+        };
+
+        return HttpClients.custom()
+            .setConnectionManager(manager)
+            .setKeepAliveStrategy(keepAliveStrategy)
+            .evictExpiredConnections()
+            .evictIdleConnections(idleTimeout, TimeUnit.MILLISECONDS)
+            .build();
+    }
+
+    /**
+     * Closes the shared client and shuts down the connection pool.
+     */
+    @PreDestroy
+    public synchronized void close() {
+        if (this.httpClient != null) {
+            LOG.info("Shutting down the pooled HTTP client engine");
+            IOUtils.closeQuietly(this.httpClient);
+            this.httpClient = null;
+            this.connectionManager = null;
+        }
+    }
+
+    /**
+     * Returns the statistics of the connection pool, i.e. the number of
+     * leased, available and pending connections as well as the max number of
+     * connections for all routes (key <code>total</code>) and for each single
+     * route (keyed by the target host).
+     *
+     * @return The pool statistics.
+     */
+    public Map<String, Map<String, Integer>> getPoolStats() {
+        Map<String, Map<String, Integer>> poolStats = new LinkedHashMap<>();
+        PoolingHttpClientConnectionManager manager = this.connectionManager;
+
+        if (manager == null) {
+            return poolStats;
+        }
+
+        poolStats.put("total", toMap(manager.getTotalStats()));
+
+        for (HttpRoute route : manager.getRoutes()) {
+            poolStats.put(route.getTargetHost().toURI(), toMap(manager.getStats(route)));
+        }
+
+        return poolStats;
+    }
+
+    /**
+     * @param stats
+     * @return
+     */
+    private static Map<String, Integer> toMap(PoolStats stats) {
+        Map<String, Integer> statsMap = new LinkedHashMap<>();
+        statsMap.put("leased", stats.getLeased());
+        statsMap.put("available", stats.getAvailable());
+        statsMap.put("pending", stats.getPending());
+        statsMap.put("max", stats.getMax());
+        return statsMap;
+    }
+
+    /**
+     * If the JVM knows about a HTTP proxy, e.g. by specifying
+     * <p>
+     * <pre>
+     * 	 -Dhttp.proxyHost=schwatzgelb.de -Dhttp.proxyPort=8080
+     * </pre>
+     * <p>
+     * as startup parameters, this method will correctly detect them and return
+     * an HttpHost ready to be used as proxy for the given URI.
+     *
+     * @param uri
+     * @return
+     * @throws UnknownHostException
+     */
+    private static HttpHost getSystemProxy(URI uri) throws UnknownHostException {
+
+        // We do not set the java.net.useSystemProxies property here as it may
+        // lead to problems in certain scenarios, e.g. when testing with OpenJDK
+        // on VMs with an insufficient dependency management (see the failing
+        // builds from https://github.com/terrestris/shogun-core/pull/157)
+
+        // If it is necessary that this property is set to true, it should be
+        // configured on the JVM via -Djava.net.useSystemProxies=true
+
+        HttpHost systemProxy = null;
+
+        List<Proxy> proxyList = ProxySelector.getDefault().select(uri);
+
+        for (Proxy proxy : proxyList) {
+            InetSocketAddress address = (InetSocketAddress) proxy.address();
+
+            if (address != null) {
+                LOG.debug("Detected a system wide proxy: " +
+                    "  * Host: " + address.getHostName() +
+                    "  * Port: " + address.getPort()
+                );
+
+                systemProxy = new HttpHost(InetAddress.getByName(address.getHostName()),
+                    address.getPort(), "http");
+                break;
+            }
+        }
+
+        return systemProxy;
+    }
+
+    /**
+     * @return the maxTotal
+     */
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    /**
+     * @param maxTotal the maxTotal to set
+     */
+    @Value("${http.pool.maxTotal:200}")
+    public void setMaxTotal(int maxTotal) {
+        this.maxTotal = maxTotal;
+    }
+
+    /**
+     * @return the maxPerRoute
+     */
+    public int getMaxPerRoute() {
+        return maxPerRoute;
+    }
+
+    /**
+     * @param maxPerRoute the maxPerRoute to set
+     */
+    @Value("${http.pool.maxPerRoute:50}")
+    public void setMaxPerRoute(int maxPerRoute) {
+        this.maxPerRoute = maxPerRoute;
+    }
+
+    /**
+     * @return the idleTimeout
+     */
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * @param idleTimeout the idleTimeout to set
+     */
+    @Value("${http.pool.idleTimeout:30000}")
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * @return the keepAlive
+     */
+    public long getKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * @param keepAlive the keepAlive to set
+     */
+    @Value("${http.pool.keepAlive:30000}")
+    public void setKeepAlive(long keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * @return the validateAfterInactivity
+     */
+    public int getValidateAfterInactivity() {
+        return validateAfterInactivity;
+    }
+
+    /**
+     * @param validateAfterInactivity the validateAfterInactivity to set
+     */
+    @Value("${http.pool.validateAfterInactivity:2000}")
+    public void setValidateAfterInactivity(int validateAfterInactivity) {
+        this.validateAfterInactivity = validateAfterInactivity;
+    }
+
+}
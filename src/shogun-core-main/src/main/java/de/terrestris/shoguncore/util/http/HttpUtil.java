@@ -4,17 +4,11 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.net.InetAddress;
-import java.net.InetSocketAddress;
-import java.net.Proxy;
-import java.net.ProxySelector;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Enumeration;
-import java.util.Iterator;
 import java.util.List;
 
 import javax.servlet.ServletException;
@@ -26,14 +20,9 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpException;
-import org.apache.http.HttpHost;
 import org.apache.http.NameValuePair;
-import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.Credentials;
 import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.AuthCache;
-import org.apache.http.client.CredentialsProvider;
-import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
@@ -41,20 +30,15 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpRequestBase;
-import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.entity.mime.content.ByteArrayBody;
 import org.apache.http.entity.mime.content.FileBody;
-import org.apache.http.impl.auth.BasicScheme;
-import org.apache.http.impl.client.BasicAuthCache;
-import org.apache.http.impl.client.BasicCredentialsProvider;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.util.EntityUtils;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -62,6 +46,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 
 import de.terrestris.shoguncore.util.model.Response;
+import de.terrestris.shoguncore.util.model.StreamingResponse;
 
 import static org.apache.logging.log4j.LogManager.getLogger;
 
@@ -88,6 +73,11 @@ public class HttpUtil {
      */
     private static int defaultHttpTimeout;
 
+    /**
+     * The shared (pooled) HTTP client engine.
+     */
+    private static HttpClientEngine httpClientEngine;
+
     /**
      * The name of the 'authorization' header
      */
@@ -1786,150 +1776,207 @@ public class HttpUtil {
     private static Response send(HttpRequestBase httpRequest, Credentials credentials,
                                  Header[] requestHeaders) throws URISyntaxException, HttpException {
 
-        CloseableHttpClient httpClient = null;
         CloseableHttpResponse httpResponse = null;
         Response response = new Response();
-        HttpClientContext httpContext = HttpClientContext.create();
         URI uri = httpRequest.getURI();
 
-        HttpHost systemProxy = null;
-        AuthScope proxyAuthScope = null;
-        UsernamePasswordCredentials proxyCredentials = null;
-
         try {
-            String uriScheme = uri.getScheme();
-
-            String httpsProxyUser = System.getProperty("https.proxyUser");
-            String httpsProxyPassword = System.getProperty("https.proxyPassword");
-
-            String httpProxyUser = System.getProperty("http.proxyUser");
-            String httpProxyPassword = System.getProperty("http.proxyPassword");
-
-            systemProxy = getSystemProxy(uri);
-
-            if (systemProxy != null) {
-                String proxyHostName = systemProxy.getHostName();
-                int proxyPort = systemProxy.getPort();
-                LOG.debug("Using proxy hostname from system proxy: " + proxyHostName);
-                LOG.debug("Using proxy port from system proxy: " +  proxyPort);
-
-                proxyAuthScope = new AuthScope(systemProxy.getHostName(), systemProxy.getPort());
 
-                if (StringUtils.equalsIgnoreCase(uriScheme, "http")) {
-                    LOG.debug("Using http proxy");
-
-                    if (!StringUtils.isEmpty(httpProxyUser) && !StringUtils.isEmpty(httpProxyPassword)) {
-                        LOG.debug("Using proxy user and password for the http proxy " + proxyHostName);
-                        proxyCredentials = new UsernamePasswordCredentials(httpProxyUser, httpProxyPassword);
-                    }
-
-                } else if (StringUtils.equalsIgnoreCase(uriScheme, "https")) {
-                    LOG.debug("Using https proxy");
-
-                    if (!StringUtils.isEmpty(httpsProxyUser) && !StringUtils.isEmpty(httpsProxyPassword)) {
-                        LOG.debug("Using proxy user and password for the https proxy " + proxyHostName);
-                        proxyCredentials = new UsernamePasswordCredentials(httpsProxyUser, httpsProxyPassword);
-                    }
-                }
+            // apply HTTP header
+            if (requestHeaders != null) {
+                httpRequest.setHeaders(requestHeaders);
             }
-        } catch (UnknownHostException e) {
-            LOG.error("Error while detecting system wide proxy: " + e.getMessage());
-        }
 
-        // set the request configuration that will passed to the httpRequest
-        RequestConfig requestConfig = RequestConfig.custom()
-            .setConnectionRequestTimeout(httpTimeout)
-            .setConnectTimeout(httpTimeout)
-            .setSocketTimeout(httpTimeout)
-            .setProxy(systemProxy)
-            .build();
+            // the (pooled) client is shared, the response has to be consumed
+            // and closed to release the connection back to the pool
+            httpResponse = execute(httpRequest, credentials);
 
-        // set (preemptive) authentication if credentials are given
-        if (credentials != null || (proxyAuthScope != null && proxyCredentials != null)) {
+            HttpStatus httpStatus = HttpStatus.valueOf(
+                httpResponse.getStatusLine().getStatusCode());
+            HttpEntity httpResponseEntity = httpResponse.getEntity();
 
-            CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+            response.setStatusCode(httpStatus);
+            response.setHeaders(getResponseHeaders(httpResponse));
 
-            if (proxyAuthScope != null && proxyCredentials != null) {
-                credentialsProvider.setCredentials(
-                        proxyAuthScope,
-                        proxyCredentials
-                );
+            if (httpResponseEntity != null) {
+                response.setBody(EntityUtils.toByteArray(httpResponseEntity));
             }
 
-            if (credentials != null) {
-                credentialsProvider.setCredentials(
-                        new AuthScope(uri.getHost(), uri.getPort()),
-                        credentials
-                );
-            }
+        } catch (IOException e) {
+            throw new HttpException("Error while getting a response from " + uri +
+                ": " + e.getMessage());
+        } finally {
 
-            HttpHost targetHost = new HttpHost(uri.getHost(), uri.getPort(),
-                uri.getScheme());
+            // cleanup (the client itself must not be closed as it's shared)
+            IOUtils.closeQuietly(httpResponse);
 
-            AuthCache authCache = new BasicAuthCache();
-            authCache.put(targetHost, new BasicScheme());
+            httpRequest.reset();
+        }
 
-            httpContext.setCredentialsProvider(credentialsProvider);
-            httpContext.setAuthCache(authCache);
+        return response;
+    }
 
-            httpClient = HttpClients.custom()
-                .setDefaultCredentialsProvider(credentialsProvider)
-                .build();
+    /**
+     * Performs an HTTP GET on the given URI and returns the response without
+     * reading its body into memory. The returned {@link StreamingResponse}
+     * has to be closed by the caller.
+     *
+     * @param uri            The URI to connect to.
+     * @param requestHeaders Additional HTTP headers added to the request
+     * @return The HTTP response as StreamingResponse object.
+     * @throws URISyntaxException
+     * @throws HttpException
+     */
+    public static StreamingResponse getAsStream(URI uri, Header[] requestHeaders)
+        throws URISyntaxException, HttpException {
+        return sendAsStream(new HttpGet(uri), null, requestHeaders);
+    }
 
-        } else {
+    /**
+     * Performs an HTTP POST with the given body on the given URI and returns
+     * the response without reading its body into memory. The returned
+     * {@link StreamingResponse} has to be closed by the caller.
+     *
+     * @param uri            The URI to connect to.
+     * @param body           The body to be sent.
+     * @param contentType    The content type of the body.
+     * @param requestHeaders Additional HTTP headers added to the request
+     * @return The HTTP response as StreamingResponse object.
+     * @throws URISyntaxException
+     * @throws HttpException
+     */
+    public static StreamingResponse postAsStream(URI uri, String body, ContentType contentType,
+                                                 Header[] requestHeaders) throws URISyntaxException, HttpException {
+        HttpPost httpRequest = new HttpPost(uri);
+        StringEntity stringEntity = new StringEntity(body, contentType);
+        stringEntity.setChunked(true);
+        httpRequest.setEntity(stringEntity);
 
-            httpClient = HttpClients.createDefault();
+        return sendAsStream(httpRequest, null, requestHeaders);
+    }
 
+    /**
+     * Performs an HTTP POST with the given name value pairs on the given URI
+     * and returns the response without reading its body into memory. The
+     * returned {@link StreamingResponse} has to be closed by the caller.
+     *
+     * @param uri            The URI to connect to.
+     * @param queryParams    The list of NameValuePairs.
+     * @param requestHeaders Additional HTTP headers added to the request
+     * @return The HTTP response as StreamingResponse object.
+     * @throws URISyntaxException
+     * @throws UnsupportedEncodingException
+     * @throws HttpException
+     */
+    public static StreamingResponse postAsStream(URI uri, List<NameValuePair> queryParams,
+                                                 Header[] requestHeaders) throws URISyntaxException, UnsupportedEncodingException, HttpException {
+        HttpPost httpRequest = new HttpPost(uri);
+        if (!queryParams.isEmpty()) {
+            httpRequest.setEntity(new UrlEncodedFormEntity(queryParams, "UTF-8"));
         }
 
-        try {
+        return sendAsStream(httpRequest, null, requestHeaders);
+    }
+
+    /**
+     * Performs an HTTP operation on the given URL, but doesn't read the body
+     * of the response. The connection will be released to the pool as soon as
+     * the returned {@link StreamingResponse} has been consumed or closed.
+     *
+     * @param httpRequest    The HttpRequest to connect to.
+     * @param credentials    Instance implementing {@link Credentials} interface holding a set of credentials
+     * @param requestHeaders Additional HTTP headers added to the request
+     * @return The HTTP response as StreamingResponse object.
+     * @throws URISyntaxException
+     * @throws HttpException
+     */
+    private static StreamingResponse sendAsStream(HttpRequestBase httpRequest, Credentials credentials,
+                                                  Header[] requestHeaders) throws URISyntaxException, HttpException {
 
-            HttpHeaders headersMap = new HttpHeaders();
+        CloseableHttpResponse httpResponse = null;
+        URI uri = httpRequest.getURI();
 
-            httpRequest.setConfig(requestConfig);
+        try {
 
             // apply HTTP header
             if (requestHeaders != null) {
                 httpRequest.setHeaders(requestHeaders);
             }
 
-            httpResponse = httpClient.execute(httpRequest, httpContext);
+            httpResponse = execute(httpRequest, credentials);
 
             HttpStatus httpStatus = HttpStatus.valueOf(
                 httpResponse.getStatusLine().getStatusCode());
-            Header[] headers = httpResponse.getAllHeaders();
             HttpEntity httpResponseEntity = httpResponse.getEntity();
 
-            response.setStatusCode(httpStatus);
-
-            for (Header header : headers) {
-                if (header.getName().equalsIgnoreCase("Transfer-Encoding") &&
-                    header.getValue().equalsIgnoreCase("chunked")) {
-                    LOG.trace("Removed the header 'Transfer-Encoding:chunked'" +
-                        " from a response, as its handled by the http-client");
-                } else {
-                    headersMap.set(header.getName(), header.getValue());
-                }
-            }
-            response.setHeaders(headersMap);
+            return new StreamingResponse(
+                httpStatus,
+                getResponseHeaders(httpResponse),
+                httpResponseEntity != null ? httpResponseEntity.getContent() : null,
+                httpResponse
+            );
 
-            if (httpResponseEntity != null) {
-                response.setBody(EntityUtils.toByteArray(httpResponseEntity));
-            }
+        } catch (IOException | RuntimeException e) {
+            // we'll only have to cleanup in case of errors, the response will
+            // be closed by the caller otherwise
+            IOUtils.closeQuietly(httpResponse);
+            httpRequest.reset();
 
-        } catch (IOException e) {
             throw new HttpException("Error while getting a response from " + uri +
                 ": " + e.getMessage());
-        } finally {
+        }
+    }
 
-            // cleanup
-            httpRequest.reset();
+    /**
+     * Executes the given request. If executed by a worker of the
+     * {@link AsyncRequestExecutor}, the request will be aborted if the
+     * asynchronous execution times out before the headers of the response
+     * have been received.
+     *
+     * @param httpRequest
+     * @param credentials
+     * @return The response (not consumed yet).
+     * @throws IOException
+     */
+    private static CloseableHttpResponse execute(HttpRequestBase httpRequest, Credentials credentials)
+        throws IOException {
+
+        final AsyncRequestExecutor.Task task = AsyncRequestExecutor.Task.current();
+        if (task != null) {
+            task.setUpstreamRequest(httpRequest);
+        }
 
+        CloseableHttpResponse httpResponse = getHttpClientEngine().execute(httpRequest, credentials, httpTimeout);
+
+        if (task != null && !task.claimResponse()) {
             IOUtils.closeQuietly(httpResponse);
-            IOUtils.closeQuietly(httpClient);
+            throw new IOException("The request has been cancelled.");
         }
 
-        return response;
+        return httpResponse;
+    }
+
+    /**
+     * Returns the headers of the given response, except the
+     * 'Transfer-Encoding:chunked' header which is handled by the http-client.
+     *
+     * @param httpResponse The response to get the headers from.
+     * @return The headers.
+     */
+    private static HttpHeaders getResponseHeaders(CloseableHttpResponse httpResponse) {
+        HttpHeaders headersMap = new HttpHeaders();
+
+        for (Header header : httpResponse.getAllHeaders()) {
+            if (header.getName().equalsIgnoreCase("Transfer-Encoding") &&
+                header.getValue().equalsIgnoreCase("chunked")) {
+                LOG.trace("Removed the header 'Transfer-Encoding:chunked'" +
+                    " from a response, as its handled by the http-client");
+            } else {
+                headersMap.set(header.getName(), header.getValue());
+            }
+        }
+
+        return headersMap;
     }
 
     /**
@@ -2082,57 +2129,6 @@ public class HttpUtil {
         return body;
     }
 
-    /**
-     * If the JVM knows about a HTTP proxy, e.g. by specifying
-     * <p>
-     * <pre>
-     * 	 -Dhttp.proxyHost=schwatzgelb.de -Dhttp.proxyPort=8080
-     * </pre>
-     * <p>
-     * as startup parameters, this method will correctly detect them and return
-     * an InetSocketAddress ready to be used to pass the proxy to the
-     * DefaultHttpClient.
-     *
-     * @param uri
-     * @return
-     * @throws UnknownHostException
-     */
-    private static HttpHost getSystemProxy(URI uri) throws UnknownHostException {
-
-        // We do not set the java.net.useSystemProxies property here as it may
-        // lead to problems in certain scenarios, e.g. when testing with OpenJDK
-        // on VMs with an insufficient dependency management (see the failing
-        // builds from https://github.com/terrestris/shogun-core/pull/157)
-
-        // If it is necessary that this property is set to true, it should be
-        // configured on the JVM via -Djava.net.useSystemProxies=true
-
-        //	System.setProperty("java.net.useSystemProxies", "true");
-
-        HttpHost systemProxy = null;
-
-        List<Proxy> proxyList = ProxySelector.getDefault().select(uri);
-
-        for (Iterator<Proxy> iterator = proxyList.iterator(); iterator.hasNext(); ) {
-            Proxy proxy = iterator.next();
-            InetSocketAddress address = (InetSocketAddress) proxy.address();
-
-            if (address != null) {
-                LOG.debug("Detected a system wide proxy: " +
-                    "  * Host: " + address.getHostName() +
-                    "  * Port: " + address.getPort()
-                );
-
-                systemProxy = new HttpHost(InetAddress.getByName(address.getHostName()),
-                    address.getPort(), "http");
-                break;
-
-            }
-        }
-
-        return systemProxy;
-    }
-
     /**
      * Note: The value annotation is set to the setter of httpTimeout here as
      * we can't autowire any value to its static field (but the field has to be
@@ -2147,6 +2143,33 @@ public class HttpUtil {
         HttpUtil.httpTimeout = httpTimeout;
     }
 
+    /**
+     * Note: The autowired annotation is set to the setter of the engine here
+     * as we can't autowire any bean to its static field (but the field has
+     * to be static itself).
+     *
+     * @param engine the httpClientEngine to set
+     */
+    @Autowired
+    @SuppressWarnings("static-method")
+    public void setHttpClientEngine(HttpClientEngine engine) {
+        HttpUtil.httpClientEngine = engine;
+    }
+
+    /**
+     * Returns the shared HTTP client engine. If no engine has been set (e.g.
+     * as the util is used outside of a spring context), a default one will be
+     * created.
+     *
+     * @return the httpClientEngine
+     */
+    public static synchronized HttpClientEngine getHttpClientEngine() {
+        if (HttpUtil.httpClientEngine == null) {
+            HttpUtil.httpClientEngine = new HttpClientEngine();
+        }
+        return HttpUtil.httpClientEngine;
+    }
+
     /**
      * @return the httpTimeout
      */
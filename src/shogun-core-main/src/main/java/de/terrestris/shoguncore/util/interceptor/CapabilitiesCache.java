@@ -0,0 +1,484 @@
+package de.terrestris.shoguncore.util.interceptor;
+
+import de.terrestris.shoguncore.util.model.Response;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * A cache for the GetCapabilities documents of the endpoint scoped WMS
+ * (<code>/geoserver.action/{endpoint}</code>) as returned by the GeoServer,
+ * i.e. before the response interceptors have been applied.
+ * <p>
+ * The entries are keyed by the endpoint, the request parameters (including
+ * the body of POST requests), the forwarded host/protocol and the credentials
+ * forwarded to the GeoServer (as the GeoServer may return different documents
+ * for different credentials), expire after a configurable time to live and are
+ * evicted in least recently used order as soon as the total size of all
+ * cached documents exceeds the configured maximum. The entries of an endpoint
+ * are invalidated (see {@link #invalidate(String)}) by the
+ * {@link de.terrestris.shoguncore.hibernate.LayerDataSourceCacheInvalidator}
+ * whenever the layer data sources of the endpoint change and whenever an
+ * interceptor rule is saved or deleted.
+ * <p>
+ * Every entry carries a strong ETag (based on the content) and the time of
+ * its creation as Last-Modified date, so conditional requests for documents
+ * that are not intercepted can be answered with 304 (Not Modified). Documents
+ * that are intercepted get a strong ETag based on the intercepted content
+ * (see {@link #toConditionalResponse(HttpServletRequest, Response)}).
+ *
+ * @author terrestris GmbH & Co. KG
+ */
+@Component("capabilitiesCache")
+public class CapabilitiesCache {
+
+    /**
+     * The LOGGER instance
+     */
+    private static final Logger LOG = getLogger(CapabilitiesCache.class);
+
+    /**
+     * The request parameters that are not relevant for the cache key (as they
+     * are derived from the endpoint).
+     */
+    private static final String[] IGNORED_PARAMETERS = new String[]{
+        "CUSTOM_ENDPOINT",
+        "CONTEXT_PATH"
+    };
+
+    /**
+     * The header containing the credentials that are forwarded to the
+     * GeoServer.
+     */
+    private static final String CREDENTIALS_HEADER = "x-geoserver-credentials";
+
+    /**
+     * The cached entries in access order.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The total size (in bytes) of all cached documents.
+     */
+    private long totalBytes = 0;
+
+    /**
+     *
+     */
+    private boolean enabled = true;
+
+    /**
+     * The time to live of an entry (in ms).
+     */
+    private long timeToLive = 300000;
+
+    /**
+     * The maximum total size (in bytes) of all cached documents.
+     */
+    private long maxBytes = 16 * 1024 * 1024;
+
+    /**
+     * Creates the cache key for the given endpoint and request.
+     *
+     * @param endpoint
+     * @param request
+     * @return
+     */
+    public static String createKey(String endpoint, HttpServletRequest request) {
+        Map<String, String> params = new TreeMap<>();
+
+        for (Map.Entry<String, String[]> param : request.getParameterMap().entrySet()) {
+            String key = param.getKey().toUpperCase();
+            if (!StringUtils.equalsAny(key, IGNORED_PARAMETERS)) {
+                params.put(key, StringUtils.join(param.getValue(), ","));
+            }
+        }
+
+        StringBuilder key = new StringBuilder()
+            .append(endpoint).append('|')
+            .append(request.getContextPath()).append('|')
+            .append(request.getHeader("x-forwarded-proto")).append('|')
+            .append(request.getHeader("x-forwarded-host")).append('|')
+            .append(digest(request.getHeader(CREDENTIALS_HEADER))).append('|')
+            .append(params);
+
+        if ("POST".equalsIgnoreCase(request.getMethod())) {
+            key.append('|').append(digest(OgcXmlUtil.getRequestBody(request)));
+        }
+
+        return key.toString();
+    }
+
+    /**
+     * Returns the given (intercepted) response with a strong ETag based on its
+     * content. If the client already has this content (see the If-None-Match
+     * header of the request), a 304 (Not Modified) without body is returned
+     * instead.
+     *
+     * @param request
+     * @param response
+     * @return
+     */
+    public static Response toConditionalResponse(HttpServletRequest request, Response response) {
+        if (response == null || response.getBody() == null ||
+            !HttpStatus.OK.equals(response.getStatusCode())) {
+            return response;
+        }
+
+        String eTag = createETag(response.getBody());
+
+        HttpHeaders responseHeaders = new HttpHeaders();
+        if (response.getHeaders() != null) {
+            responseHeaders.putAll(response.getHeaders());
+        }
+        responseHeaders.setETag(eTag);
+
+        if (matchesETag(request, eTag)) {
+            responseHeaders.remove(HttpHeaders.CONTENT_LENGTH);
+            return new Response(HttpStatus.NOT_MODIFIED, responseHeaders, null);
+        }
+
+        response.setHeaders(responseHeaders);
+        return response;
+    }
+
+    /**
+     * @param body
+     * @return The (quoted) strong ETag of the given content.
+     */
+    private static String createETag(byte[] body) {
+        return "\"" + DigestUtils.md5DigestAsHex(body) + "\"";
+    }
+
+    /**
+     * @param request
+     * @param eTag
+     * @return Whether the If-None-Match header of the given request matches
+     * the given ETag.
+     */
+    private static boolean matchesETag(HttpServletRequest request, String eTag) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        for (String candidate : StringUtils.split(ifNoneMatch, ',')) {
+            candidate = StringUtils.removeStart(candidate.trim(), "W/");
+            if ("*".equals(candidate) || eTag.equals(candidate)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @param value
+     * @return The (SHA-256) digest of the given (nullable) value, so it isn't
+     * held in the cache key in plain text.
+     */
+    private static String digest(String value) {
+        if (value == null) {
+            return "-";
+        }
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(
+                messageDigest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * @param message
+     * @param endpoint
+     * @return Whether the response of the given request may be cached.
+     */
+    public boolean isCacheable(OgcMessage message, String endpoint) {
+        return enabled && StringUtils.isNotEmpty(endpoint) &&
+            message != null && message.isWmsGetCapabilities();
+    }
+
+    /**
+     * @param response
+     * @return Whether the given response may be cached.
+     */
+    public boolean isCacheable(Response response) {
+        if (response == null || response.getBody() == null ||
+            !HttpStatus.OK.equals(response.getStatusCode()) ||
+            response.getBody().length > maxBytes) {
+            return false;
+        }
+
+        // GeoServer responds exceptions with status 200
+        String start = new String(response.getBody(), 0,
+            Math.min(response.getBody().length, 512), StandardCharsets.UTF_8);
+
+        return !start.contains("ServiceExceptionReport");
+    }
+
+    /**
+     * @param key
+     * @return The (not expired) entry or null.
+     */
+    public synchronized Entry get(String key) {
+        Entry entry = entries.get(key);
+
+        if (entry != null && entry.isExpired(timeToLive)) {
+            remove(key);
+            entry = null;
+        }
+
+        return entry;
+    }
+
+    /**
+     * Caches the given response.
+     *
+     * @param key
+     * @param endpoint
+     * @param response
+     * @return The created entry.
+     */
+    public synchronized Entry put(String key, String endpoint, Response response) {
+        Entry entry = new Entry(endpoint, response.getBody(), response.getHeaders());
+
+        remove(key);
+        entries.put(key, entry);
+        totalBytes += entry.getBody().length;
+
+        // evict the least recently used entries
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            if (eldest.getValue() == entry) {
+                continue;
+            }
+            totalBytes -= eldest.getValue().getBody().length;
+            it.remove();
+        }
+
+        LOG.debug("Cached the capabilities of endpoint " + endpoint + " (" +
+            entries.size() + " entries, " + totalBytes + " bytes)");
+
+        return entry;
+    }
+
+    /**
+     * Removes all entries of the given endpoint.
+     *
+     * @param endpoint
+     */
+    public synchronized void invalidate(String endpoint) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (StringUtils.equals(endpoint, entry.getEndpoint())) {
+                totalBytes -= entry.getBody().length;
+                it.remove();
+            }
+        }
+
+        LOG.debug("Invalidated the cached capabilities of endpoint " + endpoint);
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+        totalBytes = 0;
+
+        LOG.debug("Invalidated all cached capabilities");
+    }
+
+    /**
+     * @return The number of cached entries.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return The total size (in bytes) of all cached documents.
+     */
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * @param key
+     */
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            totalBytes -= removed.getBody().length;
+        }
+    }
+
+    /**
+     * @param enabled the enabled to set
+     */
+    @Value("${capabilitiesCache.enabled:true}")
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param timeToLive the timeToLive (in ms) to set
+     */
+    @Value("${capabilitiesCache.timeToLive:300000}")
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * @param maxBytes the maxBytes to set
+     */
+    @Value("${capabilitiesCache.maxBytes:16777216}")
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * A cached capabilities document.
+     */
+    public static class Entry {
+
+        private final String endpoint;
+
+        private final byte[] body;
+
+        private final HttpHeaders headers;
+
+        private final String eTag;
+
+        /**
+         * The Last-Modified date (in ms, truncated to seconds).
+         */
+        private final long lastModified;
+
+        private final long created;
+
+        /**
+         * @param endpoint
+         * @param body
+         * @param headers
+         */
+        public Entry(String endpoint, byte[] body, HttpHeaders headers) {
+            this.endpoint = endpoint;
+            this.body = body;
+            this.headers = new HttpHeaders();
+            if (headers != null) {
+                this.headers.putAll(headers);
+            }
+            this.eTag = createETag(body);
+            this.created = System.currentTimeMillis();
+            this.lastModified = created / 1000 * 1000;
+        }
+
+        /**
+         * @param timeToLive
+         * @return
+         */
+        boolean isExpired(long timeToLive) {
+            return System.currentTimeMillis() - created > timeToLive;
+        }
+
+        /**
+         * Evaluates the If-None-Match (or If-Modified-Since) header of the
+         * given request.
+         *
+         * @param request
+         * @return Whether the client already has the current document.
+         */
+        public boolean isNotModified(HttpServletRequest request) {
+            if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+                return matchesETag(request, eTag);
+            }
+
+            try {
+                long ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+                return ifModifiedSince >= 0 && lastModified <= ifModifiedSince;
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Creates the response for the given request, i.e. a 304 (Not
+         * Modified) if the client already has the current document or a
+         * copy of the cached response.
+         *
+         * @param request
+         * @return
+         */
+        public Response toResponse(HttpServletRequest request) {
+            HttpHeaders responseHeaders = new HttpHeaders();
+            responseHeaders.putAll(headers);
+            responseHeaders.setETag(eTag);
+            responseHeaders.setLastModified(lastModified);
+
+            if (isNotModified(request)) {
+                responseHeaders.remove(HttpHeaders.CONTENT_LENGTH);
+                return new Response(HttpStatus.NOT_MODIFIED, responseHeaders, null);
+            }
+
+            return new Response(HttpStatus.OK, responseHeaders, body);
+        }
+
+        /**
+         * @return the endpoint
+         */
+        public String getEndpoint() {
+            return endpoint;
+        }
+
+        /**
+         * @return the body
+         */
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * @return the headers
+         */
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        /**
+         * @return the eTag
+         */
+        public String getETag() {
+            return eTag;
+        }
+
+        /**
+         * @return the lastModified
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+
+}
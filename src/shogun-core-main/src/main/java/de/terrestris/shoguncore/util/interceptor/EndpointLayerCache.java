@@ -0,0 +1,181 @@
+package de.terrestris.shoguncore.util.interceptor;
+
+import de.terrestris.shoguncore.dao.LayerDataSourceDao;
+import de.terrestris.shoguncore.model.layer.source.ImageWmsLayerDataSource;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.criterion.LogicalExpression;
+import org.hibernate.criterion.Restrictions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * Caches the (qualified) names of the layers that may be requested via an
+ * endpoint (<code>/geoserver.action/{endpoint}</code>), i.e. the layer names
+ * of all requestable image WMS data sources with the endpoint as custom
+ * request path.
+ * <p>
+ * The names are loaded (in a read only transaction) on the first request of
+ * an endpoint only and have to be invalidated (see {@link #invalidate(String)})
+ * whenever the layer data sources change. As a safety net the entries expire
+ * after a configurable time to live.
+ *
+ * @author terrestris GmbH & Co. KG
+ */
+@Component("endpointLayerCache")
+public class EndpointLayerCache {
+
+    /**
+     * The LOGGER instance
+     */
+    private static final Logger LOG = getLogger(EndpointLayerCache.class);
+
+    /**
+     * The cached layer names by endpoint.
+     */
+    private final Map<String, CachedLayerNames> layerNames = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented on every invalidation, so names loaded concurrently to an
+     * invalidation won't be cached.
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     *
+     */
+    @Autowired
+    @Qualifier("layerDataSourceDao")
+    private LayerDataSourceDao<ImageWmsLayerDataSource> layerDataSourceDao;
+
+    /**
+     *
+     */
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * The time to live of an entry (in ms).
+     */
+    private long timeToLive = 300000;
+
+    /**
+     * @param endpoint
+     * @return The immutable set of layer names that may be requested via the
+     * given endpoint (in the order of the data sources).
+     */
+    public Set<String> getLayerNames(String endpoint) {
+        CachedLayerNames cached = layerNames.get(endpoint);
+
+        if (cached != null && !cached.isExpired(timeToLive)) {
+            return cached.getNames();
+        }
+
+        final long loadedVersion = version.get();
+
+        Set<String> names = transactionTemplate.execute(status -> loadLayerNames(endpoint));
+
+        if (loadedVersion == version.get()) {
+            layerNames.put(endpoint, new CachedLayerNames(names));
+        }
+
+        return names;
+    }
+
+    /**
+     * Removes the layer names of the given endpoint.
+     *
+     * @param endpoint
+     */
+    public void invalidate(String endpoint) {
+        version.incrementAndGet();
+        layerNames.remove(endpoint);
+
+        LOG.debug("Invalidated the layer names of endpoint " + endpoint);
+    }
+
+    /**
+     * Removes the layer names of all endpoints.
+     */
+    public void invalidateAll() {
+        version.incrementAndGet();
+        layerNames.clear();
+
+        LOG.debug("Invalidated the layer names of all endpoints");
+    }
+
+    /**
+     * @param endpoint
+     * @return
+     */
+    private Set<String> loadLayerNames(String endpoint) {
+        LogicalExpression where = Restrictions.and(
+            Restrictions.eq("requestableByPath", true),
+            Restrictions.eq("customRequestPath", endpoint)
+        );
+        List<ImageWmsLayerDataSource> sources = layerDataSourceDao.findByCriteria(where);
+
+        Set<String> names = new LinkedHashSet<>(sources.size());
+        for (ImageWmsLayerDataSource source : sources) {
+            names.add(source.getLayerNames());
+        }
+
+        LOG.debug("Loaded " + names.size() + " layer names of endpoint " + endpoint);
+
+        return Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * @param transactionManager the transactionManager to use for loading
+     */
+    @Autowired
+    @Qualifier("transactionManager")
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        this.transactionTemplate = template;
+    }
+
+    /**
+     * @param timeToLive the timeToLive (in ms) to set
+     */
+    @Value("${endpointLayerCache.timeToLive:300000}")
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * The layer names of an endpoint and the time they have been loaded.
+     */
+    private static class CachedLayerNames {
+
+        private final Set<String> names;
+
+        private final long created = System.currentTimeMillis();
+
+        CachedLayerNames(Set<String> names) {
+            this.names = names;
+        }
+
+        Set<String> getNames() {
+            return names;
+        }
+
+        boolean isExpired(long timeToLive) {
+            return System.currentTimeMillis() - created > timeToLive;
+        }
+    }
+
+}
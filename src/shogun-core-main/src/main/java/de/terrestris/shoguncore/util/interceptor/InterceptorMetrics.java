@@ -0,0 +1,563 @@
+package de.terrestris.shoguncore.util.interceptor;
+
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * The latencies of the requests handled by the GeoServer interceptor.
+ * <p>
+ * The duration of every phase of a request (see {@link Phase}) is measured by
+ * a {@link Timer} and recorded in a {@link LatencyHistogram} per service,
+ * operation, endpoint and phase. The number of tracked endpoints is limited
+ * (see <code>interceptorMetrics.maxKeys</code>), the requests of any further
+ * endpoint are recorded as endpoint {@value #OTHER_ENDPOINTS}.
+ * <p>
+ * The full phase breakdown of the last requests exceeding the configured
+ * threshold is kept in a ring buffer (see {@link #getSlowRequests()}).
+ *
+ * @author terrestris GmbH & Co. KG
+ */
+@Component("interceptorMetrics")
+public class InterceptorMetrics {
+
+    /**
+     * The LOGGER instance
+     */
+    private static final Logger LOG = getLogger(InterceptorMetrics.class);
+
+    /**
+     * The endpoint of all requests exceeding the max number of tracked keys.
+     */
+    static final String OTHER_ENDPOINTS = "*";
+
+    /**
+     * The service/operation/endpoint of requests which couldn't be parsed.
+     */
+    static final String UNKNOWN = "UNKNOWN";
+
+    /**
+     * The histograms by key (service/operation/endpoint).
+     */
+    private final ConcurrentHashMap<String, PhaseHistograms> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * The number of requests exceeding the threshold so far.
+     */
+    private final AtomicLong slowRequestCount = new AtomicLong();
+
+    /**
+     * The last requests exceeding the threshold.
+     */
+    private volatile AtomicReferenceArray<SlowRequest> slowRequests = new AtomicReferenceArray<>(100);
+
+    /**
+     *
+     */
+    private boolean enabled = true;
+
+    /**
+     * The duration (in ms) from which on a request is considered slow.
+     */
+    private long slowRequestThreshold = 1000;
+
+    /**
+     * The max number of tracked service/operation/endpoint keys.
+     */
+    private int maxKeys = 200;
+
+    /**
+     * @return A started timer for a request or a no-op timer, if the metrics
+     * are disabled.
+     */
+    public Timer start() {
+        return enabled ? new Timer() : Timer.DISABLED;
+    }
+
+    /**
+     * Records the durations of all phases measured by the given timer and the
+     * total duration (up to now) of the request.
+     *
+     * @param timer      The timer of the request
+     * @param service    The service, e.g. <code>WMS</code>
+     * @param operation  The operation, e.g. <code>GetMap</code>
+     * @param endpoint   The endpoint, e.g. the layer name
+     * @param requestUri The URI (without query string) of the request
+     * @param failed     Whether the request failed
+     */
+    public void record(Timer timer, String service, String operation, String endpoint,
+                       String requestUri, boolean failed) {
+        if (timer == null || !timer.isEnabled()) {
+            return;
+        }
+
+        final long[] durations = timer.stop();
+
+        final String serviceName = service != null ? service : UNKNOWN;
+        final String operationName = operation != null ? operation : UNKNOWN;
+        final String endpointName = endpoint != null ? endpoint : UNKNOWN;
+
+        final PhaseHistograms phaseHistograms = getPhaseHistograms(serviceName, operationName, endpointName);
+        for (Phase phase : Phase.values()) {
+            if (durations[phase.ordinal()] >= 0) {
+                phaseHistograms.get(phase).record(toMicros(durations[phase.ordinal()]));
+            }
+        }
+
+        if (durations[Phase.TOTAL.ordinal()] >= TimeUnit.MILLISECONDS.toNanos(slowRequestThreshold)) {
+            final SlowRequest slowRequest = new SlowRequest(System.currentTimeMillis(), serviceName,
+                operationName, endpointName, requestUri, failed, durations);
+
+            final AtomicReferenceArray<SlowRequest> buffer = slowRequests;
+            final int slot = (int) (slowRequestCount.getAndIncrement() % buffer.length());
+            buffer.set(slot, slowRequest);
+
+            LOG.debug("Slow interceptor request (" + slowRequest.getTotal() + " ms): " + slowRequest.getPhases());
+        }
+    }
+
+    /**
+     * @return The histograms (count, mean, percentiles and max of all phases
+     * in ms) by service/operation/endpoint.
+     */
+    public List<Map<String, Object>> getHistograms() {
+        final List<PhaseHistograms> values = new ArrayList<>(histograms.values());
+        values.sort(Comparator.comparing((PhaseHistograms h) -> h.service)
+            .thenComparing(h -> h.operation)
+            .thenComparing(h -> h.endpoint));
+
+        final List<Map<String, Object>> result = new ArrayList<>();
+        for (PhaseHistograms phaseHistograms : values) {
+            final Map<String, Object> phases = new LinkedHashMap<>();
+            for (Phase phase : Phase.values()) {
+                final LatencyHistogram histogram = phaseHistograms.histograms.get(phase.ordinal());
+                if (histogram != null) {
+                    phases.put(phase.name(), toMap(histogram.getSnapshot()));
+                }
+            }
+
+            final Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("service", phaseHistograms.service);
+            entry.put("operation", phaseHistograms.operation);
+            entry.put("endpoint", phaseHistograms.endpoint);
+            entry.put("phases", phases);
+            result.add(entry);
+        }
+        return result;
+    }
+
+    /**
+     * @return The last requests exceeding the threshold (the most recent
+     * first).
+     */
+    public List<SlowRequest> getSlowRequests() {
+        final AtomicReferenceArray<SlowRequest> buffer = slowRequests;
+        final List<SlowRequest> result = new ArrayList<>();
+        for (int i = 0; i < buffer.length(); i++) {
+            final SlowRequest slowRequest = buffer.get(i);
+            if (slowRequest != null) {
+                result.add(slowRequest);
+            }
+        }
+        result.sort(Comparator.comparingLong(SlowRequest::getTimestamp).reversed());
+        return result;
+    }
+
+    /**
+     * @return The number of requests exceeding the threshold so far.
+     */
+    public long getSlowRequestCount() {
+        return slowRequestCount.get();
+    }
+
+    /**
+     * Removes all recorded values.
+     */
+    public void reset() {
+        histograms.clear();
+        slowRequests = new AtomicReferenceArray<>(slowRequests.length());
+        slowRequestCount.set(0);
+    }
+
+    /**
+     * @param service
+     * @param operation
+     * @param endpoint
+     * @return The (possibly new) histograms of the given key or the ones of
+     * {@value #OTHER_ENDPOINTS}, if the max number of keys has been reached.
+     */
+    private PhaseHistograms getPhaseHistograms(String service, String operation, String endpoint) {
+        final String key = service + '/' + operation + '/' + endpoint;
+
+        PhaseHistograms phaseHistograms = histograms.get(key);
+        if (phaseHistograms != null) {
+            return phaseHistograms;
+        }
+
+        if (histograms.size() >= maxKeys) {
+            return histograms.computeIfAbsent(service + '/' + operation + '/' + OTHER_ENDPOINTS,
+                k -> new PhaseHistograms(service, operation, OTHER_ENDPOINTS));
+        }
+
+        return histograms.computeIfAbsent(key, k -> new PhaseHistograms(service, operation, endpoint));
+    }
+
+    /**
+     * @param snapshot
+     * @return The count, mean, percentiles and max (in ms) of the given
+     * snapshot.
+     */
+    private static Map<String, Object> toMap(LatencyHistogram.Snapshot snapshot) {
+        final Map<String, Object> map = new LinkedHashMap<>();
+        map.put("count", snapshot.getCount());
+        map.put("mean", toMillis(snapshot.getMean()));
+        map.put("p50", toMillis(snapshot.getPercentile(50)));
+        map.put("p90", toMillis(snapshot.getPercentile(90)));
+        map.put("p99", toMillis(snapshot.getPercentile(99)));
+        map.put("p999", toMillis(snapshot.getPercentile(99.9)));
+        map.put("max", toMillis(snapshot.getMax()));
+        return map;
+    }
+
+    /**
+     * @param nanos
+     * @return The given duration in µs.
+     */
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    /**
+     * @param micros
+     * @return The given duration in ms (with µs precision).
+     */
+    private static double toMillis(long micros) {
+        return micros / 1000d;
+    }
+
+    /**
+     * @return whether the metrics are enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param enabled the enabled to set
+     */
+    @Value("${interceptorMetrics.enabled:true}")
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return the slowRequestThreshold (in ms)
+     */
+    public long getSlowRequestThreshold() {
+        return slowRequestThreshold;
+    }
+
+    /**
+     * @param slowRequestThreshold the slowRequestThreshold (in ms) to set
+     */
+    @Value("${interceptorMetrics.slowRequestThreshold:1000}")
+    public void setSlowRequestThreshold(long slowRequestThreshold) {
+        this.slowRequestThreshold = slowRequestThreshold;
+    }
+
+    /**
+     * @param slowRequestBufferSize the number of slow requests to keep
+     */
+    @Value("${interceptorMetrics.slowRequestBufferSize:100}")
+    public void setSlowRequestBufferSize(int slowRequestBufferSize) {
+        this.slowRequests = new AtomicReferenceArray<>(Math.max(1, slowRequestBufferSize));
+        this.slowRequestCount.set(0);
+    }
+
+    /**
+     * @param maxKeys the maxKeys to set
+     */
+    @Value("${interceptorMetrics.maxKeys:200}")
+    public void setMaxKeys(int maxKeys) {
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * The phases of an intercepted request.
+     */
+    public enum Phase {
+        /**
+         * Parsing the request (parameters, body and URI).
+         */
+        PARSE,
+        /**
+         * Looking up the most specific request and response rules.
+         */
+        RULE_LOOKUP,
+        /**
+         * Looking up the upstream URL of a data source.
+         */
+        DATA_SOURCE_LOOKUP,
+        /**
+         * The request interceptor.
+         */
+        REQUEST_INTERCEPTOR,
+        /**
+         * Reading and writing cached responses.
+         */
+        CACHE,
+        /**
+         * The upstream request. For streamed responses, this covers the time
+         * until the response headers have been received only.
+         */
+        UPSTREAM,
+        /**
+         * The response interceptor.
+         */
+        RESPONSE_INTERCEPTOR,
+        /**
+         * Filtering the response headers to forward.
+         */
+        HEADER_FILTER,
+        /**
+         * The whole request.
+         */
+        TOTAL
+    }
+
+    /**
+     * Measures the phases of a single request. A timer must not be shared
+     * between threads.
+     */
+    public static class Timer {
+
+        /**
+         * The timer used if the metrics are disabled.
+         */
+        public static final Timer DISABLED = new Timer(false);
+
+        private final boolean enabled;
+
+        /**
+         * The durations (in ns) by phase, -1 if the phase hasn't been passed.
+         */
+        private final long[] durations = new long[Phase.values().length];
+
+        private final long start;
+
+        private long last;
+
+        /**
+         *
+         */
+        Timer() {
+            this(true);
+        }
+
+        /**
+         * @param enabled
+         */
+        private Timer(boolean enabled) {
+            this.enabled = enabled;
+            this.start = enabled ? System.nanoTime() : 0;
+            this.last = start;
+            Arrays.fill(durations, -1);
+        }
+
+        /**
+         * Adds the time since the last lap (or the start) to the given phase.
+         *
+         * @param phase
+         */
+        public void lap(Phase phase) {
+            if (!enabled) {
+                return;
+            }
+
+            final long now = System.nanoTime();
+            final int index = phase.ordinal();
+            durations[index] = Math.max(durations[index], 0) + (now - last);
+            last = now;
+        }
+
+        /**
+         * @return The durations by phase including the total duration.
+         */
+        long[] stop() {
+            final long[] result = durations.clone();
+            result[Phase.TOTAL.ordinal()] = System.nanoTime() - start;
+            return result;
+        }
+
+        /**
+         * @return whether the timer measures anything
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+    }
+
+    /**
+     * A request exceeding the threshold.
+     */
+    public static class SlowRequest {
+
+        private final long timestamp;
+
+        private final String service;
+
+        private final String operation;
+
+        private final String endpoint;
+
+        private final String requestUri;
+
+        private final boolean failed;
+
+        /**
+         * The total duration (in ms).
+         */
+        private final double total;
+
+        /**
+         * The durations (in ms) of the passed phases.
+         */
+        private final Map<String, Double> phases = new LinkedHashMap<>();
+
+        /**
+         * @param timestamp
+         * @param service
+         * @param operation
+         * @param endpoint
+         * @param requestUri
+         * @param failed
+         * @param durations  The durations (in ns) by phase
+         */
+        SlowRequest(long timestamp, String service, String operation, String endpoint,
+                    String requestUri, boolean failed, long[] durations) {
+            this.timestamp = timestamp;
+            this.service = service;
+            this.operation = operation;
+            this.endpoint = endpoint;
+            this.requestUri = requestUri;
+            this.failed = failed;
+            this.total = toMillis(toMicros(durations[Phase.TOTAL.ordinal()]));
+
+            for (Phase phase : Phase.values()) {
+                if (phase != Phase.TOTAL && durations[phase.ordinal()] >= 0) {
+                    phases.put(phase.name(), toMillis(toMicros(durations[phase.ordinal()])));
+                }
+            }
+        }
+
+        /**
+         * @return the timestamp
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * @return the service
+         */
+        public String getService() {
+            return service;
+        }
+
+        /**
+         * @return the operation
+         */
+        public String getOperation() {
+            return operation;
+        }
+
+        /**
+         * @return the endpoint
+         */
+        public String getEndpoint() {
+            return endpoint;
+        }
+
+        /**
+         * @return the requestUri
+         */
+        public String getRequestUri() {
+            return requestUri;
+        }
+
+        /**
+         * @return whether the request failed
+         */
+        public boolean isFailed() {
+            return failed;
+        }
+
+        /**
+         * @return the total duration (in ms)
+         */
+        public double getTotal() {
+            return total;
+        }
+
+        /**
+         * @return the durations (in ms) by phase
+         */
+        public Map<String, Double> getPhases() {
+            return phases;
+        }
+    }
+
+    /**
+     * The (lazily created) histograms of all phases of a key.
+     */
+    private static class PhaseHistograms {
+
+        private final String service;
+
+        private final String operation;
+
+        private final String endpoint;
+
+        private final AtomicReferenceArray<LatencyHistogram> histograms =
+            new AtomicReferenceArray<>(Phase.values().length);
+
+        /**
+         * @param service
+         * @param operation
+         * @param endpoint
+         */
+        PhaseHistograms(String service, String operation, String endpoint) {
+            this.service = service;
+            this.operation = operation;
+            this.endpoint = endpoint;
+        }
+
+        /**
+         * @param phase
+         * @return The (possibly new) histogram of the given phase.
+         */
+        LatencyHistogram get(Phase phase) {
+            final int index = phase.ordinal();
+            LatencyHistogram histogram = histograms.get(index);
+            if (histogram == null) {
+                histograms.compareAndSet(index, null, new LatencyHistogram());
+                histogram = histograms.get(index);
+            }
+            return histogram;
+        }
+    }
+
+}
@@ -0,0 +1,220 @@
+package de.terrestris.shoguncore.util.interceptor;
+
+import de.terrestris.shoguncore.model.interceptor.InterceptorRule;
+import de.terrestris.shoguncore.util.enumeration.HttpEnum;
+import de.terrestris.shoguncore.util.enumeration.OgcEnum;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * An immutable, precompiled index of {@link InterceptorRule}s that resolves
+ * the most specific rule for a given event, service, operation and endPoint
+ * by a constant number of hash lookups (instead of scoring all rules of a
+ * service on every request).
+ * <p>
+ * A rule without an operation or endPoint acts as wildcard for these values.
+ * The specificity of a rule is determined as follows (descending):
+ * <ol>
+ * <li>endPoint and operation match</li>
+ * <li>endPoint matches, operation is a wildcard</li>
+ * <li>operation matches, endPoint is a wildcard</li>
+ * <li>endPoint and operation are wildcards (service only)</li>
+ * </ol>
+ * If the request does not contain an operation (or endPoint), any rule
+ * matches regarding this value. If more than one rule is defined for the
+ * very same combination, the first one passed to the constructor wins.
+ *
+ * @author terrestris GmbH & Co. KG
+ */
+public class InterceptorRuleIndex {
+
+    /**
+     * The LOGGER instance
+     */
+    private static final Logger LOG = getLogger(InterceptorRuleIndex.class);
+
+    /**
+     * The rules by their exact (event, service, operation, endPoint)
+     * combination.
+     */
+    private final Map<RuleKey, InterceptorRule> rulesByKey = new HashMap<>();
+
+    /**
+     * The rules by (event, service, endPoint), regardless of the operation of
+     * the rule. Used if the request does not contain an operation.
+     */
+    private final Map<RuleKey, InterceptorRule> rulesByEndPoint = new HashMap<>();
+
+    /**
+     * The rules by (event, service, operation), regardless of the endPoint of
+     * the rule. Used if the request does not contain an endPoint.
+     */
+    private final Map<RuleKey, InterceptorRule> rulesByOperation = new HashMap<>();
+
+    /**
+     * The rules by (event, service), regardless of the operation and endPoint
+     * of the rule.
+     */
+    private final Map<RuleKey, InterceptorRule> rulesByService = new HashMap<>();
+
+    /**
+     * The number of indexed rules.
+     */
+    private final int size;
+
+    /**
+     * Compiles the index for the given rules.
+     *
+     * @param interceptorRules
+     */
+    public InterceptorRuleIndex(Collection<? extends InterceptorRule> interceptorRules) {
+        int count = 0;
+
+        if (interceptorRules != null) {
+            for (InterceptorRule rule : interceptorRules) {
+                if (rule == null) {
+                    continue;
+                }
+
+                HttpEnum.EventType event = rule.getEvent();
+                OgcEnum.ServiceType service = rule.getService();
+                OgcEnum.OperationType operation = rule.getOperation();
+                String endPoint = rule.getEndPoint();
+
+                InterceptorRule existing = rulesByKey.putIfAbsent(
+                    new RuleKey(event, service, operation, endPoint), rule);
+
+                if (existing != null) {
+                    LOG.warn("Found more than one interceptor rule for the same " +
+                        "combination of event, service, operation and endPoint. " +
+                        "Rule " + rule + " will be ignored in favor of " + existing);
+                    continue;
+                }
+
+                rulesByEndPoint.putIfAbsent(new RuleKey(event, service, null, endPoint), rule);
+                rulesByOperation.putIfAbsent(new RuleKey(event, service, operation, null), rule);
+                rulesByService.putIfAbsent(new RuleKey(event, service, null, null), rule);
+
+                count++;
+            }
+        }
+
+        this.size = count;
+    }
+
+    /**
+     * Returns the most specific rule for the given values.
+     *
+     * @param event
+     * @param service
+     * @param operation The requested operation, may be null.
+     * @param endPoint  The requested endPoint, may be null.
+     * @return The most specific rule or null if no rule matches.
+     */
+    public InterceptorRule findMostSpecificRule(HttpEnum.EventType event,
+                                                OgcEnum.ServiceType service, OgcEnum.OperationType operation,
+                                                String endPoint) {
+
+        if (event == null || service == null) {
+            return null;
+        }
+
+        InterceptorRule rule;
+
+        if (endPoint != null && operation != null) {
+            rule = rulesByKey.get(new RuleKey(event, service, operation, endPoint));
+            if (rule == null) {
+                rule = rulesByKey.get(new RuleKey(event, service, null, endPoint));
+            }
+            if (rule == null) {
+                rule = rulesByKey.get(new RuleKey(event, service, operation, null));
+            }
+            if (rule == null) {
+                rule = rulesByKey.get(new RuleKey(event, service, null, null));
+            }
+        } else if (endPoint != null) {
+            rule = rulesByEndPoint.get(new RuleKey(event, service, null, endPoint));
+            if (rule == null) {
+                rule = rulesByEndPoint.get(new RuleKey(event, service, null, null));
+            }
+        } else if (operation != null) {
+            rule = rulesByOperation.get(new RuleKey(event, service, operation, null));
+            if (rule == null) {
+                rule = rulesByOperation.get(new RuleKey(event, service, null, null));
+            }
+        } else {
+            rule = rulesByService.get(new RuleKey(event, service, null, null));
+        }
+
+        return rule;
+    }
+
+    /**
+     * @param event
+     * @param service
+     * @return Whether at least one rule exists for the given event and
+     * service.
+     */
+    public boolean hasRules(HttpEnum.EventType event, OgcEnum.ServiceType service) {
+        return rulesByService.containsKey(new RuleKey(event, service, null, null));
+    }
+
+    /**
+     * @return The number of indexed rules.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The (immutable) key of the index maps.
+     */
+    private static final class RuleKey {
+
+        private final HttpEnum.EventType event;
+
+        private final OgcEnum.ServiceType service;
+
+        private final OgcEnum.OperationType operation;
+
+        private final String endPoint;
+
+        private final int hash;
+
+        RuleKey(HttpEnum.EventType event, OgcEnum.ServiceType service,
+                OgcEnum.OperationType operation, String endPoint) {
+            this.event = event;
+            this.service = service;
+            this.operation = operation;
+            this.endPoint = endPoint;
+            this.hash = Objects.hash(event, service, operation, endPoint);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof RuleKey)) {
+                return false;
+            }
+            RuleKey other = (RuleKey) obj;
+            return event == other.event &&
+                service == other.service &&
+                operation == other.operation &&
+                Objects.equals(endPoint, other.endPoint);
+        }
+    }
+
+}
@@ -0,0 +1,173 @@
+package de.terrestris.shoguncore.util.interceptor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies (in microseconds) with logarithmic buckets, i.e.
+ * every power of two is split into {@value #SUB_BUCKETS} linear sub buckets
+ * (as done by HdrHistogram). This results in a relative error of ~6% for
+ * all recorded values with a fixed (and small) number of buckets.
+ * <p>
+ * Recording is lock-free. Snapshots (see {@link #getSnapshot()}) taken
+ * while values are recorded concurrently may be slightly inconsistent
+ * (e.g. the mean may include a value which is not counted yet).
+ *
+ * @author terrestris GmbH & Co. KG
+ */
+public class LatencyHistogram {
+
+    /**
+     * The number of bits of the linear sub buckets.
+     */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /**
+     * The number of linear sub buckets per power of two.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The highest bit of the max trackable value (2^32 µs, ~71 minutes),
+     * larger values will be recorded as max trackable value.
+     */
+    private static final int MAX_BIT = 31;
+
+    /**
+     * The max trackable value (in µs).
+     */
+    private static final long MAX_VALUE = (1L << (MAX_BIT + 1)) - 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(getBucketIndex(MAX_VALUE) + 1);
+
+    private final LongAdder sum = new LongAdder();
+
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records the given latency.
+     *
+     * @param micros The latency in µs
+     */
+    public void record(long micros) {
+        final long value = Math.min(Math.max(micros, 0), MAX_VALUE);
+
+        buckets.incrementAndGet(getBucketIndex(value));
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * @return The current state of the histogram.
+     */
+    public Snapshot getSnapshot() {
+        final long[] counts = new long[buckets.length()];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        return new Snapshot(counts, total, sum.sum(), max.get());
+    }
+
+    /**
+     * @param value A value between 0 and {@link #MAX_VALUE}
+     * @return The index of the bucket of the given value.
+     */
+    static int getBucketIndex(long value) {
+        final int highestBit = 63 - Long.numberOfLeadingZeros(value | 1);
+
+        if (highestBit < SUB_BUCKET_BITS) {
+            return (int) value;
+        }
+
+        // the value shifted into [SUB_BUCKETS, 2 * SUB_BUCKETS)
+        final int shift = highestBit - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+     * @param index
+     * @return The highest value of the bucket with the given index.
+     */
+    static long getHighestValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        final int shift = index / SUB_BUCKETS - 1;
+        final long subBucket = index - shift * SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * An immutable copy of the state of a histogram.
+     */
+    public static class Snapshot {
+
+        private final long[] counts;
+
+        private final long count;
+
+        private final long sum;
+
+        private final long max;
+
+        /**
+         * @param counts
+         * @param count
+         * @param sum
+         * @param max
+         */
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * @param percentile The percentile (between 0 and 100)
+         * @return The (highest value of the bucket of the) given percentile
+         * in µs or 0, if no values have been recorded.
+         */
+        public long getPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+
+            final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(getHighestValue(i), max);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * @return the number of recorded values
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the mean in µs
+         */
+        public long getMean() {
+            return count > 0 ? sum / count : 0;
+        }
+
+        /**
+         * @return the max in µs
+         */
+        public long getMax() {
+            return max;
+        }
+    }
+
+}
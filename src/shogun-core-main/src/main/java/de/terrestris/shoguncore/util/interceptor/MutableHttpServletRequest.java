@@ -4,7 +4,6 @@ import de.terrestris.shoguncore.util.enumeration.OgcEnum;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.Logger;
-import org.w3c.dom.Document;
 
 import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServletRequest;
@@ -33,6 +32,11 @@ public class MutableHttpServletRequest extends HttpServletRequestWrapper {
      */
     public static final String DEFAULT_CHARSET = "UTF-8";
 
+    /**
+     * The name of the OGC version parameter.
+     */
+    public static final String VERSION_PARAMETER = "VERSION";
+
     /**
      * The Logger.
      */
@@ -58,6 +62,17 @@ public class MutableHttpServletRequest extends HttpServletRequestWrapper {
      */
     private ByteArrayOutputStream cachedInputStream;
 
+    /**
+     * The descriptor of the (XML) body, will be parsed once on demand.
+     */
+    private OgcRequestDescriptor ogcRequestDescriptor;
+
+    /**
+     * Whether the body has been parsed into the {@link #ogcRequestDescriptor}
+     * already.
+     */
+    private boolean ogcRequestDescriptorParsed = false;
+
     /**
      * @param request
      */
@@ -124,32 +139,20 @@ public class MutableHttpServletRequest extends HttpServletRequestWrapper {
 
         } else {
 
-            String xml = OgcXmlUtil.getRequestBody(httpServletRequest);
+            OgcRequestDescriptor descriptor = getOgcRequestDescriptor(httpServletRequest);
 
-            if (!StringUtils.isEmpty(xml)) {
+            if (descriptor != null) {
 
                 LOG.trace("The request contains a POST body.");
 
-                Document document = OgcXmlUtil.getDocumentFromString(xml);
-
                 if (parameter.equalsIgnoreCase(OgcEnum.Service.SERVICE.toString())) {
-                    value = OgcXmlUtil.getPathInDocument(
-                        document, "/*/@service");
+                    value = descriptor.getService();
                 } else if (parameter.equalsIgnoreCase(OgcEnum.Operation.OPERATION.toString())) {
-                    value = OgcXmlUtil.getPathInDocument(
-                        document, "name(/*)");
-
-                    if (value.contains(":")) {
-                        value = value.split(":")[1];
-                    }
-
+                    value = descriptor.getOperation();
                 } else if (Arrays.asList(OgcEnum.EndPoint.getAllValues()).contains(parameter)) {
-                    value = OgcXmlUtil.getPathInDocument(document,
-                        "//TypeName/text() | //TypeNames/text() | //GetCoverage/Identifier/text()");
-                    if (StringUtils.isEmpty(value)) {
-                        value = OgcXmlUtil.getPathInDocument(document,
-                            "//@typeName | //@typeNames");
-                    }
+                    value = descriptor.getEndPoint();
+                } else if (parameter.equalsIgnoreCase(VERSION_PARAMETER)) {
+                    value = descriptor.getVersion();
                 }
 
             } else {
@@ -162,6 +165,57 @@ public class MutableHttpServletRequest extends HttpServletRequestWrapper {
         return value;
     }
 
+    /**
+     * Returns the descriptor of the XML body of the given request. If the
+     * request is a {@link MutableHttpServletRequest}, the body will only be
+     * parsed once.
+     *
+     * @param httpServletRequest
+     * @return The descriptor or null if the request has no body.
+     * @throws IOException If the body could not be parsed as XML.
+     */
+    public static OgcRequestDescriptor getOgcRequestDescriptor(HttpServletRequest httpServletRequest)
+        throws IOException {
+
+        if (httpServletRequest instanceof MutableHttpServletRequest) {
+            return ((MutableHttpServletRequest) httpServletRequest).getOgcRequestDescriptor();
+        }
+
+        return parseOgcRequestDescriptor(httpServletRequest);
+    }
+
+    /**
+     * @param httpServletRequest
+     * @return
+     * @throws IOException
+     */
+    private static OgcRequestDescriptor parseOgcRequestDescriptor(HttpServletRequest httpServletRequest)
+        throws IOException {
+
+        String xml = OgcXmlUtil.getRequestBody(httpServletRequest);
+
+        if (StringUtils.isEmpty(xml)) {
+            return null;
+        }
+
+        return OgcRequestDescriptor.fromString(xml);
+    }
+
+    /**
+     * Returns the descriptor of the XML body of this request, the body will
+     * be parsed on the first call only.
+     *
+     * @return The descriptor or null if the request has no body.
+     * @throws IOException If the body could not be parsed as XML.
+     */
+    public OgcRequestDescriptor getOgcRequestDescriptor() throws IOException {
+        if (!ogcRequestDescriptorParsed) {
+            ogcRequestDescriptor = parseOgcRequestDescriptor(this);
+            ogcRequestDescriptorParsed = true;
+        }
+        return ogcRequestDescriptor;
+    }
+
     /**
      * @param url The URI to set as instance of {@link String}
      */
@@ -325,6 +379,7 @@ public class MutableHttpServletRequest extends HttpServletRequestWrapper {
      * @param body {@link String} body to create the {@link ByteArrayInputStream} from
      */
     public void setInputStream(String body) {
+        resetOgcRequestDescriptor();
         try (
             ByteArrayInputStream stream = new ByteArrayInputStream(body.getBytes(DEFAULT_CHARSET))
         ) {
@@ -341,6 +396,7 @@ public class MutableHttpServletRequest extends HttpServletRequestWrapper {
      * @param stream The {@link InputStream} to set (copy)
      */
     public void setInputStream(InputStream stream) {
+        resetOgcRequestDescriptor();
         try {
             cachedInputStream = new ByteArrayOutputStream();
             IOUtils.copy(stream, cachedInputStream);
@@ -349,6 +405,15 @@ public class MutableHttpServletRequest extends HttpServletRequestWrapper {
         }
     }
 
+    /**
+     * Resets the descriptor of the body, e.g. after the body has been
+     * modified.
+     */
+    private void resetOgcRequestDescriptor() {
+        ogcRequestDescriptor = null;
+        ogcRequestDescriptorParsed = false;
+    }
+
     /**
      * Get a parameter by name, ignoring case.
      *
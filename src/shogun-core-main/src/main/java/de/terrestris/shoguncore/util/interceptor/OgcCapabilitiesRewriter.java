@@ -0,0 +1,419 @@
+package de.terrestris.shoguncore.util.interceptor;
+
+import org.apache.commons.lang3.StringUtils;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.StartDocument;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Streaming (StAX event based) rewriter for OGC GetCapabilities documents.
+ * <p>
+ * In contrast to a DOM based approach the document is never held in memory
+ * as a whole. Only the header of a WMS <code>Layer</code> element (the events
+ * up to its <code>Name</code>) is buffered to decide whether the layer has to
+ * be removed.
+ *
+ * @author terrestris GmbH & Co. KG
+ */
+public class OgcCapabilitiesRewriter {
+
+    /**
+     * The XLink namespace.
+     */
+    public static final String XLINK_NAMESPACE = "http://www.w3.org/1999/xlink";
+
+    /**
+     * The WMS 1.3.0 namespace.
+     */
+    public static final String WMS_NAMESPACE = "http://www.opengis.net/wms";
+
+    /**
+     * The OWS 1.0.0 namespace (WFS 1.1.0).
+     */
+    public static final String OWS_NAMESPACE = "http://www.opengis.net/ows";
+
+    /**
+     * The OWS 1.1.0 namespace (WFS 2.0.0).
+     */
+    public static final String OWS_11_NAMESPACE = "http://www.opengis.net/ows/1.1";
+
+    /**
+     * The default encoding of the written documents.
+     */
+    private static final String DEFAULT_ENCODING = "UTF-8";
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
+    private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    private static final XMLEventFactory XML_EVENT_FACTORY = XMLEventFactory.newInstance();
+
+    /**
+     * Rewrites a WMS (1.1.1 or 1.3.0) capabilities document:
+     * <ul>
+     * <li>All <code>Layer</code> elements whose <code>Name</code> is not
+     * contained in the given (qualified) layer names are removed (including
+     * their child layers).</li>
+     * <li>The <code>Name</code> of all remaining layers is qualified with the
+     * namespace of the matching layer name.</li>
+     * <li>The <code>xlink:href</code> of all <code>OnlineResource</code>
+     * elements is set to the given base URL (keeping its query string).</li>
+     * </ul>
+     * The <code>Name</code> is expected to be the first child element of a
+     * <code>Layer</code> (as required by the WMS schemas).
+     *
+     * @param body       The capabilities document.
+     * @param baseUrl    The base URL to set.
+     * @param layerNames The qualified names (e.g. ns:layer) of the layers to keep.
+     * @return The rewritten document.
+     * @throws XMLStreamException
+     */
+    public static byte[] rewriteWmsCapabilities(byte[] body, String baseUrl,
+                                                List<String> layerNames) throws XMLStreamException {
+
+        List<String> unqualifiedLayerNames = new ArrayList<>(layerNames.size());
+        for (String layerName : layerNames) {
+            unqualifiedLayerNames.add(layerName.split(":")[1]);
+        }
+
+        XMLEventReader reader = XML_INPUT_FACTORY.createXMLEventReader(new ByteArrayInputStream(body));
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length);
+        XMLEventWriter writer = null;
+
+        try {
+            String namespace = null;
+
+            // the buffered events of the current layer (until its name is known)
+            List<XMLEvent> layerBuffer = null;
+            // the depth inside the buffered layer
+            int layerDepth = 0;
+            // the depth inside a removed layer
+            int skipDepth = 0;
+
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+
+                if (writer == null) {
+                    writer = createWriter(event, out);
+                }
+
+                if (skipDepth > 0) {
+                    if (event.isStartElement()) {
+                        skipDepth++;
+                    } else if (event.isEndElement()) {
+                        skipDepth--;
+                    }
+                    continue;
+                }
+
+                if (event.isStartElement()) {
+                    StartElement startElement = event.asStartElement();
+
+                    if (namespace == null) {
+                        // the root element
+                        Attribute version = startElement.getAttributeByName(new QName("version"));
+                        namespace = version != null && "1.3.0".equals(version.getValue()) ?
+                            WMS_NAMESPACE : StringUtils.EMPTY;
+                    }
+
+                    if (isElement(startElement, namespace, "Layer")) {
+                        if (layerBuffer != null) {
+                            // a nested layer before the name of the parent layer
+                            flush(layerBuffer, writer);
+                        }
+                        layerBuffer = new ArrayList<>();
+                        layerBuffer.add(event);
+                        layerDepth = 1;
+                        continue;
+                    }
+
+                    if (layerBuffer != null && layerDepth == 1 &&
+                        isElement(startElement, namespace, "Name")) {
+
+                        String name = reader.getElementText();
+
+                        if (!unqualifiedLayerNames.contains(name)) {
+                            // drop the layer, we're inside the layer already
+                            layerBuffer = null;
+                            skipDepth = 1;
+                            continue;
+                        }
+
+                        String qualifiedName = name;
+                        for (String qualifiedLayerName : layerNames) {
+                            String[] parts = qualifiedLayerName.split(":");
+                            if (name.equals(parts[1])) {
+                                qualifiedName = parts[0] + ":" + qualifiedName;
+                            }
+                        }
+
+                        flush(layerBuffer, writer);
+                        layerBuffer = null;
+
+                        writer.add(startElement);
+                        writer.add(XML_EVENT_FACTORY.createCharacters(qualifiedName));
+                        writer.add(XML_EVENT_FACTORY.createEndElement(startElement.getName(),
+                            Collections.emptyIterator()));
+                        continue;
+                    }
+
+                    if (isElement(startElement, namespace, "OnlineResource")) {
+                        event = setXlinkHref(startElement, getUrl(startElement, baseUrl));
+                    }
+                }
+
+                if (layerBuffer != null) {
+                    if (event.isStartElement()) {
+                        layerDepth++;
+                    } else if (event.isEndElement()) {
+                        layerDepth--;
+                    }
+                    layerBuffer.add(event);
+                    if (layerDepth == 0) {
+                        // a layer without a name
+                        flush(layerBuffer, writer);
+                        layerBuffer = null;
+                    }
+                    continue;
+                }
+
+                writer.add(event);
+            }
+
+            if (writer != null) {
+                writer.flush();
+            }
+        } finally {
+            close(reader, writer);
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Rewrites the online resources of the <code>Get</code> and
+     * <code>Post</code> elements of a WFS (1.0.0, 1.1.0 or 2.0.0) capabilities
+     * document. For version 1.0.0 the <code>onlineResource</code> attribute, for
+     * 1.1.0 and 2.0.0 the <code>xlink:href</code> attribute will be set to the
+     * given base URL. Documents of other versions are returned unchanged.
+     *
+     * @param body    The capabilities document.
+     * @param baseUrl The base URL to set.
+     * @return The rewritten document.
+     * @throws XMLStreamException
+     */
+    public static byte[] rewriteWfsCapabilities(byte[] body, String baseUrl) throws XMLStreamException {
+
+        XMLEventReader reader = XML_INPUT_FACTORY.createXMLEventReader(new ByteArrayInputStream(body));
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length);
+        XMLEventWriter writer = null;
+
+        try {
+            String version = null;
+
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+
+                if (writer == null) {
+                    writer = createWriter(event, out);
+                }
+
+                if (event.isStartElement()) {
+                    StartElement startElement = event.asStartElement();
+
+                    if (version == null) {
+                        // the root element
+                        Attribute versionAttribute = startElement.getAttributeByName(new QName("version"));
+                        version = versionAttribute != null ? versionAttribute.getValue() : StringUtils.EMPTY;
+                    }
+
+                    String localName = startElement.getName().getLocalPart();
+
+                    if ("Get".equals(localName) || "Post".equals(localName)) {
+                        String namespace = startElement.getName().getNamespaceURI();
+
+                        if ("1.0.0".equals(version)) {
+                            event = setAttribute(startElement, new QName("onlineResource"), baseUrl, null);
+                        } else if ("1.1.0".equals(version) && OWS_NAMESPACE.equals(namespace) ||
+                            "2.0.0".equals(version) && OWS_11_NAMESPACE.equals(namespace)) {
+                            event = setXlinkHref(startElement, baseUrl);
+                        }
+                    }
+                }
+
+                writer.add(event);
+            }
+
+            if (writer != null) {
+                writer.flush();
+            }
+        } finally {
+            close(reader, writer);
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * @param startElement
+     * @param baseUrl
+     * @return The base URL with the query string of the current xlink:href.
+     */
+    private static String getUrl(StartElement startElement, String baseUrl) {
+        Attribute href = startElement.getAttributeByName(new QName(XLINK_NAMESPACE, "href"));
+        String url = href != null ? href.getValue() : StringUtils.EMPTY;
+        int index = url.indexOf('?');
+        if (index > -1) {
+            return baseUrl + url.substring(index);
+        }
+        return baseUrl;
+    }
+
+    /**
+     * @param startElement
+     * @param namespace
+     * @param localName
+     * @return
+     */
+    private static boolean isElement(StartElement startElement, String namespace, String localName) {
+        QName name = startElement.getName();
+        return localName.equals(name.getLocalPart()) &&
+            StringUtils.defaultString(namespace).equals(name.getNamespaceURI());
+    }
+
+    /**
+     * Sets the xlink:href attribute of the given element and declares the
+     * XLink namespace if needed.
+     *
+     * @param startElement
+     * @param value
+     * @return A new start element.
+     */
+    private static StartElement setXlinkHref(StartElement startElement, String value) {
+        String prefix = startElement.getNamespaceContext().getPrefix(XLINK_NAMESPACE);
+
+        if (prefix != null) {
+            return setAttribute(startElement, new QName(XLINK_NAMESPACE, "href", prefix), value, null);
+        }
+
+        return setAttribute(startElement, new QName(XLINK_NAMESPACE, "href", "xlink"), value,
+            XML_EVENT_FACTORY.createNamespace("xlink", XLINK_NAMESPACE));
+    }
+
+    /**
+     * Sets (adds or replaces) the given attribute.
+     *
+     * @param startElement
+     * @param attributeName
+     * @param value
+     * @param namespace     An additional namespace to declare, may be null.
+     * @return A new start element.
+     */
+    private static StartElement setAttribute(StartElement startElement, QName attributeName,
+                                             String value, Namespace namespace) {
+        List<Attribute> attributes = new ArrayList<>();
+        Iterator<?> it = startElement.getAttributes();
+        while (it.hasNext()) {
+            Attribute attribute = (Attribute) it.next();
+            QName name = attribute.getName();
+            if (!(name.getLocalPart().equals(attributeName.getLocalPart()) &&
+                name.getNamespaceURI().equals(attributeName.getNamespaceURI()))) {
+                attributes.add(attribute);
+            }
+        }
+        attributes.add(XML_EVENT_FACTORY.createAttribute(attributeName, value));
+
+        List<Namespace> namespaces = new ArrayList<>();
+        it = startElement.getNamespaces();
+        while (it.hasNext()) {
+            namespaces.add((Namespace) it.next());
+        }
+        if (namespace != null) {
+            namespaces.add(namespace);
+        }
+
+        QName name = startElement.getName();
+        return XML_EVENT_FACTORY.createStartElement(name.getPrefix(), name.getNamespaceURI(),
+            name.getLocalPart(), attributes.iterator(), namespaces.iterator(),
+            startElement.getNamespaceContext());
+    }
+
+    /**
+     * @param events
+     * @param writer
+     * @throws XMLStreamException
+     */
+    private static void flush(List<XMLEvent> events, XMLEventWriter writer) throws XMLStreamException {
+        for (XMLEvent event : events) {
+            writer.add(event);
+        }
+    }
+
+    /**
+     * Creates the writer with the encoding of the document.
+     *
+     * @param firstEvent
+     * @param out
+     * @return
+     * @throws XMLStreamException
+     */
+    private static XMLEventWriter createWriter(XMLEvent firstEvent, ByteArrayOutputStream out)
+        throws XMLStreamException {
+        String encoding = DEFAULT_ENCODING;
+        if (firstEvent.isStartDocument()) {
+            StartDocument startDocument = (StartDocument) firstEvent;
+            if (startDocument.encodingSet()) {
+                encoding = startDocument.getCharacterEncodingScheme();
+            }
+        }
+        return XML_OUTPUT_FACTORY.createXMLEventWriter(out, encoding);
+    }
+
+    /**
+     * @param reader
+     * @param writer
+     */
+    private static void close(XMLEventReader reader, XMLEventWriter writer) {
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            // nothing to do
+        }
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (XMLStreamException e) {
+                // nothing to do
+            }
+        }
+    }
+
+    /**
+     * @return
+     */
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setXMLResolver((publicId, systemId, baseUri, namespace) ->
+            new ByteArrayInputStream(new byte[0]));
+        return factory;
+    }
+
+}
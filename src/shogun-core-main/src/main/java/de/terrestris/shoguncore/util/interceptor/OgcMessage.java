@@ -36,6 +36,11 @@ public class OgcMessage {
      */
     private String endPoint;
 
+    /**
+     * The requested version of the service, e.g. 1.1.0.
+     */
+    private String version;
+
     /**
      * The rule type for this request, possible rules are:
      * * ALLOW
@@ -119,6 +124,20 @@ public class OgcMessage {
         this.endPoint = endPoint;
     }
 
+    /**
+     * @return the version
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * @param version the version to set
+     */
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
     /**
      * @return the requestRule
      */
@@ -446,6 +465,7 @@ public class OgcMessage {
             .append(getService(), other.getService())
             .append(getOperation(), other.getOperation())
             .append(getEndPoint(), other.getEndPoint())
+            .append(getVersion(), other.getVersion())
             .append(getRequestRule(), other.getRequestRule())
             .append(getResponseRule(), other.getResponseRule())
             .isEquals();
@@ -460,6 +480,7 @@ public class OgcMessage {
             .append("service", getService())
             .append("operation", getOperation())
             .append("endPoint", getEndPoint())
+            .append("version", getVersion())
             .append("requestRule", getRequestRule())
             .append("responseRule", getResponseRule())
             .toString();
@@ -379,6 +379,39 @@ public class OgcMessageDistributor {
         return response;
     }
 
+    /**
+     * Checks whether the response for the given message will be passed
+     * through unmodified, i.e. the response is ALLOWED or it's to be MODIFIED,
+     * but there is no response interceptor registered for the service of the
+     * message. In this case the upstream response doesn't have to be read
+     * into memory and can be streamed to the client directly.
+     *
+     * @param message
+     * @return true if the response wouldn't be touched by any interceptor
+     */
+    public boolean isResponsePassThrough(OgcMessage message) {
+
+        if (message.isResponseAllowed()) {
+            return true;
+        }
+
+        if (!message.isResponseModified()) {
+            return false;
+        }
+
+        if (message.isWms()) {
+            return this.wmsResponseInterceptor == null;
+        } else if (message.isWfs()) {
+            return this.wfsResponseInterceptor == null;
+        } else if (message.isWcs()) {
+            return this.wcsResponseInterceptor == null;
+        } else if (message.isWps()) {
+            return this.wpsResponseInterceptor == null;
+        }
+
+        return false;
+    }
+
     /**
      * @param wmsRequestInterceptor the wmsRequestInterceptor to set
      */
@@ -0,0 +1,231 @@
+package de.terrestris.shoguncore.util.interceptor;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+/**
+ * Describes the OGC relevant parts (service, operation, endPoint and version)
+ * of a XML encoded OGC request (e.g. a WFS GetFeature or Transaction sent via
+ * POST).
+ * <p>
+ * The descriptor is built by a single StAX pass over the body, which stops as
+ * soon as all values have been found. This avoids parsing the (possibly huge)
+ * body into a DOM for every single parameter lookup.
+ *
+ * @author terrestris GmbH & Co. KG
+ */
+public class OgcRequestDescriptor {
+
+    /**
+     * The shared (and thread-safe, once configured) factory.
+     */
+    private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
+    /**
+     * The value of the service attribute of the root element, e.g. WFS.
+     */
+    private final String service;
+
+    /**
+     * The local name of the root element, e.g. Transaction.
+     */
+    private final String operation;
+
+    /**
+     * The first type name or (WCS) identifier found in the body.
+     */
+    private final String endPoint;
+
+    /**
+     * The value of the version attribute of the root element.
+     */
+    private final String version;
+
+    /**
+     * @param service
+     * @param operation
+     * @param endPoint
+     * @param version
+     */
+    public OgcRequestDescriptor(String service, String operation, String endPoint,
+                                String version) {
+        this.service = service;
+        this.operation = operation;
+        this.endPoint = endPoint;
+        this.version = version;
+    }
+
+    /**
+     * @param xml
+     * @return
+     * @throws IOException If the body could not be parsed as XML.
+     */
+    public static OgcRequestDescriptor fromString(String xml) throws IOException {
+        return fromReader(new StringReader(xml));
+    }
+
+    /**
+     * Parses the given XML and extracts the service and version (attributes of
+     * the root element), the operation (the local name of the root element) and
+     * the endPoint. The endPoint is taken from the first TypeName, TypeNames or
+     * GetCoverage/Identifier element, or (if none of these exist) from the first
+     * typeName or typeNames attribute.
+     *
+     * @param reader
+     * @return
+     * @throws IOException If the body could not be parsed as XML.
+     */
+    public static OgcRequestDescriptor fromReader(Reader reader) throws IOException {
+
+        String service = StringUtils.EMPTY;
+        String operation = StringUtils.EMPTY;
+        String version = StringUtils.EMPTY;
+        String elementEndPoint = null;
+        String attributeEndPoint = null;
+
+        XMLStreamReader xmlReader = null;
+
+        try {
+            xmlReader = XML_INPUT_FACTORY.createXMLStreamReader(reader);
+
+            int depth = 0;
+            String rootName = null;
+
+            while (xmlReader.hasNext() && elementEndPoint == null) {
+                int event = xmlReader.next();
+
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                    continue;
+                }
+
+                if (event != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+
+                depth++;
+
+                String localName = xmlReader.getLocalName();
+
+                if (rootName == null) {
+                    rootName = localName;
+                    operation = localName;
+                    service = StringUtils.defaultString(getAttribute(xmlReader, "service"));
+                    version = StringUtils.defaultString(getAttribute(xmlReader, "version"));
+                }
+
+                if (attributeEndPoint == null) {
+                    attributeEndPoint = getAttribute(xmlReader, "typeName");
+                    if (attributeEndPoint == null) {
+                        attributeEndPoint = getAttribute(xmlReader, "typeNames");
+                    }
+                }
+
+                boolean isEndPointElement = "TypeName".equals(localName) ||
+                    "TypeNames".equals(localName) ||
+                    ("Identifier".equals(localName) && depth == 2 &&
+                        "GetCoverage".equals(rootName));
+
+                if (isEndPointElement) {
+                    // reads the text content and moves to the end element
+                    elementEndPoint = xmlReader.getElementText().trim();
+                    if (elementEndPoint.isEmpty()) {
+                        elementEndPoint = null;
+                    }
+                    depth--;
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Could not parse input body " +
+                "as XML: " + e.getMessage());
+        } finally {
+            if (xmlReader != null) {
+                try {
+                    xmlReader.close();
+                } catch (XMLStreamException e) {
+                    // nothing to do
+                }
+            }
+        }
+
+        String endPoint = elementEndPoint != null ? elementEndPoint :
+            StringUtils.defaultString(attributeEndPoint);
+
+        return new OgcRequestDescriptor(service, operation, endPoint, version);
+    }
+
+    /**
+     * @param xmlReader
+     * @param name
+     * @return The value of the attribute (without namespace) or null.
+     */
+    private static String getAttribute(XMLStreamReader xmlReader, String name) {
+        for (int i = 0; i < xmlReader.getAttributeCount(); i++) {
+            if (name.equals(xmlReader.getAttributeLocalName(i)) &&
+                StringUtils.isEmpty(xmlReader.getAttributeNamespace(i))) {
+                return xmlReader.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return
+     */
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * @return the service
+     */
+    public String getService() {
+        return service;
+    }
+
+    /**
+     * @return the operation
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return the endPoint
+     */
+    public String getEndPoint() {
+        return endPoint;
+    }
+
+    /**
+     * @return the version
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     *
+     */
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+            .append("service", getService())
+            .append("operation", getOperation())
+            .append("endPoint", getEndPoint())
+            .append("version", getVersion())
+            .toString();
+    }
+
+}
@@ -0,0 +1,647 @@
+package de.terrestris.shoguncore.util.interceptor;
+
+import de.terrestris.shoguncore.dao.LayerDataSourceDao;
+import de.terrestris.shoguncore.model.layer.source.WmtsLayerDataSource;
+import de.terrestris.shoguncore.util.model.FileResponse;
+import de.terrestris.shoguncore.util.model.Response;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.FileSystemUtils;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * A disk backed cache for the tiles requested via the WMTS interceptor
+ * (<code>/wmts.action/{dataSourceId}/{path}</code>).
+ * <p>
+ * The tiles are keyed by the MD5 hash of the id of the data source and the
+ * tile path (not by their content) and stored below the configured directory
+ * (<code>{directory}/{dataSourceId}/{hash prefix}/{hash}</code>), where every
+ * file starts with the content type of the tile (terminated by a newline)
+ * followed by the tile itself. Cached tiles are served via
+ * {@link FileChannel#transferTo} (see {@link FileResponse}) and evicted in
+ * least recently used order as soon as the total size of all tiles exceeds the
+ * configured maximum. The index of the cache is rebuilt from the directory on
+ * startup.
+ * <p>
+ * Additionally the (resolved) URLs of the WMTS data sources are held in
+ * memory, so cached tiles can be served without touching the database. The
+ * tiles and the URL of a data source are purged (see {@link #purge(Integer)})
+ * by the {@link de.terrestris.shoguncore.hibernate.LayerDataSourceCacheInvalidator}
+ * whenever the data source changes.
+ *
+ * @author terrestris GmbH & Co. KG
+ */
+@Component("wmtsTileCache")
+public class WmtsTileCache {
+
+    /**
+     * The LOGGER instance
+     */
+    private static final Logger LOG = getLogger(WmtsTileCache.class);
+
+    /**
+     * The suffix of files that are currently being written.
+     */
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    /**
+     * The max length of the content type header of a tile file.
+     */
+    private static final int MAX_HEADER_LENGTH = 256;
+
+    /**
+     * The cached tiles (by hash) in access order.
+     */
+    private final LinkedHashMap<String, CachedTile> tiles = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The (resolved) URLs by data source id.
+     */
+    private final Map<Integer, String> urls = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented on every purge, so tiles and URLs loaded concurrently to a
+     * purge won't be cached.
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * The total size (in bytes) of all cached tiles.
+     */
+    private long totalBytes = 0;
+
+    /**
+     *
+     */
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     *
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     *
+     */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * The number of bytes served from the cache.
+     */
+    private final AtomicLong bytesServed = new AtomicLong();
+
+    /**
+     * The number of bytes written to the cache.
+     */
+    private final AtomicLong bytesStored = new AtomicLong();
+
+    /**
+     *
+     */
+    @Autowired
+    @Qualifier("layerDataSourceDao")
+    private LayerDataSourceDao<WmtsLayerDataSource> layerDataSourceDao;
+
+    /**
+     *
+     */
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     *
+     */
+    private boolean enabled = true;
+
+    /**
+     * The base directory of the cache.
+     */
+    private Path directory = Paths.get(System.getProperty("java.io.tmpdir"), "shogun-wmts-tiles");
+
+    /**
+     * The maximum total size (in bytes) of all cached tiles.
+     */
+    private long maxBytes = 256 * 1024 * 1024;
+
+    /**
+     * Creates the directory and rebuilds the index from its content.
+     */
+    @PostConstruct
+    public synchronized void init() {
+        tiles.clear();
+        totalBytes = 0;
+
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            Files.createDirectories(directory);
+
+            List<Path> files = new ArrayList<>();
+            try (Stream<Path> stream = Files.walk(directory, 3)) {
+                stream.filter(Files::isRegularFile).forEach(files::add);
+            }
+
+            List<CachedTile> found = new ArrayList<>(files.size());
+            for (Path file : files) {
+                if (file.getFileName().toString().endsWith(TEMP_FILE_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                CachedTile tile = readTile(file);
+                if (tile != null) {
+                    found.add(tile);
+                }
+            }
+
+            found.sort(Comparator.comparingLong(CachedTile::getLastModified));
+            for (CachedTile tile : found) {
+                tiles.put(tile.getHash(), tile);
+                totalBytes += tile.getSize();
+            }
+            evict();
+
+            LOG.info("Initialized the WMTS tile cache in " + directory + " with "
+                + tiles.size() + " tiles (" + totalBytes + " bytes)");
+        } catch (IOException e) {
+            LOG.error("Could not initialize the WMTS tile cache in " + directory
+                + ", the cache will be disabled: " + e.getMessage());
+            enabled = false;
+        }
+    }
+
+    /**
+     * @return Whether the cache is enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return The current version of the cache, has to be passed to
+     * {@link #put(Integer, String, Response, long)}.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * @param dataSourceId
+     * @return The URL of the given WMTS data source or null, if no such data
+     * source exists.
+     */
+    public String getUrl(Integer dataSourceId) {
+        String url = urls.get(dataSourceId);
+
+        if (url != null) {
+            return url;
+        }
+
+        final long loadedVersion = version.get();
+
+        url = transactionTemplate.execute(status -> {
+            WmtsLayerDataSource dataSource = layerDataSourceDao.findById(dataSourceId);
+            return dataSource != null ? dataSource.getUrl() : null;
+        });
+
+        if (url != null && loadedVersion == version.get()) {
+            urls.put(dataSourceId, url);
+        }
+
+        return url;
+    }
+
+    /**
+     * @param dataSourceId
+     * @param path
+     * @return The cached tile or null. The response holds an open file
+     * channel and has to be closed after usage.
+     */
+    public Response get(Integer dataSourceId, String path) {
+        if (!enabled) {
+            return null;
+        }
+
+        final String hash = getHash(dataSourceId, path);
+
+        synchronized (this) {
+            CachedTile tile = tiles.get(hash);
+
+            if (tile != null) {
+                try {
+                    FileChannel channel = FileChannel.open(tile.getFile(), StandardOpenOption.READ);
+
+                    hits.incrementAndGet();
+                    bytesServed.addAndGet(tile.getSize());
+
+                    HttpHeaders headers = new HttpHeaders();
+                    headers.set(HttpHeaders.CONTENT_TYPE, tile.getContentType());
+                    headers.setContentLength(tile.getSize());
+
+                    return new FileResponse(HttpStatus.OK, headers, channel, tile.getOffset(), tile.getSize());
+                } catch (IOException e) {
+                    LOG.warn("Could not read the cached tile " + tile.getFile() + ": " + e.getMessage());
+                    tiles.remove(hash);
+                    totalBytes -= tile.getSize();
+                }
+            }
+        }
+
+        misses.incrementAndGet();
+
+        return null;
+    }
+
+    /**
+     * Stores the given tile, if it is cacheable (i.e. a successful, non
+     * textual response that fits into the cache) and the cache has not been
+     * purged since the given version.
+     *
+     * @param dataSourceId
+     * @param path
+     * @param response
+     * @param loadedVersion The version of the cache before loading the tile
+     *                      (see {@link #getVersion()})
+     * @return Whether the tile has been stored.
+     */
+    public boolean put(Integer dataSourceId, String path, Response response, long loadedVersion) {
+        if (!enabled || !isCacheable(response)) {
+            return false;
+        }
+
+        final String hash = getHash(dataSourceId, path);
+        final String contentType = response.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE);
+        final byte[] header = (contentType + "\n").getBytes(StandardCharsets.UTF_8);
+        final byte[] body = response.getBody();
+
+        Path tempFile = null;
+        try {
+            tempFile = Files.createTempFile(directory, "tile-", TEMP_FILE_SUFFIX);
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                out.write(header);
+                out.write(body);
+            }
+
+            synchronized (this) {
+                if (loadedVersion != version.get()) {
+                    return false;
+                }
+
+                Path file = getFile(dataSourceId, hash);
+                Files.createDirectories(file.getParent());
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                tempFile = null;
+
+                CachedTile previous = tiles.put(hash, new CachedTile(hash, dataSourceId, file,
+                    contentType, header.length, body.length, System.currentTimeMillis()));
+                if (previous != null) {
+                    totalBytes -= previous.getSize();
+                }
+                totalBytes += body.length;
+
+                evict();
+            }
+
+            bytesStored.addAndGet(body.length);
+
+            return true;
+        } catch (IOException e) {
+            LOG.warn("Could not cache the tile " + path + " of data source " + dataSourceId
+                + ": " + e.getMessage());
+            return false;
+        } finally {
+            if (tempFile != null) {
+                deleteQuietly(tempFile);
+            }
+        }
+    }
+
+    /**
+     * Removes all tiles and the URL of the given data source.
+     *
+     * @param dataSourceId
+     */
+    public void purge(Integer dataSourceId) {
+        version.incrementAndGet();
+        urls.remove(dataSourceId);
+
+        synchronized (this) {
+            Iterator<CachedTile> iterator = tiles.values().iterator();
+            while (iterator.hasNext()) {
+                CachedTile tile = iterator.next();
+                if (tile.getDataSourceId().equals(dataSourceId)) {
+                    iterator.remove();
+                    totalBytes -= tile.getSize();
+                }
+            }
+
+            if (enabled) {
+                try {
+                    FileSystemUtils.deleteRecursively(directory.resolve(String.valueOf(dataSourceId)));
+                } catch (IOException e) {
+                    LOG.warn("Could not delete the cached tiles of data source " + dataSourceId
+                        + ": " + e.getMessage());
+                }
+            }
+        }
+
+        LOG.debug("Purged the cached tiles of data source " + dataSourceId);
+    }
+
+    /**
+     * Removes all tiles and URLs.
+     */
+    public void purgeAll() {
+        version.incrementAndGet();
+        urls.clear();
+
+        synchronized (this) {
+            for (CachedTile tile : tiles.values()) {
+                deleteQuietly(tile.getFile());
+            }
+            tiles.clear();
+            totalBytes = 0;
+        }
+
+        LOG.debug("Purged all cached tiles");
+    }
+
+    /**
+     * Evicts the least recently used tiles until the total size doesn't exceed
+     * the maximum anymore.
+     */
+    private void evict() {
+        Iterator<CachedTile> iterator = tiles.values().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            CachedTile eldest = iterator.next();
+            iterator.remove();
+            totalBytes -= eldest.getSize();
+            evictions.incrementAndGet();
+            deleteQuietly(eldest.getFile());
+        }
+    }
+
+    /**
+     * @param response
+     * @return Whether the given tile response may be cached.
+     */
+    private boolean isCacheable(Response response) {
+        if (response == null || response.getStatusCode() != HttpStatus.OK
+            || response.getBody() == null || response.getHeaders() == null) {
+            return false;
+        }
+
+        String contentType = response.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE);
+
+        // don't cache (XML) exception reports
+        return StringUtils.isNotBlank(contentType)
+            && contentType.length() < MAX_HEADER_LENGTH
+            && !StringUtils.containsIgnoreCase(contentType, "xml")
+            && !StringUtils.startsWithIgnoreCase(contentType, "text/")
+            && response.getBody().length <= maxBytes;
+    }
+
+    /**
+     * Reads the index entry of the given tile file.
+     *
+     * @param file
+     * @return The entry or null, if the file is not a valid tile file.
+     * @throws IOException
+     */
+    private CachedTile readTile(Path file) throws IOException {
+        Path relative = directory.relativize(file);
+        if (relative.getNameCount() != 3) {
+            return null;
+        }
+
+        Integer dataSourceId;
+        try {
+            dataSourceId = Integer.valueOf(relative.getName(0).toString());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(MAX_HEADER_LENGTH);
+            channel.read(buffer, 0);
+
+            byte[] bytes = buffer.array();
+            for (int i = 0; i < buffer.position(); i++) {
+                if (bytes[i] == '\n') {
+                    String contentType = new String(bytes, 0, i, StandardCharsets.UTF_8);
+                    return new CachedTile(file.getFileName().toString(), dataSourceId, file, contentType,
+                        i + 1, channel.size() - i - 1, Files.getLastModifiedTime(file).toMillis());
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param dataSourceId
+     * @param path
+     * @return
+     */
+    private static String getHash(Integer dataSourceId, String path) {
+        return DigestUtils.md5DigestAsHex((dataSourceId + "/" + path).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param dataSourceId
+     * @param hash
+     * @return
+     */
+    private Path getFile(Integer dataSourceId, String hash) {
+        return directory.resolve(String.valueOf(dataSourceId)).resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    /**
+     * @param file
+     */
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.warn("Could not delete " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return The number of cached tiles.
+     */
+    public synchronized int getSize() {
+        return tiles.size();
+    }
+
+    /**
+     * @return The total size (in bytes) of all cached tiles.
+     */
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * @return the hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the evictions
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return The number of bytes served from the cache.
+     */
+    public long getBytesServed() {
+        return bytesServed.get();
+    }
+
+    /**
+     * @return The number of bytes written to the cache.
+     */
+    public long getBytesStored() {
+        return bytesStored.get();
+    }
+
+    /**
+     * @param transactionManager the transactionManager to use for loading
+     */
+    @Autowired
+    @Qualifier("transactionManager")
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        this.transactionTemplate = template;
+    }
+
+    /**
+     * @param enabled the enabled to set
+     */
+    @Value("${wmtsTileCache.enabled:true}")
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param directory the directory to set, the default (temp) directory
+     *                  will be used if empty
+     */
+    @Value("${wmtsTileCache.directory:}")
+    public void setDirectory(String directory) {
+        if (StringUtils.isNotBlank(directory)) {
+            this.directory = Paths.get(directory);
+        }
+    }
+
+    /**
+     * @param maxBytes the maxBytes to set
+     */
+    @Value("${wmtsTileCache.maxBytes:268435456}")
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * The index entry of a cached tile.
+     */
+    private static class CachedTile {
+
+        private final String hash;
+
+        private final Integer dataSourceId;
+
+        private final Path file;
+
+        private final String contentType;
+
+        private final long offset;
+
+        private final long size;
+
+        private final long lastModified;
+
+        CachedTile(String hash, Integer dataSourceId, Path file, String contentType,
+                   long offset, long size, long lastModified) {
+            this.hash = hash;
+            this.dataSourceId = dataSourceId;
+            this.file = file;
+            this.contentType = contentType;
+            this.offset = offset;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        String getHash() {
+            return hash;
+        }
+
+        Integer getDataSourceId() {
+            return dataSourceId;
+        }
+
+        Path getFile() {
+            return file;
+        }
+
+        String getContentType() {
+            return contentType;
+        }
+
+        long getOffset() {
+            return offset;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        long getLastModified() {
+            return lastModified;
+        }
+    }
+
+}
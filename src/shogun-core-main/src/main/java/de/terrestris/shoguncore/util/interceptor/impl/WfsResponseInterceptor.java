@@ -1,6 +1,7 @@
 package de.terrestris.shoguncore.util.interceptor.impl;
 
 import de.terrestris.shoguncore.util.interceptor.MutableHttpServletRequest;
+import de.terrestris.shoguncore.util.interceptor.OgcCapabilitiesRewriter;
 import de.terrestris.shoguncore.util.interceptor.WfsResponseInterceptorInterface;
 import de.terrestris.shoguncore.util.model.Response;
 import org.apache.logging.log4j.Logger;
@@ -14,6 +15,7 @@ import org.xml.sax.SAXException;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
@@ -78,6 +80,16 @@ public class WfsResponseInterceptor implements WfsResponseInterceptorInterface {
             requestHost = request.getHeader("host");
         }
         String baseUrl = proto + "://" + requestHost + request.getContextPath() + "/geoserver.action";
+
+        // rewrite the document while streaming it, use the DOM as fallback only
+        try {
+            response.setBody(OgcCapabilitiesRewriter.rewriteWfsCapabilities(response.getBody(), baseUrl));
+            return response;
+        } catch (XMLStreamException | RuntimeException e) {
+            LOG.warn("Could not stream WFS GetCapabilities, will fall back to DOM: {}", e.getMessage());
+            LOG.trace("Stack trace:", e);
+        }
+
         ByteArrayOutputStream bout = new ByteArrayOutputStream();
         try {
             DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
@@ -1,18 +1,12 @@
 package de.terrestris.shoguncore.util.interceptor.standard;
 
-import de.terrestris.shoguncore.dao.LayerDataSourceDao;
-import de.terrestris.shoguncore.model.layer.source.ImageWmsLayerDataSource;
+import de.terrestris.shoguncore.util.interceptor.EndpointLayerCache;
 import de.terrestris.shoguncore.util.interceptor.MutableHttpServletRequest;
 import de.terrestris.shoguncore.util.interceptor.WmsRequestInterceptorInterface;
-import org.hibernate.criterion.LogicalExpression;
-import org.hibernate.criterion.Restrictions;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 
-import javax.transaction.Transactional;
-import java.util.Arrays;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 /**
  * This class demonstrates how to implement the WmsRequestInterceptorInterface.
@@ -24,8 +18,7 @@ import java.util.stream.Collectors;
 public class WmsRequestInterceptor implements WmsRequestInterceptorInterface {
 
     @Autowired
-    @Qualifier("layerDataSourceDao")
-    private LayerDataSourceDao<ImageWmsLayerDataSource> layerDataSourceDao;
+    private EndpointLayerCache endpointLayerCache;
 
     private void filterLayerParameter(String name, MutableHttpServletRequest request) {
         String endpoint = request.getParameterIgnoreCase("CUSTOM_ENDPOINT");
@@ -33,20 +26,25 @@ public class WmsRequestInterceptor implements WmsRequestInterceptorInterface {
             return;
         }
         String layers = request.getParameterIgnoreCase(name);
-        String[] fromRequest = layers.split(",");
+        if (layers == null) {
+            return;
+        }
 
-        LogicalExpression where = Restrictions.and(
-            Restrictions.eq("requestableByPath", true),
-            Restrictions.eq("customRequestPath", endpoint)
-        );
-        List<ImageWmsLayerDataSource> sources = this.layerDataSourceDao.findByCriteria(where);
-        List<String> layersInPath = sources.parallelStream().map(ImageWmsLayerDataSource::getLayerNames).collect(Collectors.toList());
-        List<String> resultLayers = Arrays.stream(fromRequest).filter(layersInPath::contains).collect(Collectors.toList());
-        request.setParameter(name, resultLayers.stream().reduce("", (acc, val) -> acc.isEmpty() ? val : acc + "," + val));
+        Set<String> layersInPath = endpointLayerCache.getLayerNames(endpoint);
+
+        StringBuilder resultLayers = new StringBuilder(layers.length());
+        for (String layer : StringUtils.split(layers, ',')) {
+            if (layersInPath.contains(layer)) {
+                if (resultLayers.length() > 0) {
+                    resultLayers.append(',');
+                }
+                resultLayers.append(layer);
+            }
+        }
+        request.setParameter(name, resultLayers.toString());
     }
 
     @Override
-    @Transactional(value = Transactional.TxType.REQUIRED)
     public MutableHttpServletRequest interceptGetMap(MutableHttpServletRequest request) {
         filterLayerParameter("LAYERS", request);
         return request;
@@ -58,7 +56,6 @@ public class WmsRequestInterceptor implements WmsRequestInterceptorInterface {
     }
 
     @Override
-    @Transactional(value = Transactional.TxType.REQUIRED)
     public MutableHttpServletRequest interceptGetFeatureInfo(MutableHttpServletRequest request) {
         filterLayerParameter("LAYERS", request);
         filterLayerParameter("QUERY_LAYERS", request);
@@ -71,7 +68,6 @@ public class WmsRequestInterceptor implements WmsRequestInterceptorInterface {
     }
 
     @Override
-    @Transactional(value = Transactional.TxType.REQUIRED)
     public MutableHttpServletRequest interceptGetLegendGraphic(MutableHttpServletRequest request) {
         filterLayerParameter("LAYER", request);
         return request;
@@ -1,25 +1,22 @@
 package de.terrestris.shoguncore.util.interceptor.standard;
 
-import de.terrestris.shoguncore.dao.LayerDataSourceDao;
-import de.terrestris.shoguncore.model.layer.source.ImageWmsLayerDataSource;
+import de.terrestris.shoguncore.util.interceptor.EndpointLayerCache;
 import de.terrestris.shoguncore.util.interceptor.MutableHttpServletRequest;
+import de.terrestris.shoguncore.util.interceptor.OgcCapabilitiesRewriter;
 import de.terrestris.shoguncore.util.interceptor.WmsResponseInterceptorInterface;
 import de.terrestris.shoguncore.util.model.Response;
 import org.apache.logging.log4j.Logger;
 import org.deegree.commons.xml.CommonNamespaces;
-import org.hibernate.criterion.LogicalExpression;
-import org.hibernate.criterion.Restrictions;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpHeaders;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
-import javax.transaction.Transactional;
 import javax.xml.namespace.NamespaceContext;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
@@ -44,8 +41,7 @@ public class WmsResponseInterceptor implements WmsResponseInterceptorInterface {
     private static final Logger LOG = getLogger(WmsResponseInterceptor.class);
 
     @Autowired
-    @Qualifier("layerDataSourceDao")
-    private LayerDataSourceDao<ImageWmsLayerDataSource> layerDataSourceDao;
+    private EndpointLayerCache endpointLayerCache;
 
     @Override
     public Response interceptGetMap(MutableHttpServletRequest request, Response response) {
@@ -123,20 +119,27 @@ public class WmsResponseInterceptor implements WmsResponseInterceptorInterface {
     }
 
     @Override
-    @Transactional(value = Transactional.TxType.REQUIRED)
     public Response interceptGetCapabilities(MutableHttpServletRequest request, Response response) {
         String endpoint = request.getParameterIgnoreCase("CUSTOM_ENDPOINT");
         if (endpoint == null) {
             return response;
         }
-        LogicalExpression where = Restrictions.and(
-            Restrictions.eq("requestableByPath", true),
-            Restrictions.eq("customRequestPath", endpoint)
-        );
-        List<ImageWmsLayerDataSource> sources = this.layerDataSourceDao.findByCriteria(where);
-        List<String> layerNames = sources.parallelStream().map(ImageWmsLayerDataSource::getLayerNames).collect(Collectors.toList());
+        List<String> layerNames = new ArrayList<>(endpointLayerCache.getLayerNames(endpoint));
 
         byte[] body = response.getBody();
+        String proto = request.getHeader("x-forwarded-proto");
+        String host = request.getHeader("x-forwarded-host");
+        String baseUrl = proto + "://" + host + request.getParameter("CONTEXT_PATH") + "/geoserver.action/" + endpoint;
+
+        // rewrite the document while streaming it, use the DOM as fallback only
+        try {
+            response.setBody(OgcCapabilitiesRewriter.rewriteWmsCapabilities(body, baseUrl, layerNames));
+            return response;
+        } catch (XMLStreamException | RuntimeException e) {
+            LOG.warn("Could not stream the get capabilities response, will fall back to DOM: " + e.getMessage());
+            LOG.trace("Stack trace", e);
+        }
+
         try {
             DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
             factory.setNamespaceAware(true);
@@ -147,9 +150,6 @@ public class WmsResponseInterceptor implements WmsResponseInterceptorInterface {
             if (version == null) {
                 return response;
             }
-            String proto = request.getHeader("x-forwarded-proto");
-            String host = request.getHeader("x-forwarded-host");
-            String baseUrl = proto + "://" + host + request.getParameter("CONTEXT_PATH") + "/geoserver.action/" + endpoint;
             if (version.equals("1.3.0")) {
                 removeLayers(doc, "http://www.opengis.net/wms", layerNames);
                 updateUrls(doc, "http://www.opengis.net/wms", baseUrl);
@@ -0,0 +1,113 @@
+package de.terrestris.shoguncore.util.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import org.apache.commons.io.IOUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+/**
+ * A {@link StreamingResponse} whose body is a region of a (local) file. The
+ * body is copied to the client via {@link FileChannel#transferTo}.
+ * <p>
+ * Instances must be closed after usage as they hold an open channel.
+ *
+ * @author terrestris GmbH & Co. KG
+ */
+public class FileResponse extends StreamingResponse {
+
+    /**
+     *
+     */
+    private final FileChannel channel;
+
+    /**
+     * The position of the body in the file.
+     */
+    private final long position;
+
+    /**
+     * The length of the body.
+     */
+    private final long length;
+
+    /**
+     * @param statusCode
+     * @param headers
+     * @param channel    The (open) channel of the file
+     * @param position   The position of the body in the file
+     * @param length     The length of the body
+     */
+    public FileResponse(HttpStatus statusCode, HttpHeaders headers,
+                        FileChannel channel, long position, long length) {
+        super(statusCode, headers, null, channel);
+        this.channel = channel;
+        this.position = position;
+        this.length = length;
+    }
+
+    /**
+     * Transfers the body to the given output stream.
+     *
+     * @param outputStream The stream to write to.
+     * @return The number of bytes written.
+     * @throws IOException
+     */
+    @Override
+    public long writeTo(OutputStream outputStream) throws IOException {
+        WritableByteChannel target = Channels.newChannel(outputStream);
+
+        long transferred = 0;
+        while (transferred < length) {
+            long count = channel.transferTo(position + transferred, length - transferred, target);
+            if (count <= 0) {
+                break;
+            }
+            transferred += count;
+        }
+        outputStream.flush();
+
+        return transferred;
+    }
+
+    /**
+     * Reads the body into memory (fallback only).
+     *
+     * @return the body
+     */
+    @Override
+    public byte[] getBody() {
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the body of the response", e);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @return the length
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Closes the channel.
+     */
+    @Override
+    public void close() {
+        IOUtils.closeQuietly(channel);
+    }
+}
@@ -0,0 +1,157 @@
+package de.terrestris.shoguncore.util.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+/**
+ * A {@link Response} whose body is not held in memory, but backed by an
+ * (upstream) {@link InputStream}. The body can be copied straight to the
+ * client by calling {@link #writeTo(OutputStream)}.
+ * <p>
+ * Instances must be closed after usage as they may hold a pooled
+ * connection.
+ *
+ * @author terrestris GmbH & Co. KG
+ */
+public class StreamingResponse extends Response implements Closeable {
+
+    /**
+     * The size of the buffer used to copy the body.
+     */
+    public static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The copy buffer, reused per thread.
+     */
+    private static final ThreadLocal<byte[]> COPY_BUFFER =
+        ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    /**
+     *
+     */
+    private final InputStream bodyStream;
+
+    /**
+     * The resource that has to be closed after the body has been consumed
+     * (e.g. the upstream response).
+     */
+    private final Closeable resource;
+
+    /**
+     * Whether the body has already been consumed.
+     */
+    private boolean consumed = false;
+
+    /**
+     * @param statusCode
+     * @param headers
+     * @param bodyStream
+     * @param resource
+     */
+    public StreamingResponse(HttpStatus statusCode, HttpHeaders headers,
+                             InputStream bodyStream, Closeable resource) {
+        super(statusCode, headers, null);
+        this.bodyStream = bodyStream;
+        this.resource = resource;
+    }
+
+    /**
+     * Copies the (remaining) body to the given output stream by using a fixed
+     * size buffer.
+     *
+     * @param outputStream The stream to write to.
+     * @return The number of bytes written.
+     * @throws IOException
+     */
+    public long writeTo(OutputStream outputStream) throws IOException {
+        if (consumed) {
+            byte[] body = super.getBody();
+            if (body != null) {
+                outputStream.write(body);
+                return body.length;
+            }
+            return 0;
+        }
+
+        consumed = true;
+
+        if (bodyStream == null) {
+            return 0;
+        }
+
+        byte[] buffer = COPY_BUFFER.get();
+        long count = 0;
+        int n;
+        while ((n = bodyStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, n);
+            count += n;
+        }
+        outputStream.flush();
+
+        return count;
+    }
+
+    /**
+     * Reads the complete (remaining) body into memory. This is a fallback
+     * only and should be avoided, as it breaks the purpose of this class.
+     *
+     * @return the body
+     */
+    @Override
+    public byte[] getBody() {
+        if (!consumed) {
+            consumed = true;
+            try {
+                super.setBody(bodyStream != null ? IOUtils.toByteArray(bodyStream) : null);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read the body of the response", e);
+            }
+        }
+        return super.getBody();
+    }
+
+    /**
+     * @param body the body to set
+     */
+    @Override
+    public void setBody(byte[] body) {
+        consumed = true;
+        super.setBody(body);
+    }
+
+    /**
+     * @return the bodyStream
+     */
+    public InputStream getBodyStream() {
+        return bodyStream;
+    }
+
+    /**
+     * Closes the underlying stream and resource.
+     */
+    @Override
+    public void close() {
+        IOUtils.closeQuietly(bodyStream);
+        IOUtils.closeQuietly(resource);
+    }
+
+    /**
+     *
+     */
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+            .append("statusCode", getStatusCode())
+            .append("headers", getHeaders())
+            .append("consumed", consumed)
+            .toString();
+    }
+}
@@ -1,24 +1,40 @@
 package de.terrestris.shoguncore.web;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import de.terrestris.shoguncore.dao.FileDao;
 import de.terrestris.shoguncore.model.File;
+import de.terrestris.shoguncore.model.PersistentObject;
 import de.terrestris.shoguncore.service.FileService;
 import de.terrestris.shoguncore.util.data.ResultSet;
+import de.terrestris.shoguncore.util.model.FileResponse;
 
 /**
  * @author Johannes Weskamm
@@ -88,34 +104,53 @@ public class FileController<E extends File, D extends FileDao<E>, S extends File
     }
 
     /**
-     * Gets a file from the database by the given id
+     * Gets a file from the database by the given id. The content of files
+     * stored in the blob store is streamed to the client.
+     * <p>
+     * Conditional requests (<code>If-None-Match</code>,
+     * <code>If-Modified-Since</code>) are answered with 304 before the
+     * content is read and (multiple) byte ranges are served with 206.
      *
      */
     @RequestMapping(value = "/get.action", method = RequestMethod.GET)
-    public ResponseEntity<?> getFile(@RequestParam Integer id) {
+    public ResponseEntity<?> getFile(@RequestParam Integer id, HttpServletRequest request,
+                                     HttpServletResponse response) {
 
         final HttpHeaders responseHeaders = new HttpHeaders();
         Map<String, Object> responseMap = new HashMap<String, Object>();
 
         try {
-            File file = service.findById(id);
+            E file = service.findById(id);
 
             if (file == null) {
                 throw new Exception("Could not find the file with id " + id);
             }
 
-            byte[] fileBytes = file.getFile();
+            final String eTag = getETag(file, file.getBlobKey(), null);
+
+            if (checkNotModified(eTag, file, request, response)) {
+                LOG.debug("The file " + file.getFileName() + " has not been modified");
+                return null;
+            }
+
+            MediaType contentType = MediaType.parseMediaType(file.getFileType());
+
+            FileChannel channel = file.getBlobKey() != null ? service.openFile(file) : null;
 
-            responseHeaders.setContentType(
-                MediaType.parseMediaType(file.getFileType()));
+            writeContent(channel, file.getFile(), contentType, eTag, request, response);
 
             LOG.info("Successfully got the file " + file.getFileName());
 
-            responseMap = ResultSet.success(file);
-            return new ResponseEntity<byte[]>(
-                fileBytes, responseHeaders, HttpStatus.OK);
+            // the response has been written already
+            return null;
         } catch (Exception e) {
             LOG.error("Could not get the file: " + e.getMessage());
+
+            if (response.isCommitted()) {
+                // the content has been (partially) written already
+                return null;
+            }
+
             responseMap = ResultSet.error("Could not get the file: " +
                 e.getMessage());
 
@@ -125,4 +160,212 @@ public class FileController<E extends File, D extends FileDao<E>, S extends File
                 responseMap, responseHeaders, HttpStatus.OK);
         }
     }
+
+    /**
+     * Moves the content of all files, which are stored in the database, to
+     * the blob store (in batches of the given size).
+     *
+     * @param batchSize
+     */
+    @RequestMapping(value = "/migrateToBlobStore.action", method = RequestMethod.POST)
+    public ResponseEntity<?> migrateToBlobStore(
+        @RequestParam(value = "batchSize", defaultValue = "50") Integer batchSize) {
+
+        Map<String, Object> responseMap;
+
+        try {
+            int migrated = 0;
+            int batch;
+            do {
+                batch = service.migrateToBlobStore(batchSize);
+                migrated += batch;
+            } while (batch > 0);
+
+            LOG.info("Successfully migrated " + migrated + " files to the blob store");
+            responseMap = ResultSet.success(migrated);
+        } catch (Exception e) {
+            LOG.error("Could not migrate the files to the blob store: " + e.getMessage());
+            responseMap = ResultSet.error("Could not migrate the files to the blob store: " +
+                e.getMessage());
+        }
+
+        final HttpHeaders responseHeaders = new HttpHeaders();
+        responseHeaders.setContentType(MediaType.APPLICATION_JSON_UTF8);
+
+        return new ResponseEntity<>(responseMap, responseHeaders, HttpStatus.OK);
+    }
+
+    /**
+     * Returns a strong entity tag for the content of the given entity: The
+     * (content based) blob key if the content is stored in the blob store,
+     * the ID and the modification date of the entity otherwise.
+     *
+     * @param entity
+     * @param blobKey The key of the content in the blob store or null
+     * @param variant An (optional) suffix to distinguish several contents
+     *                of one entity (e.g. thumbnails)
+     * @return The quoted entity tag or null, if none can be determined.
+     */
+    protected String getETag(PersistentObject entity, String blobKey, String variant) {
+        if (blobKey != null) {
+            return "\"" + blobKey + "\"";
+        }
+        if (entity.getId() == null || entity.getModified() == null) {
+            return null;
+        }
+        return "\"" + entity.getId() + "-" + entity.getModified().getMillis()
+            + (variant != null ? "-" + variant : "") + "\"";
+    }
+
+    /**
+     * Checks the conditional headers of the request against the given entity
+     * tag and the modification date of the entity and sets the status 304 if
+     * the content has not been modified. The validators are added to the
+     * response in any case.
+     *
+     * @param eTag
+     * @param entity
+     * @param request
+     * @param response
+     * @return Whether the content has not been modified (and must not be
+     * written).
+     */
+    protected boolean checkNotModified(String eTag, PersistentObject entity,
+                                       HttpServletRequest request, HttpServletResponse response) {
+        long lastModified = entity.getModified() != null ? entity.getModified().getMillis() : -1;
+        return new ServletWebRequest(request, response).checkNotModified(eTag, lastModified);
+    }
+
+    /**
+     * Writes the given content (a channel of the blob store or a bytearray)
+     * to the response. If the request contains a <code>Range</code> header
+     * (and a matching <code>If-Range</code> header, if any), only the
+     * requested ranges are written with status 206. The content of channels
+     * is copied via {@link FileChannel#transferTo}. The channel will be
+     * closed.
+     *
+     * @param channel     The channel of the content or null
+     * @param bytes       The content, if the channel is null
+     * @param contentType
+     * @param eTag        The entity tag of the content (may be null)
+     * @param request
+     * @param response
+     * @throws IOException
+     */
+    protected void writeContent(FileChannel channel, byte[] bytes, MediaType contentType, String eTag,
+                                HttpServletRequest request, HttpServletResponse response)
+        throws IOException {
+        try (FileChannel content = channel) {
+            final byte[] contentBytes = bytes != null ? bytes : new byte[0];
+            final long length = content != null ? content.size() : contentBytes.length;
+
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+            List<HttpRange> ranges = getRequestedRanges(eTag, request);
+
+            if (ranges.isEmpty()) {
+                response.setStatus(HttpStatus.OK.value());
+                response.setContentType(contentType.toString());
+                response.setContentLengthLong(length);
+
+                writeRegion(content, contentBytes, 0, length, response.getOutputStream());
+                return;
+            }
+
+            List<long[]> regions = new ArrayList<>();
+            for (HttpRange range : ranges) {
+                long start = range.getRangeStart(length);
+                long end = range.getRangeEnd(length);
+                if (start < length && start <= end) {
+                    regions.add(new long[]{start, end});
+                }
+            }
+
+            if (regions.isEmpty()) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return;
+            }
+
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+
+            if (regions.size() == 1) {
+                long[] region = regions.get(0);
+                response.setContentType(contentType.toString());
+                response.setContentLengthLong(region[1] - region[0] + 1);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, getContentRange(region, length));
+
+                writeRegion(content, contentBytes, region[0], region[1] - region[0] + 1, response.getOutputStream());
+                return;
+            }
+
+            final String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+            response.setContentType("multipart/byteranges; boundary=" + boundary);
+
+            OutputStream out = response.getOutputStream();
+            for (long[] region : regions) {
+                String partHeaders = "\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + getContentRange(region, length) + "\r\n\r\n";
+                out.write(partHeaders.getBytes(StandardCharsets.US_ASCII));
+                writeRegion(content, contentBytes, region[0], region[1] - region[0] + 1, out);
+            }
+            out.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        }
+    }
+
+    /**
+     * @param eTag
+     * @param request
+     * @return The requested byte ranges or an empty list, if the full content
+     * has to be written (no, an invalid or an outdated range request).
+     */
+    private List<HttpRange> getRequestedRanges(String eTag, HttpServletRequest request) {
+        final String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (StringUtils.isBlank(rangeHeader)) {
+            return Collections.emptyList();
+        }
+
+        final String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(eTag)) {
+            // the content has changed (or the validator is a date), so the
+            // full content has to be sent
+            return Collections.emptyList();
+        }
+
+        try {
+            return HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            LOG.debug("Ignoring the invalid range header " + rangeHeader + ": " + e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * @param region
+     * @param length
+     * @return
+     */
+    private static String getContentRange(long[] region, long length) {
+        return "bytes " + region[0] + "-" + region[1] + "/" + length;
+    }
+
+    /**
+     * @param channel
+     * @param bytes
+     * @param position
+     * @param length
+     * @param out
+     * @throws IOException
+     */
+    private static void writeRegion(FileChannel channel, byte[] bytes, long position, long length,
+                                    OutputStream out) throws IOException {
+        if (channel != null) {
+            new FileResponse(HttpStatus.OK, null, channel, position, length).writeTo(out);
+        } else {
+            out.write(bytes, (int) position, (int) length);
+            out.flush();
+        }
+    }
 }
@@ -2,7 +2,9 @@ package de.terrestris.shoguncore.web;
 
 import de.terrestris.shoguncore.service.GeoServerInterceptorService;
 import de.terrestris.shoguncore.util.data.ResultSet;
+import de.terrestris.shoguncore.util.http.AsyncRequestExecutor;
 import de.terrestris.shoguncore.util.model.Response;
+import de.terrestris.shoguncore.util.model.StreamingResponse;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
@@ -14,10 +16,18 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Callable;
 
 import static org.apache.logging.log4j.LogManager.getLogger;
 
@@ -46,14 +56,82 @@ public class GeoServerInterceptorController<S extends GeoServerInterceptorServic
     public static final String ERROR_MESSAGE = "Error while requesting a " +
         "GeoServer resource: ";
 
+    /**
+     * The result of an asynchronously executed request whose response has
+     * been written by the worker already.
+     */
+    protected static final ResponseEntity<Void> RESPONSE_WRITTEN = ResponseEntity.ok().build();
+
+    /**
+     * The (optional) executor for the asynchronous execution of the requests.
+     */
+    protected AsyncRequestExecutor asyncRequestExecutor;
+
+    /**
+     * @param request
+     * @param response
+     * @param service
+     */
     @GetMapping(value = {"/wmts.action/{service}/**"})
-    public ResponseEntity<?> interceptWmtsRequest(HttpServletRequest request, @PathVariable(value="service") String service) {
+    public ResponseEntity<?> interceptWmtsRequest(HttpServletRequest request, HttpServletResponse response,
+                                                  @PathVariable(value="service") String service) throws Exception {
+        if (asyncRequestExecutor != null && asyncRequestExecutor.isEnabled(request)) {
+            startAsync(request, response, () -> handleWmtsRequest(request, response, service));
+            return null;
+        }
+
+        return handleWmtsRequest(request, response, service);
+    }
+
+    /**
+     * @param request
+     * @param response
+     * @param endpoint
+     */
+    @RequestMapping(value = {"/geoserver.action", "/geoserver.action/{endpoint}"}, method = {
+        RequestMethod.GET, RequestMethod.POST})
+    public ResponseEntity<?> interceptGeoServerRequest( HttpServletRequest request, HttpServletResponse response, @PathVariable(value="endpoint", required = false) Optional<String> endpoint ) throws Exception {
+        if (asyncRequestExecutor != null && asyncRequestExecutor.isEnabled(request)) {
+            startAsync(request, response, () -> handleGeoServerRequest(request, response, endpoint));
+            return null;
+        }
+
+        return handleGeoServerRequest(request, response, endpoint);
+    }
+
+    /**
+     * Provides the latencies of the intercepted requests (histograms by
+     * service, operation, endpoint and phase) and the phase breakdown of the
+     * last slow requests. Only allowed for the SUPERADMIN.
+     */
+    @GetMapping(value = "/interceptorMetrics.action")
+    public @ResponseBody
+    Map<String, Object> getInterceptorMetrics() {
+
+        return ResultSet.success(this.service.getInterceptorMetrics());
+    }
+
+    /**
+     * @param request
+     * @param response
+     * @param service
+     * @return The response entity or null if the response has been written
+     * already (e.g. a cached tile).
+     */
+    protected ResponseEntity<?> handleWmtsRequest(HttpServletRequest request, HttpServletResponse response, String service) {
         HttpHeaders responseHeaders = new HttpHeaders();
         HttpStatus responseStatus = HttpStatus.OK;
         Response httpResponse;
         try {
             httpResponse = this.service.interceptWmtsRequest(request, service);
 
+            if (httpResponse instanceof StreamingResponse) {
+                writeStreamingResponse((StreamingResponse) httpResponse, response);
+
+                // the response has been written already
+                return null;
+            }
+
             responseStatus = httpResponse.getStatusCode();
             byte[] responseBody = httpResponse.getBody();
             responseHeaders = httpResponse.getHeaders();
@@ -63,6 +141,11 @@ public class GeoServerInterceptorController<S extends GeoServerInterceptorServic
             LOG.error(ERROR_MESSAGE + e.getMessage());
             LOG.trace("Stack trace:", e);
 
+            if (response.isCommitted()) {
+                // a streamed response has been (partially) written already
+                return null;
+            }
+
             responseHeaders.setContentType(MediaType.APPLICATION_JSON);
 
             Map<String, Object> responseMsg = ResultSet.error(ERROR_MESSAGE + e.getMessage());
@@ -73,10 +156,12 @@ public class GeoServerInterceptorController<S extends GeoServerInterceptorServic
 
     /**
      * @param request
+     * @param response
+     * @param endpoint
+     * @return The response entity or null if the response has been written
+     * already.
      */
-    @RequestMapping(value = {"/geoserver.action", "/geoserver.action/{endpoint}"}, method = {
-        RequestMethod.GET, RequestMethod.POST})
-    public ResponseEntity<?> interceptGeoServerRequest( HttpServletRequest request, @PathVariable(value="endpoint", required = false) Optional<String> endpoint ) {
+    protected ResponseEntity<?> handleGeoServerRequest( HttpServletRequest request, HttpServletResponse response, Optional<String> endpoint ) {
         HttpHeaders responseHeaders = new HttpHeaders();
         HttpStatus responseStatus = HttpStatus.OK;
         byte[] responseBody;
@@ -87,6 +172,15 @@ public class GeoServerInterceptorController<S extends GeoServerInterceptorServic
 
             httpResponse = this.service.interceptGeoServerRequest(request, endpoint);
 
+            if (httpResponse instanceof StreamingResponse) {
+                writeStreamingResponse((StreamingResponse) httpResponse, response);
+
+                LOG.trace("Successfully streamed a GeoServer resource.");
+
+                // the response has been written already
+                return null;
+            }
+
             responseStatus = httpResponse.getStatusCode();
             responseBody = httpResponse.getBody();
             responseHeaders = httpResponse.getHeaders();
@@ -99,6 +193,11 @@ public class GeoServerInterceptorController<S extends GeoServerInterceptorServic
         } catch (Exception e) {
             LOG.error(ERROR_MESSAGE + e.getMessage());
 
+            if (response.isCommitted()) {
+                // a streamed response has been (partially) written already
+                return null;
+            }
+
             responseHeaders.setContentType(MediaType.APPLICATION_JSON);
 
             Map<String, Object> responseMsg = ResultSet.error(
@@ -109,6 +208,96 @@ public class GeoServerInterceptorController<S extends GeoServerInterceptorServic
 
     }
 
+    /**
+     * Executes the given handler asynchronously and starts the async
+     * processing of the request. The result of the handler (or an error
+     * response, if the request timed out or has been rejected) will be
+     * delivered via a {@link DeferredResult}.
+     *
+     * @param request
+     * @param response
+     * @param handler
+     * @throws Exception
+     */
+    protected void startAsync(HttpServletRequest request, HttpServletResponse response,
+                              Callable<ResponseEntity<?>> handler) throws Exception {
+
+        DeferredResult<Object> deferredResult = asyncRequestExecutor.submit(request, response,
+            () -> {
+                ResponseEntity<?> responseEntity = handler.call();
+                return responseEntity != null ? responseEntity : RESPONSE_WRITTEN;
+            },
+            () -> createErrorResponse(response, HttpStatus.GATEWAY_TIMEOUT,
+                "The request timed out."),
+            () -> createErrorResponse(response, HttpStatus.SERVICE_UNAVAILABLE,
+                "Too many requests in progress.")
+        );
+
+        WebAsyncUtils.getAsyncManager(request).startDeferredResultProcessing(deferredResult);
+    }
+
+    /**
+     * @param response
+     * @param status
+     * @param message
+     * @return
+     */
+    private static Object createErrorResponse(HttpServletResponse response, HttpStatus status, String message) {
+        // the worker didn't claim the response (and won't write to it
+        // anymore), so it should not have been committed
+        if (response.isCommitted()) {
+            return RESPONSE_WRITTEN;
+        }
+
+        HttpHeaders responseHeaders = new HttpHeaders();
+        responseHeaders.setContentType(MediaType.APPLICATION_JSON);
+
+        return new ResponseEntity<>(ResultSet.error(ERROR_MESSAGE + message), responseHeaders, status);
+    }
+
+    /**
+     * Copies the given streaming response (status, headers and body) to the
+     * servlet response. If executed asynchronously, the response will only
+     * be written as long as the request hasn't been completed (e.g. timed
+     * out).
+     *
+     * @param streamingResponse
+     * @param response
+     * @throws IOException
+     */
+    protected void writeStreamingResponse(StreamingResponse streamingResponse, HttpServletResponse response)
+        throws IOException {
+        try {
+            AsyncRequestExecutor.Task task = AsyncRequestExecutor.Task.current();
+            OutputStream outputStream;
+
+            if (task != null) {
+                if (!task.claimResponse()) {
+                    throw new IOException("The request has been completed already.");
+                }
+                outputStream = task.guard(response.getOutputStream());
+            } else {
+                outputStream = response.getOutputStream();
+            }
+
+            HttpStatus status = streamingResponse.getStatusCode();
+            response.setStatus(status != null ? status.value() : HttpStatus.OK.value());
+
+            HttpHeaders headers = streamingResponse.getHeaders();
+            if (headers != null) {
+                for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                    for (String headerValue : header.getValue()) {
+                        response.addHeader(header.getKey(), headerValue);
+                    }
+                }
+            }
+
+            streamingResponse.writeTo(outputStream);
+        } finally {
+            streamingResponse.close();
+        }
+    }
+
     /**
      * @param service the service to set
      */
@@ -116,4 +305,12 @@ public class GeoServerInterceptorController<S extends GeoServerInterceptorServic
     public void setService(S service) {
         this.service = service;
     }
+
+    /**
+     * @param asyncRequestExecutor the asyncRequestExecutor to set
+     */
+    @Autowired(required = false)
+    public void setAsyncRequestExecutor(AsyncRequestExecutor asyncRequestExecutor) {
+        this.asyncRequestExecutor = asyncRequestExecutor;
+    }
 }
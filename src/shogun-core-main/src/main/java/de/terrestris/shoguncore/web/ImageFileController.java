@@ -1,7 +1,11 @@
 package de.terrestris.shoguncore.web;
 
+import java.nio.channels.FileChannel;
 import java.util.Map;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpHeaders;
@@ -56,39 +60,80 @@ public class ImageFileController<E extends ImageFile, D extends ImageFileDao<E>,
     }
 
     /**
-     * Gets an image from the database by the given id
+     * Gets the thumbnail of an image from the database by the given id. As in
+     * {@link #getFile(Integer, HttpServletRequest, HttpServletResponse)},
+     * conditional and range requests are supported.
+     * <p>
+     * The optional size has to be one of the configured thumbnail sizes, the
+     * default size will be used if it's not given. Thumbnails which have not
+     * been created (yet) are created on the fly.
      *
      */
     @RequestMapping(value = "/getThumbnail.action", method = RequestMethod.GET)
-    public ResponseEntity<?> getThumbnail(@RequestParam Integer id) {
+    public ResponseEntity<?> getThumbnail(@RequestParam Integer id,
+                                          @RequestParam(required = false) Integer size,
+                                          HttpServletRequest request,
+                                          HttpServletResponse response) {
 
         final HttpHeaders responseHeaders = new HttpHeaders();
         Map<String, Object> responseMap;
 
         try {
             // try to get the image
-            ImageFile image = service.findById(id);
+            E image = service.findById(id);
             if (image == null) {
                 throw new Exception("Could not find the image with id " + id);
             }
 
-            byte[] imageBytes = null;
+            final int thumbnailSize = size != null ? size : service.getDefaultThumbnailSize();
+            final boolean isDefaultSize = thumbnailSize == service.getDefaultThumbnailSize();
+
+            if (!service.getThumbnailSizes().contains(thumbnailSize)) {
+                throw new Exception("Unsupported thumbnail size " + thumbnailSize);
+            }
+
+            final String blobKey = isDefaultSize ? image.getThumbnailBlobKey()
+                : image.getThumbnailBlobKeys().get(thumbnailSize);
+            final String eTag = getETag(image, blobKey,
+                isDefaultSize ? "thumbnail" : "thumbnail-" + thumbnailSize);
+
+            if (checkNotModified(eTag, image, request, response)) {
+                LOG.debug("The image thumbnail " + image.getFileName() + " has not been modified");
+                return null;
+            }
+
+            MediaType contentType = MediaType.parseMediaType(image.getFileType());
+
+            FileChannel channel = null;
+            byte[] thumbnail = null;
 
-            imageBytes = image.getThumbnail();
+            if (blobKey != null) {
+                channel = isDefaultSize ? service.openThumbnail(image) : service.openThumbnail(image, thumbnailSize);
+            } else if (isDefaultSize && image.getThumbnail() != null) {
+                thumbnail = image.getThumbnail();
+            } else {
+                // not created (yet)
+                thumbnail = service.createThumbnail(image, thumbnailSize);
+            }
 
-            responseHeaders.setContentType(
-                MediaType.parseMediaType(image.getFileType()));
+            writeContent(channel, thumbnail, contentType, eTag, request, response);
 
             LOG.info("Successfully got the image thumbnail " +
                 image.getFileName());
 
-            return new ResponseEntity<byte[]>(
-                imageBytes, responseHeaders, HttpStatus.OK);
+            // the response has been written already
+            return null;
         } catch (Exception e) {
             final String errorMessage = "Could not get the image thumbnail: "
                 + e.getMessage();
 
             LOG.error(errorMessage);
+
+            if (response.isCommitted()) {
+                // the thumbnail has been (partially) written already
+                return null;
+            }
+
             responseMap = ResultSet.error(errorMessage);
 
             responseHeaders.setContentType(MediaType.APPLICATION_JSON);
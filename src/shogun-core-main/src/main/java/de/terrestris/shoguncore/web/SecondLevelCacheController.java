@@ -0,0 +1,49 @@
+package de.terrestris.shoguncore.web;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import de.terrestris.shoguncore.service.SecondLevelCacheService;
+import de.terrestris.shoguncore.util.data.ResultSet;
+
+/**
+ * Web-controller for the second level cache of hibernate.
+ *
+ * @author terrestris GmbH & Co. KG
+ */
+@Controller
+@RequestMapping("/secondLevelCache")
+public class SecondLevelCacheController {
+
+    /**
+     * The service layer instance
+     */
+    @Autowired
+    @Qualifier("secondLevelCacheService")
+    private SecondLevelCacheService service;
+
+    /**
+     * Provides the statistics (hits, misses, evictions, ...) of all cache
+     * regions. Only allowed for the SUPERADMIN.
+     */
+    @RequestMapping(value = "/statistics.action", method = RequestMethod.GET)
+    public @ResponseBody
+    Map<String, Object> getStatistics() {
+
+        return ResultSet.success(this.service.getRegionStatistics());
+    }
+
+    /**
+     * @param service the service to set
+     */
+    public void setService(SecondLevelCacheService service) {
+        this.service = service;
+    }
+
+}
@@ -1,13 +1,21 @@
 package de.terrestris.shoguncore.web;
 
+import java.util.Map;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 
 import de.terrestris.shoguncore.dao.TreeNodeDao;
 import de.terrestris.shoguncore.model.tree.TreeNode;
 import de.terrestris.shoguncore.service.TreeNodeService;
+import de.terrestris.shoguncore.util.data.ResultSet;
 
 /**
  * @author Nils Bühner
@@ -44,4 +52,31 @@ public class TreeNodeController<E extends TreeNode, D extends TreeNodeDao<E>, S
     public void setService(S service) {
         this.service = service;
     }
+
+    /**
+     * (Re-)Calculates the paths of all tree nodes (see
+     * {@link TreeNodeService#rebuildPaths()}).
+     */
+    @RequestMapping(value = "/rebuildPaths.action", method = RequestMethod.POST)
+    public ResponseEntity<?> rebuildPaths() {
+
+        Map<String, Object> responseMap;
+
+        try {
+            final int updated = service.rebuildPaths();
+
+            LOG.info("Successfully rebuilt the paths of " + updated + " tree nodes");
+            responseMap = ResultSet.success(updated);
+        } catch (Exception e) {
+            LOG.error("Could not rebuild the paths of the tree nodes: " + e.getMessage());
+            responseMap = ResultSet.error("Could not rebuild the paths of the tree nodes: " +
+                e.getMessage());
+        }
+
+        final HttpHeaders responseHeaders = new HttpHeaders();
+        responseHeaders.setContentType(MediaType.APPLICATION_JSON_UTF8);
+
+        return new ResponseEntity<>(responseMap, responseHeaders, HttpStatus.OK);
+    }
+
 }
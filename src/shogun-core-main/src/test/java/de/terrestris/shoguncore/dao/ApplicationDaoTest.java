@@ -0,0 +1,309 @@
+package de.terrestris.shoguncore.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import de.terrestris.shoguncore.hibernate.ApplicationSnapshotInvalidator;
+import de.terrestris.shoguncore.model.Application;
+import de.terrestris.shoguncore.model.PersistentObject;
+import de.terrestris.shoguncore.model.layer.Layer;
+import de.terrestris.shoguncore.model.layer.appearance.LayerAppearance;
+import de.terrestris.shoguncore.model.layer.source.ImageWmsLayerDataSource;
+import de.terrestris.shoguncore.model.module.Button;
+import de.terrestris.shoguncore.model.module.CompositeModule;
+import de.terrestris.shoguncore.model.module.Map;
+import de.terrestris.shoguncore.model.module.Module;
+import de.terrestris.shoguncore.model.tree.TreeFolder;
+import de.terrestris.shoguncore.model.tree.TreeNode;
+import de.terrestris.shoguncore.util.application.ApplicationSnapshotCache;
+import de.terrestris.shoguncore.util.json.ShogunCoreJsonObjectMapper;
+
+/**
+ * Tests the loading of complete application graphs. The fixture is an
+ * application with 50 modules (nested composite modules containing maps)
+ * and 300 layers, i.e. a graph which would result in huge cartesian products
+ * when being JOIN fetched or in hundreds of queries when being loaded lazily.
+ *
+ * @author terrestris GmbH & Co. KG
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = {"classpath*:META-INF/spring/test-context-dao.xml"})
+@Transactional
+@Rollback(true)
+public class ApplicationDaoTest {
+
+    private static final int COMPOSITES = 5;
+
+    private static final int MAPS_PER_COMPOSITE = 6;
+
+    private static final int BUTTONS_PER_COMPOSITE = 2;
+
+    private static final int VIEWPORT_BUTTONS = 4;
+
+    private static final int LAYERS_PER_MAP = 10;
+
+    /**
+     * The maximum number of queries to load the complete graph. The graph has
+     * a depth of ~7 levels and each level should only need a few (batch)
+     * queries.
+     */
+    private static final int MAX_QUERIES = 50;
+
+    @Autowired
+    private ApplicationDao<Application> applicationDao;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    private Statistics statistics;
+
+    @Before
+    public void enableStatistics() {
+        statistics = sessionFactory.getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @After
+    public void disableStatistics() {
+        statistics.setStatisticsEnabled(false);
+    }
+
+    @Test
+    public void findByIdWithGraph_loadsGraphInBoundedNumberOfQueries() throws Exception {
+        final Integer id = persistApplication();
+
+        final Session session = sessionFactory.getCurrentSession();
+        session.flush();
+        session.clear();
+        statistics.clear();
+
+        final Application application = applicationDao.findByIdWithGraph(id);
+        final long queries = statistics.getPrepareStatementCount();
+
+        assertNotNull(application);
+        assertTrue("Loading the graph took " + queries + " queries", queries <= MAX_QUERIES);
+
+        // the graph has to be serializable without the session
+        session.clear();
+
+        final CompositeModule viewport = application.getViewport();
+        assertEquals(COMPOSITES + VIEWPORT_BUTTONS, viewport.getSubModules().size());
+
+        int maps = 0;
+        int layers = 0;
+        for (Module module : viewport.getSubModules()) {
+            if (!(module instanceof CompositeModule)) {
+                continue;
+            }
+            for (Module subModule : ((CompositeModule) module).getSubModules()) {
+                if (subModule instanceof Map) {
+                    final List<Layer> mapLayers = ((Map) subModule).getMapLayers();
+                    assertTrue(Hibernate.isInitialized(mapLayers));
+                    maps++;
+                    layers += mapLayers.size();
+                }
+            }
+        }
+        assertEquals(COMPOSITES * MAPS_PER_COMPOSITE, maps);
+        assertEquals(COMPOSITES * MAPS_PER_COMPOSITE * LAYERS_PER_MAP, layers);
+
+        final JsonNode json = new ShogunCoreJsonObjectMapper().valueToTree(application);
+        final JsonNode firstLayer = json.at("/viewport/subModules/0/subModules/0/mapLayers/0");
+        assertEquals("ImageWMS", firstLayer.at("/source/type").asText());
+        assertEquals("value", firstLayer.at("/appearance/properties/key").asText());
+    }
+
+    @Test
+    public void findAllWithGraph_loadsAllGraphsTogether() throws Exception {
+        persistApplication();
+        persistApplication();
+
+        final Session session = sessionFactory.getCurrentSession();
+        session.flush();
+        session.clear();
+        statistics.clear();
+
+        final List<Application> applications = applicationDao.findAllWithGraph();
+        final long queries = statistics.getPrepareStatementCount();
+
+        assertEquals(2, applications.size());
+        assertTrue("Loading the graphs took " + queries + " queries", queries <= MAX_QUERIES);
+    }
+
+    @Test
+    public void initializeGraph_loadsNestedTreeLevelByLevel() throws Exception {
+        final Session session = sessionFactory.getCurrentSession();
+
+        final TreeFolder root = new TreeFolder();
+        root.setText("root");
+        root.setRoot(true);
+        session.save(root);
+
+        // 4 levels with 4 children per folder -> 1 + 4 + 16 + 64 nodes
+        List<TreeFolder> parents = Collections.singletonList(root);
+        for (int depth = 0; depth < 3; depth++) {
+            final List<TreeFolder> folders = new ArrayList<>();
+            for (TreeFolder parent : parents) {
+                for (int i = 0; i < 4; i++) {
+                    final TreeNode node = depth < 2 ? new TreeFolder() : new TreeNode();
+                    node.setText("node-" + depth + "-" + i);
+                    node.setIndex(i);
+                    node.setParentFolder(parent);
+                    session.save(node);
+                    if (node instanceof TreeFolder) {
+                        folders.add((TreeFolder) node);
+                    }
+                }
+            }
+            parents = folders;
+        }
+
+        session.flush();
+        session.clear();
+        statistics.clear();
+
+        final TreeFolder loadedRoot = session.get(TreeFolder.class, root.getId());
+        final Set<PersistentObject> nodes = applicationDao.initializeGraph(Collections.singletonList(loadedRoot));
+        final long queries = statistics.getPrepareStatementCount();
+
+        assertEquals(1 + 4 + 16 + 64, nodes.size());
+        assertTrue("Loading the tree took " + queries + " queries", queries <= 10);
+    }
+
+    @Test
+    public void snapshotInvalidator_invalidatesSnapshotsOnChangesOfTheGraph() throws Exception {
+        final ApplicationSnapshotCache cache = new ApplicationSnapshotCache();
+        final ApplicationSnapshotInvalidator invalidator = new ApplicationSnapshotInvalidator();
+        ReflectionTestUtils.setField(invalidator, "sessionFactory", sessionFactory);
+        ReflectionTestUtils.setField(invalidator, "applicationSnapshotCache", cache);
+        invalidator.register();
+
+        final Integer id = persistApplication();
+        final Button unrelated = createButton("unrelated");
+
+        final Session session = sessionFactory.getCurrentSession();
+        session.flush();
+        session.clear();
+
+        final Application application = applicationDao.findByIdWithGraph(id);
+        final Layer layer = ((Map) ((CompositeModule) application.getViewport().getSubModules().get(0))
+            .getSubModules().get(0)).getMapLayers().get(0);
+
+        putSnapshot(cache, application);
+
+        // changes of entities outside of the graph don't invalidate the snapshot
+        session.get(Button.class, unrelated.getId()).setName("changed");
+        session.flush();
+        assertNotNull(cache.get(id));
+
+        layer.setName("changed");
+        session.flush();
+        assertNull(cache.get(id));
+
+        putSnapshot(cache, application);
+
+        layer.getAppearance().getProperties().put("key", "changed");
+        session.flush();
+        assertNull(cache.get(id));
+    }
+
+    /**
+     * Persists an application with 50 modules and 300 layers.
+     *
+     * @return The ID of the application
+     */
+    private Integer persistApplication() {
+        final Session session = sessionFactory.getCurrentSession();
+
+        final CompositeModule viewport = new CompositeModule();
+        viewport.setName("viewport");
+        viewport.getProperties().put("region", "center");
+
+        for (int c = 0; c < COMPOSITES; c++) {
+            final CompositeModule composite = new CompositeModule();
+            composite.setName("composite-" + c);
+            composite.getProperties().put("collapsible", true);
+
+            for (int m = 0; m < MAPS_PER_COMPOSITE; m++) {
+                final List<Layer> layers = new ArrayList<>();
+                for (int l = 0; l < LAYERS_PER_MAP; l++) {
+                    final String name = "layer-" + c + "-" + m + "-" + l;
+                    final ImageWmsLayerDataSource source = new ImageWmsLayerDataSource(name, "ImageWMS",
+                        "http://localhost/wms", "image/png", 256, 256, "1.3.0", name, "");
+                    final LayerAppearance appearance = new LayerAppearance();
+                    appearance.getProperties().put("key", "value");
+                    final Layer layer = new Layer(name, source, appearance);
+                    session.save(layer);
+                    layers.add(layer);
+                }
+
+                final Map map = new Map("map-" + c + "-" + m, null, layers);
+                map.getProperties().put("zoom", 5);
+                session.save(map);
+                composite.addModule(map);
+            }
+
+            for (int b = 0; b < BUTTONS_PER_COMPOSITE; b++) {
+                composite.addModule(createButton("button-" + c + "-" + b));
+            }
+
+            session.save(composite);
+            viewport.addModule(composite);
+        }
+
+        for (int b = 0; b < VIEWPORT_BUTTONS; b++) {
+            viewport.addModule(createButton("button-" + b));
+        }
+
+        session.save(viewport);
+
+        final Application application = new Application("application", "benchmark fixture");
+        application.setViewport(viewport);
+        session.save(application);
+
+        return application.getId();
+    }
+
+    private void putSnapshot(ApplicationSnapshotCache cache, Application application) {
+        final Set<Integer> dependencies = new HashSet<>();
+        for (PersistentObject entity : applicationDao.initializeGraph(Collections.singletonList(application))) {
+            dependencies.add(entity.getId());
+        }
+        cache.put(application.getId(), new byte[0], dependencies, cache.getVersion());
+        assertNotNull(cache.get(application.getId()));
+    }
+
+    private Button createButton(String name) {
+        final Button button = new Button();
+        button.setName(name);
+        button.getProperties().put("text", name);
+        sessionFactory.getCurrentSession().save(button);
+        return button;
+    }
+
+}
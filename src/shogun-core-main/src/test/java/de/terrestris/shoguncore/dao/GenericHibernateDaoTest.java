@@ -1,9 +1,16 @@
 package de.terrestris.shoguncore.dao;
 
 import de.terrestris.shoguncore.model.Application;
+import de.terrestris.shoguncore.model.PersistentObject;
 import de.terrestris.shoguncore.model.Plugin;
+import de.terrestris.shoguncore.model.User;
+import de.terrestris.shoguncore.model.UserGroup;
+import de.terrestris.shoguncore.model.security.Permission;
+import de.terrestris.shoguncore.model.security.PermissionCollection;
+import de.terrestris.shoguncore.paging.PagingRequest;
 import de.terrestris.shoguncore.paging.PagingResult;
 import org.apache.commons.lang3.RandomStringUtils;
+import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.Disjunction;
 import org.hibernate.criterion.Order;
@@ -76,6 +83,30 @@ public class GenericHibernateDaoTest {
     @Autowired
     PluginTestDao pluginDao;
 
+    /**
+     *
+     */
+    @Autowired
+    UserDao<User> userDao;
+
+    /**
+     *
+     */
+    @Autowired
+    UserGroupDao<UserGroup> userGroupDao;
+
+    /**
+     *
+     */
+    @Autowired
+    PermissionCollectionDao<PermissionCollection> permissionCollectionDao;
+
+    /**
+     *
+     */
+    @Autowired
+    SessionFactory sessionFactory;
+
     private Set<String> usedRandomStrings = new HashSet<String>();
 
     /**
@@ -509,6 +540,143 @@ public class GenericHibernateDaoTest {
             got.contains(app2));
     }
 
+    /**
+     * Tests whether scroll passes all matching entities ordered by ID and
+     * clears the session periodically.
+     */
+    @Test
+    public void scroll_passesAllEntitiesAndClearsTheSession() {
+
+        Set<Application> mockApps = getNrOfRandomSavedMockApps(5);
+        Application firstApp = mockApps.iterator().next();
+
+        List<Integer> ids = new ArrayList<>();
+        long count = appDao.scroll(2, app -> ids.add(app.getId()));
+
+        assertEquals(5, count);
+        assertEquals(5, ids.size());
+        for (int i = 1; i < ids.size(); i++) {
+            assertTrue(ids.get(i) > ids.get(i - 1));
+        }
+        assertFalse(sessionFactory.getCurrentSession().contains(firstApp));
+
+        List<Integer> filteredIds = new ArrayList<>();
+        appDao.scroll(2, app -> filteredIds.add(app.getId()), Restrictions.eq("id", firstApp.getId()));
+
+        assertEquals(Collections.singletonList(firstApp.getId()), filteredIds);
+    }
+
+    /**
+     * Tests whether findPage supports keyset pagination and skipping the
+     * total count.
+     */
+    @Test
+    public void findPage_supportsKeysetPaginationWithoutCount() {
+
+        int nrOfMockApps = 5;
+
+        getNrOfRandomSavedMockApps(nrOfMockApps);
+
+        PagingRequest firstPageRequest = new PagingRequest(null, 3, null, null, false);
+        PagingResult<Application> firstPage = appDao.findPage(firstPageRequest, null);
+
+        assertNull(firstPage.getTotalCount());
+        assertEquals(3, firstPage.getResultList().size());
+
+        Integer lastId = firstPage.getResultList().get(2).getId();
+        PagingRequest nextPageRequest = new PagingRequest(null, 3, lastId, null, true);
+        PagingResult<Application> nextPage = appDao.findPage(nextPageRequest, null);
+
+        assertEquals(new Long(nrOfMockApps), nextPage.getTotalCount());
+        assertEquals(2, nextPage.getResultList().size());
+        for (Application app : nextPage.getResultList()) {
+            assertTrue(app.getId() > lastId);
+        }
+    }
+
+    /**
+     * Tests whether findPage counts entities (and not the joined rows of
+     * their permissions) when limiting the page.
+     */
+    @Test
+    public void findPage_limitsEntitiesWithSeveralPermissions() {
+        User user = new User("Shinji", "Kagawa", "shinji" + getRandomStr());
+        User otherUser = new User("Marco", "Reus", "marco" + getRandomStr());
+        userDao.saveOrUpdate(user);
+        userDao.saveOrUpdate(otherUser);
+
+        UserGroup group = new UserGroup();
+        group.setName("bvb");
+        userGroupDao.saveOrUpdate(group);
+        UserGroup otherGroup = new UserGroup();
+        otherGroup.setName("s04");
+        userGroupDao.saveOrUpdate(otherGroup);
+
+        List<Integer> appIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Application app = getRandomSavedMockApp();
+            app.getUserPermissions().put(user, getSavedPermissionCollection(Permission.READ));
+            app.getUserPermissions().put(otherUser, getSavedPermissionCollection(Permission.UPDATE));
+            app.getGroupPermissions().put(group, getSavedPermissionCollection(Permission.READ));
+            app.getGroupPermissions().put(otherGroup, getSavedPermissionCollection(Permission.DELETE));
+            appDao.saveOrUpdate(app);
+            appIds.add(app.getId());
+        }
+
+        sessionFactory.getCurrentSession().flush();
+        sessionFactory.getCurrentSession().clear();
+
+        List<Order> sorters = Collections.singletonList(Order.asc("id"));
+
+        PagingResult<Application> firstPage = appDao.findPage(
+            new PagingRequest(0, 2, null, sorters, true), null);
+        PagingResult<Application> lastPage = appDao.findPage(
+            new PagingRequest(4, 2, null, sorters, false), null);
+
+        assertEquals(new Long(5), firstPage.getTotalCount());
+        assertEquals(2, firstPage.getResultList().size());
+        assertEquals(appIds.get(0), firstPage.getResultList().get(0).getId());
+        assertEquals(appIds.get(1), firstPage.getResultList().get(1).getId());
+        assertEquals(2, firstPage.getResultList().get(0).getUserPermissions().size());
+        assertEquals(2, firstPage.getResultList().get(0).getGroupPermissions().size());
+
+        assertEquals(1, lastPage.getResultList().size());
+        assertEquals(appIds.get(4), lastPage.getResultList().get(0).getId());
+
+        PagingResult<Application> keysetPage = appDao.findPage(
+            new PagingRequest(null, 3, appIds.get(1), sorters, false), null);
+
+        assertEquals(3, keysetPage.getResultList().size());
+        assertEquals(appIds.subList(2, 5), Arrays.asList(
+            keysetPage.getResultList().get(0).getId(),
+            keysetPage.getResultList().get(1).getId(),
+            keysetPage.getResultList().get(2).getId()));
+    }
+
+    /**
+     * Tests whether findPage sorts by multiple fields and restricts the
+     * results to the requested fields.
+     */
+    @Test
+    public void findPage_sortsByMultipleFieldsAndRestrictsFields() {
+
+        Application first = getSavedMockApp("b");
+        Application second = getSavedMockApp("a");
+        Application third = getSavedMockApp("a");
+
+        PagingRequest pagingRequest = new PagingRequest(0, 10, null,
+            Arrays.asList(Order.asc("name"), Order.desc("id")), true);
+        PagingResult<Application> r = appDao.findPage(pagingRequest, Arrays.asList("id", "name"));
+
+        List<Application> queriedApps = r.getResultList();
+
+        assertEquals(new Long(3), r.getTotalCount());
+        assertEquals(third.getId(), queriedApps.get(0).getId());
+        assertEquals(second.getId(), queriedApps.get(1).getId());
+        assertEquals(first.getId(), queriedApps.get(2).getId());
+        assertEquals("b", queriedApps.get(2).getName());
+    }
+
     /**
      * Tests whether findByCriteriaWithSortingAndPaging works as expected
      * if only the firstResult value is given.
@@ -816,4 +984,145 @@ public class GenericHibernateDaoTest {
 
         assertTrue("findAllWhereFieldEquals() does throw with invalid field", catchedException);
     }
+
+    /**
+     * Small helper for getting a new saved permission collection.
+     *
+     * @param permissions
+     * @return
+     */
+    private PermissionCollection getSavedPermissionCollection(Permission... permissions) {
+        PermissionCollection permissionCollection = new PermissionCollection(
+            new HashSet<Permission>(Arrays.asList(permissions)));
+        permissionCollectionDao.saveOrUpdate(permissionCollection);
+        return permissionCollection;
+    }
+
+    /**
+     * Tests whether createPermissionCriterion restricts to the entities with
+     * matching user or group permissions.
+     */
+    @Test
+    public void createPermissionCriterion_restrictsToPermittedEntities() {
+        User user = new User("Shinji", "Kagawa", "shinji" + getRandomStr());
+        User otherUser = new User("Marco", "Reus", "marco" + getRandomStr());
+        userDao.saveOrUpdate(user);
+        userDao.saveOrUpdate(otherUser);
+
+        UserGroup group = new UserGroup();
+        group.setName("bvb");
+        group.getMembers().add(user);
+        userGroupDao.saveOrUpdate(group);
+
+        Application readByUser = getRandomSavedMockApp();
+        readByUser.getUserPermissions().put(user, getSavedPermissionCollection(Permission.READ));
+        appDao.saveOrUpdate(readByUser);
+
+        Application adminByGroup = getRandomSavedMockApp();
+        adminByGroup.getGroupPermissions().put(group, getSavedPermissionCollection(Permission.ADMIN));
+        appDao.saveOrUpdate(adminByGroup);
+
+        Application updateByUser = getRandomSavedMockApp();
+        updateByUser.getUserPermissions().put(user, getSavedPermissionCollection(Permission.UPDATE));
+        appDao.saveOrUpdate(updateByUser);
+
+        Application readByOtherUser = getRandomSavedMockApp();
+        readByOtherUser.getUserPermissions().put(otherUser, getSavedPermissionCollection(Permission.READ));
+        appDao.saveOrUpdate(readByOtherUser);
+
+        Application withoutPermissions = getRandomSavedMockApp();
+
+        sessionFactory.getCurrentSession().flush();
+
+        List<Application> readable = appDao.findByCriteria(
+            appDao.createPermissionCriterion(user.getId(), Permission.READ));
+
+        assertEquals(2, readable.size());
+        assertTrue(readable.contains(readByUser));
+        assertTrue(readable.contains(adminByGroup));
+        assertFalse(readable.contains(updateByUser));
+        assertFalse(readable.contains(readByOtherUser));
+        assertFalse(readable.contains(withoutPermissions));
+
+        List<Application> updatable = appDao.findByCriteria(
+            appDao.createPermissionCriterion(user.getId(), Permission.UPDATE));
+
+        assertEquals(2, updatable.size());
+        assertTrue(updatable.contains(updateByUser));
+        assertTrue(updatable.contains(adminByGroup));
+
+        Criterion nameIsReadByUser = Restrictions.eq("name", readByUser.getName());
+        assertEquals(1, appDao.getTotalCount(nameIsReadByUser,
+            appDao.createPermissionCriterion(user.getId(), Permission.READ)).intValue());
+
+        List<Application> anonymous = appDao.findByCriteria(
+            appDao.createPermissionCriterion(null, Permission.READ));
+
+        assertTrue(anonymous.isEmpty());
+    }
+
+    /**
+     * Tests whether getMappedEntityClasses returns the entity class.
+     */
+    @Test
+    public void getMappedEntityClasses_containsEntityClass() {
+        assertTrue(appDao.getMappedEntityClasses().contains(Application.class));
+    }
+
+    /**
+     * Tests whether findAllUserPermissionsOfUser and
+     * findAllUserGroupPermissionsOfUserGroup return the (paged) permissions
+     * of the given user or group only.
+     */
+    @Test
+    public void findAllPermissionsOf_returnsPermissionsOfUserOrGroupOnly() {
+        User user = new User("Shinji", "Kagawa", "shinji" + getRandomStr());
+        User otherUser = new User("Marco", "Reus", "marco" + getRandomStr());
+        userDao.saveOrUpdate(user);
+        userDao.saveOrUpdate(otherUser);
+
+        UserGroup group = new UserGroup();
+        group.setName("bvb");
+        userGroupDao.saveOrUpdate(group);
+
+        PermissionCollection read = getSavedPermissionCollection(Permission.READ);
+
+        for (int i = 0; i < 3; i++) {
+            Application app = getRandomSavedMockApp();
+            app.getUserPermissions().put(user, read);
+            appDao.saveOrUpdate(app);
+        }
+
+        Application readByOtherUser = getRandomSavedMockApp();
+        readByOtherUser.getUserPermissions().put(otherUser, getSavedPermissionCollection(Permission.READ));
+        appDao.saveOrUpdate(readByOtherUser);
+
+        Application readByGroup = getRandomSavedMockApp();
+        readByGroup.getGroupPermissions().put(group, read);
+        appDao.saveOrUpdate(readByGroup);
+
+        sessionFactory.getCurrentSession().flush();
+
+        Map<PersistentObject, PermissionCollection> userPermissions = appDao.findAllUserPermissionsOfUser(user);
+
+        assertEquals(3, userPermissions.size());
+        assertFalse(userPermissions.containsKey(readByOtherUser));
+        assertFalse(userPermissions.containsKey(readByGroup));
+        assertTrue(userPermissions.values().iterator().next().getPermissions().contains(Permission.READ));
+
+        Map<PersistentObject, PermissionCollection> firstPage = appDao.findAllUserPermissionsOfUser(user, 0, 2);
+        Map<PersistentObject, PermissionCollection> secondPage = appDao.findAllUserPermissionsOfUser(user, 2, 2);
+
+        assertEquals(2, firstPage.size());
+        assertEquals(1, secondPage.size());
+        assertFalse(firstPage.keySet().containsAll(secondPage.keySet()));
+
+        Map<PersistentObject, PermissionCollection> groupPermissions =
+            appDao.findAllUserGroupPermissionsOfUserGroup(group);
+
+        assertEquals(1, groupPermissions.size());
+        assertTrue(groupPermissions.containsKey(readByGroup));
+
+        assertTrue(appDao.findAllUserPermissionsOfUser(new User()).isEmpty());
+    }
 }
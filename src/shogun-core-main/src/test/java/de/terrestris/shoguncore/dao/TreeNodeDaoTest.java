@@ -0,0 +1,301 @@
+package de.terrestris.shoguncore.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import de.terrestris.shoguncore.model.tree.TreeFolder;
+import de.terrestris.shoguncore.model.tree.TreeNode;
+
+/**
+ * Tests the maintenance of the materialized paths of tree nodes and the
+ * subtree operations based on them.
+ *
+ * @author terrestris GmbH & Co. KG
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = {"classpath*:META-INF/spring/test-context-dao.xml"})
+@Transactional
+@Rollback(true)
+public class TreeNodeDaoTest {
+
+    @Autowired
+    @Qualifier("treeNodeDao")
+    private TreeNodeDao<TreeNode> treeNodeDao;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    private Statistics statistics;
+
+    @Before
+    public void enableStatistics() {
+        statistics = sessionFactory.getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @After
+    public void disableStatistics() {
+        statistics.setStatisticsEnabled(false);
+    }
+
+    @Test
+    public void saveOrUpdate_setsPaths() throws Exception {
+        final TreeFolder root = createFolder("root", null);
+        final TreeFolder folder = createFolder("folder", root);
+        final TreeNode leaf = createLeaf("leaf", folder, 0);
+
+        assertEquals("/", root.getPath());
+        assertEquals("/" + root.getId() + "/", folder.getPath());
+        assertEquals("/" + root.getId() + "/" + folder.getId() + "/", leaf.getPath());
+    }
+
+    @Test
+    public void saveOrUpdate_movesPathsOfDescendants() throws Exception {
+        final TreeFolder root = createFolder("root", null);
+        final TreeFolder target = createFolder("target", root);
+        final TreeFolder folder = createFolder("folder", root);
+        final TreeNode leaf = createLeaf("leaf", folder, 0);
+
+        folder.setParentFolder(target);
+        treeNodeDao.saveOrUpdate(folder);
+
+        final Session session = sessionFactory.getCurrentSession();
+        session.flush();
+        session.clear();
+
+        final TreeNode movedLeaf = session.get(TreeNode.class, leaf.getId());
+        assertEquals("/" + root.getId() + "/" + target.getId() + "/" + folder.getId() + "/",
+            movedLeaf.getPath());
+    }
+
+    @Test
+    public void saveOrUpdate_rejectsMovesIntoOwnSubtree() throws Exception {
+        final TreeFolder root = createFolder("root", null);
+        final TreeFolder folder = createFolder("folder", root);
+        final TreeFolder subFolder = createFolder("subFolder", folder);
+
+        folder.setParentFolder(subFolder);
+
+        try {
+            treeNodeDao.saveOrUpdate(folder);
+            fail("A folder must not be moved into its own subtree");
+        } catch (HibernateException e) {
+            assertNotNull(e.getMessage());
+        }
+    }
+
+    @Test
+    public void findDescendants_loadsSubtreeWithSingleQuery() throws Exception {
+        final TreeFolder root = createTree(3, 4);
+
+        final Session session = sessionFactory.getCurrentSession();
+        session.flush();
+        session.clear();
+
+        final TreeNode loadedRoot = session.get(TreeFolder.class, root.getId());
+        statistics.clear();
+
+        final List<TreeNode> descendants = treeNodeDao.findDescendants(loadedRoot);
+
+        assertEquals(4 + 16 + 64, descendants.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void cloneSubtree_persistsCopiesOfAllDescendants() throws Exception {
+        final TreeFolder root = createTree(2, 3);
+
+        final Session session = sessionFactory.getCurrentSession();
+        session.flush();
+        session.clear();
+
+        final TreeNode clone = treeNodeDao.cloneSubtree(session.get(TreeNode.class, root.getId()));
+        session.flush();
+        session.clear();
+
+        assertNotEquals(root.getId(), clone.getId());
+
+        final TreeFolder loadedClone = session.get(TreeFolder.class, clone.getId());
+        final List<TreeNode> descendants = treeNodeDao.findDescendants(loadedClone);
+        assertEquals(3 + 9, descendants.size());
+
+        for (TreeNode descendant : descendants) {
+            assertTrue(descendant.getPath().startsWith(loadedClone.getChildPath()));
+            assertTrue(descendant.getPath().endsWith("/" + descendant.getParentFolder().getId() + "/"));
+        }
+
+        // the original tree is unchanged
+        final TreeFolder loadedRoot = session.get(TreeFolder.class, root.getId());
+        assertEquals(3 + 9, treeNodeDao.findDescendants(loadedRoot).size());
+        assertEquals(3, loadedRoot.getChildren().size());
+    }
+
+    @Test
+    public void delete_doesNotCascadeToDescendants() throws Exception {
+        final TreeFolder root = createTree(2, 3);
+        final Integer leafId = createLeaf("leaf", root, 10).getId();
+
+        final Session session = sessionFactory.getCurrentSession();
+        session.flush();
+        session.clear();
+
+        final List<TreeNode> descendants = treeNodeDao.findDescendants(session.get(TreeFolder.class, root.getId()));
+
+        treeNodeDao.delete(session.get(TreeNode.class, leafId));
+        session.flush();
+        session.clear();
+
+        assertNull(session.get(TreeNode.class, leafId));
+
+        // all other nodes (and their paths) are unchanged
+        final TreeFolder loadedRoot = session.get(TreeFolder.class, root.getId());
+        assertEquals(descendants.size() - 1, treeNodeDao.findDescendants(loadedRoot).size());
+    }
+
+    @Test
+    public void rebuildPaths_setsMissingPaths() throws Exception {
+        final TreeFolder root = createTree(2, 2);
+
+        final Session session = sessionFactory.getCurrentSession();
+        session.flush();
+        session.createQuery("update TreeNode set path = null").executeUpdate();
+        session.clear();
+
+        final int updated = treeNodeDao.rebuildPaths();
+        session.flush();
+        session.clear();
+
+        assertTrue(updated >= 1 + 2 + 4);
+
+        final TreeFolder loadedRoot = session.get(TreeFolder.class, root.getId());
+        assertEquals("/", loadedRoot.getPath());
+        assertEquals(2 + 4, treeNodeDao.findDescendants(loadedRoot).size());
+    }
+
+    @Test
+    public void subtreeOperations_walkChildrenOfNodesWithoutPath() throws Exception {
+        final TreeFolder root = createTree(2, 2);
+
+        final Session session = sessionFactory.getCurrentSession();
+        session.flush();
+        session.createQuery("update TreeNode set path = null").executeUpdate();
+        session.clear();
+
+        assertTrue(treeNodeDao.hasNodesWithoutPath());
+
+        final TreeFolder loadedRoot = session.get(TreeFolder.class, root.getId());
+        final List<TreeNode> descendants = treeNodeDao.findDescendants(loadedRoot);
+        assertEquals(2 + 4, descendants.size());
+
+        // parents before their children
+        for (int i = 0; i < descendants.size(); i++) {
+            final Integer parentId = descendants.get(i).getParentFolder().getId();
+            if (!parentId.equals(root.getId())) {
+                assertTrue(descendants.subList(0, i).stream().anyMatch(node -> node.getId().equals(parentId)));
+            }
+        }
+
+        final TreeNode clone = treeNodeDao.cloneSubtree(loadedRoot);
+        session.flush();
+        session.clear();
+
+        final TreeFolder loadedClone = session.get(TreeFolder.class, clone.getId());
+        assertEquals("/", loadedClone.getPath());
+        assertEquals(2 + 4, treeNodeDao.findDescendants(loadedClone).size());
+    }
+
+    @Test
+    public void rebuildPaths_failsOnCycles() throws Exception {
+        final TreeFolder root = createFolder("root", null);
+        final TreeFolder folder = createFolder("folder", root);
+
+        final Session session = sessionFactory.getCurrentSession();
+        session.flush();
+        session.createQuery("update TreeNode set parentFolder = :folder where id = :id")
+            .setParameter("folder", folder)
+            .setParameter("id", root.getId())
+            .executeUpdate();
+        session.clear();
+
+        try {
+            treeNodeDao.rebuildPaths();
+            fail("Should have thrown HibernateException");
+        } catch (HibernateException e) {
+            assertTrue(e.getMessage().contains("cycle"));
+        }
+    }
+
+    /**
+     * @param depth    The number of levels below the root
+     * @param children The number of children per folder
+     * @return The root of the tree
+     */
+    private TreeFolder createTree(int depth, int children) {
+        final TreeFolder root = createFolder("root", null);
+
+        List<TreeFolder> parents = Collections.singletonList(root);
+        for (int level = 0; level < depth; level++) {
+            final List<TreeFolder> folders = new ArrayList<>();
+            for (TreeFolder parent : parents) {
+                for (int i = 0; i < children; i++) {
+                    if (level < depth - 1) {
+                        folders.add(createFolder("folder-" + level + "-" + i, parent));
+                    } else {
+                        createLeaf("leaf-" + level + "-" + i, parent, i);
+                    }
+                }
+            }
+            parents = folders;
+        }
+
+        return root;
+    }
+
+    private TreeFolder createFolder(String text, TreeFolder parent) {
+        final TreeFolder folder = new TreeFolder();
+        folder.setText(text);
+        folder.setRoot(parent == null);
+        save(folder, parent);
+        return folder;
+    }
+
+    private TreeNode createLeaf(String text, TreeFolder parent, int index) {
+        final TreeNode leaf = new TreeNode();
+        leaf.setText(text);
+        leaf.setIndex(index);
+        save(leaf, parent);
+        return leaf;
+    }
+
+    private void save(TreeNode node, TreeFolder parent) {
+        node.setParentFolder(parent);
+        if (parent != null) {
+            parent.getChildren().add(node);
+        }
+        treeNodeDao.saveOrUpdate(node);
+    }
+
+}
@@ -0,0 +1,97 @@
+package de.terrestris.shoguncore.hibernate;
+
+import org.junit.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author terrestris GmbH & Co. KG
+ */
+public class JsonbUserTypeTest {
+
+    private final JsonbUserType userType = new JsonbUserType();
+
+    private static Map<String, Object> createValue() {
+        Map<String, Object> nested = new HashMap<>();
+        nested.put("zoom", 3);
+        nested.put("center", new ArrayList<>(Arrays.asList(7.1, 50.7)));
+
+        Map<String, Object> value = new HashMap<>();
+        value.put("name", "map");
+        value.put("visible", true);
+        value.put("view", nested);
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void deepCopy_copiesNestedMapsAndLists() {
+        Map<String, Object> value = createValue();
+
+        Map<String, Object> copy = (Map<String, Object>) userType.deepCopy(value);
+
+        assertEquals(value, copy);
+        assertTrue(userType.equals(value, copy));
+        assertNotSame(value.get("view"), copy.get("view"));
+
+        // changes of the original must not affect the copy (i.e. the snapshot
+        // used for dirty checking)
+        Map<String, Object> view = (Map<String, Object>) value.get("view");
+        ((List<Object>) view.get("center")).set(0, 8.0);
+
+        assertFalse(userType.equals(value, copy));
+        assertEquals(7.1, ((List<Object>) ((Map<String, Object>) copy.get("view")).get("center")).get(0));
+    }
+
+    @Test
+    public void deepCopy_parsesJsonStrings() {
+        Object copy = userType.deepCopy("{\"name\":\"map\",\"zoom\":3}");
+
+        assertTrue(copy instanceof HashMap);
+        assertEquals("map", ((Map<?, ?>) copy).get("name"));
+        assertEquals(3, ((Map<?, ?>) copy).get("zoom"));
+    }
+
+    @Test
+    public void equals_treatsNullsAsEqual() {
+        assertTrue(userType.equals(null, null));
+        assertFalse(userType.equals(null, createValue()));
+        assertNull(userType.deepCopy(null));
+    }
+
+    @Test
+    public void nullSafeSetAndGet_roundTripTheValue() throws Exception {
+        Map<String, Object> value = createValue();
+        String json = JsonbUserType.WRITER.writeValueAsString(value);
+
+        PreparedStatement statement = mock(PreparedStatement.class);
+        userType.nullSafeSet(statement, value, 1, null);
+        verify(statement).setObject(1, json, Types.OTHER);
+
+        userType.nullSafeSet(statement, null, 2, null);
+        verify(statement).setNull(2, Types.OTHER);
+
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.getString("properties")).thenReturn(json, (String) null);
+
+        assertEquals(value, userType.nullSafeGet(resultSet, new String[]{"properties"}, null, null));
+        assertNull(userType.nullSafeGet(resultSet, new String[]{"properties"}, null, null));
+    }
+
+}
@@ -0,0 +1,132 @@
+package de.terrestris.shoguncore.hibernate;
+
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import de.terrestris.shoguncore.model.layer.Layer;
+import de.terrestris.shoguncore.model.layer.source.ImageWmsLayerDataSource;
+import de.terrestris.shoguncore.model.layer.source.WmtsLayerDataSource;
+import de.terrestris.shoguncore.util.interceptor.CapabilitiesCache;
+import de.terrestris.shoguncore.util.interceptor.EndpointLayerCache;
+import de.terrestris.shoguncore.util.interceptor.WmtsTileCache;
+
+/**
+ * @author terrestris GmbH & Co. KG
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = {"classpath*:META-INF/spring/test-context-dao.xml"})
+@Transactional
+@Rollback(true)
+public class LayerDataSourceCacheInvalidatorTest {
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    private static WmtsTileCache wmtsTileCache;
+
+    private static CapabilitiesCache capabilitiesCache;
+
+    private static EndpointLayerCache endpointLayerCache;
+
+    @Before
+    public void set_up() {
+        // the listener can't be removed from the (shared) session factory,
+        // so it is registered only once
+        if (wmtsTileCache == null) {
+            wmtsTileCache = mock(WmtsTileCache.class);
+            capabilitiesCache = mock(CapabilitiesCache.class);
+            endpointLayerCache = mock(EndpointLayerCache.class);
+
+            final LayerDataSourceCacheInvalidator invalidator = new LayerDataSourceCacheInvalidator();
+            ReflectionTestUtils.setField(invalidator, "sessionFactory", sessionFactory);
+            ReflectionTestUtils.setField(invalidator, "wmtsTileCache", wmtsTileCache);
+            ReflectionTestUtils.setField(invalidator, "capabilitiesCache", capabilitiesCache);
+            ReflectionTestUtils.setField(invalidator, "endpointLayerCache", endpointLayerCache);
+            invalidator.register();
+        }
+        reset(wmtsTileCache, capabilitiesCache, endpointLayerCache);
+    }
+
+    @Test
+    public void purgesTilesOfDataSourcesSavedViaLayers() {
+        final Session session = sessionFactory.getCurrentSession();
+
+        final WmtsLayerDataSource dataSource = new WmtsLayerDataSource();
+        dataSource.setUrl("http://localhost/wmts");
+
+        final Layer layer = new Layer("wmts");
+        layer.setSource(dataSource);
+        session.save(layer);
+        session.flush();
+
+        verify(wmtsTileCache, never()).purge(dataSource.getId());
+
+        // cascaded via the layer, bypassing the data source service
+        dataSource.setUrl("http://localhost/other-wmts");
+        session.saveOrUpdate(layer);
+        session.flush();
+
+        verify(wmtsTileCache, atLeastOnce()).purge(dataSource.getId());
+    }
+
+    @Test
+    public void purgesTilesOfDeletedDataSources() {
+        final Session session = sessionFactory.getCurrentSession();
+
+        final WmtsLayerDataSource dataSource = new WmtsLayerDataSource();
+        dataSource.setUrl("http://localhost/wmts");
+        session.save(dataSource);
+        session.flush();
+
+        reset(wmtsTileCache);
+
+        session.delete(dataSource);
+        session.flush();
+
+        verify(wmtsTileCache, atLeastOnce()).purge(dataSource.getId());
+    }
+
+    @Test
+    public void invalidatesOldAndNewEndpointOfDataSourcesSavedViaLayers() {
+        final Session session = sessionFactory.getCurrentSession();
+
+        final ImageWmsLayerDataSource dataSource = new ImageWmsLayerDataSource();
+        dataSource.setUrl("http://localhost/wms");
+        dataSource.setCustomRequestPath("old-endpoint");
+
+        final Layer layer = new Layer("wms");
+        layer.setSource(dataSource);
+        session.save(layer);
+        session.flush();
+
+        verify(capabilitiesCache, atLeastOnce()).invalidate("old-endpoint");
+        reset(capabilitiesCache, endpointLayerCache);
+
+        // cascaded via the layer, bypassing the data source service
+        dataSource.setCustomRequestPath("new-endpoint");
+        session.saveOrUpdate(layer);
+        session.flush();
+
+        verify(capabilitiesCache, atLeastOnce()).invalidate("old-endpoint");
+        verify(capabilitiesCache, atLeastOnce()).invalidate("new-endpoint");
+        verify(endpointLayerCache, atLeastOnce()).invalidate("old-endpoint");
+        verify(endpointLayerCache, atLeastOnce()).invalidate("new-endpoint");
+        verify(wmtsTileCache, never()).purge(dataSource.getId());
+    }
+
+}
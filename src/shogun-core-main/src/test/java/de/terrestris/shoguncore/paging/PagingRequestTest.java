@@ -0,0 +1,87 @@
+package de.terrestris.shoguncore.paging;
+
+import de.terrestris.shoguncore.model.Application;
+import org.hibernate.criterion.Order;
+import org.junit.Test;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author terrestris GmbH & Co. KG
+ */
+public class PagingRequestTest {
+
+    @Test
+    public void returns_null_without_paging_params() {
+        MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
+        params.add("name", "foo");
+
+        assertNull(PagingRequest.fromRequestParams(params, Application.class));
+        assertEquals(1, params.size());
+    }
+
+    @Test
+    public void reads_and_removes_paging_params() {
+        MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
+        params.add("start", "20");
+        params.add("limit", "10");
+        params.add("page", "3");
+        params.add("count", "false");
+        params.add("sort", "NAME,-id");
+        params.add("name", "foo");
+
+        PagingRequest pagingRequest = PagingRequest.fromRequestParams(params, Application.class);
+
+        assertEquals(Integer.valueOf(20), pagingRequest.getStart());
+        assertEquals(Integer.valueOf(10), pagingRequest.getLimit());
+        assertFalse(pagingRequest.isCountTotal());
+
+        List<Order> sorters = pagingRequest.getSorters();
+        assertEquals(2, sorters.size());
+        assertEquals("name", sorters.get(0).getPropertyName());
+        assertTrue(sorters.get(0).isAscending());
+        assertEquals("id", sorters.get(1).getPropertyName());
+        assertFalse(sorters.get(1).isAscending());
+
+        assertEquals(1, params.size());
+        assertTrue(params.containsKey("name"));
+    }
+
+    @Test
+    public void reads_extjs_sorters_and_appends_the_id() {
+        MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
+        params.add("sort", "[{\"property\":\"name\",\"direction\":\"DESC\"}]");
+
+        PagingRequest pagingRequest = PagingRequest.fromRequestParams(params, Application.class);
+
+        List<Order> sorters = pagingRequest.getSorters();
+        assertEquals(2, sorters.size());
+        assertEquals("name", sorters.get(0).getPropertyName());
+        assertFalse(sorters.get(0).isAscending());
+        assertEquals("id", sorters.get(1).getPropertyName());
+        assertTrue(sorters.get(1).isAscending());
+        assertTrue(pagingRequest.isCountTotal());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejects_unknown_sort_properties() {
+        MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
+        params.add("sort", "password");
+
+        PagingRequest.fromRequestParams(params, Application.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejects_keyset_pagination_with_other_sorters() {
+        new PagingRequest(null, 10, 42, Arrays.asList(Order.asc("name")), true);
+    }
+
+}
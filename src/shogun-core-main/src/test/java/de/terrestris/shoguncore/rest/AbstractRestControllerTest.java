@@ -20,6 +20,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.util.Arrays;
+import java.util.function.Consumer;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -40,9 +41,13 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import de.terrestris.shoguncore.bulk.BulkItemResult;
+import de.terrestris.shoguncore.bulk.BulkResult;
 import de.terrestris.shoguncore.dao.GenericHibernateDao;
 import de.terrestris.shoguncore.helper.IdHelper;
 import de.terrestris.shoguncore.model.PersistentObject;
+import de.terrestris.shoguncore.paging.PagingRequest;
+import de.terrestris.shoguncore.paging.PagingResult;
 import de.terrestris.shoguncore.service.AbstractCrudService;
 import de.terrestris.shoguncore.util.json.ShogunCoreJsonObjectMapper;
 
@@ -167,6 +172,82 @@ public class AbstractRestControllerTest {
         verifyNoMoreInteractions(serviceMock);
     }
 
+    /**
+     * Tests whether the REST findAll interface will return the requested page
+     * of entities if paging parameters are given.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void findAllEntities_shouldReturn_PagingResultIfPaged()
+        throws Exception {
+        String value = "value 1";
+
+        TestModel first = buildTestInstanceWithValue(value);
+
+        when(serviceMock.findAllRestricted(any(MultiValueMap.class), any(PagingRequest.class)))
+            .thenReturn(new PagingResult<>(Arrays.asList(first), 42L));
+
+        mockMvc.perform(get("/tests").param("start", "0").param("limit", "1").param("sort", "-testValue"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.resultList", hasSize(1)))
+            .andExpect(jsonPath("$.resultList[0].testValue", is(value)))
+            .andExpect(jsonPath("$.totalCount", is(42)));
+
+        verify(serviceMock, times(1)).findAllRestricted(any(MultiValueMap.class), any(PagingRequest.class));
+        verifyNoMoreInteractions(serviceMock);
+    }
+
+    /**
+     * Tests whether the REST findAll interface will return a HTTP Status Code
+     * 400 (BAD REQUEST) for an invalid sort property.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void findAllEntities_shouldReturn_BadRequestForInvalidSorter()
+        throws Exception {
+
+        mockMvc.perform(get("/tests").param("limit", "1").param("sort", "unknownField"))
+            .andExpect(status().isBadRequest());
+
+        verifyNoMoreInteractions(serviceMock);
+    }
+
+    /**
+     * Tests whether the REST streaming interface will write all entities
+     * passed by the service as JSON array.
+     *
+     * @throws Exception
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void streamAll_shouldWrite_ArrayOfEntities()
+        throws Exception {
+        String firstValue = "value 1";
+        String secondValue = "value 2";
+
+        TestModel first = buildTestInstanceWithValue(firstValue);
+        TestModel second = buildTestInstanceWithValue(secondValue);
+
+        doAnswer(invocation -> {
+            Consumer<TestModel> consumer = invocation.getArgument(0);
+            consumer.accept(first);
+            consumer.accept(second);
+            return 2L;
+        }).when(serviceMock).streamAll(any(Consumer.class));
+
+        mockMvc.perform(get("/tests").param("stream", "true"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("application/json;charset=UTF-8"))
+            .andExpect(jsonPath("$", hasSize(2)))
+            .andExpect(jsonPath("$[0].testValue", is(firstValue)))
+            .andExpect(jsonPath("$[1].testValue", is(secondValue)));
+
+        verify(serviceMock, times(1)).streamAll(any(Consumer.class));
+        verifyNoMoreInteractions(serviceMock);
+    }
+
     /**
      * Tests whether the REST findById interface will return an expected entity
      * and a HTTP Status Code 200 (OK).
@@ -459,6 +540,79 @@ public class AbstractRestControllerTest {
         verifyNoMoreInteractions(serviceMock);
     }
 
+    /**
+     * Tests whether the REST bulk create interface (POST) returns the results
+     * of all items and a HTTP Status Code 207 (MULTI STATUS), if some items
+     * failed.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void bulkCreate_shouldReturn_ResultsAndMultiStatus() throws Exception {
+        final int id = 42;
+        String value = "bulk value";
+
+        BulkResult<TestModel> result = new BulkResult<>();
+        result.add(new BulkItemResult<>(0, id, 201,
+            objectMapper.valueToTree(buildTestInstanceWithIdAndValue(id, value)), null));
+        result.add(new BulkItemResult<>(1, null, 403, null, "Access is denied"));
+
+        when(serviceMock.bulkCreate(any(JsonNode.class), same(objectMapper))).thenReturn(result);
+
+        mockMvc.perform(
+            post("/tests/bulk").contentType(MediaType.APPLICATION_JSON).content(
+                "[" + asJson(buildTestInstanceWithValue(value)) + ", {}]"))
+            .andExpect(status().isMultiStatus())
+            .andExpect(jsonPath("$.succeeded", is(1)))
+            .andExpect(jsonPath("$.failed", is(1)))
+            .andExpect(jsonPath("$.items", hasSize(2)))
+            .andExpect(jsonPath("$.items[0].entity.testValue", is(value)))
+            .andExpect(jsonPath("$.items[1].status", is(403)))
+            .andExpect(jsonPath("$.items[1].error", is("Access is denied")));
+
+        verify(serviceMock, times(1)).bulkCreate(any(JsonNode.class), same(objectMapper));
+        verifyNoMoreInteractions(serviceMock);
+    }
+
+    /**
+     * Tests whether the REST bulk delete interface (DELETE) returns a HTTP
+     * Status Code 200 (OK), if all items succeeded.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void bulkDelete_shouldReturn_ResultsAndOK() throws Exception {
+        BulkResult<TestModel> result = new BulkResult<>();
+        result.add(new BulkItemResult<>(0, 42, 204, null, null));
+
+        when(serviceMock.bulkDelete(any(JsonNode.class))).thenReturn(result);
+
+        mockMvc.perform(
+            delete("/tests/bulk").contentType(MediaType.APPLICATION_JSON).content("[42]"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.items[0].id", is(42)))
+            .andExpect(jsonPath("$.items[0].status", is(204)));
+
+        verify(serviceMock, times(1)).bulkDelete(any(JsonNode.class));
+        verifyNoMoreInteractions(serviceMock);
+    }
+
+    /**
+     * Tests whether the REST bulk update interface (PUT) returns a HTTP Status
+     * Code 400 (BAD REQUEST), if the payload is not an array.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void bulkUpdate_shouldReturn_BadRequestIfNoArray() throws Exception {
+        mockMvc.perform(
+            put("/tests/bulk").contentType(MediaType.APPLICATION_JSON).content(
+                asJson(buildTestInstanceWithIdAndValue(42, "value"))))
+            .andExpect(status().isBadRequest());
+
+        verifyNoMoreInteractions(serviceMock);
+    }
+
     /**
      * Helper method to build a test instance without ID, but a value.
      *
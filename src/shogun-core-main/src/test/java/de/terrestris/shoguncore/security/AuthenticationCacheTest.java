@@ -0,0 +1,95 @@
+package de.terrestris.shoguncore.security;
+
+import de.terrestris.shoguncore.helper.IdHelper;
+import de.terrestris.shoguncore.model.User;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author terrestris GmbH & Co. KG
+ */
+public class AuthenticationCacheTest {
+
+    private AuthenticationCache cache;
+
+    private User user;
+
+    private Authentication authentication;
+
+    @Before
+    public void set_up() throws Exception {
+        cache = new AuthenticationCache();
+
+        user = new User("Shinji", "Kagawa", "shinji", "$2a$10$hash");
+        IdHelper.setIdOnPersistentObject(user, 42);
+
+        authentication = new UsernamePasswordAuthenticationToken(user, user.getPassword(),
+            Collections.singleton(new SimpleGrantedAuthority("ROLE_USER")));
+    }
+
+    @Test
+    public void returns_a_copy_of_cached_authentications_for_matching_credentials() {
+        cache.put("shinji", "secret", authentication, cache.getVersion());
+
+        Authentication cached = cache.get("shinji", "secret");
+
+        assertNotNull(cached);
+        assertNotSame(authentication, cached);
+        assertSame(user, cached.getPrincipal());
+        assertEquals(authentication.getAuthorities().size(), cached.getAuthorities().size());
+
+        assertNull(cache.get("shinji", "wrong"));
+        assertNull(cache.get("kagawa", "secret"));
+
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(1d / 3, cache.getHitRate(), 0.0001);
+    }
+
+    @Test
+    public void does_not_cache_unauthenticated_results() {
+        cache.put("shinji", "secret", new UsernamePasswordAuthenticationToken(user, user.getPassword()),
+            cache.getVersion());
+
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void invalidates_the_authentication_of_a_user() {
+        long version = cache.getVersion();
+        cache.put("shinji", "secret", authentication, version);
+
+        cache.invalidateUser(42);
+
+        assertNull(cache.get("shinji", "secret"));
+
+        // authentications loaded before the invalidation won't be cached
+        cache.put("shinji", "secret", authentication, version);
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void expires_and_evicts_entries() {
+        cache.setMaxEntries(1);
+        cache.put("shinji", "secret", authentication, cache.getVersion());
+        cache.put("marco", "secret", authentication, cache.getVersion());
+
+        assertEquals(1, cache.getSize());
+        assertNull(cache.get("shinji", "secret"));
+
+        cache.setTimeToLive(-1);
+        assertNull(cache.get("marco", "secret"));
+    }
+
+}
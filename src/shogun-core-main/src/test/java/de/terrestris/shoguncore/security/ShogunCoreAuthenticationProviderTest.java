@@ -33,6 +33,8 @@ import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -244,6 +246,49 @@ public class ShogunCoreAuthenticationProviderTest {
         authProvider.authenticate(authRequest);
     }
 
+    /**
+     * Tests whether a successful authentication is cached and the password
+     * is checked against the cached credentials.
+     */
+    @Test
+    public void authenticate_shouldUseCachedAuthentication() {
+        final String shogunUserName = "user";
+        final String shogunUserPass = "password";
+        final User userToAuth = createUserMock(shogunUserName, shogunUserPass);
+        userToAuth.setActive(true);
+        userToAuth.getRoles().add(new Role("ROLE_USER"));
+
+        when(userDao.findByAccountName(shogunUserName)).thenReturn(userToAuth);
+
+        AuthenticationCache authenticationCache = new AuthenticationCache();
+        authProvider.setAuthenticationCache(authenticationCache);
+
+        Authentication authRequest = mock(Authentication.class);
+        when(authRequest.getName()).thenReturn(shogunUserName);
+        when(authRequest.getCredentials()).thenReturn(shogunUserPass);
+
+        Authentication firstResult = authProvider.authenticate(authRequest);
+        Authentication secondResult = authProvider.authenticate(authRequest);
+
+        assertTrue(secondResult.isAuthenticated());
+        assertEquals(userToAuth, secondResult.getPrincipal());
+        assertEquals(new HashSet<>(firstResult.getAuthorities()), new HashSet<>(secondResult.getAuthorities()));
+        assertEquals(1, authenticationCache.getHits());
+        verify(userDao, times(1)).findByAccountName(shogunUserName);
+
+        // wrong credentials must not be authenticated by the cache
+        Authentication wrongRequest = mock(Authentication.class);
+        when(wrongRequest.getName()).thenReturn(shogunUserName);
+        when(wrongRequest.getCredentials()).thenReturn("wrongPassword");
+
+        try {
+            authProvider.authenticate(wrongRequest);
+            fail("Expected a BadCredentialsException");
+        } catch (BadCredentialsException e) {
+            assertEquals(1, authenticationCache.getHits());
+        }
+    }
+
     /**
      * Creates a simple user mock with an encrypted password.
      *
@@ -2,27 +2,48 @@ package de.terrestris.shoguncore.security.access;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Restrictions;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
+import de.terrestris.shoguncore.dao.GenericHibernateDao;
 import de.terrestris.shoguncore.dao.UserDao;
 import de.terrestris.shoguncore.helper.IdHelper;
 import de.terrestris.shoguncore.model.Application;
 import de.terrestris.shoguncore.model.PersistentObject;
+import de.terrestris.shoguncore.model.Person;
 import de.terrestris.shoguncore.model.User;
+import de.terrestris.shoguncore.model.UserGroup;
 import de.terrestris.shoguncore.model.security.Permission;
 import de.terrestris.shoguncore.security.access.entity.PersistentObjectPermissionEvaluator;
+import de.terrestris.shoguncore.security.access.entity.UserPermissionEvaluator;
 import de.terrestris.shoguncore.security.access.factory.EntityPermissionEvaluatorFactory;
+import de.terrestris.shoguncore.util.config.ConfigHolder;
 
 /**
  * @author Nils Bühner
@@ -36,6 +57,9 @@ public class ShogunCorePermissionEvaluatorTest {
     @Mock
     private UserDao<User> userDao;
 
+    @Mock
+    private ConfigHolder configHolder;
+
     @InjectMocks
     private ShogunCorePermissionEvaluator permissionEvaluator;
 
@@ -45,6 +69,11 @@ public class ShogunCorePermissionEvaluatorTest {
         MockitoAnnotations.initMocks(this);
     }
 
+    @After
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
     /**
      *
      */
@@ -315,4 +344,168 @@ public class ShogunCorePermissionEvaluatorTest {
         verifyNoMoreInteractions(authenticationMock);
     }
 
+    /**
+     * @throws NoSuchFieldException
+     * @throws IllegalAccessException
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Test
+    public void getPermissionCriterion_ShouldUseCriterionOfEntityPermissionEvaluator() throws NoSuchFieldException, IllegalAccessException {
+
+        Authentication authenticationMock = mock(Authentication.class);
+        final User user = new User("First name", "Last Name", "accountName");
+        IdHelper.setIdOnPersistentObject(user, 42);
+        when(authenticationMock.getPrincipal()).thenReturn(user);
+
+        final Criterion explicitPermissionCriterion = Restrictions.sqlRestriction("1=1");
+
+        GenericHibernateDao daoMock = mock(GenericHibernateDao.class);
+        when(daoMock.getMappedEntityClasses()).thenReturn(new HashSet<>(Collections.singletonList(Application.class)));
+        when(daoMock.createPermissionCriterion(42, Permission.READ)).thenReturn(explicitPermissionCriterion);
+
+        when(permissionEvaluatorFactoryMock.getEntityPermissionEvaluator(Application.class))
+            .thenReturn(new PersistentObjectPermissionEvaluator<>(Application.class));
+
+        Criterion permissionCriterion = permissionEvaluator.getPermissionCriterion(authenticationMock, daoMock, "READ");
+
+        assertSame(explicitPermissionCriterion, permissionCriterion);
+
+        // the "full" user is not needed to create the criterion
+        verifyNoMoreInteractions(userDao);
+    }
+
+    /**
+     *
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Test
+    public void getPermissionCriterion_ShouldReturnNullIfEntityPermissionEvaluatorDoesNotSupportIt() {
+
+        Authentication authenticationMock = mock(Authentication.class);
+
+        GenericHibernateDao daoMock = mock(GenericHibernateDao.class);
+        when(daoMock.getMappedEntityClasses()).thenReturn(new HashSet<>(Collections.singletonList(Application.class)));
+
+        // a project specific evaluator overriding hasPermission only
+        PersistentObjectPermissionEvaluator<Application> projectEvaluator =
+            new PersistentObjectPermissionEvaluator<Application>(Application.class) {
+                @Override
+                public boolean hasPermission(User user, Application entity, Permission permission) {
+                    return true;
+                }
+            };
+
+        when(permissionEvaluatorFactoryMock.getEntityPermissionEvaluator(Application.class))
+            .thenReturn(projectEvaluator);
+
+        assertFalse(projectEvaluator.isPermissionCriterionSupported());
+        assertNull(permissionEvaluator.getPermissionCriterion(authenticationMock, daoMock, "READ"));
+    }
+
+    /**
+     *
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Test
+    public void getPermissionCriterion_ShouldReturnNullIfEntityPermissionEvaluatorOverridesHooks() {
+
+        Authentication authenticationMock = mock(Authentication.class);
+
+        GenericHibernateDao daoMock = mock(GenericHibernateDao.class);
+        when(daoMock.getMappedEntityClasses()).thenReturn(new HashSet<>(Collections.singletonList(Application.class)));
+
+        // a project specific evaluator overriding the group membership only
+        PersistentObjectPermissionEvaluator<Application> projectEvaluator =
+            new PersistentObjectPermissionEvaluator<Application>(Application.class) {
+                @Override
+                protected boolean isMember(User user, UserGroup userGroup) {
+                    return true;
+                }
+            };
+
+        when(permissionEvaluatorFactoryMock.getEntityPermissionEvaluator(Application.class))
+            .thenReturn(projectEvaluator);
+
+        assertFalse(projectEvaluator.isPermissionCriterionSupported());
+        assertNull(permissionEvaluator.getPermissionCriterion(authenticationMock, daoMock, "READ"));
+    }
+
+    /**
+     *
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Test
+    public void getPermissionCriterion_ShouldReturnNullForDifferentEntityPermissionEvaluators() {
+
+        Authentication authenticationMock = mock(Authentication.class);
+
+        GenericHibernateDao daoMock = mock(GenericHibernateDao.class);
+        when(daoMock.getMappedEntityClasses()).thenReturn(new HashSet<>(Arrays.asList(Person.class, User.class)));
+
+        when(permissionEvaluatorFactoryMock.getEntityPermissionEvaluator(Person.class))
+            .thenReturn(new PersistentObjectPermissionEvaluator<>(Person.class));
+        when(permissionEvaluatorFactoryMock.getEntityPermissionEvaluator(User.class))
+            .thenReturn(new UserPermissionEvaluator<>());
+
+        assertNull(permissionEvaluator.getPermissionCriterion(authenticationMock, daoMock, "READ"));
+    }
+
+    /**
+     *
+     */
+    @Test
+    public void isSuperAdmin_ShouldCheckTheAuthorities() {
+        when(configHolder.getSuperAdminRoleName()).thenReturn("ROLE_ADMIN");
+
+        Authentication adminMock = mock(Authentication.class);
+        doReturn(Collections.singletonList(new SimpleGrantedAuthority("ROLE_ADMIN"))).when(adminMock).getAuthorities();
+
+        Authentication userMock = mock(Authentication.class);
+        doReturn(Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER"))).when(userMock).getAuthorities();
+
+        assertTrue(permissionEvaluator.isSuperAdmin(adminMock));
+        assertFalse(permissionEvaluator.isSuperAdmin(userMock));
+        assertFalse(permissionEvaluator.isSuperAdmin(null));
+    }
+
+    /**
+     * @throws NoSuchFieldException
+     * @throws IllegalAccessException
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Test
+    public void hasPermission_ShouldLoadTheUserOncePerRequest() throws NoSuchFieldException, IllegalAccessException {
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+
+        Authentication authenticationMock = mock(Authentication.class);
+        final User user = new User("First name", "Last Name", "accountName");
+        IdHelper.setIdOnPersistentObject(user, 42);
+        final Integer userId = user.getId();
+
+        final UserGroup userGroup = new UserGroup();
+        IdHelper.setIdOnPersistentObject(userGroup, 23);
+        user.getUserGroups().add(userGroup);
+
+        when(authenticationMock.getPrincipal()).thenReturn(user);
+        when(userDao.findById(userId)).thenReturn(user);
+
+        PersistentObjectPermissionEvaluator persistentObjectEvaluatorMock = mock(PersistentObjectPermissionEvaluator.class);
+        when(persistentObjectEvaluatorMock.hasPermission(any(User.class), any(PersistentObject.class), any(Permission.class)))
+            .thenReturn(true, false);
+        when(permissionEvaluatorFactoryMock.getEntityPermissionEvaluator(Application.class)).thenReturn(persistentObjectEvaluatorMock);
+
+        for (int i = 0; i < 10; i++) {
+            permissionEvaluator.hasPermission(authenticationMock, new Application("Test", "Test"), "READ");
+        }
+
+        verify(userDao, times(1)).findById(userId);
+
+        PermissionEvaluationContext context = PermissionEvaluationContext.getCurrent();
+        assertEquals(10, context.getEvaluations());
+        assertEquals(1, context.getGrantedEvaluations());
+        assertEquals(1, context.getUserLoads());
+        assertEquals(Collections.singleton(23), context.getUserGroupIds(user));
+    }
+
 }
@@ -40,6 +40,15 @@ public abstract class AbstractPersistentObjectPermissionEvaluatorTest<E extends
         this.entityToCheck = entityToCheck;
     }
 
+    /**
+     * The permissions of the built-in evaluators can always be evaluated on
+     * the database side.
+     */
+    @Test
+    public void isPermissionCriterionSupported_shouldBeTrue() {
+        assertThat(persistentObjectPermissionEvaluator.isPermissionCriterionSupported(), equalTo(true));
+    }
+
     /**
      * @throws IllegalAccessException
      * @throws NoSuchFieldException
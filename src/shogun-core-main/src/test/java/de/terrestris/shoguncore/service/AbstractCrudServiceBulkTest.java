@@ -0,0 +1,132 @@
+package de.terrestris.shoguncore.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.security.access.PermissionEvaluator;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+
+import de.terrestris.shoguncore.bulk.BulkItemResult;
+import de.terrestris.shoguncore.bulk.BulkResult;
+import de.terrestris.shoguncore.dao.MapDao;
+import de.terrestris.shoguncore.model.layer.Layer;
+import de.terrestris.shoguncore.model.map.MapControl;
+import de.terrestris.shoguncore.model.module.Map;
+import de.terrestris.shoguncore.util.json.ShogunCoreJsonObjectMapper;
+
+/**
+ * Tests the bulk methods of the {@link AbstractCrudService} with entities
+ * having lazy associations, which have to be serialized before the session
+ * is cleared.
+ *
+ * @author terrestris GmbH & Co. KG
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = {"classpath*:META-INF/spring/test-context-dao.xml"})
+@Transactional
+@Rollback(true)
+public class AbstractCrudServiceBulkTest {
+
+    @Autowired
+    @Qualifier("mapDao")
+    private MapDao<Map> mapDao;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    private final ObjectMapper objectMapper = new ShogunCoreJsonObjectMapper();
+
+    private MapService<Map, MapDao<Map>> mapService;
+
+    @Before
+    public void set_up() {
+        mapService = new MapService<>();
+        mapService.setDao(mapDao);
+        mapService.setBulkBatchSize(1);
+
+        final PermissionEvaluator permissionEvaluator = mock(PermissionEvaluator.class);
+        when(permissionEvaluator.hasPermission(any(), any(), any())).thenReturn(true);
+        ReflectionTestUtils.setField(mapService, "permissionEvaluator", permissionEvaluator);
+    }
+
+    @Test
+    public void bulkUpdate_serializesLazyAssociations() throws Exception {
+        final Map first = createMap("first");
+        final Map second = createMap("second");
+
+        final ArrayNode items = objectMapper.createArrayNode();
+        items.addObject().put("id", first.getId()).put("name", "first updated");
+        items.addObject().put("id", second.getId()).put("name", "second updated");
+
+        final BulkResult<Map> result = mapService.bulkUpdate(items, objectMapper);
+
+        assertEquals(2, result.getSucceeded());
+
+        // the session has been cleared, so the lazy associations of the
+        // updated maps can't be initialized anymore
+        final JsonNode json = objectMapper.valueToTree(result);
+        assertEquals("first updated", json.at("/items/0/entity/name").asText());
+        assertEquals("second updated", json.at("/items/1/entity/name").asText());
+        assertEquals(1, json.at("/items/0/entity/mapLayers").size());
+        assertEquals(1, json.at("/items/1/entity/mapControls").size());
+    }
+
+    @Test
+    public void bulkCreate_serializesCreatedEntities() throws Exception {
+        final ArrayNode items = objectMapper.createArrayNode();
+        items.addObject().put("name", "created");
+
+        final BulkResult<Map> result = mapService.bulkCreate(items, objectMapper);
+
+        final BulkItemResult<Map> item = result.getItems().get(0);
+        assertTrue(item.isSuccess());
+        assertEquals("created", item.getEntity().get("name").asText());
+        assertEquals(item.getId().intValue(), item.getEntity().get("id").asInt());
+        assertEquals(0, item.getEntity().get("mapLayers").size());
+    }
+
+    /**
+     * Creates a map with one layer and one control and clears the session,
+     * so the associations will be loaded lazily.
+     */
+    private Map createMap(String name) {
+        final Session session = sessionFactory.getCurrentSession();
+
+        final Layer layer = new Layer(name + " layer");
+        session.save(layer);
+
+        final MapControl control = new MapControl(name + " control");
+        session.save(control);
+
+        final Map map = new Map(name, null, new ArrayList<>(Collections.singletonList(layer)));
+        map.getMapControls().add(control);
+        session.save(map);
+
+        session.flush();
+        session.clear();
+
+        return map;
+    }
+
+}
@@ -7,12 +7,15 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
@@ -25,17 +28,27 @@ import org.hamcrest.Matcher;
 import org.hamcrest.collection.IsIterableContainingInAnyOrder;
 import org.joda.time.DateTime;
 import org.joda.time.ReadableDateTime;
+import org.hibernate.criterion.Criterion;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
+import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.springframework.security.access.PermissionEvaluator;
+import org.springframework.security.access.expression.DenyAllPermissionEvaluator;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.terrestris.shoguncore.bulk.BulkResult;
 import de.terrestris.shoguncore.dao.GenericHibernateDao;
 import de.terrestris.shoguncore.helper.IdHelper;
 import de.terrestris.shoguncore.model.PersistentObject;
+import de.terrestris.shoguncore.util.json.ShogunCoreJsonObjectMapper;
 
 /**
  * Abstract (parent) test for the {@link AbstractCrudService}.
@@ -52,6 +65,12 @@ public abstract class AbstractCrudServiceTest<E extends PersistentObject, D exte
 
     protected D dao;
 
+    /**
+     * Grants all permissions, unless stubbed otherwise.
+     */
+    @Mock
+    protected PermissionEvaluator permissionEvaluator;
+
     @InjectMocks
     protected S crudService;
 
@@ -63,6 +82,7 @@ public abstract class AbstractCrudServiceTest<E extends PersistentObject, D exte
         this.crudService = getCrudService();
         // Process mock annotations
         MockitoAnnotations.initMocks(this);
+        when(permissionEvaluator.hasPermission(any(), any(), any())).thenReturn(true);
     }
 
     /**
@@ -271,6 +291,24 @@ public abstract class AbstractCrudServiceTest<E extends PersistentObject, D exte
         verify(dao, times(1)).findAll();
     }
 
+    /**
+     * Tests whether no entities are returned if no permission evaluator is
+     * configured.
+     */
+    @Test
+    public void findAll_shouldFindNothingWithoutPermissionEvaluator() {
+
+        ReflectionTestUtils.setField(crudService, "permissionEvaluator", new DenyAllPermissionEvaluator());
+
+        List<E> resultList = crudService.findAll();
+
+        assertNotNull(resultList);
+        assertTrue(resultList.isEmpty());
+
+        verify(dao, never()).findAll();
+        verify(dao, times(1)).findByCriteria(any(Criterion.class));
+    }
+
     /**
      * @throws IllegalAccessException
      * @throws NoSuchFieldException
@@ -392,4 +430,104 @@ public abstract class AbstractCrudServiceTest<E extends PersistentObject, D exte
         verify(dao, times(1)).findAllWithCollectionContaining(fieldName, implToTest);
     }
 
+    /**
+     * Tests whether items without (valid) IDs, duplicates and unknown
+     * entities are reported as failed items of a bulk update.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void bulkUpdate_shouldReportFailedItems() throws Exception {
+        final ObjectMapper objectMapper = new ShogunCoreJsonObjectMapper();
+        final JsonNode items = objectMapper.readTree("[{}, {\"id\": 4711}, {\"id\": 4711}, 42]");
+
+        BulkResult<E> result = crudService.bulkUpdate(items, objectMapper);
+
+        assertEquals(0, result.getSucceeded());
+        assertEquals(4, result.getFailed());
+        assertEquals(400, result.getItems().get(0).getStatus());
+        assertEquals(404, result.getItems().get(1).getStatus());
+        assertEquals(400, result.getItems().get(2).getStatus());
+        assertEquals(400, result.getItems().get(3).getStatus());
+
+        verify(dao, times(0)).saveOrUpdate(any());
+        verify(dao, times(1)).flushAndClear();
+    }
+
+    /**
+     * Tests whether a bulk delete deletes the found entities (loaded with one
+     * query) and reports the unknown ones.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void bulkDelete_shouldDeleteFoundEntities() throws Exception {
+        final Integer id = 42;
+        IdHelper.setIdOnPersistentObject(implToTest, id);
+
+        final List<E> found = new ArrayList<>();
+        found.add(implToTest);
+        doReturn(found).when(dao).findByCriteria(any(Criterion.class));
+
+        final JsonNode items = new ShogunCoreJsonObjectMapper().readTree("[42, {\"id\": 4711}]");
+
+        BulkResult<E> result = crudService.bulkDelete(items);
+
+        assertEquals(1, result.getSucceeded());
+        assertEquals(1, result.getFailed());
+        assertEquals(id, result.getItems().get(0).getId());
+        assertEquals(204, result.getItems().get(0).getStatus());
+        assertEquals(Integer.valueOf(4711), result.getItems().get(1).getId());
+        assertEquals(404, result.getItems().get(1).getStatus());
+
+        verify(dao, times(1)).findByCriteria(any(Criterion.class));
+        verify(dao, times(1)).delete(implToTest);
+        verify(dao, times(1)).flushAndClear();
+    }
+
+    /**
+     * Tests whether the items of a bulk delete are checked with the
+     * configured permission evaluator.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void bulkDelete_shouldCheckThePermissionOfEachItem() throws Exception {
+        final Integer id = 42;
+        IdHelper.setIdOnPersistentObject(implToTest, id);
+
+        final List<E> found = new ArrayList<>();
+        found.add(implToTest);
+        doReturn(found).when(dao).findByCriteria(any(Criterion.class));
+
+        when(permissionEvaluator.hasPermission(any(), any(), any())).thenReturn(false);
+
+        BulkResult<E> result = crudService.bulkDelete(new ShogunCoreJsonObjectMapper().readTree("[42]"));
+
+        assertEquals(0, result.getSucceeded());
+        assertEquals(403, result.getItems().get(0).getStatus());
+
+        verify(permissionEvaluator, times(1)).hasPermission(any(), any(), any());
+        verify(dao, never()).delete(any());
+    }
+
+    /**
+     * Tests whether bulk creates are denied if no permission evaluator is
+     * configured.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void bulkCreate_shouldBeDeniedWithoutPermissionEvaluator() throws Exception {
+        ReflectionTestUtils.setField(crudService, "permissionEvaluator", new DenyAllPermissionEvaluator());
+
+        final ObjectMapper objectMapper = new ShogunCoreJsonObjectMapper();
+        BulkResult<E> result = crudService.bulkCreate(objectMapper.readTree("[{}]"), objectMapper);
+
+        assertEquals(0, result.getSucceeded());
+        assertEquals(403, result.getItems().get(0).getStatus());
+
+        verify(dao, never()).saveOrUpdate(any());
+    }
+
 }
@@ -2,15 +2,21 @@ package de.terrestris.shoguncore.service;
 
 import de.terrestris.shoguncore.dao.FileDao;
 import de.terrestris.shoguncore.model.File;
+import de.terrestris.shoguncore.util.blob.BlobStore;
 import org.junit.Test;
 import org.springframework.mock.web.MockMultipartFile;
 
+import java.io.InputStream;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
 
 public class FileServiceTest extends PermissionAwareCrudServiceTest<File, FileDao<File>, FileService<File, FileDao<File>>> {
 
+    private static final String BLOB_KEY = "ed7002b439e9ac845f22357d822bac1444730fbdb6016d3ec9432297b9ec9f73";
+
     /**
      * @throws Exception
      */
@@ -59,6 +65,60 @@ public class FileServiceTest extends PermissionAwareCrudServiceTest<File, FileDa
         assertEquals(persistedFile.getFileType(), fileType);
     }
 
+    /**
+     * @throws Exception
+     */
+    @Test
+    public void upload_storesTheContentInTheBlobStore() throws Exception {
+        BlobStore blobStore = mock(BlobStore.class);
+        when(blobStore.isEnabled()).thenReturn(true);
+        when(blobStore.put(any(InputStream.class))).thenReturn(BLOB_KEY);
+        crudService.setBlobStore(blobStore);
+
+        MockMultipartFile mockMultipartFile = new MockMultipartFile(
+            "fileData",
+            "fileName.txt",
+            "text/plain",
+            "Just some mockup bytes".getBytes());
+
+        doNothing().when(dao).saveOrUpdate(any(File.class));
+
+        File persistedFile = crudService.uploadFile(mockMultipartFile);
+
+        verify(blobStore, times(1)).put(any(InputStream.class));
+        verify(dao, times(1)).saveOrUpdate(any(File.class));
+
+        assertNull(persistedFile.getFile());
+        assertEquals(BLOB_KEY, persistedFile.getBlobKey());
+        assertEquals("fileName.txt", persistedFile.getFileName());
+    }
+
+    /**
+     * @throws Exception
+     */
+    @Test
+    public void delete_deletesUnreferencedBlobs() throws Exception {
+        BlobStore blobStore = mock(BlobStore.class);
+        crudService.setBlobStore(blobStore);
+
+        File file = new File();
+        file.setBlobKey(BLOB_KEY);
+
+        when(dao.isBlobReferenced(BLOB_KEY)).thenReturn(false);
+
+        crudService.delete(file);
+
+        verify(dao, times(1)).delete(file);
+        verify(blobStore, times(1)).delete(eq(BLOB_KEY), anyLong());
+
+        // blobs referenced by other files must be kept
+        when(dao.isBlobReferenced(BLOB_KEY)).thenReturn(true);
+
+        crudService.delete(file);
+
+        verify(blobStore, times(1)).delete(eq(BLOB_KEY), anyLong());
+    }
+
     @Test(expected = Exception.class)
     public void upload_withError() throws Exception {
         final String fileName = "fileName.txt";
@@ -6,11 +6,14 @@ import de.terrestris.shoguncore.util.enumeration.HttpEnum;
 import de.terrestris.shoguncore.util.enumeration.InterceptorEnum;
 import de.terrestris.shoguncore.util.enumeration.OgcEnum;
 import de.terrestris.shoguncore.util.http.HttpUtil;
+import de.terrestris.shoguncore.util.interceptor.CapabilitiesCache;
 import de.terrestris.shoguncore.util.interceptor.InterceptorException;
+import de.terrestris.shoguncore.util.interceptor.InterceptorRuleIndex;
 import de.terrestris.shoguncore.util.interceptor.MutableHttpServletRequest;
 import de.terrestris.shoguncore.util.interceptor.OgcMessage;
 import de.terrestris.shoguncore.util.interceptor.OgcMessageDistributor;
 import de.terrestris.shoguncore.util.model.Response;
+import de.terrestris.shoguncore.util.model.StreamingResponse;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.http.Header;
@@ -21,12 +24,16 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.powermock.reflect.Whitebox;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockHttpServletRequest;
 
 import java.io.IOException;
@@ -34,9 +41,12 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -99,13 +109,57 @@ public class GeoServerInterceptorServiceTest {
         when(ogcMessageDistributor.distributeToResponseInterceptor(
             any(MutableHttpServletRequest.class), any(Response.class), any(OgcMessage.class))).thenReturn(resp);
 
-        when(ruleService.findAllRulesForServiceAndEvent(
-            any(String.class), any(String.class))).thenReturn(
-            getTestInterceptorRulesForServiceAndEvent("WMS", "REQUEST"));
+        when(ruleService.getRuleIndex()).thenReturn(new InterceptorRuleIndex(
+            getTestInterceptorRulesForServiceAndEvent("WMS", "REQUEST")));
         Response got = gsInterceptorService.interceptGeoServerRequest(httpRequest);
         assertEquals(resp, got);
     }
 
+    @Test(expected = InterceptorException.class)
+    public void send_streaming_request_throws_on_invalid_uri() throws InterceptorException,
+        HttpException {
+
+        MockHttpServletRequest httpRequest = new MockHttpServletRequest();
+        httpRequest.setRequestURI("http://example.com/geoserver action");
+        httpRequest.setMethod("GET");
+
+        GeoServerInterceptorService.sendStreamingRequest(new MutableHttpServletRequest(httpRequest));
+    }
+
+    @Test
+    public void closes_streaming_response_on_error() throws InterceptorException,
+        URISyntaxException, HttpException, IOException {
+
+        MockHttpServletRequest httpRequest = new MockHttpServletRequest();
+        httpRequest.setRequestURI("http://example.com/geoserver.action");
+        httpRequest.setParameter("SERVICE", "WMS");
+        httpRequest.setParameter("REQUEST", "GetMap");
+        httpRequest.setParameter("LAYERS", "bvb:shinji");
+        httpRequest.setMethod("GET");
+
+        StreamingResponse resp = Mockito.mock(StreamingResponse.class);
+        when(resp.getHeaders()).thenThrow(new IllegalStateException("broken headers"));
+
+        PowerMockito.mockStatic(HttpUtil.class);
+        when(HttpUtil.getAsStream(any(URI.class), any(Header[].class))).thenReturn(resp);
+
+        MutableHttpServletRequest mutableRequest = new MutableHttpServletRequest(httpRequest);
+
+        when(ogcMessageDistributor.distributeToRequestInterceptor(
+            any(MutableHttpServletRequest.class), any(OgcMessage.class))).thenReturn(mutableRequest);
+        when(ogcMessageDistributor.isResponsePassThrough(any(OgcMessage.class))).thenReturn(true);
+
+        when(ruleService.getRuleIndex()).thenReturn(new InterceptorRuleIndex(
+            getTestInterceptorRulesForServiceAndEvent("WMS", "REQUEST")));
+
+        try {
+            gsInterceptorService.interceptGeoServerRequest(httpRequest);
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException e) {
+            Mockito.verify(resp).close();
+        }
+    }
+
     @Test
     public void send_wms_get_to_reflector() throws InterceptorException,
         URISyntaxException, HttpException, IOException {
@@ -128,15 +182,77 @@ public class GeoServerInterceptorServiceTest {
         when(ogcMessageDistributor.distributeToResponseInterceptor(
             any(MutableHttpServletRequest.class), any(Response.class), any(OgcMessage.class))).thenReturn(resp);
 
-        when(ruleService.findAllRulesForServiceAndEvent(
-            any(String.class), any(String.class))).thenReturn(
-            getTestInterceptorRulesForServiceAndEvent("WMS", "REQUEST"));
+        when(ruleService.getRuleIndex()).thenReturn(new InterceptorRuleIndex(
+            getTestInterceptorRulesForServiceAndEvent("WMS", "REQUEST")));
 
         Response got = gsInterceptorService.interceptGeoServerRequest(httpRequest);
 
         assertEquals(resp, got);
     }
 
+    @Test
+    public void intercepts_cached_capabilities_on_every_request() throws InterceptorException,
+        URISyntaxException, HttpException, IOException {
+
+        gsInterceptorService.capabilitiesCache = new CapabilitiesCache();
+
+        MockHttpServletRequest httpRequest = new MockHttpServletRequest();
+        httpRequest.setRequestURI("http://example.com/geoserver.action/bvb");
+        httpRequest.setParameter("SERVICE", "WMS");
+        httpRequest.setParameter("REQUEST", "GetCapabilities");
+        httpRequest.setParameter("LAYERS", "bvb:shinji");
+        httpRequest.setMethod("GET");
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_XML);
+        Response upstreamResponse = new Response(HttpStatus.OK, headers,
+            "<WMS_Capabilities/>".getBytes(StandardCharsets.UTF_8));
+
+        final AtomicInteger upstreamRequests = new AtomicInteger();
+        PowerMockito.mockStatic(HttpUtil.class);
+        when(HttpUtil.get(any(URI.class), any(Header[].class))).thenAnswer(invocation -> {
+            upstreamRequests.incrementAndGet();
+            return upstreamResponse;
+        });
+
+        MutableHttpServletRequest mutableRequest = new MutableHttpServletRequest(httpRequest);
+
+        when(ogcMessageDistributor.distributeToRequestInterceptor(
+            any(MutableHttpServletRequest.class), any(OgcMessage.class))).thenReturn(mutableRequest);
+
+        final AtomicInteger interceptedResponses = new AtomicInteger();
+        when(ogcMessageDistributor.distributeToResponseInterceptor(
+            any(MutableHttpServletRequest.class), any(Response.class), any(OgcMessage.class))).thenAnswer(invocation -> {
+                Response response = invocation.getArgument(1);
+                response.setBody(("<WMS_Capabilities user=\"" + interceptedResponses.incrementAndGet() + "\"/>")
+                    .getBytes(StandardCharsets.UTF_8));
+                return response;
+            });
+
+        List<InterceptorRule> rules = new ArrayList<>();
+        for (String[] ruleSpecs : new String[][]{{"REQUEST", "ALLOW"}, {"RESPONSE", "MODIFY"}}) {
+            InterceptorRule rule = new InterceptorRule();
+            rule.setService(OgcEnum.ServiceType.WMS);
+            rule.setOperation(OgcEnum.OperationType.GET_CAPABILITIES);
+            rule.setEvent(HttpEnum.EventType.fromString(ruleSpecs[0]));
+            rule.setRule(InterceptorEnum.RuleType.fromString(ruleSpecs[1]));
+            rules.add(rule);
+        }
+        when(ruleService.getRuleIndex()).thenReturn(new InterceptorRuleIndex(rules));
+
+        Response first = gsInterceptorService.interceptGeoServerRequest(httpRequest, Optional.of("bvb"));
+        Response second = gsInterceptorService.interceptGeoServerRequest(httpRequest, Optional.of("bvb"));
+
+        assertEquals(1, upstreamRequests.get());
+        assertEquals(2, interceptedResponses.get());
+        assertEquals("<WMS_Capabilities user=\"1\"/>", new String(first.getBody(), StandardCharsets.UTF_8));
+        assertEquals("<WMS_Capabilities user=\"2\"/>", new String(second.getBody(), StandardCharsets.UTF_8));
+
+        // the ETags are based on the intercepted documents
+        assertNotNull(first.getHeaders().getETag());
+        assertNotEquals(first.getHeaders().getETag(), second.getHeaders().getETag());
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     public void send_post_kvp() throws URISyntaxException, HttpException,
@@ -162,9 +278,8 @@ public class GeoServerInterceptorServiceTest {
         when(ogcMessageDistributor.distributeToResponseInterceptor(
             any(MutableHttpServletRequest.class), any(Response.class), any(OgcMessage.class))).thenReturn(resp);
 
-        when(ruleService.findAllRulesForServiceAndEvent(
-            any(String.class), any(String.class))).thenReturn(
-            getTestInterceptorRulesForServiceAndEvent("WMS", "REQUEST"));
+        when(ruleService.getRuleIndex()).thenReturn(new InterceptorRuleIndex(
+            getTestInterceptorRulesForServiceAndEvent("WMS", "REQUEST")));
 
         Response got = gsInterceptorService.interceptGeoServerRequest(httpRequest);
 
@@ -204,9 +319,8 @@ public class GeoServerInterceptorServiceTest {
         when(ogcMessageDistributor.distributeToResponseInterceptor(
             any(MutableHttpServletRequest.class), any(Response.class), any(OgcMessage.class))).thenReturn(resp);
 
-        when(ruleService.findAllRulesForServiceAndEvent(
-            any(String.class), any(String.class))).thenReturn(
-            getTestInterceptorRulesForServiceAndEvent("WMS", "REQUEST"));
+        when(ruleService.getRuleIndex()).thenReturn(new InterceptorRuleIndex(
+            getTestInterceptorRulesForServiceAndEvent("WMS", "REQUEST")));
 
         Response got = gsInterceptorService.interceptGeoServerRequest(httpRequest);
 
@@ -248,9 +362,8 @@ public class GeoServerInterceptorServiceTest {
         when(ogcMessageDistributor.distributeToResponseInterceptor(
             any(MutableHttpServletRequest.class), any(Response.class), any(OgcMessage.class))).thenReturn(resp);
 
-        when(ruleService.findAllRulesForServiceAndEvent(
-            any(String.class), any(String.class))).thenReturn(
-            getTestInterceptorRulesForServiceAndEvent("WFS", "REQUEST"));
+        when(ruleService.getRuleIndex()).thenReturn(new InterceptorRuleIndex(
+            getTestInterceptorRulesForServiceAndEvent("WFS", "REQUEST")));
 
         Response got = gsInterceptorService.interceptGeoServerRequest(httpRequest);
 
@@ -299,9 +412,8 @@ public class GeoServerInterceptorServiceTest {
         when(ogcMessageDistributor.distributeToResponseInterceptor(
             any(MutableHttpServletRequest.class), any(Response.class), any(OgcMessage.class))).thenReturn(resp);
 
-        when(ruleService.findAllRulesForServiceAndEvent(
-            any(String.class), any(String.class))).thenReturn(
-            getTestInterceptorRulesForServiceAndEvent("WFS", "REQUEST"));
+        when(ruleService.getRuleIndex()).thenReturn(new InterceptorRuleIndex(
+            getTestInterceptorRulesForServiceAndEvent("WFS", "REQUEST")));
 
         Response got = gsInterceptorService.interceptGeoServerRequest(httpRequest);
 
@@ -520,9 +632,8 @@ public class GeoServerInterceptorServiceTest {
     private InterceptorRule getMostSpecificRule(String service, String operation,
                                                 String endPoint, String event) throws Exception {
 
-        when(ruleService.findAllRulesForServiceAndEvent(
-            any(String.class), any(String.class))).thenReturn(
-            getTestInterceptorRulesForServiceAndEvent(service, event));
+        when(ruleService.getRuleIndex()).thenReturn(new InterceptorRuleIndex(
+            getTestInterceptorRulesForServiceAndEvent(service, event)));
 
         // use powermock whitebox reflection to test private class
         InterceptorRule mostSpecificRule = Whitebox.invokeMethod(
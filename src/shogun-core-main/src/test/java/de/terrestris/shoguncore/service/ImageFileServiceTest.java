@@ -1,6 +1,7 @@
 package de.terrestris.shoguncore.service;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doNothing;
@@ -11,6 +12,7 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.util.Arrays;
 
@@ -21,6 +23,7 @@ import org.springframework.mock.web.MockMultipartFile;
 
 import de.terrestris.shoguncore.dao.ImageFileDao;
 import de.terrestris.shoguncore.model.ImageFile;
+import de.terrestris.shoguncore.util.enumeration.ImageFileEnum.ThumbnailStatus;
 
 public class ImageFileServiceTest extends PermissionAwareCrudServiceTest<ImageFile, ImageFileDao<ImageFile>, ImageFileService<ImageFile, ImageFileDao<ImageFile>>> {
 
@@ -142,11 +145,6 @@ public class ImageFileServiceTest extends PermissionAwareCrudServiceTest<ImageFi
             "image/jpeg",
             imageByteArray);
 
-        byte[] thumbnail = ImageFileService.scaleImage(
-            imageByteArray,
-            "jpg",
-            100);
-
         doNothing().when(dao).saveOrUpdate(any(ImageFile.class));
 
         persistedImage = crudService.saveImage(
@@ -160,9 +158,49 @@ public class ImageFileServiceTest extends PermissionAwareCrudServiceTest<ImageFi
 
         verify(dao, times(1)).findById(imageId);
 
-        assertTrue(Arrays.equals(retrievedImage.getThumbnail(), thumbnail));
+        BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(retrievedImage.getThumbnail()));
+
+        assertEquals(100, thumbnail.getWidth());
+        assertEquals(100, thumbnail.getHeight());
+        assertEquals(ThumbnailStatus.READY, retrievedImage.getThumbnailStatus());
         assertEquals(retrievedImage.getFileName(), "fileName.jpg");
         assertEquals(retrievedImage.getFileType(), "image/jpeg");
     }
 
+    @Test
+    public void createThumbnail_inConfiguredSize() throws Exception {
+
+        BufferedImage bimg = new BufferedImage(
+            800, 400, BufferedImage.TYPE_3BYTE_BGR);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(bimg, "png", baos);
+
+        MockMultipartFile mockMultipartFile = new MockMultipartFile(
+            "fileData",
+            "fileName.png",
+            "image/png",
+            baos.toByteArray());
+
+        doNothing().when(dao).saveOrUpdate(any(ImageFile.class));
+
+        crudService.setThumbnailSizes("100, 300");
+
+        ImageFile persistedImage = crudService.saveImage(mockMultipartFile, false, 100);
+
+        assertEquals(Integer.valueOf(800), persistedImage.getWidth());
+        assertEquals(Integer.valueOf(400), persistedImage.getHeight());
+        assertNull(persistedImage.getThumbnailStatus());
+
+        BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(
+            crudService.createThumbnail(persistedImage, 300)));
+
+        assertEquals(300, thumbnail.getWidth());
+        assertEquals(150, thumbnail.getHeight());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createThumbnail_rejectsUnconfiguredSize() throws Exception {
+        crudService.createThumbnail(new ImageFile(), 123);
+    }
+
 }
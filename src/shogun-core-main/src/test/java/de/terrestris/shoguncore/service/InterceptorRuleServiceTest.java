@@ -0,0 +1,88 @@
+package de.terrestris.shoguncore.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import de.terrestris.shoguncore.dao.InterceptorRuleDao;
+import de.terrestris.shoguncore.model.interceptor.InterceptorRule;
+import de.terrestris.shoguncore.util.enumeration.HttpEnum;
+import de.terrestris.shoguncore.util.enumeration.InterceptorEnum;
+import de.terrestris.shoguncore.util.enumeration.OgcEnum;
+import de.terrestris.shoguncore.util.interceptor.CapabilitiesCache;
+import de.terrestris.shoguncore.util.interceptor.InterceptorRuleIndex;
+
+public class InterceptorRuleServiceTest extends PermissionAwareCrudServiceTest<InterceptorRule,
+    InterceptorRuleDao<InterceptorRule>, InterceptorRuleService<InterceptorRule, InterceptorRuleDao<InterceptorRule>>> {
+
+    @Mock
+    private CapabilitiesCache capabilitiesCache;
+
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * @throws Exception
+     */
+    public void setUpImplToTest() throws Exception {
+        implToTest = new InterceptorRule();
+    }
+
+    @Before
+    public void setUpTransactionManager() {
+        transactionManager = mock(PlatformTransactionManager.class);
+        crudService.setTransactionManager(transactionManager);
+    }
+
+    @Override
+    protected InterceptorRuleService<InterceptorRule, InterceptorRuleDao<InterceptorRule>> getCrudService() {
+        return new InterceptorRuleService<InterceptorRule, InterceptorRuleDao<InterceptorRule>>();
+    }
+
+    @Test
+    public void getRuleIndex_isBuiltOnceInATransaction() {
+        when(dao.findAll()).thenReturn(Collections.singletonList(new InterceptorRule(HttpEnum.EventType.REQUEST,
+            InterceptorEnum.RuleType.ALLOW, OgcEnum.ServiceType.WMS, null, null)));
+
+        InterceptorRuleIndex index = crudService.getRuleIndex();
+
+        assertEquals(1, index.size());
+        assertSame(index, crudService.getRuleIndex());
+
+        verify(dao, times(1)).findAll();
+        verify(transactionManager, times(1)).getTransaction(any(TransactionDefinition.class));
+    }
+
+    @Test
+    public void saveOrUpdate_invalidatesRuleIndexAndCapabilities() {
+        when(dao.findAll()).thenReturn(Collections.emptyList());
+
+        InterceptorRuleIndex index = crudService.getRuleIndex();
+
+        crudService.saveOrUpdate(implToTest);
+
+        assertNotSame(index, crudService.getRuleIndex());
+
+        verify(dao, times(2)).findAll();
+        verify(capabilitiesCache, times(1)).invalidateAll();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected Class<InterceptorRuleDao<InterceptorRule>> getDaoClass() {
+        return (Class<InterceptorRuleDao<InterceptorRule>>) new InterceptorRuleDao<InterceptorRule>().getClass();
+    }
+
+}
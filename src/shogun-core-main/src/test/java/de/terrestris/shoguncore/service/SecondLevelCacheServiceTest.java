@@ -0,0 +1,93 @@
+package de.terrestris.shoguncore.service;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+
+import de.terrestris.shoguncore.model.PersistentObject;
+import de.terrestris.shoguncore.model.Role;
+import de.terrestris.shoguncore.service.SecondLevelCacheService.RegionStatistics;
+
+/**
+ * @author terrestris GmbH & Co. KG
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = {"classpath*:META-INF/spring/test-context-dao.xml"})
+@Transactional
+@Rollback(true)
+public class SecondLevelCacheServiceTest {
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private SecondLevelCacheService service;
+
+    @Before
+    public void set_up() {
+        service = new SecondLevelCacheService();
+        ReflectionTestUtils.setField(service, "sessionFactory", sessionFactory);
+        service.setTransactionManager(transactionManager);
+        service.setWarmUpClasses(new Class<?>[]{Role.class});
+
+        sessionFactory.getStatistics().setStatisticsEnabled(true);
+    }
+
+    @After
+    public void tear_down() {
+        sessionFactory.getStatistics().setStatisticsEnabled(false);
+        sessionFactory.getCache().evictAllRegions();
+    }
+
+    @Test
+    public void warmUp_loads_the_configured_entities_into_the_cache() {
+        final Session session = sessionFactory.getCurrentSession();
+
+        final Role role = new Role("ROLE_WARM_UP");
+        session.save(role);
+        session.flush();
+        session.clear();
+        sessionFactory.getCache().evictAllRegions();
+
+        assertFalse(sessionFactory.getCache().containsEntity(Role.class, role.getId()));
+
+        assertTrue(service.warmUp() >= 1);
+
+        assertTrue(sessionFactory.getCache().containsEntity(Role.class, role.getId()));
+    }
+
+    @Test
+    public void permissions_of_all_entities_share_one_region() {
+        final List<RegionStatistics> statistics = service.getRegionStatistics();
+
+        final Set<String> regionNames = new HashSet<>();
+        for (RegionStatistics regionStatistics : statistics) {
+            regionNames.add(regionStatistics.getRegionName());
+        }
+
+        assertTrue(regionNames.contains(Role.class.getName()));
+        assertTrue(regionNames.contains(PersistentObject.USER_PERMISSIONS_REGION));
+        assertTrue(regionNames.contains(PersistentObject.GROUP_PERMISSIONS_REGION));
+        assertFalse(regionNames.contains(Role.class.getName() + ".userPermissions"));
+    }
+
+}
@@ -0,0 +1,113 @@
+package de.terrestris.shoguncore.util.application;
+
+import de.terrestris.shoguncore.util.application.ApplicationSnapshotCache.Snapshot;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author terrestris GmbH & Co. KG
+ */
+public class ApplicationSnapshotCacheTest {
+
+    private static final byte[] JSON = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+
+    private ApplicationSnapshotCache cache;
+
+    @Before
+    public void set_up() {
+        cache = new ApplicationSnapshotCache();
+    }
+
+    @Test
+    public void returns_cached_snapshots() {
+        Snapshot snapshot = cache.put(1, JSON, Arrays.asList(1, 2, 3), cache.getVersion());
+
+        assertSame(snapshot, cache.get(1));
+        assertNull(cache.get(2));
+
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(JSON.length, cache.getTotalBytes());
+    }
+
+    @Test
+    public void snapshots_have_a_content_based_etag() {
+        Snapshot snapshot = cache.put(1, JSON, Collections.singleton(1), cache.getVersion());
+        Snapshot sameContent = new Snapshot(2, JSON.clone(), Collections.singleton(2));
+        Snapshot otherContent = new Snapshot(1, "{}".getBytes(StandardCharsets.UTF_8), Collections.singleton(1));
+
+        assertNotNull(snapshot.getETag());
+        assertEquals(snapshot.getETag(), sameContent.getETag());
+        assertNotEquals(snapshot.getETag(), otherContent.getETag());
+        assertEquals(0, snapshot.getLastModified() % 1000);
+    }
+
+    @Test
+    public void invalidates_the_snapshots_depending_on_changed_entities() {
+        cache.put(1, JSON, Arrays.asList(1, 10, 11), cache.getVersion());
+        cache.put(2, JSON, Arrays.asList(2, 11), cache.getVersion());
+        cache.put(3, JSON, Arrays.asList(3, 12), cache.getVersion());
+
+        cache.invalidate(Collections.singleton(11));
+
+        assertNull(cache.get(1));
+        assertNull(cache.get(2));
+        assertNotNull(cache.get(3));
+        assertEquals(1, cache.getSize());
+        assertEquals(JSON.length, cache.getTotalBytes());
+
+        cache.invalidate(Collections.singleton(42));
+        assertEquals(1, cache.getSize());
+
+        cache.invalidateAll();
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getTotalBytes());
+    }
+
+    @Test
+    public void does_not_cache_snapshots_serialized_before_an_invalidation() {
+        long version = cache.getVersion();
+
+        cache.invalidate(Collections.singleton(10));
+
+        Snapshot snapshot = cache.put(1, JSON, Arrays.asList(1, 10), version);
+
+        assertNotNull(snapshot);
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void evicts_the_least_recently_used_snapshots() {
+        cache.setMaxBytes(2 * JSON.length);
+
+        cache.put(1, JSON, Collections.singleton(1), cache.getVersion());
+        cache.put(2, JSON, Collections.singleton(2), cache.getVersion());
+        cache.get(1);
+        cache.put(3, JSON, Collections.singleton(3), cache.getVersion());
+
+        assertNotNull(cache.get(1));
+        assertNull(cache.get(2));
+        assertNotNull(cache.get(3));
+        assertEquals(2 * JSON.length, cache.getTotalBytes());
+    }
+
+    @Test
+    public void does_not_cache_if_disabled() {
+        cache.setEnabled(false);
+
+        assertNotNull(cache.put(1, JSON, Collections.singleton(1), cache.getVersion()));
+        assertNull(cache.get(1));
+        assertEquals(0, cache.getSize());
+    }
+
+}
@@ -0,0 +1,108 @@
+package de.terrestris.shoguncore.util.blob;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author terrestris GmbH & Co. KG
+ */
+public class LocalBlobStoreTest {
+
+    /**
+     * The SHA-256 digest of "content".
+     */
+    private static final String KEY = "ed7002b439e9ac845f22357d822bac1444730fbdb6016d3ec9432297b9ec9f73";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LocalBlobStore store;
+
+    @Before
+    public void set_up() {
+        store = new LocalBlobStore();
+        store.setDirectory(folder.getRoot().getAbsolutePath());
+        store.init();
+    }
+
+    private static String read(FileChannel channel) throws IOException {
+        try (FileChannel content = channel) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) content.size());
+            content.read(buffer);
+            return new String(buffer.array(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> stream = Files.walk(folder.getRoot().toPath())) {
+            return stream.filter(Files::isRegularFile).count();
+        }
+    }
+
+    @Test
+    public void stores_content_by_its_digest() throws IOException {
+        String key = store.put(new ByteArrayInputStream("content".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(KEY, key);
+        assertTrue(store.exists(key));
+        assertEquals("content", read(store.open(key)));
+        assertTrue(Files.isRegularFile(folder.getRoot().toPath().resolve("ed").resolve("70").resolve(KEY)));
+    }
+
+    @Test
+    public void stores_equal_content_once() throws IOException {
+        String key = store.put("content".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(key, store.put("content".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(1, countFiles());
+    }
+
+    @Test
+    public void does_not_delete_content_stored_again() throws IOException {
+        long checkTime = System.currentTimeMillis();
+        String key = store.put("content".getBytes(StandardCharsets.UTF_8));
+
+        assertFalse(store.delete(key, checkTime));
+        assertTrue(store.exists(key));
+
+        assertTrue(store.delete(key, System.currentTimeMillis() + 5000));
+        assertFalse(store.exists(key));
+    }
+
+    @Test(expected = NoSuchFileException.class)
+    public void fails_to_open_missing_content() throws IOException {
+        store.open(KEY);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejects_invalid_keys() throws IOException {
+        store.open("../../etc/passwd");
+    }
+
+    @Test
+    public void is_disabled_without_directory() {
+        LocalBlobStore disabled = new LocalBlobStore();
+        disabled.setDirectory("");
+        disabled.init();
+
+        assertFalse(disabled.isEnabled());
+        assertFalse(disabled.exists(KEY));
+    }
+
+}
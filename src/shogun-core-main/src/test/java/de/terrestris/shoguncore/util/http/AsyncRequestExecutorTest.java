@@ -0,0 +1,182 @@
+package de.terrestris.shoguncore.util.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author terrestris GmbH & Co. KG
+ */
+public class AsyncRequestExecutorTest {
+
+    private AsyncRequestExecutor executor;
+
+    private MockHttpServletRequest request;
+
+    private MockHttpServletResponse response;
+
+    @Before
+    public void setUp() {
+        executor = new AsyncRequestExecutor();
+        executor.setEnabled(true);
+
+        request = new MockHttpServletRequest();
+        request.setAsyncSupported(true);
+        response = new MockHttpServletResponse();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+        SecurityContextHolder.clearContext();
+    }
+
+    private static Object awaitResult(DeferredResult<?> deferredResult) throws InterruptedException {
+        for (int i = 0; i < 500 && !deferredResult.hasResult(); i++) {
+            Thread.sleep(10);
+        }
+        return deferredResult.getResult();
+    }
+
+    @Test
+    public void isEnabled_requiresAsyncSupport() {
+        assertTrue(executor.isEnabled(request));
+
+        request.setAsyncSupported(false);
+        assertFalse(executor.isEnabled(request));
+
+        request.setAsyncSupported(true);
+        executor.setEnabled(false);
+        assertFalse(executor.isEnabled(request));
+    }
+
+    @Test
+    public void submit_propagatesSecurityContextAndRequest() throws InterruptedException {
+        Authentication authentication = new TestingAuthenticationToken("shinji", "kagawa");
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+
+        DeferredResult<Object[]> deferredResult = executor.submit(request, response,
+            () -> new Object[]{
+                SecurityContextHolder.getContext().getAuthentication(),
+                ((ServletRequestAttributes) RequestContextHolder.getRequestAttributes()).getRequest()
+            },
+            () -> null, () -> null);
+
+        Object[] result = (Object[]) awaitResult(deferredResult);
+
+        assertSame(authentication, result[0]);
+        assertSame(request, result[1]);
+        assertEquals(0, executor.getInFlight());
+    }
+
+    @Test
+    public void submit_rejectsRequestsExceedingTheLimit() throws InterruptedException {
+        executor.setMaxThreads(1);
+        executor.setMaxQueued(1);
+
+        CountDownLatch latch = new CountDownLatch(1);
+
+        DeferredResult<String> executing = executor.submit(request, response,
+            () -> latch.await(5, TimeUnit.SECONDS) ? "executed" : "timeout",
+            () -> "timeout", () -> "rejected");
+        DeferredResult<String> queued = executor.submit(request, response,
+            () -> "queued", () -> "timeout", () -> "rejected");
+        DeferredResult<String> rejected = executor.submit(request, response,
+            () -> "executed", () -> "timeout", () -> "rejected");
+
+        assertEquals("rejected", rejected.getResult());
+        assertEquals(1, executor.getRejected());
+
+        latch.countDown();
+
+        assertEquals("executed", awaitResult(executing));
+        assertEquals("queued", awaitResult(queued));
+    }
+
+    @Test
+    public void submit_cancelsTasksExceedingTheTimeout() throws InterruptedException {
+        executor.setTimeout(50);
+
+        AtomicBoolean interrupted = new AtomicBoolean();
+        CountDownLatch finished = new CountDownLatch(1);
+
+        DeferredResult<String> deferredResult = executor.submit(request, response,
+            () -> {
+                try {
+                    Thread.sleep(5000);
+                    return "executed";
+                } catch (InterruptedException e) {
+                    interrupted.set(true);
+                    return "interrupted";
+                } finally {
+                    finished.countDown();
+                }
+            },
+            () -> "timeout", () -> "rejected");
+
+        assertEquals("timeout", awaitResult(deferredResult));
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertTrue(interrupted.get());
+        assertEquals(1, executor.getTimedOut());
+    }
+
+    @Test
+    public void submit_doesNotTimeOutClaimedResponses() throws InterruptedException {
+        executor.setTimeout(50);
+
+        DeferredResult<String> deferredResult = executor.submit(request, response,
+            () -> {
+                // e.g. the headers of the upstream response have been received
+                assertTrue(AsyncRequestExecutor.Task.current().claimResponse());
+                Thread.sleep(200);
+                return "streamed";
+            },
+            () -> "timeout", () -> "rejected");
+
+        assertEquals("streamed", awaitResult(deferredResult));
+        assertEquals(0, executor.getTimedOut());
+    }
+
+    @Test
+    public void guard_preventsWritesAfterTheCompletion() throws IOException {
+        AsyncRequestExecutor.Task task = new AsyncRequestExecutor.Task();
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        OutputStream outputStream = task.guard(target);
+
+        assertTrue(task.claimResponse());
+        outputStream.write(new byte[]{1, 2});
+
+        task.complete();
+        assertFalse(task.isActive());
+        assertFalse(task.claimResponse());
+
+        try {
+            outputStream.write(new byte[]{3});
+            fail("Writes after the completion must fail");
+        } catch (IOException e) {
+            assertEquals(2, target.size());
+        }
+    }
+
+}
@@ -186,6 +186,19 @@ public class HttpUtilTest {
         assertNotNull(response);
     }
 
+    @Test
+    public void get_url_releases_pooled_connection() throws URISyntaxException, HttpException {
+        HttpUtil.get(URL);
+        HttpUtil.get(URL);
+
+        Map<String, Map<String, Integer>> poolStats = HttpUtil.getHttpClientEngine().getPoolStats();
+        Map<String, Integer> routeStats = poolStats.get(URL);
+
+        assertNotNull(routeStats);
+        assertEquals(Integer.valueOf(0), routeStats.get("leased"));
+        assertTrue(routeStats.get("available") >= 1);
+    }
+
     @Test
     public void get_url_headers() throws URISyntaxException, HttpException {
         Response response = HttpUtil.get(URL, REQ_HEADERS);
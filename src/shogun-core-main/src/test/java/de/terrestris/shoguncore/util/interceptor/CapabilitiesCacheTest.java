@@ -0,0 +1,227 @@
+package de.terrestris.shoguncore.util.interceptor;
+
+import de.terrestris.shoguncore.util.model.Response;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author terrestris GmbH & Co. KG
+ */
+public class CapabilitiesCacheTest {
+
+    private static final String CAPABILITIES = "<WMS_Capabilities version=\"1.3.0\"/>";
+
+    private CapabilitiesCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new CapabilitiesCache();
+    }
+
+    private static Response createResponse(String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.TEXT_XML);
+        return new Response(HttpStatus.OK, headers, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MockHttpServletRequest createRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/geoserver.action/bvb");
+        request.addParameter("SERVICE", "WMS");
+        request.addParameter("REQUEST", "GetCapabilities");
+        return request;
+    }
+
+    @Test
+    public void createKey_ignores_parameter_order_and_case() {
+        MockHttpServletRequest first = createRequest();
+
+        MockHttpServletRequest second = new MockHttpServletRequest("GET", "/geoserver.action/bvb");
+        second.addParameter("request", "GetCapabilities");
+        second.addParameter("service", "WMS");
+        second.addParameter("CUSTOM_ENDPOINT", "bvb");
+
+        assertEquals(CapabilitiesCache.createKey("bvb", first),
+            CapabilitiesCache.createKey("bvb", second));
+    }
+
+    @Test
+    public void createKey_respects_endpoint_and_forwarded_host() {
+        MockHttpServletRequest request = createRequest();
+        String key = CapabilitiesCache.createKey("bvb", request);
+
+        assertFalse(key.equals(CapabilitiesCache.createKey("s04", request)));
+
+        request.addHeader("x-forwarded-host", "example.com");
+        assertFalse(key.equals(CapabilitiesCache.createKey("bvb", request)));
+    }
+
+    @Test
+    public void createKey_respects_credentials_and_post_body() {
+        MockHttpServletRequest request = createRequest();
+        String key = CapabilitiesCache.createKey("bvb", request);
+
+        MockHttpServletRequest authenticated = createRequest();
+        authenticated.addHeader("x-geoserver-credentials", "Basic c2hvZ3VuOnNlY3JldA==");
+        String authenticatedKey = CapabilitiesCache.createKey("bvb", authenticated);
+
+        assertFalse(key.equals(authenticatedKey));
+        assertFalse(authenticatedKey.contains("c2hvZ3VuOnNlY3JldA=="));
+
+        MockHttpServletRequest first = new MockHttpServletRequest("POST", "/geoserver.action/bvb");
+        first.setContent("<GetCapabilities service=\"WMS\"/>".getBytes(StandardCharsets.UTF_8));
+
+        MockHttpServletRequest second = new MockHttpServletRequest("POST", "/geoserver.action/bvb");
+        second.setContent("<GetCapabilities service=\"WMS\" version=\"1.1.1\"/>".getBytes(StandardCharsets.UTF_8));
+
+        assertFalse(CapabilitiesCache.createKey("bvb", first).equals(CapabilitiesCache.createKey("bvb", second)));
+    }
+
+    @Test
+    public void intercepted_responses_get_etag_and_not_modified() {
+        Response intercepted = CapabilitiesCache.toConditionalResponse(createRequest(), createResponse(CAPABILITIES));
+
+        String eTag = intercepted.getHeaders().getETag();
+        assertNotNull(eTag);
+        assertEquals(HttpStatus.OK, intercepted.getStatusCode());
+        assertEquals(MediaType.TEXT_XML, intercepted.getHeaders().getContentType());
+
+        MockHttpServletRequest request = createRequest();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, eTag);
+
+        Response notModified = CapabilitiesCache.toConditionalResponse(request, createResponse(CAPABILITIES));
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+        assertNull(notModified.getBody());
+        assertEquals(eTag, notModified.getHeaders().getETag());
+
+        Response modified = CapabilitiesCache.toConditionalResponse(request, createResponse("<WMS_Capabilities/>"));
+        assertEquals(HttpStatus.OK, modified.getStatusCode());
+        assertFalse(eTag.equals(modified.getHeaders().getETag()));
+    }
+
+    @Test
+    public void put_and_get() {
+        MockHttpServletRequest request = createRequest();
+        String key = CapabilitiesCache.createKey("bvb", request);
+
+        assertNull(cache.get(key));
+
+        cache.put(key, "bvb", createResponse(CAPABILITIES));
+
+        CapabilitiesCache.Entry entry = cache.get(key);
+        assertNotNull(entry);
+
+        Response response = entry.toResponse(request);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertArrayEquals(CAPABILITIES.getBytes(StandardCharsets.UTF_8), response.getBody());
+        assertEquals(MediaType.TEXT_XML, response.getHeaders().getContentType());
+        assertEquals(entry.getETag(), response.getHeaders().getETag());
+        assertEquals(entry.getLastModified(), response.getHeaders().getLastModified());
+    }
+
+    @Test
+    public void responds_not_modified_for_matching_etag() {
+        MockHttpServletRequest request = createRequest();
+        String key = CapabilitiesCache.createKey("bvb", request);
+        CapabilitiesCache.Entry entry = cache.put(key, "bvb", createResponse(CAPABILITIES));
+
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"outdated\", " + entry.getETag());
+
+        Response response = entry.toResponse(request);
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertNull(response.getBody());
+        assertEquals(entry.getETag(), response.getHeaders().getETag());
+
+        MockHttpServletRequest outdated = createRequest();
+        outdated.addHeader(HttpHeaders.IF_NONE_MATCH, "\"outdated\"");
+        assertEquals(HttpStatus.OK, entry.toResponse(outdated).getStatusCode());
+    }
+
+    @Test
+    public void responds_not_modified_if_not_modified_since() {
+        MockHttpServletRequest request = createRequest();
+        String key = CapabilitiesCache.createKey("bvb", request);
+        CapabilitiesCache.Entry entry = cache.put(key, "bvb", createResponse(CAPABILITIES));
+
+        request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, entry.getLastModified());
+        assertEquals(HttpStatus.NOT_MODIFIED, entry.toResponse(request).getStatusCode());
+
+        MockHttpServletRequest older = createRequest();
+        older.addHeader(HttpHeaders.IF_MODIFIED_SINCE, entry.getLastModified() - 1000);
+        assertEquals(HttpStatus.OK, entry.toResponse(older).getStatusCode());
+    }
+
+    @Test
+    public void entries_expire() throws InterruptedException {
+        cache.setTimeToLive(10);
+        cache.put("key", "bvb", createResponse(CAPABILITIES));
+
+        Thread.sleep(50);
+
+        assertNull(cache.get("key"));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getTotalBytes());
+    }
+
+    @Test
+    public void evicts_least_recently_used_entries() {
+        int size = CAPABILITIES.getBytes(StandardCharsets.UTF_8).length;
+        cache.setMaxBytes(2 * size);
+
+        cache.put("first", "bvb", createResponse(CAPABILITIES));
+        cache.put("second", "bvb", createResponse(CAPABILITIES));
+        // access the first entry, so the second one is the least recently used
+        assertNotNull(cache.get("first"));
+        cache.put("third", "bvb", createResponse(CAPABILITIES));
+
+        assertEquals(2, cache.size());
+        assertEquals(2 * size, cache.getTotalBytes());
+        assertNotNull(cache.get("first"));
+        assertNull(cache.get("second"));
+        assertNotNull(cache.get("third"));
+    }
+
+    @Test
+    public void invalidates_entries_of_endpoint() {
+        cache.put("first", "bvb", createResponse(CAPABILITIES));
+        cache.put("second", "s04", createResponse(CAPABILITIES));
+
+        cache.invalidate("bvb");
+
+        assertNull(cache.get("first"));
+        assertNotNull(cache.get("second"));
+        assertEquals(CAPABILITIES.getBytes(StandardCharsets.UTF_8).length, cache.getTotalBytes());
+
+        cache.invalidateAll();
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getTotalBytes());
+    }
+
+    @Test
+    public void does_not_cache_exceptions_or_large_documents() {
+        Response exception = createResponse("<ServiceExceptionReport version=\"1.3.0\"/>");
+        assertFalse(cache.isCacheable(exception));
+
+        Response notFound = new Response(HttpStatus.NOT_FOUND, new HttpHeaders(), new byte[0]);
+        assertFalse(cache.isCacheable(notFound));
+
+        assertTrue(cache.isCacheable(createResponse(CAPABILITIES)));
+
+        cache.setMaxBytes(10);
+        assertFalse(cache.isCacheable(createResponse(CAPABILITIES)));
+    }
+
+}
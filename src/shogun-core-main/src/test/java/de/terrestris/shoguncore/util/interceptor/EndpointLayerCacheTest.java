@@ -0,0 +1,105 @@
+package de.terrestris.shoguncore.util.interceptor;
+
+import de.terrestris.shoguncore.dao.LayerDataSourceDao;
+import de.terrestris.shoguncore.model.layer.source.ImageWmsLayerDataSource;
+import org.hibernate.criterion.Criterion;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author terrestris GmbH & Co. KG
+ */
+public class EndpointLayerCacheTest {
+
+    @Mock
+    private LayerDataSourceDao<ImageWmsLayerDataSource> layerDataSourceDao;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private EndpointLayerCache cache;
+
+    @Before
+    public void set_up() {
+        MockitoAnnotations.initMocks(this);
+        cache.setTransactionManager(transactionManager);
+
+        when(layerDataSourceDao.findByCriteria(any(Criterion.class)))
+            .thenReturn(Arrays.asList(createSource("bvb:shinji"), createSource("bvb:reus")));
+    }
+
+    private static ImageWmsLayerDataSource createSource(String layerNames) {
+        ImageWmsLayerDataSource source = new ImageWmsLayerDataSource();
+        source.setLayerNames(layerNames);
+        source.setRequestableByPath(true);
+        source.setCustomRequestPath("bvb");
+        return source;
+    }
+
+    @Test
+    public void loads_layer_names_once() {
+        Set<String> layerNames = cache.getLayerNames("bvb");
+
+        assertEquals(2, layerNames.size());
+        assertTrue(layerNames.contains("bvb:shinji"));
+        assertTrue(layerNames.contains("bvb:reus"));
+        assertFalse(layerNames.contains("bvb:hummels"));
+
+        for (int i = 0; i < 256; i++) {
+            cache.getLayerNames("bvb");
+        }
+
+        verify(layerDataSourceDao, times(1)).findByCriteria(any(Criterion.class));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void returns_immutable_layer_names() {
+        cache.getLayerNames("bvb").add("bvb:hummels");
+    }
+
+    @Test
+    public void reloads_invalidated_layer_names() {
+        cache.getLayerNames("bvb");
+        cache.getLayerNames("s04");
+
+        cache.invalidate("bvb");
+        cache.getLayerNames("bvb");
+        cache.getLayerNames("s04");
+
+        verify(layerDataSourceDao, times(3)).findByCriteria(any(Criterion.class));
+
+        cache.invalidateAll();
+        cache.getLayerNames("bvb");
+        cache.getLayerNames("s04");
+
+        verify(layerDataSourceDao, times(5)).findByCriteria(any(Criterion.class));
+    }
+
+    @Test
+    public void reloads_expired_layer_names() throws InterruptedException {
+        cache.setTimeToLive(10);
+        cache.getLayerNames("bvb");
+
+        Thread.sleep(50);
+        cache.getLayerNames("bvb");
+
+        verify(layerDataSourceDao, times(2)).findByCriteria(any(Criterion.class));
+    }
+
+}
@@ -0,0 +1,122 @@
+package de.terrestris.shoguncore.util.interceptor;
+
+import de.terrestris.shoguncore.util.interceptor.InterceptorMetrics.Phase;
+import de.terrestris.shoguncore.util.interceptor.InterceptorMetrics.SlowRequest;
+import de.terrestris.shoguncore.util.interceptor.InterceptorMetrics.Timer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author terrestris GmbH & Co. KG
+ */
+public class InterceptorMetricsTest {
+
+    private InterceptorMetrics metrics;
+
+    @Before
+    public void setUp() {
+        metrics = new InterceptorMetrics();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getPhases(Map<String, Object> histogram) {
+        return (Map<String, Object>) histogram.get("phases");
+    }
+
+    @Test
+    public void record_adds_the_passed_phases_and_the_total() {
+        Timer timer = metrics.start();
+        timer.lap(Phase.PARSE);
+        timer.lap(Phase.UPSTREAM);
+        timer.lap(Phase.UPSTREAM);
+
+        metrics.record(timer, "WMS", "GetMap", "shogun:layer", "/geoserver.action", false);
+
+        List<Map<String, Object>> histograms = metrics.getHistograms();
+        assertEquals(1, histograms.size());
+        assertEquals("WMS", histograms.get(0).get("service"));
+        assertEquals("GetMap", histograms.get(0).get("operation"));
+        assertEquals("shogun:layer", histograms.get(0).get("endpoint"));
+
+        Map<String, Object> phases = getPhases(histograms.get(0));
+        assertEquals(3, phases.size());
+        assertTrue(phases.containsKey(Phase.PARSE.name()));
+        assertTrue(phases.containsKey(Phase.UPSTREAM.name()));
+        assertTrue(phases.containsKey(Phase.TOTAL.name()));
+        assertEquals(1L, ((Map<?, ?>) phases.get(Phase.UPSTREAM.name())).get("count"));
+    }
+
+    @Test
+    public void record_collapses_the_endpoints_exceeding_the_max_keys() {
+        metrics.setMaxKeys(2);
+
+        for (String endpoint : new String[]{"a", "b", "c", "d"}) {
+            metrics.record(metrics.start(), "WMS", "GetMap", endpoint, "/geoserver.action", false);
+        }
+
+        Set<Object> endpoints = new HashSet<>();
+        for (Map<String, Object> histogram : metrics.getHistograms()) {
+            endpoints.add(histogram.get("endpoint"));
+        }
+
+        assertEquals(3, endpoints.size());
+        assertTrue(endpoints.contains(InterceptorMetrics.OTHER_ENDPOINTS));
+    }
+
+    @Test
+    public void record_keeps_the_last_slow_requests() {
+        metrics.setSlowRequestThreshold(0);
+        metrics.setSlowRequestBufferSize(2);
+
+        for (String endpoint : new String[]{"a", "b", "c"}) {
+            Timer timer = metrics.start();
+            timer.lap(Phase.RULE_LOOKUP);
+            metrics.record(timer, "WFS", "GetFeature", endpoint, "/geoserver.action", "c".equals(endpoint));
+        }
+
+        List<SlowRequest> slowRequests = metrics.getSlowRequests();
+
+        assertEquals(3, metrics.getSlowRequestCount());
+        assertEquals(2, slowRequests.size());
+
+        Set<String> endpoints = new HashSet<>();
+        for (SlowRequest slowRequest : slowRequests) {
+            endpoints.add(slowRequest.getEndpoint());
+            assertTrue(slowRequest.getPhases().containsKey(Phase.RULE_LOOKUP.name()));
+            assertFalse(slowRequest.getPhases().containsKey(Phase.TOTAL.name()));
+            assertEquals("c".equals(slowRequest.getEndpoint()), slowRequest.isFailed());
+        }
+        assertFalse(endpoints.contains("a"));
+    }
+
+    @Test
+    public void record_uses_unknown_for_unparsed_requests() {
+        metrics.record(metrics.start(), null, null, null, "/geoserver.action", true);
+
+        Map<String, Object> histogram = metrics.getHistograms().get(0);
+        assertEquals(InterceptorMetrics.UNKNOWN, histogram.get("service"));
+        assertEquals(InterceptorMetrics.UNKNOWN, histogram.get("endpoint"));
+    }
+
+    @Test
+    public void disabled_metrics_record_nothing() {
+        metrics.setEnabled(false);
+
+        Timer timer = metrics.start();
+        timer.lap(Phase.PARSE);
+        metrics.record(timer, "WMS", "GetMap", "a", "/geoserver.action", false);
+
+        assertFalse(timer.isEnabled());
+        assertTrue(metrics.getHistograms().isEmpty());
+    }
+
+}
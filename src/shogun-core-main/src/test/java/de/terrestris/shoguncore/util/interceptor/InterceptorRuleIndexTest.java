@@ -0,0 +1,171 @@
+package de.terrestris.shoguncore.util.interceptor;
+
+import de.terrestris.shoguncore.model.interceptor.InterceptorRule;
+import de.terrestris.shoguncore.util.enumeration.HttpEnum;
+import de.terrestris.shoguncore.util.enumeration.InterceptorEnum;
+import de.terrestris.shoguncore.util.enumeration.OgcEnum;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author terrestris GmbH & Co. KG
+ */
+@SuppressWarnings("static-method")
+public class InterceptorRuleIndexTest {
+
+    private static final HttpEnum.EventType REQUEST = HttpEnum.EventType.REQUEST;
+
+    private static final OgcEnum.ServiceType WMS = OgcEnum.ServiceType.WMS;
+
+    @Test
+    public void resolves_most_specific_rule() {
+        InterceptorRule serviceRule = createRule(REQUEST, WMS, null, null, InterceptorEnum.RuleType.DENY);
+        InterceptorRule operationRule = createRule(REQUEST, WMS, OgcEnum.OperationType.GET_MAP, null,
+            InterceptorEnum.RuleType.ALLOW);
+        InterceptorRule endPointRule = createRule(REQUEST, WMS, null, "bvb:shinji",
+            InterceptorEnum.RuleType.MODIFY);
+        InterceptorRule exactRule = createRule(REQUEST, WMS, OgcEnum.OperationType.GET_MAP, "bvb:shinji",
+            InterceptorEnum.RuleType.DENY);
+
+        InterceptorRuleIndex index = new InterceptorRuleIndex(Arrays.asList(
+            serviceRule, operationRule, endPointRule, exactRule));
+
+        assertEquals(4, index.size());
+        assertTrue(index.hasRules(REQUEST, WMS));
+        assertFalse(index.hasRules(HttpEnum.EventType.RESPONSE, WMS));
+        assertFalse(index.hasRules(REQUEST, OgcEnum.ServiceType.WFS));
+
+        assertSame(exactRule, index.findMostSpecificRule(REQUEST, WMS,
+            OgcEnum.OperationType.GET_MAP, "bvb:shinji"));
+        assertSame(endPointRule, index.findMostSpecificRule(REQUEST, WMS,
+            OgcEnum.OperationType.GET_FEATURE_INFO, "bvb:shinji"));
+        assertSame(operationRule, index.findMostSpecificRule(REQUEST, WMS,
+            OgcEnum.OperationType.GET_MAP, "bvb:hummels"));
+        assertSame(serviceRule, index.findMostSpecificRule(REQUEST, WMS,
+            OgcEnum.OperationType.GET_FEATURE_INFO, "bvb:hummels"));
+        assertNull(index.findMostSpecificRule(HttpEnum.EventType.RESPONSE, WMS,
+            OgcEnum.OperationType.GET_MAP, "bvb:shinji"));
+    }
+
+    @Test
+    public void first_duplicate_rule_wins() {
+        InterceptorRule first = createRule(REQUEST, WMS, null, null, InterceptorEnum.RuleType.DENY);
+        InterceptorRule second = createRule(REQUEST, WMS, null, null, InterceptorEnum.RuleType.ALLOW);
+
+        InterceptorRuleIndex index = new InterceptorRuleIndex(Arrays.asList(first, second));
+
+        assertEquals(1, index.size());
+        assertSame(first, index.findMostSpecificRule(REQUEST, WMS, null, null));
+    }
+
+    @Test
+    public void handles_empty_rules() {
+        InterceptorRuleIndex index = new InterceptorRuleIndex(null);
+
+        assertEquals(0, index.size());
+        assertFalse(index.hasRules(REQUEST, WMS));
+        assertNull(index.findMostSpecificRule(REQUEST, WMS, OgcEnum.OperationType.GET_MAP, "bvb:shinji"));
+    }
+
+    @Test
+    public void matches_scoring_of_all_rules_for_10_rules() {
+        assertMatchesScoring(10);
+    }
+
+    @Test
+    public void matches_scoring_of_all_rules_for_1000_rules() {
+        assertMatchesScoring(1000);
+    }
+
+    @Test
+    public void matches_scoring_of_all_rules_for_50000_rules() {
+        assertMatchesScoring(50000);
+    }
+
+    /**
+     * Compares the resolved rules of the index with the score based
+     * evaluation of all rules for randomly created rules and requests.
+     *
+     * @param ruleCount
+     */
+    private static void assertMatchesScoring(int ruleCount) {
+        Random random = new Random(ruleCount);
+        OgcEnum.OperationType[] operations = OgcEnum.OperationType.values();
+        int endPointCount = Math.max(2, ruleCount / operations.length);
+
+        List<InterceptorRule> rules = new ArrayList<>();
+        rules.add(createRule(REQUEST, WMS, null, null, InterceptorEnum.RuleType.DENY));
+        while (rules.size() < ruleCount) {
+            rules.add(createRule(REQUEST, WMS,
+                random.nextInt(4) == 0 ? null : operations[random.nextInt(operations.length)],
+                random.nextInt(4) == 0 ? null : "bvb:layer" + random.nextInt(endPointCount),
+                InterceptorEnum.RuleType.ALLOW));
+        }
+
+        InterceptorRuleIndex index = new InterceptorRuleIndex(rules);
+
+        for (int i = 0; i < 500; i++) {
+            OgcEnum.OperationType operation = random.nextInt(5) == 0 ? null :
+                operations[random.nextInt(operations.length)];
+            String endPoint = random.nextInt(5) == 0 ? null :
+                "bvb:layer" + random.nextInt(endPointCount + 1);
+
+            InterceptorRule indexed = index.findMostSpecificRule(REQUEST, WMS, operation, endPoint);
+
+            assertNotNull(indexed);
+            assertEquals("Score mismatch for " + operation + "/" + endPoint,
+                getBestScore(rules, operation, endPoint), getScore(indexed, operation, endPoint));
+        }
+    }
+
+    /**
+     * @return The highest score of all given rules.
+     */
+    private static int getBestScore(List<InterceptorRule> rules,
+                                    OgcEnum.OperationType operation, String endPoint) {
+        int best = -1;
+        for (InterceptorRule rule : rules) {
+            best = Math.max(best, getScore(rule, operation, endPoint));
+        }
+        return best;
+    }
+
+    /**
+     * The score of the given rule as evaluated by the former scoring loop, -1
+     * if the rule does not match at all. Ties between endPoint and operation
+     * are resolved in favor of the endPoint.
+     */
+    private static int getScore(InterceptorRule rule, OgcEnum.OperationType operation,
+                                String endPoint) {
+        if (rule.getEndPoint() != null && endPoint != null &&
+            !Objects.equals(rule.getEndPoint(), endPoint)) {
+            return -1;
+        }
+        if (rule.getOperation() != null && operation != null &&
+            !Objects.equals(rule.getOperation(), operation)) {
+            return -1;
+        }
+        int score = 0;
+        if (endPoint != null && Objects.equals(rule.getEndPoint(), endPoint)) {
+            score += 2;
+        }
+        if (operation != null && Objects.equals(rule.getOperation(), operation)) {
+            score += 1;
+        }
+        return score;
+    }
+
+    private static InterceptorRule createRule(HttpEnum.EventType event, OgcEnum.ServiceType service,
+                                              OgcEnum.OperationType operation, String endPoint,
+                                              InterceptorEnum.RuleType ruleType) {
+        return new InterceptorRule(event, ruleType, service, operation, endPoint);
+    }
+
+}
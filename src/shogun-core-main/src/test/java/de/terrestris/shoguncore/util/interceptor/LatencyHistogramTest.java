@@ -0,0 +1,68 @@
+package de.terrestris.shoguncore.util.interceptor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author terrestris GmbH & Co. KG
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_contain_their_values_with_a_bounded_error() {
+        long previousIndex = -1;
+
+        for (long value = 0; value < 1L << 32; value = value < 4096 ? value + 1 : value + value / 7) {
+            int index = LatencyHistogram.getBucketIndex(value);
+            long highestValue = LatencyHistogram.getHighestValue(index);
+
+            assertTrue(index >= previousIndex);
+            assertTrue(highestValue >= value);
+            assertTrue((highestValue - value) <= Math.max(1, value / 16));
+
+            previousIndex = index;
+        }
+    }
+
+    @Test
+    public void snapshot_returns_percentiles_of_the_recorded_values() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500, snapshot.getMean());
+        assertEquals(1000, snapshot.getMax());
+        assertEquals(500, snapshot.getPercentile(50), 500 / 16);
+        assertEquals(990, snapshot.getPercentile(99), 990 / 16);
+        assertEquals(1000, snapshot.getPercentile(100));
+    }
+
+    @Test
+    public void snapshot_of_an_empty_histogram_is_empty() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().getSnapshot();
+
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMean());
+        assertEquals(0, snapshot.getPercentile(99));
+    }
+
+    @Test
+    public void record_clamps_values_out_of_range() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+
+        assertEquals(2, snapshot.getCount());
+        assertEquals(0, snapshot.getPercentile(50));
+        assertEquals((1L << 32) - 1, snapshot.getMax());
+    }
+
+}
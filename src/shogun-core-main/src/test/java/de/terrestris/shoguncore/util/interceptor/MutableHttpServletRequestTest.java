@@ -17,6 +17,8 @@ import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 public class MutableHttpServletRequestTest {
 
@@ -144,4 +146,31 @@ public class MutableHttpServletRequestTest {
 
         assertEquals("String body should be equal.", sw.toString(), testString);
     }
+
+    @Test
+    public void getRequestParameterValueFromXmlBody() throws IOException, InterceptorException {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setMethod("POST");
+        request.setContent(("<wfs:GetFeature service=\"WFS\" version=\"1.1.0\" " +
+            "xmlns:wfs=\"http://www.opengis.net/wfs\">" +
+            "<wfs:Query typeName=\"bvb:shinji\"/></wfs:GetFeature>").getBytes());
+        MutableHttpServletRequest xmlRequest = new MutableHttpServletRequest(request);
+
+        assertEquals("WFS", MutableHttpServletRequest.getRequestParameterValue(xmlRequest, "SERVICE"));
+        assertEquals("GetFeature", MutableHttpServletRequest.getRequestParameterValue(xmlRequest, "REQUEST"));
+        assertEquals("bvb:shinji", MutableHttpServletRequest.getRequestParameterValue(xmlRequest, "TYPENAME"));
+        assertEquals("1.1.0", MutableHttpServletRequest.getRequestParameterValue(xmlRequest,
+            MutableHttpServletRequest.VERSION_PARAMETER));
+
+        // the body is parsed once only
+        assertSame(xmlRequest.getOgcRequestDescriptor(), xmlRequest.getOgcRequestDescriptor());
+
+        // but again after it has been modified
+        OgcRequestDescriptor descriptor = xmlRequest.getOgcRequestDescriptor();
+        xmlRequest.setInputStream("<wfs:DescribeFeatureType service=\"WFS\" " +
+            "xmlns:wfs=\"http://www.opengis.net/wfs\"><TypeName>bvb:reus</TypeName>" +
+            "</wfs:DescribeFeatureType>");
+        assertNotSame(descriptor, xmlRequest.getOgcRequestDescriptor());
+        assertEquals("bvb:reus", MutableHttpServletRequest.getRequestParameterValue(xmlRequest, "LAYERS"));
+    }
 }
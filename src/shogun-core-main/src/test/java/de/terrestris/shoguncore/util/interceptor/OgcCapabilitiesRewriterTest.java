@@ -0,0 +1,114 @@
+package de.terrestris.shoguncore.util.interceptor;
+
+import org.junit.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author terrestris GmbH & Co. KG
+ */
+@SuppressWarnings("static-method")
+public class OgcCapabilitiesRewriterTest {
+
+    private static final String BASE_URL = "https://example.com/shogun/geoserver.action/bvb";
+
+    private static final String WMS_130 = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+        "<WMS_Capabilities version=\"1.3.0\" xmlns=\"http://www.opengis.net/wms\" " +
+        "xmlns:xlink=\"http://www.w3.org/1999/xlink\">" +
+        "<Service><Name>WMS</Name>" +
+        "<OnlineResource xlink:type=\"simple\" xlink:href=\"http://geoserver/wms\"/></Service>" +
+        "<Capability><Request><GetMap><DCPType><HTTP><Get>" +
+        "<OnlineResource xlink:type=\"simple\" xlink:href=\"http://geoserver/wms?SERVICE=WMS&amp;\"/>" +
+        "</Get></HTTP></DCPType></GetMap></Request>" +
+        "<Layer><Title>Root</Title><CRS>EPSG:3857</CRS>" +
+        "<Layer queryable=\"1\"><Name>shinji</Name><Title>Shinji</Title></Layer>" +
+        "<Layer queryable=\"1\"><Name>hummels</Name><Title>Hummels</Title>" +
+        "<Layer><Name>shinji</Name><Title>Nested in removed</Title></Layer></Layer>" +
+        "<Layer><Name>reus</Name><Title>Reus</Title>" +
+        "<Style><Name>reus_style</Name><LegendURL><OnlineResource xlink:href=\"http://geoserver/legend?x=1\"/>" +
+        "</LegendURL></Style></Layer>" +
+        "</Layer></Capability></WMS_Capabilities>";
+
+    private static final String WMS_111 = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+        "<!DOCTYPE WMT_MS_Capabilities SYSTEM \"http://localhost:1/WMS_MS_Capabilities.dtd\">" +
+        "<WMT_MS_Capabilities version=\"1.1.1\">" +
+        "<Service><Name>OGC:WMS</Name>" +
+        "<OnlineResource xmlns:xlink=\"http://www.w3.org/1999/xlink\" xlink:href=\"http://geoserver/wms\"/></Service>" +
+        "<Capability><Layer><Title>Root</Title>" +
+        "<Layer><Name>shinji</Name></Layer>" +
+        "<Layer><Name>hummels</Name></Layer>" +
+        "</Layer></Capability></WMT_MS_Capabilities>";
+
+    @Test
+    public void rewrites_wms_130_capabilities() throws XMLStreamException {
+        String result = new String(OgcCapabilitiesRewriter.rewriteWmsCapabilities(
+            WMS_130.getBytes(StandardCharsets.UTF_8), BASE_URL,
+            Arrays.asList("bvb:shinji", "bvb:reus")), StandardCharsets.UTF_8);
+
+        assertTrue(result.contains("<Title>Root</Title>"));
+        assertTrue(result.contains("<Name>bvb:shinji</Name>"));
+        assertTrue(result.contains("<Name>bvb:reus</Name>"));
+        assertTrue(result.contains("<Name>reus_style</Name>"));
+        assertFalse(result.contains("hummels"));
+        assertFalse(result.contains("Nested in removed"));
+        assertFalse(result.contains("http://geoserver"));
+        assertTrue(result.contains("xlink:href=\"" + BASE_URL + "\""));
+        assertTrue(result.contains("xlink:href=\"" + BASE_URL + "?SERVICE=WMS&amp;\""));
+        assertTrue(result.contains("xlink:href=\"" + BASE_URL + "?x=1\""));
+    }
+
+    @Test
+    public void rewrites_wms_111_capabilities() throws XMLStreamException {
+        String result = new String(OgcCapabilitiesRewriter.rewriteWmsCapabilities(
+            WMS_111.getBytes(StandardCharsets.UTF_8), BASE_URL,
+            Collections.singletonList("bvb:hummels")), StandardCharsets.UTF_8);
+
+        assertTrue(result.contains("<Name>bvb:hummels</Name>"));
+        assertFalse(result.contains("shinji"));
+        assertTrue(result.contains("xlink:href=\"" + BASE_URL + "\""));
+    }
+
+    @Test
+    public void rewrites_wfs_100_capabilities() throws XMLStreamException {
+        String capabilities = "<WFS_Capabilities version=\"1.0.0\" xmlns=\"http://www.opengis.net/wfs\">" +
+            "<Capability><Request><GetCapabilities><DCPType><HTTP>" +
+            "<Get onlineResource=\"http://geoserver/wfs?request=GetCapabilities\"/>" +
+            "<Post onlineResource=\"http://geoserver/wfs\"/>" +
+            "</HTTP></DCPType></GetCapabilities></Request></Capability></WFS_Capabilities>";
+
+        String result = new String(OgcCapabilitiesRewriter.rewriteWfsCapabilities(
+            capabilities.getBytes(StandardCharsets.UTF_8), BASE_URL), StandardCharsets.UTF_8);
+
+        assertFalse(result.contains("http://geoserver"));
+        assertTrue(result.contains("<Get onlineResource=\"" + BASE_URL + "\""));
+        assertTrue(result.contains("<Post onlineResource=\"" + BASE_URL + "\""));
+    }
+
+    @Test
+    public void rewrites_wfs_200_capabilities() throws XMLStreamException {
+        String capabilities = "<wfs:WFS_Capabilities version=\"2.0.0\" " +
+            "xmlns:wfs=\"http://www.opengis.net/wfs/2.0\" xmlns:ows=\"http://www.opengis.net/ows/1.1\">" +
+            "<ows:OperationsMetadata><ows:Operation name=\"GetCapabilities\"><ows:DCP><ows:HTTP>" +
+            "<ows:Get xmlns:xlink=\"http://www.w3.org/1999/xlink\" xlink:href=\"http://geoserver/wfs\"/>" +
+            "<ows:Post xlink:href=\"http://geoserver/wfs\" xmlns:xlink=\"http://www.w3.org/1999/xlink\"/>" +
+            "</ows:HTTP></ows:DCP></ows:Operation></ows:OperationsMetadata></wfs:WFS_Capabilities>";
+
+        String result = new String(OgcCapabilitiesRewriter.rewriteWfsCapabilities(
+            capabilities.getBytes(StandardCharsets.UTF_8), BASE_URL), StandardCharsets.UTF_8);
+
+        assertFalse(result.contains("http://geoserver"));
+        assertTrue(result.contains("xlink:href=\"" + BASE_URL + "\""));
+    }
+
+    @Test(expected = XMLStreamException.class)
+    public void throws_on_invalid_xml() throws XMLStreamException {
+        OgcCapabilitiesRewriter.rewriteWfsCapabilities("<WFS_Capabilities>".getBytes(), BASE_URL);
+    }
+
+}
@@ -0,0 +1,99 @@
+package de.terrestris.shoguncore.util.interceptor;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author terrestris GmbH & Co. KG
+ */
+@SuppressWarnings("static-method")
+public class OgcRequestDescriptorTest {
+
+    @Test
+    public void parses_wfs_get_feature() throws IOException {
+        OgcRequestDescriptor descriptor = OgcRequestDescriptor.fromString(
+            "<wfs:GetFeature service=\"WFS\" version=\"1.1.0\" " +
+                "xmlns:wfs=\"http://www.opengis.net/wfs\">" +
+                "<wfs:Query typeName=\"bvb:shinji\"/>" +
+                "</wfs:GetFeature>");
+
+        assertEquals("WFS", descriptor.getService());
+        assertEquals("GetFeature", descriptor.getOperation());
+        assertEquals("bvb:shinji", descriptor.getEndPoint());
+        assertEquals("1.1.0", descriptor.getVersion());
+    }
+
+    @Test
+    public void prefers_type_name_elements() throws IOException {
+        OgcRequestDescriptor descriptor = OgcRequestDescriptor.fromString(
+            "<DescribeFeatureType service=\"WFS\" version=\"1.0.0\" typeName=\"bvb:hummels\">" +
+                "<TypeName>bvb:reus</TypeName>" +
+                "</DescribeFeatureType>");
+
+        assertEquals("DescribeFeatureType", descriptor.getOperation());
+        assertEquals("bvb:reus", descriptor.getEndPoint());
+    }
+
+    @Test
+    public void parses_wcs_get_coverage() throws IOException {
+        OgcRequestDescriptor descriptor = OgcRequestDescriptor.fromString(
+            "<wcs:GetCoverage service=\"WCS\" version=\"1.1.1\" " +
+                "xmlns:wcs=\"http://www.opengis.net/wcs/1.1.1\" " +
+                "xmlns:ows=\"http://www.opengis.net/ows/1.1\">" +
+                "<ows:Identifier>bvb:dem</ows:Identifier>" +
+                "<wcs:DomainSubset/>" +
+                "</wcs:GetCoverage>");
+
+        assertEquals("WCS", descriptor.getService());
+        assertEquals("GetCoverage", descriptor.getOperation());
+        assertEquals("bvb:dem", descriptor.getEndPoint());
+        assertEquals("1.1.1", descriptor.getVersion());
+    }
+
+    @Test
+    public void returns_empty_values_if_not_found() throws IOException {
+        OgcRequestDescriptor descriptor = OgcRequestDescriptor.fromString(
+            "<Execute><Identifier>gs:Bounds</Identifier></Execute>");
+
+        assertEquals("", descriptor.getService());
+        assertEquals("Execute", descriptor.getOperation());
+        assertEquals("", descriptor.getEndPoint());
+        assertEquals("", descriptor.getVersion());
+    }
+
+    @Test(expected = IOException.class)
+    public void throws_on_invalid_xml() throws IOException {
+        OgcRequestDescriptor.fromString("<GetFeature service=\"WFS\">");
+    }
+
+    @Test
+    public void parses_large_transaction() throws IOException {
+        StringBuilder xml = new StringBuilder();
+        xml.append("<wfs:Transaction service=\"WFS\" version=\"1.1.0\" ")
+            .append("xmlns:wfs=\"http://www.opengis.net/wfs\" ")
+            .append("xmlns:gml=\"http://www.opengis.net/gml\" ")
+            .append("xmlns:bvb=\"http://bvb.de\">");
+        xml.append("<wfs:Insert>");
+        for (int i = 0; i < 20000; i++) {
+            xml.append("<bvb:shinji><bvb:name>feature ").append(i).append("</bvb:name>")
+                .append("<bvb:geom><gml:Point><gml:pos>7.45 51.49</gml:pos></gml:Point></bvb:geom>")
+                .append("</bvb:shinji>");
+        }
+        xml.append("</wfs:Insert>");
+        xml.append("<wfs:Update typeName=\"bvb:shinji\">")
+            .append("<wfs:Property><wfs:Name>name</wfs:Name><wfs:Value>Kagawa</wfs:Value></wfs:Property>")
+            .append("</wfs:Update>");
+        xml.append("</wfs:Transaction>");
+
+        OgcRequestDescriptor descriptor = OgcRequestDescriptor.fromString(xml.toString());
+
+        assertEquals("WFS", descriptor.getService());
+        assertEquals("Transaction", descriptor.getOperation());
+        assertEquals("bvb:shinji", descriptor.getEndPoint());
+        assertEquals("1.1.0", descriptor.getVersion());
+    }
+
+}
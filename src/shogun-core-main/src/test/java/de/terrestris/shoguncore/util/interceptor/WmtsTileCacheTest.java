@@ -0,0 +1,158 @@
+package de.terrestris.shoguncore.util.interceptor;
+
+import de.terrestris.shoguncore.dao.LayerDataSourceDao;
+import de.terrestris.shoguncore.model.layer.source.WmtsLayerDataSource;
+import de.terrestris.shoguncore.util.model.FileResponse;
+import de.terrestris.shoguncore.util.model.Response;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author terrestris GmbH & Co. KG
+ */
+public class WmtsTileCacheTest {
+
+    private static final String PATH = "layer/default/EPSG:3857/3/4/2.png";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    private LayerDataSourceDao<WmtsLayerDataSource> layerDataSourceDao;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private WmtsTileCache cache;
+
+    @Before
+    public void set_up() {
+        MockitoAnnotations.initMocks(this);
+        cache.setTransactionManager(transactionManager);
+        cache.setDirectory(folder.getRoot().getAbsolutePath());
+        cache.init();
+    }
+
+    private static Response createTile(String contentType, String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.CONTENT_TYPE, contentType);
+        return new Response(HttpStatus.OK, headers, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] read(Response response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (FileResponse fileResponse = (FileResponse) response) {
+            fileResponse.writeTo(out);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void serves_stored_tiles_from_disk() throws IOException {
+        assertNull(cache.get(1, PATH));
+
+        assertTrue(cache.put(1, PATH, createTile("image/png", "tile"), cache.getVersion()));
+
+        Response cached = cache.get(1, PATH);
+
+        assertEquals(HttpStatus.OK, cached.getStatusCode());
+        assertEquals("image/png", cached.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE));
+        assertArrayEquals("tile".getBytes(StandardCharsets.UTF_8), read(cached));
+
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(4, cache.getBytesServed());
+        assertEquals(4, cache.getBytesStored());
+    }
+
+    @Test
+    public void does_not_store_exception_reports() {
+        assertFalse(cache.put(1, PATH, createTile("application/vnd.ogc.se_xml", "<error/>"), cache.getVersion()));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void evicts_least_recently_used_tiles() {
+        cache.setMaxBytes(10);
+
+        cache.put(1, "a.png", createTile("image/png", "aaaa"), cache.getVersion());
+        cache.put(1, "b.png", createTile("image/png", "bbbb"), cache.getVersion());
+        ((FileResponse) cache.get(1, "a.png")).close();
+        cache.put(1, "c.png", createTile("image/png", "cccc"), cache.getVersion());
+
+        assertEquals(2, cache.getSize());
+        assertEquals(8, cache.getTotalBytes());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get(1, "b.png"));
+    }
+
+    @Test
+    public void purges_the_tiles_of_a_data_source() throws IOException {
+        cache.put(1, PATH, createTile("image/png", "tile"), cache.getVersion());
+        cache.put(2, PATH, createTile("image/png", "tile"), cache.getVersion());
+
+        long version = cache.getVersion();
+        cache.purge(1);
+
+        assertNull(cache.get(1, PATH));
+        assertArrayEquals("tile".getBytes(StandardCharsets.UTF_8), read(cache.get(2, PATH)));
+        assertFalse(folder.getRoot().toPath().resolve("1").toFile().exists());
+
+        // tiles loaded before the purge won't be stored
+        assertFalse(cache.put(1, PATH, createTile("image/png", "tile"), version));
+    }
+
+    @Test
+    public void rebuilds_the_index_from_disk() throws IOException {
+        cache.put(1, PATH, createTile("image/jpeg", "tile"), cache.getVersion());
+
+        WmtsTileCache restarted = new WmtsTileCache();
+        restarted.setDirectory(folder.getRoot().getAbsolutePath());
+        restarted.init();
+
+        Response cached = restarted.get(1, PATH);
+
+        assertEquals(1, restarted.getSize());
+        assertEquals("image/jpeg", cached.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE));
+        assertArrayEquals("tile".getBytes(StandardCharsets.UTF_8), read(cached));
+    }
+
+    @Test
+    public void loads_urls_once() {
+        WmtsLayerDataSource dataSource = new WmtsLayerDataSource();
+        dataSource.setUrl("http://wmts.example.com");
+        when(layerDataSourceDao.findById(1)).thenReturn(dataSource);
+
+        assertEquals("http://wmts.example.com", cache.getUrl(1));
+        assertEquals("http://wmts.example.com", cache.getUrl(1));
+        verify(layerDataSourceDao, times(1)).findById(1);
+
+        cache.purge(1);
+
+        assertEquals("http://wmts.example.com", cache.getUrl(1));
+        verify(layerDataSourceDao, times(2)).findById(1);
+    }
+
+}
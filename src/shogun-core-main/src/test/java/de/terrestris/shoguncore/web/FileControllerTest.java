@@ -3,6 +3,7 @@ package de.terrestris.shoguncore.web;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -11,8 +12,14 @@ import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.http.MediaType;
@@ -30,6 +37,9 @@ import de.terrestris.shoguncore.service.FileService;
  */
 public class FileControllerTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private MockMvc mockMvc;
 
     @Mock
@@ -158,6 +168,114 @@ public class FileControllerTest {
         verifyNoMoreInteractions(fileServiceMock);
     }
 
+    /**
+     * @throws Exception
+     */
+    @Test
+    public void getFile_shouldStreamTheContentOfTheBlobStore()
+        throws Exception {
+
+        // mock data
+        final String fileContent = "Just some mockup bytes";
+        final String fileType = "text/plain";
+
+        java.io.File blob = folder.newFile();
+        Files.write(blob.toPath(), fileContent.getBytes());
+
+        Integer fileId = 42;
+        File expectedFile = new File();
+        expectedFile.setBlobKey("ed7002b439e9ac845f22357d822bac1444730fbdb6016d3ec9432297b9ec9f73");
+        expectedFile.setFileName("fileName.txt");
+        expectedFile.setFileType(fileType);
+
+        // mock service behaviour
+        when(fileServiceMock.findById(fileId)).thenReturn(expectedFile);
+        when(fileServiceMock.openFile(expectedFile)).thenReturn(
+            FileChannel.open(blob.toPath(), StandardOpenOption.READ));
+
+        // Perform and test the GET-Request
+        mockMvc.perform(get("/file/get.action").param("id", fileId.toString()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.parseMediaType(fileType)))
+            .andExpect(header().longValue("Content-Length", fileContent.length()))
+            .andExpect(content().string(fileContent));
+
+        verify(fileServiceMock, times(1)).findById(fileId);
+        verify(fileServiceMock, times(1)).openFile(expectedFile);
+        verifyNoMoreInteractions(fileServiceMock);
+    }
+
+    /**
+     * @throws Exception
+     */
+    @Test
+    public void getFile_shouldAnswerNotModifiedWithoutOpeningTheBlob()
+        throws Exception {
+
+        final String blobKey = "ed7002b439e9ac845f22357d822bac1444730fbdb6016d3ec9432297b9ec9f73";
+
+        Integer fileId = 42;
+        File expectedFile = new File();
+        expectedFile.setBlobKey(blobKey);
+        expectedFile.setFileName("fileName.txt");
+        expectedFile.setFileType("text/plain");
+
+        // mock service behaviour
+        when(fileServiceMock.findById(fileId)).thenReturn(expectedFile);
+
+        // Perform and test the GET-Request
+        mockMvc.perform(get("/file/get.action").param("id", fileId.toString())
+            .header("If-None-Match", "\"" + blobKey + "\""))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string("ETag", "\"" + blobKey + "\""))
+            .andExpect(content().string(""));
+
+        verify(fileServiceMock, times(1)).findById(fileId);
+        verifyNoMoreInteractions(fileServiceMock);
+    }
+
+    /**
+     * @throws Exception
+     */
+    @Test
+    public void getFile_shouldServeByteRanges()
+        throws Exception {
+
+        // mock data
+        final String fileContent = "Just some mockup bytes";
+
+        Integer fileId = 42;
+        File expectedFile = new File();
+        expectedFile.setFile(fileContent.getBytes());
+        expectedFile.setFileName("fileName.txt");
+        expectedFile.setFileType("text/plain");
+
+        // mock service behaviour
+        when(fileServiceMock.findById(fileId)).thenReturn(expectedFile);
+
+        // a single range
+        mockMvc.perform(get("/file/get.action").param("id", fileId.toString())
+            .header("Range", "bytes=0-3"))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string("Content-Range", "bytes 0-3/22"))
+            .andExpect(header().string("Accept-Ranges", "bytes"))
+            .andExpect(content().string("Just"));
+
+        // multiple ranges
+        mockMvc.perform(get("/file/get.action").param("id", fileId.toString())
+            .header("Range", "bytes=0-3,5-8"))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string("Content-Type", startsWith("multipart/byteranges; boundary=")))
+            .andExpect(content().string(containsString("Content-Range: bytes 0-3/22\r\n\r\nJust")))
+            .andExpect(content().string(containsString("Content-Range: bytes 5-8/22\r\n\r\nsome")));
+
+        // an unsatisfiable range
+        mockMvc.perform(get("/file/get.action").param("id", fileId.toString())
+            .header("Range", "bytes=100-200"))
+            .andExpect(status().isRequestedRangeNotSatisfiable())
+            .andExpect(header().string("Content-Range", "bytes */22"));
+    }
+
     /**
      * @throws Exception
      */
@@ -3,8 +3,10 @@ package de.terrestris.shoguncore.web;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import de.terrestris.shoguncore.service.GeoServerInterceptorService;
 import de.terrestris.shoguncore.util.data.ResultSet;
+import de.terrestris.shoguncore.util.http.AsyncRequestExecutor;
 import de.terrestris.shoguncore.util.interceptor.InterceptorException;
 import de.terrestris.shoguncore.util.model.Response;
+import de.terrestris.shoguncore.util.model.StreamingResponse;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Matchers;
@@ -19,10 +21,13 @@ import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import javax.servlet.http.HttpServletRequest;
+import java.io.ByteArrayInputStream;
 import java.util.Optional;
 
 import static de.terrestris.shoguncore.web.GeoServerInterceptorController.ERROR_MESSAGE;
 import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
@@ -34,6 +39,8 @@ public class GeoServerInterceptorControllerTest {
 
     private MockMvc mockMvc;
 
+    private GeoServerInterceptorController geoServerInterceptorController;
+
     @Mock(name = "geoServerInterceptorService")
     private GeoServerInterceptorService geoServerInterceptorService;
 
@@ -42,7 +49,7 @@ public class GeoServerInterceptorControllerTest {
         // Process mock annotations
         MockitoAnnotations.initMocks(this);
 
-        GeoServerInterceptorController geoServerInterceptorController = new GeoServerInterceptorController();
+        geoServerInterceptorController = new GeoServerInterceptorController();
         geoServerInterceptorController.setService(geoServerInterceptorService);
 
         // Setup Spring test in standalone mode
@@ -85,6 +92,27 @@ public class GeoServerInterceptorControllerTest {
         assertEquals(result.getResponse().getContentAsString(), testString);
     }
 
+    @Test
+    public void streamsPassThroughResponse() throws Exception {
+        final String testString = "test";
+        HttpHeaders responseHeaders = new HttpHeaders();
+        responseHeaders.add("X-Test", "streamed");
+        StreamingResponse responseObject = new StreamingResponse(HttpStatus.OK, responseHeaders,
+            new ByteArrayInputStream(testString.getBytes()), null);
+
+        Mockito.when(geoServerInterceptorService.interceptGeoServerRequest(
+            Matchers.any(HttpServletRequest.class),
+            Matchers.any(Optional.class)
+        )).thenReturn(responseObject);
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get(INTERCEPTOR_ENDPOINT))
+            .andExpect(status().isOk()).andReturn();
+
+        assertEquals(result.getResponse().getStatus(), HttpStatus.OK.value());
+        assertEquals(result.getResponse().getHeader("X-Test"), "streamed");
+        assertEquals(result.getResponse().getContentAsString(), testString);
+    }
+
     @Test
     public void doesntWorkForHttpPut() throws Exception {
         final String testString = "test";
@@ -116,4 +144,58 @@ public class GeoServerInterceptorControllerTest {
             objectMapper.writeValueAsString(ResultSet.error(ERROR_MESSAGE+"null")), result.getResponse().getContentAsString());
     }
 
+    @Test
+    public void worksAsynchronously() throws Exception {
+        AsyncRequestExecutor asyncRequestExecutor = new AsyncRequestExecutor();
+        asyncRequestExecutor.setEnabled(true);
+        geoServerInterceptorController.setAsyncRequestExecutor(asyncRequestExecutor);
+
+        final String testString = "test";
+        Response responseObject = new Response(HttpStatus.OK, new HttpHeaders(), testString.getBytes());
+
+        Mockito.when(geoServerInterceptorService.interceptGeoServerRequest(
+            Matchers.any(HttpServletRequest.class),
+            Matchers.any(Optional.class)
+        )).thenReturn(responseObject);
+
+        MvcResult asyncResult = mockMvc.perform(MockMvcRequestBuilders.get(INTERCEPTOR_ENDPOINT))
+            .andExpect(request().asyncStarted()).andReturn();
+
+        MvcResult result = mockMvc.perform(asyncDispatch(asyncResult))
+            .andExpect(status().isOk()).andReturn();
+
+        assertEquals(result.getResponse().getContentAsString(), testString);
+
+        asyncRequestExecutor.shutdown();
+    }
+
+    @Test
+    public void streamsPassThroughResponseAsynchronously() throws Exception {
+        AsyncRequestExecutor asyncRequestExecutor = new AsyncRequestExecutor();
+        asyncRequestExecutor.setEnabled(true);
+        geoServerInterceptorController.setAsyncRequestExecutor(asyncRequestExecutor);
+
+        final String testString = "test";
+        HttpHeaders responseHeaders = new HttpHeaders();
+        responseHeaders.add("X-Test", "streamed");
+        StreamingResponse responseObject = new StreamingResponse(HttpStatus.OK, responseHeaders,
+            new ByteArrayInputStream(testString.getBytes()), null);
+
+        Mockito.when(geoServerInterceptorService.interceptGeoServerRequest(
+            Matchers.any(HttpServletRequest.class),
+            Matchers.any(Optional.class)
+        )).thenReturn(responseObject);
+
+        MvcResult asyncResult = mockMvc.perform(MockMvcRequestBuilders.get(INTERCEPTOR_ENDPOINT))
+            .andExpect(request().asyncStarted()).andReturn();
+
+        MvcResult result = mockMvc.perform(asyncDispatch(asyncResult))
+            .andExpect(status().isOk()).andReturn();
+
+        assertEquals(result.getResponse().getHeader("X-Test"), "streamed");
+        assertEquals(result.getResponse().getContentAsString(), testString);
+
+        asyncRequestExecutor.shutdown();
+    }
+
 }